@@ -0,0 +1,26 @@
+package com.fusionxpay.common.datasource;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+/**
+ * Reads {@code Seconds_Behind_Source} from {@code SHOW REPLICA STATUS} (MySQL 8.0.22+). The replica
+ * user needs the REPLICATION CLIENT privilege.
+ */
+public class MySqlReplicaLagProbe implements ReplicaLagProbe {
+
+    @Override
+    public Duration measure(Connection replica) throws SQLException {
+        try (Statement statement = replica.createStatement();
+             ResultSet status = statement.executeQuery("SHOW REPLICA STATUS")) {
+            if (!status.next()) {
+                return null;
+            }
+            long seconds = status.getLong("Seconds_Behind_Source");
+            return status.wasNull() ? null : Duration.ofSeconds(seconds);
+        }
+    }
+}
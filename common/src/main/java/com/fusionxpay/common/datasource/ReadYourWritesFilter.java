@@ -0,0 +1,35 @@
+package com.fusionxpay.common.datasource;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Scopes {@link ReadYourWritesTracker} to each request, keyed by the configured caller header.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    private final ReadYourWritesTracker tracker;
+    private final String pinHeader;
+
+    public ReadYourWritesFilter(ReadYourWritesTracker tracker, String pinHeader) {
+        this.tracker = tracker;
+        this.pinHeader = pinHeader;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String pinKey = request.getHeader(pinHeader);
+        tracker.beginRequest(pinKey == null || pinKey.isBlank() ? null : pinKey);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            tracker.endRequest();
+        }
+    }
+}
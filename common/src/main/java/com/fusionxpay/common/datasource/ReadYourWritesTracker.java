@@ -0,0 +1,93 @@
+package com.fusionxpay.common.datasource;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps callers that just wrote on the primary, so they do not read their own write back from a
+ * replica that has not applied it yet. Within a request the pin lasts until the request ends; for
+ * the caller named by the request's pin key it lasts for the pin duration, across requests served
+ * by this instance.
+ */
+public class ReadYourWritesTracker {
+
+    private static final int PURGE_THRESHOLD = 10_000;
+
+    private final ThreadLocal<RequestScope> currentRequest = new ThreadLocal<>();
+    private final Map<String, Instant> pinnedUntil = new ConcurrentHashMap<>();
+    private final Duration pinDuration;
+    private final Clock clock;
+
+    public ReadYourWritesTracker(Duration pinDuration) {
+        this(pinDuration, Clock.systemUTC());
+    }
+
+    ReadYourWritesTracker(Duration pinDuration, Clock clock) {
+        this.pinDuration = pinDuration;
+        this.clock = clock;
+    }
+
+    /**
+     * Starts tracking the current thread's request; {@code pinKey} may be null for anonymous callers.
+     */
+    public void beginRequest(String pinKey) {
+        currentRequest.set(new RequestScope(pinKey));
+    }
+
+    public void endRequest() {
+        currentRequest.remove();
+    }
+
+    /**
+     * Records a committed write by the current request. Writes outside a request (consumers,
+     * schedulers) pin nothing.
+     */
+    public void recordWrite() {
+        RequestScope scope = currentRequest.get();
+        if (scope == null) {
+            return;
+        }
+        scope.wrote = true;
+        if (scope.pinKey != null) {
+            if (pinnedUntil.size() >= PURGE_THRESHOLD) {
+                Instant now = clock.instant();
+                pinnedUntil.values().removeIf(until -> until.isBefore(now));
+            }
+            pinnedUntil.put(scope.pinKey, clock.instant().plus(pinDuration));
+        }
+    }
+
+    public boolean isPinned() {
+        RequestScope scope = currentRequest.get();
+        if (scope == null) {
+            return false;
+        }
+        if (scope.wrote) {
+            return true;
+        }
+        if (scope.pinKey == null) {
+            return false;
+        }
+        Instant until = pinnedUntil.get(scope.pinKey);
+        if (until == null) {
+            return false;
+        }
+        if (until.isBefore(clock.instant())) {
+            pinnedUntil.remove(scope.pinKey, until);
+            return false;
+        }
+        return true;
+    }
+
+    private static final class RequestScope {
+        private final String pinKey;
+        private boolean wrote;
+
+        private RequestScope(String pinKey) {
+            this.pinKey = pinKey;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.fusionxpay.common.datasource;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Read replica settings. Username, password and driver fall back to {@code spring.datasource.*}
+ * when not set.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "fusionxpay.datasource.replica")
+public class ReplicaDataSourceProperties {
+
+    private boolean enabled = false;
+    private String url;
+    private String username;
+    private String password;
+    private String driverClassName;
+    private int maximumPoolSize = 10;
+
+    /** Replica lag above which read-only transactions go to the primary. */
+    private Duration maxLag = Duration.ofSeconds(2);
+    private Duration lagCheckInterval = Duration.ofSeconds(1);
+
+    /** How long a caller that just wrote keeps reading from the primary. */
+    private Duration pinDuration = Duration.ofSeconds(5);
+    /** Request header identifying the caller for the read-your-writes pin. */
+    private String pinHeader = "X-Merchant-Id";
+}
@@ -0,0 +1,76 @@
+package com.fusionxpay.common.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Probes the replica on a fixed delay and keeps it out of rotation while its lag is above the
+ * limit, unknown, or the replica cannot be reached. Routing only reads the last result, so a slow
+ * replica never delays a request.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private final DataSource replica;
+    private final ReplicaLagProbe probe;
+    private final Duration maxLag;
+    private final Duration checkInterval;
+
+    private volatile boolean replicaUsable;
+    private ScheduledExecutorService scheduler;
+
+    public ReplicaLagMonitor(DataSource replica, ReplicaLagProbe probe, Duration maxLag, Duration checkInterval) {
+        this.replica = replica;
+        this.probe = probe;
+        this.maxLag = maxLag;
+        this.checkInterval = checkInterval;
+    }
+
+    public void start() {
+        refresh();
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("replica-lag-monitor").daemon().factory());
+        scheduler.scheduleWithFixedDelay(this::refresh, checkInterval.toMillis(), checkInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+
+    /**
+     * Probes the replica now. Called by the scheduler; public so tests need not wait for it.
+     */
+    public void refresh() {
+        boolean usable;
+        try (Connection connection = replica.getConnection()) {
+            Duration lag = probe.measure(connection);
+            usable = lag != null && lag.compareTo(maxLag) <= 0;
+            if (!usable && replicaUsable) {
+                log.warn("Routing reads to the primary, replica lag is {} (limit {})",
+                        lag == null ? "unknown" : lag, maxLag);
+            }
+        } catch (Exception e) {
+            usable = false;
+            if (replicaUsable) {
+                log.warn("Routing reads to the primary, replica lag check failed: {}", e.getMessage());
+            }
+        }
+        if (usable && !replicaUsable) {
+            log.info("Routing read-only transactions to the replica");
+        }
+        replicaUsable = usable;
+    }
+}
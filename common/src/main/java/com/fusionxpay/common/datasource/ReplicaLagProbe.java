@@ -0,0 +1,18 @@
+package com.fusionxpay.common.datasource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * Measures how far a replica is behind its primary.
+ */
+@FunctionalInterface
+public interface ReplicaLagProbe {
+
+    /**
+     * @return the replica's lag, or {@code null} when it cannot be told (replication stopped or
+     * not configured), in which case the replica is not used
+     */
+    Duration measure(Connection replica) throws SQLException;
+}
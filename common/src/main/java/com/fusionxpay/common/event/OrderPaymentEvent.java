@@ -1,6 +1,7 @@
 package com.fusionxpay.common.event; 
 
 import com.fusionxpay.common.model.PaymentStatus;
+import com.fusionxpay.common.money.HasMoney;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -14,9 +15,10 @@ import java.util.UUID;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class OrderPaymentEvent {
+public class OrderPaymentEvent implements HasMoney {
     private UUID orderId;
     private UUID transactionId;
+    private Long merchantId;
     private PaymentStatus status;
     private BigDecimal amount;
     private String currency;
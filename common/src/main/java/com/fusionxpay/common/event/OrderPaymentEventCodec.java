@@ -0,0 +1,268 @@
+package com.fusionxpay.common.event;
+
+import com.fusionxpay.common.model.PaymentStatus;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Compact binary encoding of {@link OrderPaymentEvent}.
+ * <p>
+ * Layout: magic byte {@code 0xC5}, format version, then one tag-length-value entry per non-null
+ * field. Decoders skip tags they do not know, so fields can be added without breaking older
+ * consumers; a field's tag and type must never change once released. Statuses are written as
+ * stable codes rather than ordinals, and the magic byte can never start a JSON document, so a
+ * consumer can tell both formats apart while producers migrate.
+ */
+public final class OrderPaymentEventCodec {
+
+    public static final byte MAGIC = (byte) 0xC5;
+    public static final byte VERSION = 1;
+
+    private static final int ORDER_ID = 1;
+    private static final int TRANSACTION_ID = 2;
+    private static final int STATUS = 3;
+    private static final int AMOUNT = 4;
+    private static final int CURRENCY = 5;
+    private static final int PAYMENT_CHANNEL = 6;
+    private static final int MESSAGE = 7;
+    private static final int TIMESTAMP = 8;
+    private static final int MERCHANT_ID = 9;
+
+    private OrderPaymentEventCodec() {
+    }
+
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length >= 2 && data[0] == MAGIC;
+    }
+
+    public static byte[] encode(OrderPaymentEvent event) {
+        Writer out = new Writer();
+        out.buffer[out.position++] = MAGIC;
+        out.buffer[out.position++] = VERSION;
+        if (event.getOrderId() != null) {
+            out.uuid(ORDER_ID, event.getOrderId());
+        }
+        if (event.getTransactionId() != null) {
+            out.uuid(TRANSACTION_ID, event.getTransactionId());
+        }
+        if (event.getStatus() != null) {
+            out.tag(STATUS, 1);
+            out.buffer[out.position++] = statusCode(event.getStatus());
+        }
+        if (event.getAmount() != null) {
+            byte[] unscaled = event.getAmount().unscaledValue().toByteArray();
+            out.tag(AMOUNT, Writer.varintSize(zigZag(event.getAmount().scale())) + unscaled.length);
+            out.varint(zigZag(event.getAmount().scale()));
+            out.bytes(unscaled);
+        }
+        out.string(CURRENCY, event.getCurrency());
+        out.string(PAYMENT_CHANNEL, event.getPaymentChannel());
+        out.string(MESSAGE, event.getMessage());
+        if (event.getTimestamp() != null) {
+            long seconds = zigZag(event.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+            int nanos = event.getTimestamp().getNano();
+            out.tag(TIMESTAMP, Writer.varintSize(seconds) + Writer.varintSize(nanos));
+            out.varint(seconds);
+            out.varint(nanos);
+        }
+        if (event.getMerchantId() != null) {
+            long merchantId = zigZag(event.getMerchantId());
+            out.tag(MERCHANT_ID, Writer.varintSize(merchantId));
+            out.varint(merchantId);
+        }
+        return Arrays.copyOf(out.buffer, out.position);
+    }
+
+    /**
+     * A status code this version does not know, written by a newer producer, decodes to a null
+     * status so the consumer can skip the event instead of failing the record.
+     *
+     * @throws IllegalArgumentException if the data is not in this format or is truncated
+     */
+    public static OrderPaymentEvent decode(byte[] data) {
+        if (!isBinary(data)) {
+            throw new IllegalArgumentException("Not a binary OrderPaymentEvent");
+        }
+        Reader in = new Reader(data);
+        in.position = 2;
+        OrderPaymentEvent event = new OrderPaymentEvent();
+        while (in.position < data.length) {
+            int tag = (int) in.varint();
+            int length = (int) in.varint();
+            int end = in.position + length;
+            if (length < 0 || end > data.length) {
+                throw new IllegalArgumentException("Truncated OrderPaymentEvent field " + tag);
+            }
+            if ((tag == ORDER_ID || tag == TRANSACTION_ID) && length != 16 || tag == STATUS && length != 1) {
+                throw new IllegalArgumentException("Malformed OrderPaymentEvent field " + tag);
+            }
+            switch (tag) {
+                case ORDER_ID -> event.setOrderId(in.uuid());
+                case TRANSACTION_ID -> event.setTransactionId(in.uuid());
+                case STATUS -> event.setStatus(status(data[in.position]));
+                case AMOUNT -> {
+                    int scale = (int) unZigZag(in.varint());
+                    byte[] unscaled = Arrays.copyOfRange(data, in.position, end);
+                    event.setAmount(new BigDecimal(new BigInteger(unscaled), scale));
+                }
+                case CURRENCY -> event.setCurrency(in.string(end));
+                case PAYMENT_CHANNEL -> event.setPaymentChannel(in.string(end));
+                case MESSAGE -> event.setMessage(in.string(end));
+                case TIMESTAMP -> {
+                    long seconds = unZigZag(in.varint());
+                    int nanos = (int) in.varint();
+                    event.setTimestamp(LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC));
+                }
+                case MERCHANT_ID -> event.setMerchantId(unZigZag(in.varint()));
+                default -> {
+                    // Field added by a newer producer
+                }
+            }
+            in.position = end;
+        }
+        return event;
+    }
+
+    private static byte statusCode(PaymentStatus status) {
+        // Codes are part of the wire format: append new statuses, never renumber
+        return switch (status) {
+            case INITIATED -> 1;
+            case PROCESSING -> 2;
+            case SUCCESS -> 3;
+            case REFUNDED -> 4;
+            case FAILED -> 5;
+            case NOT_FOUND -> 6;
+            case DUPLICATE -> 7;
+        };
+    }
+
+    private static PaymentStatus status(byte code) {
+        return switch (code) {
+            case 1 -> PaymentStatus.INITIATED;
+            case 2 -> PaymentStatus.PROCESSING;
+            case 3 -> PaymentStatus.SUCCESS;
+            case 4 -> PaymentStatus.REFUNDED;
+            case 5 -> PaymentStatus.FAILED;
+            case 6 -> PaymentStatus.NOT_FOUND;
+            case 7 -> PaymentStatus.DUPLICATE;
+            default -> null;
+        };
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class Writer {
+
+        private byte[] buffer = new byte[128];
+        private int position;
+
+        void tag(int tag, int length) {
+            varint(tag);
+            varint(length);
+        }
+
+        void uuid(int tag, UUID value) {
+            tag(tag, 16);
+            ensure(16);
+            long most = value.getMostSignificantBits();
+            long least = value.getLeastSignificantBits();
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (most >>> shift);
+            }
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (least >>> shift);
+            }
+        }
+
+        void string(int tag, String value) {
+            if (value != null) {
+                byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                tag(tag, utf8.length);
+                bytes(utf8);
+            }
+        }
+
+        void bytes(byte[] value) {
+            ensure(value.length);
+            System.arraycopy(value, 0, buffer, position, value.length);
+            position += value.length;
+        }
+
+        void varint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        static int varintSize(long value) {
+            int size = 1;
+            while ((value & ~0x7FL) != 0) {
+                size++;
+                value >>>= 7;
+            }
+            return size;
+        }
+
+        private void ensure(int extra) {
+            if (position + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+            }
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] data;
+        private int position;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        long varint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= data.length) {
+                    throw new IllegalArgumentException("Truncated OrderPaymentEvent");
+                }
+                byte b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in OrderPaymentEvent");
+        }
+
+        UUID uuid() {
+            long most = 0;
+            long least = 0;
+            for (int i = 0; i < 8; i++) {
+                most = (most << 8) | (data[position++] & 0xFF);
+            }
+            for (int i = 0; i < 8; i++) {
+                least = (least << 8) | (data[position++] & 0xFF);
+            }
+            return new UUID(most, least);
+        }
+
+        String string(int end) {
+            return new String(data, position, end - position, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.fusionxpay.common.event;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.io.IOException;
+
+/**
+ * Kafka deserializer for {@link OrderPaymentEvent} that reads both the binary
+ * {@link OrderPaymentEventCodec} format and the JSON written by Spring's {@code JsonSerializer},
+ * telling them apart by the first byte. Consumers switch to it before producers switch format,
+ * so old and new records can be on the topic at the same time.
+ */
+public class OrderPaymentEventDeserializer implements Deserializer<OrderPaymentEvent> {
+
+    private static final ObjectMapper OBJECT_MAPPER = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    @Override
+    public OrderPaymentEvent deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        try {
+            if (OrderPaymentEventCodec.isBinary(data)) {
+                return OrderPaymentEventCodec.decode(data);
+            }
+            return OBJECT_MAPPER.readValue(data, OrderPaymentEvent.class);
+        } catch (IllegalArgumentException | IOException e) {
+            throw new SerializationException("Cannot deserialize OrderPaymentEvent from " + topic, e);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.fusionxpay.common.event;
+
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Kafka serializer writing {@link OrderPaymentEvent} in the {@link OrderPaymentEventCodec} binary format.
+ */
+public class OrderPaymentEventSerializer implements Serializer<OrderPaymentEvent> {
+
+    @Override
+    public byte[] serialize(String topic, OrderPaymentEvent event) {
+        return event == null ? null : OrderPaymentEventCodec.encode(event);
+    }
+}
@@ -0,0 +1,29 @@
+package com.fusionxpay.common.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationMismatchEvent {
+    private UUID runId;
+    private String provider;
+    private String providerTransactionId;
+    private UUID transactionId;
+    private String type;
+    private BigDecimal ledgerAmount;
+    private BigDecimal providerAmount;
+    private String ledgerCurrency;
+    private String providerCurrency;
+    private String ledgerStatus;
+    private String providerStatus;
+    private LocalDateTime detectedAt;
+}
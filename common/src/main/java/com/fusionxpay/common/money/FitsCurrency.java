@@ -0,0 +1,29 @@
+package com.fusionxpay.common.money;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.Payload;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The amount of a {@link HasMoney} must have no more decimal places than its currency, e.g. none
+ * for JPY and two for USD. A missing amount or currency passes; {@code @NotNull} covers those.
+ * Violations are reported on the {@code amount} field, or on {@code currency} if the code is not
+ * three letters.
+ */
+@Documented
+@Constraint(validatedBy = FitsCurrencyValidator.class)
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface FitsCurrency {
+
+    String message() default "Amount has more decimal places than the currency allows";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+}
@@ -0,0 +1,30 @@
+package com.fusionxpay.common.money;
+
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+
+public class FitsCurrencyValidator implements ConstraintValidator<FitsCurrency, HasMoney> {
+
+    @Override
+    public boolean isValid(HasMoney value, ConstraintValidatorContext context) {
+        if (value == null || value.getAmount() == null || value.getCurrency() == null || value.getCurrency().isBlank()) {
+            return true;
+        }
+        if (!Money.isCurrencyCode(value.getCurrency())) {
+            return reject(context, "currency", "Currency must be a 3-letter code");
+        }
+        if (!Money.fits(value.getAmount(), value.getCurrency())) {
+            return reject(context, "amount", context.getDefaultConstraintMessageTemplate());
+        }
+        return true;
+    }
+
+    // Report on the field so handlers that read FieldErrors see it
+    private static boolean reject(ConstraintValidatorContext context, String field, String message) {
+        context.disableDefaultConstraintViolation();
+        context.buildConstraintViolationWithTemplate(message)
+                .addPropertyNode(field)
+                .addConstraintViolation();
+        return false;
+    }
+}
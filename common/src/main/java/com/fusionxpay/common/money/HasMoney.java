@@ -0,0 +1,22 @@
+package com.fusionxpay.common.money;
+
+import java.math.BigDecimal;
+
+/**
+ * A DTO that carries an amount in major units and its currency as separate fields, the shape the
+ * public APIs and events use. {@link #toMoney()} converts it for minor-unit arithmetic.
+ */
+public interface HasMoney {
+
+    BigDecimal getAmount();
+
+    String getCurrency();
+
+    /**
+     * @return the amount as Money, or null if the amount or currency is missing
+     * @throws IllegalArgumentException if the amount does not fit the currency
+     */
+    default Money toMoney() {
+        return getAmount() == null || getCurrency() == null ? null : Money.of(getAmount(), getCurrency());
+    }
+}
@@ -0,0 +1,309 @@
+package com.fusionxpay.common.money;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Locale;
+
+/**
+ * An amount of money as a whole number of the currency's minor unit (cents for USD, yen for JPY,
+ * fils for BHD) and its ISO 4217 code.
+ * <p>
+ * Providers such as Stripe take amounts in minor units, and how many minor units make up a major
+ * one depends on the currency, so conversions go through {@link #exponent(String)} rather than a
+ * fixed factor of 100. Conversions are exact: an amount with more decimal places than the currency
+ * has is rejected instead of being rounded or truncated.
+ * <p>
+ * As JSON a Money is {@code {"amount": 12.34, "currency": "USD"}}, the amount written as a plain
+ * decimal with the currency's number of decimal places.
+ */
+@JsonSerialize(using = Money.Serializer.class)
+@JsonDeserialize(using = Money.Deserializer.class)
+public final class Money implements Comparable<Money> {
+
+    private final long minorUnits;
+    private final String currency;
+
+    private Money(long minorUnits, String currency) {
+        this.minorUnits = minorUnits;
+        this.currency = currency;
+    }
+
+    public static Money ofMinor(long minorUnits, String currency) {
+        return new Money(minorUnits, normalize(currency));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the currency code is invalid, the amount has more
+     *                                  decimal places than the currency, or it does not fit a long
+     */
+    public static Money of(BigDecimal amount, String currency) {
+        String code = normalize(currency);
+        int exponent = exponent(code);
+        try {
+            return new Money(amount.movePointRight(exponent).longValueExact(), code);
+        } catch (ArithmeticException e) {
+            if (amount.stripTrailingZeros().scale() > exponent) {
+                throw new IllegalArgumentException(tooManyDecimals(code, exponent, amount.toPlainString()));
+            }
+            throw new IllegalArgumentException("Amount out of range: " + amount.toPlainString());
+        }
+    }
+
+    /**
+     * Parses a plain decimal such as {@code 12.34} or {@code -5} straight into minor units,
+     * without going through BigDecimal. Trailing zeros past the currency's decimal places are
+     * accepted; exponent notation is not.
+     *
+     * @throws IllegalArgumentException if the text is not a plain decimal or does not fit the currency
+     */
+    public static Money parse(CharSequence amount, String currency) {
+        String code = normalize(currency);
+        int exponent = exponent(code);
+        int length = amount.length();
+        int index = 0;
+        boolean negative = false;
+        if (length > 0 && (amount.charAt(0) == '-' || amount.charAt(0) == '+')) {
+            negative = amount.charAt(0) == '-';
+            index++;
+        }
+        long value = 0;
+        int decimals = -1;
+        boolean digits = false;
+        try {
+            for (; index < length; index++) {
+                char c = amount.charAt(index);
+                if (c == '.' && decimals < 0) {
+                    decimals = 0;
+                    continue;
+                }
+                if (c < '0' || c > '9') {
+                    throw new IllegalArgumentException("Invalid amount: " + amount);
+                }
+                digits = true;
+                if (decimals == exponent) {
+                    if (c != '0') {
+                        throw new IllegalArgumentException(tooManyDecimals(code, exponent, amount));
+                    }
+                    continue;
+                }
+                if (decimals >= 0) {
+                    decimals++;
+                }
+                value = Math.addExact(Math.multiplyExact(value, 10), c - '0');
+            }
+            if (!digits) {
+                throw new IllegalArgumentException("Invalid amount: " + amount);
+            }
+            for (int i = Math.max(decimals, 0); i < exponent; i++) {
+                value = Math.multiplyExact(value, 10);
+            }
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount out of range: " + amount);
+        }
+        return new Money(negative ? -value : value, code);
+    }
+
+    /**
+     * @return true if {@link #of} accepts the amount in this currency
+     */
+    public static boolean fits(BigDecimal amount, String currency) {
+        try {
+            of(amount, currency);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Number of decimal places of the currency, per ISO 4217. Currencies not listed use two.
+     *
+     * @throws IllegalArgumentException if the code is not three ASCII letters
+     */
+    public static int exponent(String currency) {
+        return switch (normalize(currency)) {
+            case "BIF", "CLP", "DJF", "GNF", "ISK", "JPY", "KMF", "KRW", "PYG", "RWF", "UGX", "UYI", "VND",
+                 "VUV", "XAF", "XOF", "XPF" -> 0;
+            case "BHD", "IQD", "JOD", "KWD", "LYD", "OMR", "TND" -> 3;
+            case "CLF", "UYW" -> 4;
+            default -> 2;
+        };
+    }
+
+    public static boolean isCurrencyCode(String currency) {
+        if (currency == null || currency.length() != 3) {
+            return false;
+        }
+        for (int i = 0; i < 3; i++) {
+            char c = currency.charAt(i);
+            if (!(c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long minorUnits() {
+        return minorUnits;
+    }
+
+    public String currency() {
+        return currency;
+    }
+
+    public int exponent() {
+        return exponent(currency);
+    }
+
+    public int signum() {
+        return Long.signum(minorUnits);
+    }
+
+    public Money plus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.addExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money minus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.subtractExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, exponent());
+    }
+
+    /**
+     * The amount in major units with exactly the currency's decimal places, e.g. {@code 12.30}
+     * for USD and {@code 1000} for JPY.
+     */
+    public String toPlainString() {
+        int exponent = exponent();
+        String digits = Long.toString(minorUnits);
+        if (exponent == 0) {
+            return digits;
+        }
+        int start = minorUnits < 0 ? 1 : 0;
+        int integerDigits = digits.length() - start - exponent;
+        StringBuilder out = new StringBuilder(digits.length() + exponent + 2);
+        if (start == 1) {
+            out.append('-');
+        }
+        if (integerDigits > 0) {
+            out.append(digits, start, start + integerDigits).append('.').append(digits, start + integerDigits, digits.length());
+        } else {
+            out.append("0.");
+            for (int i = integerDigits; i < 0; i++) {
+                out.append('0');
+            }
+            out.append(digits, start, digits.length());
+        }
+        return out.toString();
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        requireSameCurrency(other);
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money other && minorUnits == other.minorUnits && currency.equals(other.currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(minorUnits) + currency.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return toPlainString() + " " + currency;
+    }
+
+    private void requireSameCurrency(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Currency mismatch: " + currency + " and " + other.currency);
+        }
+    }
+
+    private static String normalize(String currency) {
+        if (!isCurrencyCode(currency)) {
+            throw new IllegalArgumentException("Invalid currency code: " + currency);
+        }
+        for (int i = 0; i < 3; i++) {
+            if (currency.charAt(i) >= 'a') {
+                return currency.toUpperCase(Locale.ROOT);
+            }
+        }
+        return currency;
+    }
+
+    private static String tooManyDecimals(String currency, int exponent, CharSequence amount) {
+        return exponent == 0
+                ? currency + " amounts have no decimal places: " + amount
+                : currency + " amounts have at most " + exponent + " decimal places: " + amount;
+    }
+
+    static final class Serializer extends StdSerializer<Money> {
+
+        Serializer() {
+            super(Money.class);
+        }
+
+        @Override
+        public void serialize(Money value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            gen.writeFieldName("amount");
+            gen.writeNumber(value.toPlainString());
+            gen.writeStringField("currency", value.currency);
+            gen.writeEndObject();
+        }
+    }
+
+    static final class Deserializer extends StdDeserializer<Money> {
+
+        Deserializer() {
+            super(Money.class);
+        }
+
+        @Override
+        public Money deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (!p.isExpectedStartObjectToken()) {
+                return (Money) ctxt.handleUnexpectedToken(Money.class, p);
+            }
+            String amount = null;
+            String currency = null;
+            for (String field = p.nextFieldName(); field != null; field = p.nextFieldName()) {
+                JsonToken token = p.nextToken();
+                if ("amount".equals(field) && token != JsonToken.VALUE_NULL) {
+                    amount = p.getText();
+                } else if ("currency".equals(field) && token != JsonToken.VALUE_NULL) {
+                    currency = p.getText();
+                } else {
+                    p.skipChildren();
+                }
+            }
+            if (amount == null || currency == null) {
+                return (Money) ctxt.handleWeirdStringValue(Money.class, String.valueOf(amount),
+                        "Money needs both an amount and a currency");
+            }
+            try {
+                return parse(amount, currency);
+            } catch (IllegalArgumentException e) {
+                return (Money) ctxt.handleWeirdStringValue(Money.class, amount, "%s", e.getMessage());
+            }
+        }
+    }
+}
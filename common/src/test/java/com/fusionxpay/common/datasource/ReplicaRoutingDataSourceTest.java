@@ -0,0 +1,143 @@
+package com.fusionxpay.common.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReplicaRoutingDataSourceTest {
+
+    private final MutableClock clock = new MutableClock();
+    private final ReplicaLagMonitor lagMonitor = mock(ReplicaLagMonitor.class);
+    private final ReadYourWritesTracker tracker = new ReadYourWritesTracker(Duration.ofSeconds(5), clock);
+    private final ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(
+            mock(DataSource.class), mock(DataSource.class), lagMonitor, tracker);
+
+    @BeforeEach
+    void setUp() {
+        when(lagMonitor.isReplicaUsable()).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clear();
+        tracker.endRequest();
+    }
+
+    @Test
+    void readOnlyTransactionGoesToReplica() {
+        tracker.beginRequest("42");
+        beginTransaction(true);
+
+        assertEquals(ReplicaRoutingDataSource.Target.REPLICA, routing.determineCurrentLookupKey());
+    }
+
+    @Test
+    void readWriteTransactionAndNoTransactionGoToPrimary() {
+        assertEquals(ReplicaRoutingDataSource.Target.PRIMARY, routing.determineCurrentLookupKey());
+
+        beginTransaction(false);
+        assertEquals(ReplicaRoutingDataSource.Target.PRIMARY, routing.determineCurrentLookupKey());
+    }
+
+    @Test
+    void laggingReplicaSendsReadsToPrimary() {
+        when(lagMonitor.isReplicaUsable()).thenReturn(false);
+        beginTransaction(true);
+
+        assertEquals(ReplicaRoutingDataSource.Target.PRIMARY, routing.determineCurrentLookupKey());
+    }
+
+    @Test
+    void committedWritePinsTheCallerToPrimaryForThePinDuration() {
+        tracker.beginRequest("42");
+        beginTransaction(false);
+        routing.determineCurrentLookupKey();
+        commit();
+
+        beginTransaction(true);
+        assertEquals(ReplicaRoutingDataSource.Target.PRIMARY, routing.determineCurrentLookupKey(),
+                "same request reads its write from the primary");
+        TransactionSynchronizationManager.clear();
+
+        tracker.endRequest();
+        tracker.beginRequest("42");
+        beginTransaction(true);
+        assertEquals(ReplicaRoutingDataSource.Target.PRIMARY, routing.determineCurrentLookupKey(),
+                "next request of the same caller is still pinned");
+        TransactionSynchronizationManager.clear();
+
+        tracker.endRequest();
+        tracker.beginRequest("7");
+        beginTransaction(true);
+        assertEquals(ReplicaRoutingDataSource.Target.REPLICA, routing.determineCurrentLookupKey(),
+                "other callers are not pinned");
+        TransactionSynchronizationManager.clear();
+
+        clock.advance(Duration.ofSeconds(6));
+        tracker.endRequest();
+        tracker.beginRequest("42");
+        beginTransaction(true);
+        assertEquals(ReplicaRoutingDataSource.Target.REPLICA, routing.determineCurrentLookupKey(),
+                "pin expires");
+    }
+
+    @Test
+    void rolledBackWriteDoesNotPin() {
+        tracker.beginRequest("42");
+        beginTransaction(false);
+        routing.determineCurrentLookupKey();
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        TransactionSynchronizationManager.clear();
+
+        beginTransaction(true);
+        assertEquals(ReplicaRoutingDataSource.Target.REPLICA, routing.determineCurrentLookupKey());
+    }
+
+    private static void beginTransaction(boolean readOnly) {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(readOnly);
+    }
+
+    private static void commit() {
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        TransactionSynchronizationManager.clear();
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
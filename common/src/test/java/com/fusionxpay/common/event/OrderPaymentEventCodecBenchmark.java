@@ -0,0 +1,80 @@
+package com.fusionxpay.common.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode cost of one OrderPaymentEvent as JSON (Jackson, as configured by Spring's
+ * JsonSerializer) and in the binary codec. Run {@link #main} from the IDE or with
+ * {@code mvn -pl common test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.fusionxpay.common.event.OrderPaymentEventCodecBenchmark};
+ * the bytes per event of both formats are printed before the run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderPaymentEventCodecBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final OrderPaymentEventDeserializer deserializer = new OrderPaymentEventDeserializer();
+
+    private OrderPaymentEvent event;
+    private byte[] json;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() throws Exception {
+        event = OrderPaymentEventCodecTest.sampleEvent();
+        json = objectMapper.writeValueAsBytes(event);
+        binary = OrderPaymentEventCodec.encode(event);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws Exception {
+        return objectMapper.writeValueAsBytes(event);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return OrderPaymentEventCodec.encode(event);
+    }
+
+    @Benchmark
+    public OrderPaymentEvent decodeJson() {
+        return deserializer.deserialize("payment-events", json);
+    }
+
+    @Benchmark
+    public OrderPaymentEvent decodeBinary() {
+        return deserializer.deserialize("payment-events", binary);
+    }
+
+    public static void main(String[] args) throws Exception {
+        OrderPaymentEventCodecBenchmark sizes = new OrderPaymentEventCodecBenchmark();
+        sizes.setUp();
+        System.out.printf("Bytes per event: json=%d binary=%d%n", sizes.json.length, sizes.binary.length);
+        new Runner(new OptionsBuilder()
+                .include(OrderPaymentEventCodecBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
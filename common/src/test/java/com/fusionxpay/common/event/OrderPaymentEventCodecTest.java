@@ -0,0 +1,117 @@
+package com.fusionxpay.common.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fusionxpay.common.model.PaymentStatus;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderPaymentEventCodecTest {
+
+    private final OrderPaymentEventSerializer serializer = new OrderPaymentEventSerializer();
+    private final OrderPaymentEventDeserializer deserializer = new OrderPaymentEventDeserializer();
+
+    @Test
+    void roundTripsAllFields() {
+        OrderPaymentEvent event = sampleEvent();
+
+        OrderPaymentEvent decoded = deserializer.deserialize("payment-events", serializer.serialize("payment-events", event));
+
+        assertEquals(event, decoded);
+    }
+
+    @Test
+    void roundTripsNullFieldsAndNegativeAmounts() {
+        OrderPaymentEvent event = OrderPaymentEvent.builder()
+                .orderId(UUID.randomUUID())
+                .status(PaymentStatus.REFUNDED)
+                .amount(new BigDecimal("-0.0001"))
+                .timestamp(LocalDateTime.of(1969, 12, 31, 23, 59, 59, 1))
+                .build();
+
+        assertEquals(event, OrderPaymentEventCodec.decode(OrderPaymentEventCodec.encode(event)));
+    }
+
+    @Test
+    void readsJsonWrittenBySpringJsonSerializer() throws Exception {
+        OrderPaymentEvent event = sampleEvent();
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        OrderPaymentEvent decoded = deserializer.deserialize("payment-events", objectMapper.writeValueAsBytes(event));
+
+        assertEquals(event, decoded);
+    }
+
+    @Test
+    void skipsFieldsAddedByNewerProducers() {
+        OrderPaymentEvent event = sampleEvent();
+        byte[] encoded = OrderPaymentEventCodec.encode(event);
+        // Unknown tag 99 carrying three bytes
+        byte[] extended = Arrays.copyOf(encoded, encoded.length + 5);
+        extended[encoded.length] = 99;
+        extended[encoded.length + 1] = 3;
+
+        assertEquals(event, OrderPaymentEventCodec.decode(extended));
+    }
+
+    @Test
+    void decodesUnknownStatusCodeAsNull() {
+        OrderPaymentEvent event = sampleEvent();
+        byte[] encoded = OrderPaymentEventCodec.encode(event);
+        // Status is the third field: magic, version, two 18-byte UUID entries, then tag and length
+        int statusIndex = 2 + 18 + 18 + 2;
+        assertEquals(3, encoded[statusIndex]);
+        encoded[statusIndex] = 42;
+
+        OrderPaymentEvent decoded = deserializer.deserialize("payment-events", encoded);
+
+        assertNull(decoded.getStatus());
+        assertEquals(event.getOrderId(), decoded.getOrderId());
+        assertEquals(event.getAmount(), decoded.getAmount());
+    }
+
+    @Test
+    void rejectsTruncatedRecord() {
+        byte[] encoded = OrderPaymentEventCodec.encode(sampleEvent());
+
+        assertThrows(SerializationException.class,
+                () -> deserializer.deserialize("payment-events", Arrays.copyOf(encoded, encoded.length - 3)));
+    }
+
+    @Test
+    void binaryIsLessThanHalfTheJsonSize() throws Exception {
+        OrderPaymentEvent event = sampleEvent();
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        int binary = OrderPaymentEventCodec.encode(event).length;
+        int json = objectMapper.writeValueAsBytes(event).length;
+
+        assertTrue(binary * 2 < json, "binary " + binary + " bytes, json " + json + " bytes");
+    }
+
+    static OrderPaymentEvent sampleEvent() {
+        return OrderPaymentEvent.builder()
+                .orderId(UUID.fromString("5d1f0d3e-8a52-4a8e-9f57-0b6f6c2d9a11"))
+                .transactionId(UUID.fromString("b0a4d1c2-7e3f-4c55-8d2a-1f9e8c7b6a54"))
+                .merchantId(1001L)
+                .status(PaymentStatus.SUCCESS)
+                .amount(new BigDecimal("149.99"))
+                .currency("USD")
+                .paymentChannel("STRIPE")
+                .message("Payment completed successfully")
+                .timestamp(LocalDateTime.of(2025, 10, 9, 14, 30, 15, 123_456_789))
+                .build();
+    }
+}
@@ -0,0 +1,102 @@
+package com.fusionxpay.common.money;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a request amount into a provider amount with BigDecimal, as the providers did
+ * before, and with Money. Run {@link #main} from the IDE or with
+ * {@code mvn -pl common test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.fusionxpay.common.money.MoneyBenchmark}; add {@code -prof gc} to the
+ * options to compare allocation per operation as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    private static final BigDecimal HUNDRED = new BigDecimal(100);
+
+    private String text = "1234.56";
+    private String currency = "USD";
+
+    private BigDecimal decimal;
+    private Money money;
+
+    @Setup
+    public void setUp() {
+        decimal = new BigDecimal(text);
+        money = Money.parse(text, currency);
+    }
+
+    /**
+     * JSON text to Stripe's minor units: parse, then multiply by a fixed 100.
+     */
+    @Benchmark
+    public long minorUnitsBigDecimal() {
+        return new BigDecimal(text).multiply(HUNDRED).longValue();
+    }
+
+    @Benchmark
+    public long minorUnitsMoney() {
+        return Money.parse(text, currency).minorUnits();
+    }
+
+    /**
+     * An already parsed BigDecimal amount, the path of the request DTOs.
+     */
+    @Benchmark
+    public long minorUnitsFromDecimalBigDecimal() {
+        return decimal.multiply(HUNDRED).longValue();
+    }
+
+    @Benchmark
+    public long minorUnitsFromDecimalMoney() {
+        return Money.of(decimal, currency).minorUnits();
+    }
+
+    /**
+     * Minor units to PayPal's decimal string.
+     */
+    @Benchmark
+    public String formatBigDecimal() {
+        return BigDecimal.valueOf(123456, 2).toPlainString();
+    }
+
+    @Benchmark
+    public String formatMoney() {
+        return money.toPlainString();
+    }
+
+    @Benchmark
+    public Money addMoney() {
+        return money.plus(money);
+    }
+
+    @Benchmark
+    public BigDecimal addBigDecimal() {
+        return decimal.add(decimal);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(MoneyBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
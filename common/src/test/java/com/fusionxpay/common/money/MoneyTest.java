@@ -0,0 +1,117 @@
+package com.fusionxpay.common.money;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import lombok.Value;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void convertsUsingTheCurrencyExponent() {
+        assertEquals(1999, Money.of(new BigDecimal("19.99"), "USD").minorUnits());
+        assertEquals(1500, Money.of(new BigDecimal("1500"), "JPY").minorUnits());
+        assertEquals(1500, Money.of(new BigDecimal("1500.00"), "jpy").minorUnits());
+        assertEquals(2125, Money.of(new BigDecimal("2.125"), "BHD").minorUnits());
+        assertEquals(10000, Money.of(new BigDecimal("1"), "CLF").minorUnits());
+        assertEquals("JPY", Money.of(BigDecimal.TEN, "jpy").currency());
+    }
+
+    @Test
+    void rejectsAmountsFinerThanTheCurrency() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> Money.of(new BigDecimal("10.5"), "JPY"));
+        assertTrue(e.getMessage().contains("JPY"));
+        assertThrows(IllegalArgumentException.class, () -> Money.of(new BigDecimal("0.001"), "USD"));
+        assertThrows(IllegalArgumentException.class, () -> Money.of(new BigDecimal("1E+30"), "USD"));
+        assertThrows(IllegalArgumentException.class, () -> Money.of(BigDecimal.ONE, "US"));
+        assertFalse(Money.fits(new BigDecimal("10.5"), "KRW"));
+        assertTrue(Money.fits(new BigDecimal("10.50"), "EUR"));
+    }
+
+    @Test
+    void parsesPlainDecimalsWithoutBigDecimal() {
+        assertEquals(Money.ofMinor(1234, "USD"), Money.parse("12.34", "USD"));
+        assertEquals(Money.ofMinor(1200, "USD"), Money.parse("12", "USD"));
+        assertEquals(Money.ofMinor(1230, "USD"), Money.parse("12.3", "USD"));
+        assertEquals(Money.ofMinor(-5, "USD"), Money.parse("-0.05", "USD"));
+        assertEquals(Money.ofMinor(50, "USD"), Money.parse(".5", "USD"));
+        assertEquals(Money.ofMinor(1000, "JPY"), Money.parse("1000.000", "JPY"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("10.5", "JPY"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("1e3", "USD"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("-", "USD"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("1.2.3", "USD"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("92233720368547758.08", "USD"));
+    }
+
+    @Test
+    void formatsWithTheCurrencyDecimalPlaces() {
+        assertEquals("12.30", Money.ofMinor(1230, "USD").toPlainString());
+        assertEquals("0.05", Money.ofMinor(5, "USD").toPlainString());
+        assertEquals("-0.05", Money.ofMinor(-5, "USD").toPlainString());
+        assertEquals("1000", Money.ofMinor(1000, "JPY").toPlainString());
+        assertEquals("0.007", Money.ofMinor(7, "KWD").toPlainString());
+        assertEquals("-92233720368547758.08", Money.ofMinor(Long.MIN_VALUE, "USD").toPlainString());
+        assertEquals(new BigDecimal("12.30"), Money.ofMinor(1230, "USD").toBigDecimal());
+        assertEquals("12.30 USD", Money.ofMinor(1230, "USD").toString());
+    }
+
+    @Test
+    void arithmeticNeedsTheSameCurrency() {
+        Money ten = Money.ofMinor(1000, "EUR");
+
+        assertEquals(Money.ofMinor(1250, "EUR"), ten.plus(Money.ofMinor(250, "EUR")));
+        assertEquals(-1, ten.minus(Money.ofMinor(1001, "EUR")).signum());
+        assertTrue(ten.compareTo(Money.ofMinor(999, "EUR")) > 0);
+        assertThrows(IllegalArgumentException.class, () -> ten.plus(Money.ofMinor(1000, "USD")));
+        assertThrows(ArithmeticException.class, () -> Money.ofMinor(Long.MAX_VALUE, "EUR").plus(Money.ofMinor(1, "EUR")));
+    }
+
+    @Test
+    void roundTripsThroughJackson() throws Exception {
+        Money money = Money.ofMinor(1999, "USD");
+
+        String json = objectMapper.writeValueAsString(money);
+
+        assertEquals("{\"amount\":19.99,\"currency\":\"USD\"}", json);
+        assertEquals(money, objectMapper.readValue(json, Money.class));
+        assertEquals(Money.ofMinor(1500, "JPY"),
+                objectMapper.readValue("{\"currency\":\"jpy\",\"note\":{},\"amount\":\"1500\"}", Money.class));
+        assertThrows(InvalidFormatException.class,
+                () -> objectMapper.readValue("{\"amount\":10.5,\"currency\":\"JPY\"}", Money.class));
+        assertThrows(InvalidFormatException.class,
+                () -> objectMapper.readValue("{\"amount\":10.5}", Money.class));
+    }
+
+    @Test
+    void fitsCurrencyReportsOnTheOffendingField() {
+        try (var factory = Validation.buildDefaultValidatorFactory()) {
+            Validator validator = factory.getValidator();
+
+            Set<ConstraintViolation<Priced>> tooFine = validator.validate(new Priced(new BigDecimal("10.5"), "JPY"));
+            Set<ConstraintViolation<Priced>> badCode = validator.validate(new Priced(BigDecimal.ONE, "U$D"));
+
+            assertEquals("amount", tooFine.iterator().next().getPropertyPath().toString());
+            assertEquals("currency", badCode.iterator().next().getPropertyPath().toString());
+            assertTrue(validator.validate(new Priced(new BigDecimal("10.50"), "USD")).isEmpty());
+            assertTrue(validator.validate(new Priced(null, "JPY")).isEmpty());
+        }
+    }
+
+    @Value
+    @FitsCurrency
+    static class Priced implements HasMoney {
+        BigDecimal amount;
+        String currency;
+    }
+}
@@ -0,0 +1,13 @@
+CREATE TABLE IF NOT EXISTS payment_event_outbox (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    order_id BINARY(16) NOT NULL,
+    transaction_id BINARY(16) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    message VARCHAR(255) NULL,
+    occurred_at DATETIME(6) NOT NULL,
+    published_at DATETIME(6) NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    last_error VARCHAR(500) NULL,
+    created_at DATETIME(6) NOT NULL,
+    INDEX idx_payment_event_outbox_pending (published_at, id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
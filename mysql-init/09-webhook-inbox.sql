@@ -0,0 +1,16 @@
+CREATE TABLE IF NOT EXISTS webhook_inbox (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    provider VARCHAR(20) NOT NULL,
+    event_id VARCHAR(255) NOT NULL,
+    partition_key VARCHAR(255) NOT NULL,
+    payload LONGTEXT NOT NULL,
+    signature VARCHAR(4096) NULL,
+    status ENUM('RECEIVED', 'DISPATCHED', 'PROCESSED', 'FAILED') NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    last_error VARCHAR(500) NULL,
+    received_at DATETIME(6) NOT NULL,
+    dispatched_at DATETIME(6) NULL,
+    processed_at DATETIME(6) NULL,
+    UNIQUE KEY uk_webhook_inbox_provider_event (provider, event_id),
+    INDEX idx_webhook_inbox_status (status, id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
@@ -0,0 +1 @@
+CREATE INDEX idx_payment_transactions_provider_tx ON payment_transactions (provider_transaction_id);
@@ -0,0 +1 @@
+CREATE INDEX idx_payment_transactions_merchant_created ON payment_transactions (merchant_id, created_at, transaction_id);
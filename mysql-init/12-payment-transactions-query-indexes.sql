@@ -0,0 +1,5 @@
+CREATE INDEX idx_payment_transactions_order_merchant ON payment_transactions (order_id, merchant_id);
+CREATE INDEX idx_payment_transactions_merchant_status_created ON payment_transactions (merchant_id, status, created_at, transaction_id);
+CREATE INDEX idx_payment_transactions_channel_created ON payment_transactions (payment_channel, created_at);
+-- Covered by the leading column of idx_payment_transactions_merchant_created
+DROP INDEX idx_payment_transactions_merchant_id ON payment_transactions;
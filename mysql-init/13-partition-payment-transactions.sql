@@ -0,0 +1,39 @@
+-- Every unique key of a partitioned table must contain the partitioning column, so the primary
+-- key gains created_at; transaction_id stays unique in practice as a random UUID.
+ALTER TABLE payment_transactions
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (transaction_id, created_at);
+
+-- One partition per month; PaymentArchivalJob adds the months ahead by splitting p_future and
+-- drops the old ones once their closed transactions are archived.
+ALTER TABLE payment_transactions
+    PARTITION BY RANGE COLUMNS (created_at) (
+        PARTITION p_history VALUES LESS THAN ('2026-05-01'),
+        PARTITION p202605 VALUES LESS THAN ('2026-06-01'),
+        PARTITION p202606 VALUES LESS THAN ('2026-07-01'),
+        PARTITION p202607 VALUES LESS THAN ('2026-08-01'),
+        PARTITION p202608 VALUES LESS THAN ('2026-09-01'),
+        PARTITION p202609 VALUES LESS THAN ('2026-10-01'),
+        PARTITION p202610 VALUES LESS THAN ('2026-11-01'),
+        PARTITION p202611 VALUES LESS THAN ('2026-12-01'),
+        PARTITION p202612 VALUES LESS THAN ('2027-01-01'),
+        PARTITION p_future VALUES LESS THAN (MAXVALUE)
+    );
+
+CREATE TABLE IF NOT EXISTS payment_transactions_archive (
+    transaction_id BINARY(16) NOT NULL,
+    order_id BINARY(16) NOT NULL,
+    merchant_id BIGINT NOT NULL,
+    amount DECIMAL(10,2) NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    payment_channel VARCHAR(20) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    provider_transaction_id VARCHAR(255),
+    version BIGINT NOT NULL DEFAULT 0,
+    created_at DATETIME(6) NOT NULL,
+    updated_at DATETIME(6) NOT NULL,
+    archived_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (transaction_id),
+    INDEX idx_payment_transactions_archive_order_merchant (order_id, merchant_id),
+    INDEX idx_payment_transactions_archive_merchant_created (merchant_id, created_at, transaction_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 ROW_FORMAT=COMPRESSED KEY_BLOCK_SIZE=8;
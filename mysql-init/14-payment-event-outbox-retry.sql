@@ -0,0 +1,4 @@
+ALTER TABLE payment_event_outbox
+    ADD COLUMN next_attempt_at DATETIME(6) NULL AFTER last_error,
+    ADD COLUMN dead_lettered_at DATETIME(6) NULL AFTER next_attempt_at,
+    ADD INDEX idx_payment_event_outbox_order_pending (order_id, published_at, id);
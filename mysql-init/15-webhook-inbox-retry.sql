@@ -0,0 +1,3 @@
+ALTER TABLE webhook_inbox
+    ADD COLUMN next_attempt_at DATETIME(6) NULL AFTER last_error,
+    ADD INDEX idx_webhook_inbox_partition (partition_key, status, id);
@@ -0,0 +1,18 @@
+CREATE TABLE IF NOT EXISTS reconciliation_mismatches (
+    id BINARY(16) NOT NULL PRIMARY KEY,
+    run_id BINARY(16) NOT NULL,
+    provider VARCHAR(20) NOT NULL,
+    provider_transaction_id VARCHAR(255) NOT NULL,
+    transaction_id BINARY(16) NULL,
+    type ENUM('MISSING_IN_LEDGER', 'MISSING_AT_PROVIDER', 'AMOUNT_DRIFT', 'STATUS_DRIFT') NOT NULL,
+    ledger_amount DECIMAL(19, 4) NULL,
+    provider_amount DECIMAL(19, 4) NULL,
+    ledger_currency VARCHAR(3) NULL,
+    provider_currency VARCHAR(3) NULL,
+    ledger_status VARCHAR(20) NULL,
+    provider_status VARCHAR(20) NULL,
+    source_file VARCHAR(255) NULL,
+    detected_at DATETIME(6) NOT NULL,
+    INDEX idx_reconciliation_mismatches_run (run_id),
+    INDEX idx_reconciliation_mismatches_provider_tx (provider_transaction_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
@@ -0,0 +1,7 @@
+-- Amounts keep the currency's own decimal places: three for BHD, KWD and the like, four for CLF
+-- and UYW. DECIMAL(10,2) rounded them on insert. Both statements rebuild the table.
+ALTER TABLE payment_transactions MODIFY COLUMN amount DECIMAL(19,4) NOT NULL;
+
+ALTER TABLE payment_transactions_archive MODIFY COLUMN amount DECIMAL(19,4) NOT NULL;
+
+ALTER TABLE orders MODIFY COLUMN amount DECIMAL(19,4) NULL;
@@ -0,0 +1,2 @@
+ALTER TABLE payment_event_outbox
+    ADD COLUMN merchant_id BIGINT NULL AFTER transaction_id;
@@ -0,0 +1 @@
+DROP INDEX idx_payment_transactions_provider_tx ON payment_transactions;
@@ -0,0 +1 @@
+DROP INDEX idx_payment_transactions_merchant_created ON payment_transactions;
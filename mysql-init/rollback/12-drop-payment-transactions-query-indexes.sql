@@ -0,0 +1,4 @@
+CREATE INDEX idx_payment_transactions_merchant_id ON payment_transactions (merchant_id);
+DROP INDEX idx_payment_transactions_channel_created ON payment_transactions;
+DROP INDEX idx_payment_transactions_merchant_status_created ON payment_transactions;
+DROP INDEX idx_payment_transactions_order_merchant ON payment_transactions;
@@ -0,0 +1,15 @@
+ALTER TABLE payment_transactions REMOVE PARTITIONING;
+
+ALTER TABLE payment_transactions
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (transaction_id);
+
+-- Bring archived transactions back before dropping the archive
+INSERT INTO payment_transactions (
+    transaction_id, order_id, merchant_id, amount, currency, payment_channel, status,
+    provider_transaction_id, version, created_at, updated_at)
+SELECT transaction_id, order_id, merchant_id, amount, currency, payment_channel, status,
+    provider_transaction_id, version, created_at, updated_at
+FROM payment_transactions_archive;
+
+DROP TABLE payment_transactions_archive;
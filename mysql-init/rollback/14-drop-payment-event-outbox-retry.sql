@@ -0,0 +1,4 @@
+ALTER TABLE payment_event_outbox
+    DROP INDEX idx_payment_event_outbox_order_pending,
+    DROP COLUMN dead_lettered_at,
+    DROP COLUMN next_attempt_at;
@@ -0,0 +1,3 @@
+ALTER TABLE webhook_inbox
+    DROP INDEX idx_webhook_inbox_partition,
+    DROP COLUMN next_attempt_at;
@@ -0,0 +1,6 @@
+-- Rounds amounts of three- and four-decimal currencies back to two places
+ALTER TABLE orders MODIFY COLUMN amount DECIMAL(38,2) NULL;
+
+ALTER TABLE payment_transactions_archive MODIFY COLUMN amount DECIMAL(10,2) NOT NULL;
+
+ALTER TABLE payment_transactions MODIFY COLUMN amount DECIMAL(10,2) NOT NULL;
@@ -0,0 +1,2 @@
+ALTER TABLE payment_event_outbox
+    DROP COLUMN merchant_id;
@@ -1,5 +1,6 @@
 package com.fusionxpay.order.controller;
 
+import java.util.List;
 import java.util.UUID;
 
 import org.springframework.http.HttpStatus;
@@ -153,6 +154,22 @@ public class OrderController {
         return ResponseEntity.ok(response);
     }
 
+    @PostMapping("/lookup")
+    @Operation(summary = "Get orders by IDs", description = "Returns the orders found for the given IDs. "
+            + "With a merchant context, orders of other merchants are omitted")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = ApiResponseCodes.OK, description = "Orders retrieved successfully"),
+        @ApiResponse(responseCode = ApiResponseCodes.INTERNAL_SERVER_ERROR, description = "Internal server error")
+    })
+    public ResponseEntity<List<OrderResponse>> getOrdersByIds(
+            @RequestHeader(value = HEADER_MERCHANT_ID, required = false) Long merchantIdHeader,
+            @RequestBody List<UUID> orderIds
+    ) {
+        log.info("Received order lookup request for {} IDs", orderIds.size());
+
+        return ResponseEntity.ok(orderService.getOrdersByIds(orderIds, merchantIdHeader));
+    }
+
     private void enforceOwnership(OrderResponse response, Long merchantIdHeader) {
         if (merchantIdHeader == null) {
             // No merchant context means internal call: allow.
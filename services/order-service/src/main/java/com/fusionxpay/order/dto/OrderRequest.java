@@ -2,6 +2,8 @@ package com.fusionxpay.order.dto;
 
 import java.math.BigDecimal;
 
+import com.fusionxpay.common.money.FitsCurrency;
+import com.fusionxpay.common.money.HasMoney;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
@@ -14,7 +16,8 @@ import lombok.NoArgsConstructor;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class OrderRequest {
+@FitsCurrency
+public class OrderRequest implements HasMoney {
     
     @NotNull(message = "User ID is required")
     private Long userId;
@@ -20,6 +20,11 @@ public class PaymentEventConsumer {
             log.warn("Received null payment event (likely deserialization failure). Skipping.");
             return;
         }
+        if (event.getStatus() == null) {
+            // A status added after this version; the binary codec decodes it to null
+            log.warn("Skipping payment event for order {} with a status this version does not know", event.getOrderId());
+            return;
+        }
         log.info("Received payment event for order: {}, status: {}", event.getOrderId(), event.getStatus());
         
         try {
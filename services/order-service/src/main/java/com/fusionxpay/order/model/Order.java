@@ -25,7 +25,10 @@ public class Order {
     private String orderNumber;
 
     private Long userId;
+
+    @Column(precision = 19, scale = 4)
     private BigDecimal amount;
+
     private String currency;
     private String status;
 
@@ -9,6 +9,8 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -16,6 +18,10 @@ import java.util.UUID;
 public interface OrderRepository extends JpaRepository<Order, UUID> {
     Optional<Order> findByOrderNumber(String orderNumber);
 
+    List<Order> findByOrderIdIn(Collection<UUID> orderIds);
+
+    List<Order> findByOrderIdInAndUserId(Collection<UUID> orderIds, Long userId);
+
     // Pagination with optional status filter
     Page<Order> findByStatus(String status, Pageable pageable);
 
@@ -1,5 +1,6 @@
 package com.fusionxpay.order.service;
 
+import com.fusionxpay.common.money.Money;
 import com.fusionxpay.order.dto.OrderPageResponse;
 import com.fusionxpay.order.dto.OrderRequest;
 import com.fusionxpay.order.dto.OrderResponse;
@@ -19,6 +20,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -44,12 +46,15 @@ public class OrderService {
         // Generate a unique order number
         String orderNumber = generateOrderNumber();
         
+        // Store the amount with the currency's own decimal places and the code in upper case
+        Money money = request.toMoney();
+
         // Create and save the order
         Order order = Order.builder()
                 .orderNumber(orderNumber)
                 .userId(request.getUserId())
-                .amount(request.getAmount())
-                .currency(request.getCurrency())
+                .amount(money.toBigDecimal())
+                .currency(money.currency())
                 .status(NEW)
                 .build();
         
@@ -110,6 +115,23 @@ public class OrderService {
         return mapToOrderResponse(order);
     }
 
+    /**
+     * Loads several orders in one query. Unknown IDs are skipped; with a merchant ID, so are
+     * orders that belong to another merchant.
+     */
+    @Transactional(readOnly = true)
+    public List<OrderResponse> getOrdersByIds(Collection<UUID> orderIds, Long merchantId) {
+        log.info("Fetching {} orders by ID", orderIds.size());
+        if (orderIds.isEmpty()) {
+            return List.of();
+        }
+
+        List<Order> orders = merchantId == null
+                ? orderRepository.findByOrderIdIn(orderIds)
+                : orderRepository.findByOrderIdInAndUserId(orderIds, merchantId);
+        return orders.stream().map(this::mapToOrderResponse).toList();
+    }
+
     @Transactional(readOnly = true)
     public OrderResponse getOrderByNumber(String orderNumber) {
         log.info("Fetching order with number: {}", orderNumber);
@@ -16,6 +16,7 @@ import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.UUID;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -156,6 +157,31 @@ class OrderControllerTest {
                 .andExpect(jsonPath("$.message").value("Forbidden: order does not belong to merchant"));
     }
 
+    @Test
+    @DisplayName("Order lookup returns only the merchant's orders among the requested IDs")
+    void getOrdersByIds_ScopedToMerchant() throws Exception {
+        OrderResponse own = orderService.createOrder(OrderRequest.builder()
+                .userId(1L)
+                .amount(new BigDecimal("20.00"))
+                .currency("USD")
+                .build());
+        OrderResponse other = orderService.createOrder(OrderRequest.builder()
+                .userId(2L)
+                .amount(new BigDecimal("30.00"))
+                .currency("USD")
+                .build());
+
+        mockMvc.perform(post("/api/v1/orders/lookup")
+                .header("X-Merchant-Id", "1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of(own.getOrderId(), other.getOrderId(), UUID.randomUUID()))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].orderId").value(own.getOrderId().toString()))
+                .andExpect(jsonPath("$[0].userId").value(1));
+    }
+
     @Test
     @DisplayName("Get orders supports from and to date filters")
     void getOrders_SupportsDateFilters() throws Exception {
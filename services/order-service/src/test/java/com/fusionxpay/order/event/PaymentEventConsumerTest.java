@@ -116,6 +116,18 @@ class PaymentEventConsumerTest {
         verifyNoMoreInteractions(orderService);
     }
 
+    @Test
+    @DisplayName("Event with an unknown status should be skipped")
+    void consumeEventWithUnknownStatus() {
+        paymentEvent = new OrderPaymentEvent();
+        paymentEvent.setOrderId(orderId);
+        paymentEvent.setMessage("Status from a newer producer");
+
+        paymentEventConsumer.consumePaymentEvent(paymentEvent);
+
+        verifyNoInteractions(orderService);
+    }
+
     @Test
     @DisplayName("Null event should be skipped")
     void consumeNullEvent() {
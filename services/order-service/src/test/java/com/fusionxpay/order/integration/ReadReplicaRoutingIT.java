@@ -0,0 +1,212 @@
+package com.fusionxpay.order.integration;
+
+import com.fusionxpay.common.datasource.ReplicaLagMonitor;
+import com.fusionxpay.common.datasource.ReplicaLagProbe;
+import com.fusionxpay.common.test.AbstractIntegrationTest;
+import com.fusionxpay.order.dto.OrderPageResponse;
+import com.fusionxpay.order.dto.OrderRequest;
+import com.fusionxpay.order.dto.OrderResponse;
+import com.fusionxpay.order.model.Order;
+import com.fusionxpay.order.repository.OrderRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.utility.DockerImageName;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs order-service against a primary and a second MySQL standing in for its replica. There is no
+ * replication between them: {@link #replicate()} copies the primary's rows over, so anything
+ * written afterwards exists on the primary only and shows which database served a read.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import(ReadReplicaRoutingIT.LagProbeConfig.class)
+class ReadReplicaRoutingIT extends AbstractIntegrationTest {
+
+    private static final AtomicReference<Duration> REPLICA_LAG = new AtomicReference<>(Duration.ZERO);
+
+    @Container
+    static final MySQLContainer<?> replica = new MySQLContainer<>(DockerImageName.parse("mysql:8.0"))
+            .withDatabaseName("fusionxpay_test")
+            .withUsername("test")
+            .withPassword("test");
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ReplicaLagMonitor replicaLagMonitor;
+
+    private JdbcTemplate replicaJdbcTemplate;
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("eureka.client.enabled", () -> false);
+        registry.add("spring.cloud.discovery.enabled", () -> false);
+        registry.add("fusionxpay.datasource.replica.enabled", () -> true);
+        registry.add("fusionxpay.datasource.replica.url", replica::getJdbcUrl);
+        registry.add("fusionxpay.datasource.replica.username", replica::getUsername);
+        registry.add("fusionxpay.datasource.replica.password", replica::getPassword);
+        registry.add("fusionxpay.datasource.replica.max-lag", () -> "2s");
+        registry.add("fusionxpay.datasource.replica.lag-check-interval", () -> "1h");
+    }
+
+    @TestConfiguration
+    static class LagProbeConfig {
+
+        @Bean
+        ReplicaLagProbe replicaLagProbe() {
+            return connection -> REPLICA_LAG.get();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        orderRepository.deleteAll();
+        replicaJdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                replica.getJdbcUrl(), replica.getUsername(), replica.getPassword()));
+        String createTable = (String) jdbcTemplate.queryForMap("SHOW CREATE TABLE orders").get("Create Table");
+        replicaJdbcTemplate.execute("DROP TABLE IF EXISTS orders");
+        replicaJdbcTemplate.execute(createTable);
+        REPLICA_LAG.set(Duration.ZERO);
+        replicaLagMonitor.refresh();
+    }
+
+    @AfterEach
+    void tearDown() {
+        REPLICA_LAG.set(Duration.ZERO);
+        replicaLagMonitor.refresh();
+    }
+
+    @Test
+    @DisplayName("Read-only order queries are served by the replica")
+    void readOnlyQueriesUseReplica() {
+        long merchantId = 101L;
+        Order replicated = createOrder(merchantId);
+        replicate();
+        createOrder(merchantId);
+
+        OrderPageResponse page = getOrders(merchantId);
+
+        assertThat(page.getTotalElements()).isEqualTo(1);
+        assertThat(page.getOrders().get(0).getOrderId()).isEqualTo(replicated.getOrderId());
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM orders", Long.class)).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Writes go to the primary and the writer reads them back from it")
+    void writerIsPinnedToPrimary() {
+        long writer = 202L;
+        long otherMerchant = 203L;
+        createOrder(otherMerchant);
+
+        ResponseEntity<OrderResponse> created = restTemplate.exchange("/api/v1/orders", HttpMethod.POST,
+                new HttpEntity<>(OrderRequest.builder().amount(new BigDecimal("12.50")).currency("USD").build(),
+                        merchantHeaders(writer)),
+                OrderResponse.class);
+        assertThat(created.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(replicaJdbcTemplate.queryForObject("SELECT COUNT(*) FROM orders", Long.class)).isZero();
+
+        OrderPageResponse writerPage = getOrders(writer);
+        assertThat(writerPage.getTotalElements()).isEqualTo(1);
+        assertThat(writerPage.getOrders().get(0).getOrderId()).isEqualTo(created.getBody().getOrderId());
+
+        assertThat(getOrders(otherMerchant).getTotalElements())
+                .as("a merchant that did not write still reads the replica")
+                .isZero();
+    }
+
+    @Test
+    @DisplayName("Reads fall back to the primary while the replica lags")
+    void laggingReplicaFallsBackToPrimary() {
+        long merchantId = 303L;
+        createOrder(merchantId);
+        replicate();
+        createOrder(merchantId);
+
+        REPLICA_LAG.set(Duration.ofSeconds(30));
+        replicaLagMonitor.refresh();
+        assertThat(getOrders(merchantId).getTotalElements()).isEqualTo(2);
+
+        REPLICA_LAG.set(null);
+        replicaLagMonitor.refresh();
+        assertThat(getOrders(merchantId).getTotalElements())
+                .as("unknown lag counts as lagging")
+                .isEqualTo(2);
+
+        REPLICA_LAG.set(Duration.ofMillis(500));
+        replicaLagMonitor.refresh();
+        assertThat(getOrders(merchantId).getTotalElements()).isEqualTo(1);
+    }
+
+    private OrderPageResponse getOrders(long merchantId) {
+        ResponseEntity<OrderPageResponse> response = restTemplate.exchange("/api/v1/orders", HttpMethod.GET,
+                new HttpEntity<>(merchantHeaders(merchantId)), OrderPageResponse.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isNotNull();
+        return response.getBody();
+    }
+
+    private static HttpHeaders merchantHeaders(long merchantId) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Merchant-Id", String.valueOf(merchantId));
+        return headers;
+    }
+
+    private Order createOrder(long merchantId) {
+        return orderRepository.save(Order.builder()
+                .orderNumber("ORD-RR-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase())
+                .userId(merchantId)
+                .amount(new BigDecimal("42.00"))
+                .currency("USD")
+                .status("NEW")
+                .build());
+    }
+
+    /**
+     * Brings the replica up to date with the primary, as replication would.
+     */
+    private void replicate() {
+        replicaJdbcTemplate.execute("DELETE FROM orders");
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("SELECT * FROM orders");
+        for (Map<String, Object> row : rows) {
+            List<String> columns = List.copyOf(row.keySet());
+            replicaJdbcTemplate.update("INSERT INTO orders (" + String.join(", ", columns) + ") VALUES ("
+                            + columns.stream().map(column -> "?").collect(Collectors.joining(", ")) + ")",
+                    columns.stream().map(row::get).toArray());
+        }
+    }
+}
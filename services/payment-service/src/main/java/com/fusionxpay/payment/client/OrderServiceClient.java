@@ -6,10 +6,12 @@ import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 
+import java.util.List;
 import java.util.UUID;
 
 @FeignClient(name = "order-service")
@@ -21,6 +23,16 @@ public interface OrderServiceClient {
             @PathVariable UUID orderId
     );
 
+    /**
+     * Loads several orders in one call; orders that do not exist or belong to another
+     * merchant are omitted from the result.
+     */
+    @PostMapping("/api/v1/orders/lookup")
+    ResponseEntity<List<OrderResponse>> getOrdersByIds(
+            @RequestHeader("X-Merchant-Id") Long merchantId,
+            @RequestBody List<UUID> orderIds
+    );
+
     @PutMapping("/api/v1/orders/{orderId}/status")
     ResponseEntity<Void> updateOrderStatus(
             @PathVariable UUID orderId,
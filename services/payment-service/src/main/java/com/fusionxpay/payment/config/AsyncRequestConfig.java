@@ -0,0 +1,42 @@
+package com.fusionxpay.payment.config;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Executor for streamed responses (GET /export), which write from a thread of their own while
+ * holding a database connection.
+ * <p>
+ * Sized to {@code payment.export.max-concurrent}, the number of export slots, instead of the
+ * shared application executor with its unbounded queue. The queue only absorbs the moment between
+ * a finished export releasing its slot and its thread returning to the pool. SSE streams are fed by
+ * their own sender threads and do not use it.
+ */
+@Configuration
+public class AsyncRequestConfig implements WebMvcConfigurer, DisposableBean {
+
+    // Not a bean: an Executor bean would replace Spring Boot's applicationTaskExecutor
+    private final ThreadPoolTaskExecutor streamedResponseExecutor = new ThreadPoolTaskExecutor();
+
+    public AsyncRequestConfig(@Value("${payment.export.max-concurrent:4}") int maxConcurrentExports) {
+        streamedResponseExecutor.setCorePoolSize(maxConcurrentExports);
+        streamedResponseExecutor.setMaxPoolSize(maxConcurrentExports);
+        streamedResponseExecutor.setQueueCapacity(maxConcurrentExports);
+        streamedResponseExecutor.setThreadNamePrefix("streamed-response-");
+        streamedResponseExecutor.initialize();
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(streamedResponseExecutor);
+    }
+
+    @Override
+    public void destroy() {
+        streamedResponseExecutor.shutdown();
+    }
+}
@@ -1,7 +1,10 @@
 package com.fusionxpay.payment.config;
 
 import com.fusionxpay.common.event.OrderPaymentEvent;
+import com.fusionxpay.common.event.OrderPaymentEventSerializer;
+import com.fusionxpay.common.event.ReconciliationMismatchEvent;
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.producer.ProducerConfig;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -10,6 +13,8 @@ import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
 
+import java.util.Map;
+
 @Configuration
 @ConditionalOnProperty(name = "fusionxpay.kafka.enabled", havingValue = "true", matchIfMissing = true)
 public class KafkaConfig {
@@ -17,6 +22,13 @@ public class KafkaConfig {
     @Value("${kafka.topics.payment-events}")
     private String paymentEventsTopic;
 
+    @Value("${kafka.topics.reconciliation-mismatches:payment-reconciliation-mismatches}")
+    private String reconciliationMismatchesTopic;
+
+    // json or binary; switch to binary once every payment-events consumer uses OrderPaymentEventDeserializer
+    @Value("${kafka.payment-events.format:json}")
+    private String paymentEventsFormat;
+
     @Bean
     public NewTopic paymentEventsTopic() {
         return TopicBuilder.name(paymentEventsTopic)
@@ -25,9 +37,27 @@ public class KafkaConfig {
                 .build();
     }
 
+    @Bean
+    public NewTopic reconciliationMismatchesTopic() {
+        return TopicBuilder.name(reconciliationMismatchesTopic)
+                .partitions(3)
+                .replicas(1)
+                .build();
+    }
+
     @Bean
     public KafkaTemplate<String, OrderPaymentEvent> kafkaTemplate(
             ProducerFactory<String, OrderPaymentEvent> producerFactory) {
+        if ("binary".equalsIgnoreCase(paymentEventsFormat)) {
+            return new KafkaTemplate<>(producerFactory.copyWithConfigurationOverride(
+                    Map.of(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, OrderPaymentEventSerializer.class)));
+        }
+        return new KafkaTemplate<>(producerFactory);
+    }
+
+    @Bean
+    public KafkaTemplate<String, ReconciliationMismatchEvent> reconciliationKafkaTemplate(
+            ProducerFactory<String, ReconciliationMismatchEvent> producerFactory) {
         return new KafkaTemplate<>(producerFactory);
     }
 }
@@ -0,0 +1,70 @@
+package com.fusionxpay.payment.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Records a Micrometer timer per PayPal endpoint.
+ * Paths are mapped to fixed endpoint names so order and capture IDs do not become tag values.
+ * The timer covers the request up to the response status line; reading the body is not included.
+ */
+public class PayPalClientMetricsInterceptor implements ClientHttpRequestInterceptor {
+
+    static final String METRIC_NAME = "paypal.client.requests";
+
+    private static final List<Endpoint> ENDPOINTS = List.of(
+            new Endpoint(HttpMethod.POST, Pattern.compile("/v1/oauth2/token"), "oauth2.token"),
+            new Endpoint(HttpMethod.POST, Pattern.compile("/v2/checkout/orders"), "orders.create"),
+            new Endpoint(HttpMethod.POST, Pattern.compile("/v2/checkout/orders/[^/]+/capture"), "orders.capture"),
+            new Endpoint(HttpMethod.GET, Pattern.compile("/v2/checkout/orders/[^/]+"), "orders.get"),
+            new Endpoint(HttpMethod.POST, Pattern.compile("/v2/payments/captures/[^/]+/refund"), "captures.refund"),
+            new Endpoint(HttpMethod.POST, Pattern.compile("/v1/notifications/verify-webhook-signature"), "webhooks.verify"),
+            new Endpoint(HttpMethod.GET, Pattern.compile("/v1/notifications/certs/.+"), "webhooks.cert")
+    );
+
+    private final MeterRegistry meterRegistry;
+
+    public PayPalClientMetricsInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String status = "IO_ERROR";
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            status = String.valueOf(response.getStatusCode().value());
+            return response;
+        } finally {
+            sample.stop(Timer.builder(METRIC_NAME)
+                    .description("PayPal API calls by endpoint")
+                    .tag("endpoint", endpoint(request.getMethod(), request.getURI().getPath()))
+                    .tag("method", request.getMethod().name())
+                    .tag("status", status)
+                    .register(meterRegistry));
+        }
+    }
+
+    static String endpoint(HttpMethod method, String path) {
+        for (Endpoint endpoint : ENDPOINTS) {
+            if (endpoint.method().equals(method) && endpoint.path().matcher(path).matches()) {
+                return endpoint.name();
+            }
+        }
+        return "other";
+    }
+
+    private record Endpoint(HttpMethod method, Pattern path, String name) {
+    }
+}
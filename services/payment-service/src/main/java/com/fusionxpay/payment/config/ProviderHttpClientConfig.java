@@ -0,0 +1,108 @@
+package com.fusionxpay.payment.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * Shared HTTP client for payment provider APIs.
+ * <p>
+ * Connections are pooled and kept alive so capture, refund and token calls reuse an
+ * established TLS session instead of handshaking on every request. With
+ * {@code payment.http.client.http2} enabled the JDK client is used instead, multiplexing
+ * requests over HTTP/2 connections.
+ */
+@Configuration
+public class ProviderHttpClientConfig {
+
+    static final String POOL_NAME = "payment-provider";
+
+    @Value("${payment.http.client.max-connections:200}")
+    private int maxConnections = 200;
+
+    @Value("${payment.http.client.max-connections-per-route:50}")
+    private int maxConnectionsPerRoute = 50;
+
+    @Value("${payment.http.client.connect-timeout:2s}")
+    private Duration connectTimeout = Duration.ofSeconds(2);
+
+    @Value("${payment.http.client.read-timeout:15s}")
+    private Duration readTimeout = Duration.ofSeconds(15);
+
+    // How long a request waits for a free pooled connection before failing
+    @Value("${payment.http.client.connection-request-timeout:2s}")
+    private Duration connectionRequestTimeout = Duration.ofSeconds(2);
+
+    @Value("${payment.http.client.idle-timeout:30s}")
+    private Duration idleTimeout = Duration.ofSeconds(30);
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "payment.http.client.http2", havingValue = "false", matchIfMissing = true)
+    public CloseableHttpClient providerHttpClient(MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(5))
+                        .build())
+                .build();
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, POOL_NAME).bindTo(meterRegistry);
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(connectionRequestTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(idleTimeout))
+                .build();
+    }
+
+    @Bean("providerRequestFactory")
+    @ConditionalOnProperty(name = "payment.http.client.http2", havingValue = "false", matchIfMissing = true)
+    public ClientHttpRequestFactory pooledProviderRequestFactory(CloseableHttpClient providerHttpClient) {
+        return new HttpComponentsClientHttpRequestFactory(providerHttpClient);
+    }
+
+    @Bean("providerRequestFactory")
+    @ConditionalOnProperty(name = "payment.http.client.http2", havingValue = "true")
+    public ClientHttpRequestFactory http2ProviderRequestFactory() {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+        return requestFactory;
+    }
+
+    @Bean
+    public RestTemplate payPalRestTemplate(@Qualifier("providerRequestFactory") ClientHttpRequestFactory providerRequestFactory,
+                                           MeterRegistry meterRegistry) {
+        RestTemplate restTemplate = new RestTemplate(providerRequestFactory);
+        restTemplate.getInterceptors().add(new PayPalClientMetricsInterceptor(meterRegistry));
+        return restTemplate;
+    }
+}
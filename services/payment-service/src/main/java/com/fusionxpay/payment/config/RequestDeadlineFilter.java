@@ -0,0 +1,58 @@
+package com.fusionxpay.payment.config;
+
+import com.fusionxpay.payment.provider.ProviderDeadline;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Sets the provider call deadline for each incoming request.
+ * Callers pass their remaining time budget in {@value #TIMEOUT_HEADER} (milliseconds), so the
+ * deadline propagates from the edge; without it the default budget applies. Either way the budget
+ * is capped at the configured maximum.
+ */
+@Slf4j
+@Component
+public class RequestDeadlineFilter extends OncePerRequestFilter {
+
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+
+    @Value("${payment.provider.deadline.default:10s}")
+    private Duration defaultBudget = Duration.ofSeconds(10);
+
+    @Value("${payment.provider.deadline.max:30s}")
+    private Duration maxBudget = Duration.ofSeconds(30);
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        ProviderDeadline.set(budget(request.getHeader(TIMEOUT_HEADER)));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ProviderDeadline.clear();
+        }
+    }
+
+    Duration budget(String timeoutHeader) {
+        Duration budget = defaultBudget;
+        if (StringUtils.hasText(timeoutHeader)) {
+            try {
+                budget = Duration.ofMillis(Long.parseLong(timeoutHeader.trim()));
+            } catch (NumberFormatException e) {
+                log.debug("Ignoring malformed {} header: {}", TIMEOUT_HEADER, timeoutHeader);
+            }
+        }
+        return budget.compareTo(maxBudget) > 0 ? maxBudget : budget;
+    }
+}
@@ -6,6 +6,7 @@ import com.fusionxpay.payment.dto.paypal.PayPalWebhookHeaders;
 import com.fusionxpay.payment.provider.PayPalProvider;
 import com.fusionxpay.payment.service.IdempotencyService;
 import com.fusionxpay.payment.service.PaymentService;
+import com.fusionxpay.payment.service.WebhookIntakeService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -33,6 +34,7 @@ public class PayPalCallbackController {
     private final PayPalProvider payPalProvider;
     private final PaymentService paymentService;
     private final IdempotencyService idempotencyService;
+    private final WebhookIntakeService webhookIntakeService;
 
     @Value("${payment.frontend.success-url:http://localhost:3000/payment/success}")
     private String frontendSuccessUrl;
@@ -73,17 +75,11 @@ public class PayPalCallbackController {
             // Idempotency: PayPal/browser may trigger return multiple times (refresh/retry).
             // We must ensure we don't repeatedly call capture and produce 422 in PayPal logs.
             String captureKey = "paypal:return:capture:" + paypalOrderId;
-            String existingState = idempotencyService.getProcessingState(captureKey);
-            if (existingState != null) {
-                log.warn("Skipping PayPal capture for {} due to idempotency state={}", paypalOrderId, existingState);
-                return new RedirectView(frontendSuccessUrl +
-                        "?orderId=" + orderId +
-                        "&paypalOrderId=" + paypalOrderId);
-            }
-
-            boolean lockAcquired = idempotencyService.acquireProcessingLock(captureKey, Duration.ofMinutes(5));
-            if (!lockAcquired) {
-                log.warn("Skipping PayPal capture for {} because lock not acquired", paypalOrderId);
+            String ownerToken = IdempotencyService.newOwnerToken();
+            IdempotencyService.ProcessingState captureState =
+                    idempotencyService.checkAndAcquire(captureKey, ownerToken, Duration.ofMinutes(5));
+            if (captureState != IdempotencyService.ProcessingState.NEW) {
+                log.warn("Skipping PayPal capture for {} due to idempotency state={}", paypalOrderId, captureState);
                 return new RedirectView(frontendSuccessUrl +
                         "?orderId=" + orderId +
                         "&paypalOrderId=" + paypalOrderId);
@@ -117,7 +113,7 @@ public class PayPalCallbackController {
 
             if (captureResponse == null) {
                 log.error("Failed to capture PayPal order: {}", paypalOrderId);
-                idempotencyService.releaseLock(captureKey);
+                idempotencyService.releaseIfOwner(captureKey, ownerToken);
                 return new RedirectView(frontendErrorUrl + "?error=capture_failed&orderId=" + orderId);
             }
 
@@ -156,13 +152,13 @@ public class PayPalCallbackController {
                     }
                 }
 
-                idempotencyService.markAsCompleted(captureKey, Duration.ofDays(7));
+                idempotencyService.completeIfOwner(captureKey, ownerToken, Duration.ofDays(7));
                 return new RedirectView(frontendSuccessUrl +
                         "?orderId=" + orderId +
                         "&paypalOrderId=" + paypalOrderId);
             } else {
                 log.warn("PayPal order not completed. Status: {}", status);
-                idempotencyService.releaseLock(captureKey);
+                idempotencyService.releaseIfOwner(captureKey, ownerToken);
                 return new RedirectView(frontendErrorUrl +
                         "?error=payment_incomplete&status=" + status +
                         "&orderId=" + orderId);
@@ -238,6 +234,14 @@ public class PayPalCallbackController {
             ObjectMapper objectMapper = new ObjectMapper();
             String headersJson = objectMapper.writeValueAsString(headers);
 
+            if (webhookIntakeService.isAsyncEnabled()) {
+                WebhookIntakeService.IntakeResult result = webhookIntakeService.accept("PAYPAL", payload, headersJson);
+                if (result == WebhookIntakeService.IntakeResult.REJECTED) {
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Webhook rejected");
+                }
+                return ResponseEntity.ok("Webhook accepted");
+            }
+
             boolean processed = paymentService.handleCallback(payload, headersJson, "PAYPAL");
             if (processed) {
                 return ResponseEntity.ok("Webhook processed successfully");
@@ -1,21 +1,35 @@
 package com.fusionxpay.payment.controller;
 
+import com.fusionxpay.payment.dto.BulkPaymentRequest;
+import com.fusionxpay.payment.dto.BulkPaymentResponse;
+import com.fusionxpay.payment.dto.BulkRefundJobResponse;
+import com.fusionxpay.payment.dto.BulkRefundRequest;
 import com.fusionxpay.payment.dto.PaymentRequest;
 import com.fusionxpay.payment.dto.PaymentPageResponse;
 import com.fusionxpay.payment.dto.PaymentResponse;
 import com.fusionxpay.payment.dto.RefundRequest;
 import com.fusionxpay.payment.dto.RefundResponse;
+import com.fusionxpay.payment.service.BulkRefundService;
+import com.fusionxpay.payment.service.PaymentExportService;
 import com.fusionxpay.payment.service.PaymentService;
+import com.fusionxpay.payment.service.PaymentStatusStreamService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/v1/payment")
@@ -27,6 +41,9 @@ public class PaymentController {
     private static final String HEADER_MERCHANT_ID = "X-Merchant-Id";
 
     private final PaymentService paymentService;
+    private final BulkRefundService bulkRefundService;
+    private final PaymentStatusStreamService paymentStatusStreamService;
+    private final PaymentExportService paymentExportService;
 
     @PostMapping("/request")
     @Operation(summary = "Initiate a payment", description = "Creates a new payment transaction and redirects to the payment provider")
@@ -38,6 +55,16 @@ public class PaymentController {
         return ResponseEntity.ok(response);
     }
 
+    @PostMapping("/request/bulk")
+    @Operation(summary = "Initiate payments in bulk", description = "Creates several payment transactions at once; each item succeeds or fails independently")
+    public ResponseEntity<BulkPaymentResponse> initiatePayments(
+            @RequestHeader(HEADER_MERCHANT_ID) Long merchantId,
+            @Valid @RequestBody BulkPaymentRequest bulkPaymentRequest) {
+        log.info("Bulk payment request received with {} payments", bulkPaymentRequest.getPayments().size());
+        BulkPaymentResponse response = paymentService.initiatePayments(merchantId, bulkPaymentRequest.getPayments());
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping("/transaction/{transactionId}")
     @Operation(summary = "Get payment transaction", description = "Retrieves payment transaction details by transaction ID")
     public ResponseEntity<PaymentResponse> getPaymentTransaction(
@@ -58,19 +85,89 @@ public class PaymentController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream payment status changes", description = "Server-Sent Events stream of the merchant's payment status changes, "
+            + "optionally limited to one order. Reconnect with Last-Event-ID to receive the events missed in between")
+    public SseEmitter streamPaymentStatus(
+            @RequestHeader(HEADER_MERCHANT_ID) Long merchantId,
+            @RequestParam(required = false) UUID orderId,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        log.info("Payment status stream opened for merchant {}{}", merchantId, orderId != null ? ", order " + orderId : "");
+        return paymentStatusStreamService.subscribe(merchantId, orderId, lastEventId);
+    }
+
     @GetMapping("/search")
-    @Operation(summary = "Search payments", description = "Returns a paginated list of the authenticated merchant's payments")
+    @Operation(summary = "Search payments", description = "Returns a paginated list of the authenticated merchant's payments. "
+            + "With pagination=cursor, pages are fetched by passing back nextCursor and the total is only counted when includeTotal is set")
     public ResponseEntity<PaymentPageResponse> searchPayments(
             @RequestHeader(HEADER_MERCHANT_ID) Long merchantId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(required = false) String status,
             @RequestParam(required = false) String from,
-            @RequestParam(required = false) String to) {
-        PaymentPageResponse response = paymentService.searchPayments(merchantId, page, size, status, from, to);
+            @RequestParam(required = false) String to,
+            @RequestParam(defaultValue = "offset") String pagination,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        PaymentPageResponse response = "cursor".equalsIgnoreCase(pagination) || cursor != null
+                ? paymentService.searchPaymentsByCursor(merchantId, cursor, size, status, from, to, includeTotal)
+                : paymentService.searchPayments(merchantId, page, size, status, from, to);
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/archive/search")
+    @Operation(summary = "Search archived payments", description = "Returns a paginated list of the authenticated merchant's "
+            + "closed payments that were moved out of the live ledger after the hot retention period. Slower than /search")
+    public ResponseEntity<PaymentPageResponse> searchArchivedPayments(
+            @RequestHeader(HEADER_MERCHANT_ID) Long merchantId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to) {
+        return ResponseEntity.ok(paymentService.searchArchivedPayments(merchantId, page, size, status, from, to));
+    }
+
+    @GetMapping("/export")
+    @Operation(summary = "Export payments", description = "Streams all of the authenticated merchant's payments matching the filters, "
+            + "oldest first, as CSV or NDJSON in a single response. Gzip-compressed when the client accepts it. "
+            + "429 while the merchant's previous export, or too many exports on this instance, are still running")
+    public ResponseEntity<StreamingResponseBody> exportPayments(
+            @RequestHeader(HEADER_MERCHANT_ID) Long merchantId,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        PaymentExportService.Format exportFormat = PaymentExportService.Format.of(format);
+        PaymentExportService.ExportQuery query = paymentExportService.query(merchantId, status, from, to);
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+        log.info("Payment export requested by merchant {} as {}{}", merchantId, exportFormat, gzip ? " (gzip)" : "");
+
+        PaymentExportService.ExportSlot slot = paymentExportService.acquireSlot(merchantId);
+        StreamingResponseBody body = out -> {
+            try (slot) {
+                if (gzip) {
+                    // Sync flush so every periodic flush of the export reaches the client compressed
+                    GZIPOutputStream compressed = new GZIPOutputStream(out, 8192, true);
+                    paymentExportService.export(query, exportFormat, compressed);
+                    compressed.finish();
+                } else {
+                    paymentExportService.export(query, exportFormat, out);
+                }
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.mediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("payments." + exportFormat.extension()).build().toString())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
     @GetMapping("/providers")
     @Operation(summary = "Get available payment providers", description = "Returns a list of available payment providers")
     public ResponseEntity<List<String>> getAvailablePaymentProviders() {
@@ -88,4 +185,22 @@ public class PaymentController {
         RefundResponse response = paymentService.initiateRefund(merchantId, refundRequest);
         return ResponseEntity.ok(response);
     }
+
+    @PostMapping("/refund/bulk")
+    @Operation(summary = "Start a bulk refund", description = "Starts refunds for several transactions and returns a job to poll for progress")
+    public ResponseEntity<BulkRefundJobResponse> initiateBulkRefund(
+            @RequestHeader(HEADER_MERCHANT_ID) Long merchantId,
+            @Valid @RequestBody BulkRefundRequest bulkRefundRequest) {
+        log.info("Bulk refund request received with {} refunds", bulkRefundRequest.getRefunds().size());
+        BulkRefundJobResponse response = bulkRefundService.submit(merchantId, bulkRefundRequest.getRefunds());
+        return ResponseEntity.accepted().body(response);
+    }
+
+    @GetMapping("/refund/bulk/{jobId}")
+    @Operation(summary = "Get bulk refund progress", description = "Returns the progress and per-transaction results of a bulk refund job")
+    public ResponseEntity<BulkRefundJobResponse> getBulkRefund(
+            @RequestHeader(HEADER_MERCHANT_ID) Long merchantId,
+            @PathVariable UUID jobId) {
+        return ResponseEntity.ok(bulkRefundService.getJob(merchantId, jobId));
+    }
 }
@@ -1,6 +1,7 @@
 package com.fusionxpay.payment.controller;
 
 import com.fusionxpay.payment.service.PaymentService;
+import com.fusionxpay.payment.service.WebhookIntakeService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
@@ -18,6 +19,7 @@ import java.util.List;
 public class StripeWebhookController {
     
     private final PaymentService paymentService;
+    private final WebhookIntakeService webhookIntakeService;
     
     @PostMapping
     @Operation(summary = "Handle Stripe webhook", description = "Processes webhook notifications from Stripe")
@@ -29,6 +31,15 @@ public class StripeWebhookController {
         // Stripe sends a single header value that contains comma-separated segments (t=...,v1=...).
         // Some proxies/gateways may split this by comma into multiple header values; join them back.
         String signature = String.join(",", signatureParts);
+
+        if (webhookIntakeService.isAsyncEnabled()) {
+            // Verify and queue only; the inbox worker applies the event.
+            WebhookIntakeService.IntakeResult result = webhookIntakeService.accept("STRIPE", payload, signature);
+            return result == WebhookIntakeService.IntakeResult.REJECTED
+                    ? ResponseEntity.badRequest().build()
+                    : ResponseEntity.ok().build();
+        }
+
         boolean processed = paymentService.handleCallback(payload, signature, "STRIPE");
 
         if (processed) {
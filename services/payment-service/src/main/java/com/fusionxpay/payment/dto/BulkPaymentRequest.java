@@ -0,0 +1,20 @@
+package com.fusionxpay.payment.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkPaymentRequest {
+    @NotEmpty(message = "At least one payment is required")
+    @Valid
+    private List<PaymentRequest> payments;
+}
@@ -0,0 +1,19 @@
+package com.fusionxpay.payment.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkPaymentResponse {
+    // One result per requested payment, in request order
+    private List<PaymentResponse> results;
+    private int succeeded;
+    private int failed;
+}
@@ -0,0 +1,36 @@
+package com.fusionxpay.payment.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Progress of a bulk refund job. Poll until status is COMPLETED.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkRefundJobResponse {
+
+    public enum Status {
+        RUNNING,
+        COMPLETED
+    }
+
+    private UUID jobId;
+    private Status status;
+    private int total;
+    private int completed;
+    private int succeeded;
+    private int failed;
+    // One entry per requested refund, in request order; null while that refund is still running
+    private List<RefundResponse> results;
+    private LocalDateTime createdAt;
+    private LocalDateTime completedAt;
+}
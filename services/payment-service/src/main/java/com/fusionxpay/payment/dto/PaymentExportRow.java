@@ -0,0 +1,13 @@
+package com.fusionxpay.payment.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One payment_transactions row of a merchant export, read as an unmanaged projection.
+ */
+public record PaymentExportRow(UUID transactionId, UUID orderId, BigDecimal amount, String currency,
+                               String paymentChannel, String status, String providerTransactionId,
+                               LocalDateTime createdAt, LocalDateTime updatedAt) {
+}
@@ -1,5 +1,6 @@
 package com.fusionxpay.payment.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -15,8 +16,12 @@ public class PaymentPageResponse {
     private List<PaymentResponse> payments;
     private int page;
     private int size;
+    // -1 when a keyset search was made without includeTotal
     private long totalElements;
     private int totalPages;
     private boolean first;
     private boolean last;
+    // Opaque cursor for the next keyset page; absent on the last page and for offset searches
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
 }
@@ -1,5 +1,7 @@
 package com.fusionxpay.payment.dto;
 
+import com.fusionxpay.common.money.FitsCurrency;
+import com.fusionxpay.common.money.HasMoney;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -16,7 +18,8 @@ import java.util.UUID;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class PaymentRequest {
+@FitsCurrency
+public class PaymentRequest implements HasMoney {
     @NotNull(message = "Order ID is required")
     private UUID orderId;
     
@@ -0,0 +1,14 @@
+package com.fusionxpay.payment.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One side of a reconciliation join: a row of a provider export or of payment_transactions.
+ * Provider rows have no transactionId and carry the provider status mapped to a payment status name
+ * (null when it has no equivalent).
+ */
+public record ReconciliationRecord(String providerTransactionId, UUID transactionId, BigDecimal amount,
+                                   String currency, String status, LocalDateTime occurredAt) {
+}
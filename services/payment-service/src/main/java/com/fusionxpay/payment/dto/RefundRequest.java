@@ -1,5 +1,7 @@
 package com.fusionxpay.payment.dto;
 
+import com.fusionxpay.common.money.FitsCurrency;
+import com.fusionxpay.common.money.HasMoney;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Positive;
 import lombok.AllArgsConstructor;
@@ -19,7 +21,8 @@ import java.math.BigDecimal;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class RefundRequest {
+@FitsCurrency
+public class RefundRequest implements HasMoney {
 
     /**
      * The original payment transaction ID.
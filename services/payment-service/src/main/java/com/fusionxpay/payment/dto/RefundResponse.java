@@ -1,6 +1,7 @@
 package com.fusionxpay.payment.dto;
 
 import com.fusionxpay.payment.model.RefundStatus;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -65,4 +66,11 @@ public class RefundResponse {
      * The timestamp when the refund was created.
      */
     private LocalDateTime createdAt;
+
+    /**
+     * Whether a failure was transient (timeout, rate limit, provider error) and the refund
+     * may be retried with the same idempotency key.
+     */
+    @JsonIgnore
+    private boolean retryable;
 }
@@ -2,52 +2,156 @@ package com.fusionxpay.payment.event;
 
 import com.fusionxpay.common.event.OrderPaymentEvent;
 import com.fusionxpay.common.model.PaymentStatus;
+import com.fusionxpay.payment.model.PaymentEventOutbox;
+import com.fusionxpay.payment.model.PaymentTransaction;
+import com.fusionxpay.payment.repository.PaymentEventOutboxRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class OrderEventProducer {
 
+    static final String SEND_METRIC = "payment.events.send";
+
     private final KafkaTemplate<String, OrderPaymentEvent> kafkaTemplate;
+    private final PaymentEventOutboxRepository outboxRepository;
+    private final MeterRegistry meterRegistry;
     
     @Value("${kafka.topics.payment-events}")
     private String paymentEventsTopic;
 
+    @Value("${payment.outbox.enabled:true}")
+    private boolean outboxEnabled;
+
     /**
-     * Send payment status update event to message queue
+     * Send payment status update event to message queue.
+     * With the outbox enabled the event is written to payment_event_outbox inside the
+     * caller's transaction and published later by {@link PaymentEventOutboxRelay}.
      *
      * @param orderId Order ID
      * @param transactionId Payment transaction ID
+     * @param merchantId Merchant that owns the payment
      * @param status Payment status
      */
-    public void sendPaymentStatusUpdate(UUID orderId, UUID transactionId, com.fusionxpay.common.model.PaymentStatus status) {
-        log.info("Sending payment status update for order: {}, status: {}", orderId, status);
-        
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void sendPaymentStatusUpdate(UUID orderId, UUID transactionId, Long merchantId,
+                                        com.fusionxpay.common.model.PaymentStatus status) {
         OrderPaymentEvent event = OrderPaymentEvent.builder()
                 .orderId(orderId)
                 .transactionId(transactionId)
+                .merchantId(merchantId)
                 .status(status)
                 .timestamp(LocalDateTime.now())
                 .message(generateStatusMessage(status))
                 .build();
-        
+
+        if (outboxEnabled) {
+            log.info("Queueing payment status update for order: {}, status: {}", orderId, status);
+            outboxRepository.save(toOutboxEntry(event));
+            return;
+        }
+
+        log.info("Sending payment status update for order: {}, status: {}", orderId, status);
+        publish(event).whenComplete((result, ex) -> {
+            if (ex == null) {
+                log.info("Successfully sent payment status update for order: {}", orderId);
+            } else {
+                log.error("Failed to send payment status update for order: {}", orderId, ex);
+            }
+        });
+    }
+
+    /**
+     * Send status updates for several transactions at once.
+     * With the outbox enabled the entries are saved together in the caller's transaction;
+     * otherwise all records are handed to the producer and flushed once.
+     *
+     * @param transactions transactions whose current status should be announced
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void sendPaymentStatusUpdates(List<PaymentTransaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        List<OrderPaymentEvent> events = transactions.stream()
+                .map(transaction -> OrderPaymentEvent.builder()
+                        .orderId(transaction.getOrderId())
+                        .transactionId(transaction.getTransactionId())
+                        .merchantId(transaction.getMerchantId())
+                        .status(PaymentStatus.valueOf(transaction.getStatus()))
+                        .timestamp(LocalDateTime.now())
+                        .message(generateStatusMessage(PaymentStatus.valueOf(transaction.getStatus())))
+                        .build())
+                .toList();
+
+        if (outboxEnabled) {
+            log.info("Queueing {} payment status updates", events.size());
+            outboxRepository.saveAll(events.stream().map(this::toOutboxEntry).toList());
+            return;
+        }
+
+        log.info("Sending {} payment status updates", events.size());
+        for (OrderPaymentEvent event : events) {
+            publish(event).whenComplete((result, ex) -> {
+                if (ex != null) {
+                    log.error("Failed to send payment status update for order: {}", event.getOrderId(), ex);
+                }
+            });
+        }
+        flush();
+    }
+
+    /**
+     * Publish an event to the payment events topic.
+     * The time from send to broker acknowledgement is recorded as {@value #SEND_METRIC}; it includes
+     * the time the record waits in the producer batch (linger.ms).
+     *
+     * @param event the event to publish
+     * @return future completed when the broker acknowledges the record
+     */
+    public CompletableFuture<SendResult<String, OrderPaymentEvent>> publish(OrderPaymentEvent event) {
+        Timer.Sample sample = Timer.start(meterRegistry);
         // Using order ID as the message key to ensure messages for the same order are sent to the same partition, guaranteeing order
-        kafkaTemplate.send(paymentEventsTopic, orderId.toString(), event)
-                .whenComplete((result, ex) -> {
-                    if (ex == null) {
-                        log.info("Successfully sent payment status update for order: {}", orderId);
-                    } else {
-                        log.error("Failed to send payment status update for order: {}", orderId, ex);
-                    }
-                });
+        return kafkaTemplate.send(paymentEventsTopic, event.getOrderId().toString(), event)
+                .whenComplete((result, ex) -> sample.stop(Timer.builder(SEND_METRIC)
+                        .description("Payment event send-to-ack latency")
+                        .tag("topic", paymentEventsTopic)
+                        .tag("outcome", ex == null ? "acked" : "failed")
+                        .publishPercentileHistogram()
+                        .register(meterRegistry)));
+    }
+
+    /**
+     * Push out any records still lingering in the producer's batch buffer.
+     */
+    public void flush() {
+        kafkaTemplate.flush();
+    }
+
+    private PaymentEventOutbox toOutboxEntry(OrderPaymentEvent event) {
+        PaymentEventOutbox entry = new PaymentEventOutbox();
+        entry.setOrderId(event.getOrderId());
+        entry.setTransactionId(event.getTransactionId());
+        entry.setMerchantId(event.getMerchantId());
+        entry.setStatus(event.getStatus().name());
+        entry.setMessage(event.getMessage());
+        entry.setOccurredAt(event.getTimestamp());
+        return entry;
     }
     
     private String generateStatusMessage(PaymentStatus status) {
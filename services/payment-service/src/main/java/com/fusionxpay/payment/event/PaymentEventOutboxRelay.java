@@ -0,0 +1,184 @@
+package com.fusionxpay.payment.event;
+
+import com.fusionxpay.common.event.OrderPaymentEvent;
+import com.fusionxpay.common.model.PaymentStatus;
+import com.fusionxpay.payment.model.PaymentEventOutbox;
+import com.fusionxpay.payment.repository.PaymentEventOutboxRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Drains payment_event_outbox to the payment events topic.
+ * <p>
+ * A batch is claimed in a short transaction that sets nextAttemptAt a claim-timeout ahead, is
+ * sent and flushed with no transaction or row lock held, and its results are stored in a second
+ * transaction. A crash in between only causes redelivery once the claim expires, never loss.
+ * <p>
+ * Events of one order are published in order: a batch holds at most one event per order, and an
+ * event is only claimed once every earlier event of its order is published or dead-lettered. A
+ * failed event is retried with exponential backoff and dead-lettered after max-attempts.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = {"fusionxpay.kafka.enabled", "payment.outbox.enabled"}, havingValue = "true", matchIfMissing = true)
+public class PaymentEventOutboxRelay {
+
+    private final PaymentEventOutboxRepository outboxRepository;
+    private final OrderEventProducer orderEventProducer;
+    private final TransactionOperations transactionOperations;
+
+    @Value("${payment.outbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${payment.outbox.max-batches-per-run:10}")
+    private int maxBatchesPerRun;
+
+    // Total wait for the acknowledgements of one batch
+    @Value("${payment.outbox.send-timeout:10s}")
+    private Duration sendTimeout;
+
+    // Must exceed send-timeout, or another instance may send a claimed batch again
+    @Value("${payment.outbox.claim-timeout:1m}")
+    private Duration claimTimeout;
+
+    @Value("${payment.outbox.retry.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${payment.outbox.retry.initial-backoff:1s}")
+    private Duration initialBackoff;
+
+    @Value("${payment.outbox.retry.max-backoff:5m}")
+    private Duration maxBackoff;
+
+    @Value("${payment.outbox.retention:24h}")
+    private Duration retention;
+
+    @Scheduled(fixedDelayString = "${payment.outbox.poll-interval-ms:200}")
+    public void relayPendingEvents() {
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            if (relayBatch() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Claims one batch of due events, publishes it and records which were acknowledged.
+     *
+     * @return number of rows picked up
+     */
+    int relayBatch() {
+        List<PaymentEventOutbox> batch = transactionOperations.execute(status -> claimBatch());
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+
+        List<CompletableFuture<?>> sends = new ArrayList<>(batch.size());
+        for (PaymentEventOutbox entry : batch) {
+            sends.add(orderEventProducer.publish(toEvent(entry)));
+        }
+        orderEventProducer.flush();
+
+        long deadline = System.nanoTime() + sendTimeout.toNanos();
+        LocalDateTime now = LocalDateTime.now();
+        int published = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            PaymentEventOutbox entry = batch.get(i);
+            try {
+                sends.get(i).get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+                entry.setPublishedAt(now);
+                entry.setNextAttemptAt(null);
+                entry.setLastError(null);
+                published++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                markFailed(entry, e, now);
+            } catch (ExecutionException | TimeoutException e) {
+                markFailed(entry, e, now);
+            }
+        }
+        transactionOperations.executeWithoutResult(status -> outboxRepository.saveAll(batch));
+
+        log.debug("Relayed {}/{} payment events from outbox", published, batch.size());
+        return batch.size();
+    }
+
+    private List<PaymentEventOutbox> claimBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<PaymentEventOutbox> claimed = new ArrayList<>();
+        Set<UUID> orders = new HashSet<>();
+        for (PaymentEventOutbox entry : outboxRepository.lockPendingBatch(now, PageRequest.of(0, batchSize))) {
+            // The query already returns one event per order; never send two of one order together
+            if (orders.add(entry.getOrderId())) {
+                entry.setNextAttemptAt(now.plus(claimTimeout));
+                claimed.add(entry);
+            }
+        }
+        outboxRepository.saveAll(claimed);
+        return claimed;
+    }
+
+    @Scheduled(cron = "${payment.outbox.purge-cron:0 15 * * * *}")
+    public void purgePublishedEvents() {
+        Integer deleted = transactionOperations.execute(status ->
+                outboxRepository.deletePublishedBefore(LocalDateTime.now().minus(retention)));
+        if (deleted != null && deleted > 0) {
+            log.info("Purged {} published payment events from outbox", deleted);
+        }
+    }
+
+    private void markFailed(PaymentEventOutbox entry, Exception e, LocalDateTime now) {
+        Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+        String error = cause.getClass().getSimpleName() + ": " + cause.getMessage();
+        entry.setAttempts(entry.getAttempts() + 1);
+        entry.setLastError(error.length() > 500 ? error.substring(0, 500) : error);
+        if (entry.getAttempts() >= maxAttempts) {
+            entry.setNextAttemptAt(null);
+            entry.setDeadLetteredAt(now);
+            log.error("Dead-lettered outbox event {} for order {} after {} attempts: {}",
+                    entry.getId(), entry.getOrderId(), entry.getAttempts(), error);
+            return;
+        }
+        entry.setNextAttemptAt(now.plus(backoff(entry.getAttempts())));
+        log.warn("Failed to relay outbox event {} for order {} (attempt {}): {}",
+                entry.getId(), entry.getOrderId(), entry.getAttempts(), error);
+    }
+
+    /**
+     * initial-backoff doubled for every further attempt, capped at max-backoff.
+     */
+    Duration backoff(int attempts) {
+        Duration delay = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 30));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    private OrderPaymentEvent toEvent(PaymentEventOutbox entry) {
+        return OrderPaymentEvent.builder()
+                .orderId(entry.getOrderId())
+                .transactionId(entry.getTransactionId())
+                .merchantId(entry.getMerchantId())
+                .status(PaymentStatus.valueOf(entry.getStatus()))
+                .message(entry.getMessage())
+                .timestamp(entry.getOccurredAt())
+                .build();
+    }
+}
@@ -0,0 +1,43 @@
+package com.fusionxpay.payment.event;
+
+import com.fusionxpay.common.event.OrderPaymentEvent;
+import com.fusionxpay.payment.service.PaymentStatusStreamService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+
+/**
+ * Feeds the payment events topic into {@link PaymentStatusStreamService}.
+ * Each instance joins its own consumer group so every instance sees every event, and starts
+ * from the latest offset because only currently open streams are served.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = {"fusionxpay.kafka.enabled", "payment.stream.enabled"}, havingValue = "true", matchIfMissing = true)
+public class PaymentStatusStreamListener {
+
+    private final PaymentStatusStreamService paymentStatusStreamService;
+
+    @KafkaListener(topics = "${kafka.topics.payment-events}",
+            groupId = "${payment.stream.consumer-group-prefix:payment-status-stream}-${random.uuid}",
+            properties = {
+                    "value.deserializer=org.springframework.kafka.support.serializer.ErrorHandlingDeserializer",
+                    "spring.deserializer.value.delegate.class=com.fusionxpay.common.event.OrderPaymentEventDeserializer",
+                    "auto.offset.reset=latest"
+            })
+    public void onPaymentEvent(OrderPaymentEvent event,
+                               @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
+                               @Header(KafkaHeaders.OFFSET) long offset) {
+        if (event == null || event.getMerchantId() == null || event.getStatus() == null) {
+            // A null status is one this version does not know
+            log.debug("Skipping payment event at {}-{} without a merchant or known status", partition, offset);
+            return;
+        }
+        paymentStatusStreamService.publish(partition, offset, event);
+    }
+}
@@ -1,5 +1,6 @@
 package com.fusionxpay.payment.exception;
 
+import com.fusionxpay.payment.provider.ProviderDeadlineExceededException;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
@@ -70,6 +71,20 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorResponse, status);
     }
     
+    @ExceptionHandler(ProviderDeadlineExceededException.class)
+    public ResponseEntity<ErrorResponse> handleProviderDeadlineExceeded(ProviderDeadlineExceededException ex) {
+        log.warn("Provider call exceeded request deadline: {}", ex.getMessage());
+
+        ErrorResponse errorResponse = new ErrorResponse(
+                HttpStatus.GATEWAY_TIMEOUT.value(),
+                HttpStatus.GATEWAY_TIMEOUT.getReasonPhrase(),
+                "Payment provider did not respond in time. Please try again later.",
+                LocalDateTime.now()
+        );
+
+        return new ResponseEntity<>(errorResponse, HttpStatus.GATEWAY_TIMEOUT);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleGenericException(Exception ex) {
         log.error("Unexpected error", ex);
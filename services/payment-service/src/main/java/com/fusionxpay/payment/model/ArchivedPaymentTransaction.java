@@ -0,0 +1,62 @@
+package com.fusionxpay.payment.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A closed {@link PaymentTransaction} moved out of payment_transactions by the archival job.
+ * The table is compressed and read by the archive search, by payment initiation (an archived
+ * paid order is not charged again) and by late webhooks, which move the transaction back.
+ */
+@Data
+@Entity
+@Immutable
+@Table(name = "payment_transactions_archive",
+        indexes = {
+                @Index(name = "idx_payment_transactions_archive_order_merchant", columnList = "orderId, merchantId"),
+                @Index(name = "idx_payment_transactions_archive_merchant_created", columnList = "merchantId, createdAt, transactionId")
+        })
+public class ArchivedPaymentTransaction {
+
+    @Id
+    private UUID transactionId;
+
+    @Column(nullable = false)
+    private UUID orderId;
+
+    @Column(nullable = false)
+    private Long merchantId;
+
+    // Four decimal places hold every ISO 4217 currency (CLF, UYW); see Money.exponent
+    @Column(nullable = false, precision = 19, scale = 4)
+    private BigDecimal amount;
+
+    @Column(nullable = false, length = 3)
+    private String currency;
+
+    @Column(nullable = false, length = 20)
+    private String paymentChannel;
+
+    @Column(nullable = false, length = 20)
+    private String status;
+
+    @Column(length = 255)
+    private String providerTransactionId;
+
+    @Column(nullable = false)
+    private long version;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column(nullable = false)
+    private LocalDateTime archivedAt;
+}
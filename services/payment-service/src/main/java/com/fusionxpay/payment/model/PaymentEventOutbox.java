@@ -0,0 +1,66 @@
+package com.fusionxpay.payment.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Payment status event waiting to be relayed to Kafka.
+ * Rows are written in the same transaction as the payment state change and
+ * drained by {@link com.fusionxpay.payment.event.PaymentEventOutboxRelay}.
+ */
+@Data
+@Entity
+@Table(name = "payment_event_outbox",
+        indexes = {
+                @Index(name = "idx_payment_event_outbox_pending", columnList = "publishedAt, id"),
+                @Index(name = "idx_payment_event_outbox_order_pending", columnList = "orderId, publishedAt, id")
+        })
+public class PaymentEventOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private UUID orderId;
+
+    @Column(nullable = false)
+    private UUID transactionId;
+
+    // Null for rows queued before events carried the merchant
+    private Long merchantId;
+
+    @Column(nullable = false, length = 20)
+    private String status;
+
+    @Column(length = 255)
+    private String message;
+
+    // Time the status change happened; becomes the event timestamp
+    @Column(nullable = false)
+    private LocalDateTime occurredAt;
+
+    private LocalDateTime publishedAt;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(length = 500)
+    private String lastError;
+
+    // Not picked up before this time: set while a relay is sending it and after a failed attempt
+    private LocalDateTime nextAttemptAt;
+
+    // Set when attempts ran out; the row is kept for inspection and no longer holds back its order
+    private LocalDateTime deadLetteredAt;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
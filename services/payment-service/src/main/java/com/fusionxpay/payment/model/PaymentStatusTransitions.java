@@ -0,0 +1,55 @@
+package com.fusionxpay.payment.model;
+
+import com.fusionxpay.common.model.PaymentStatus;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The allowed status changes of a {@link PaymentTransaction}:
+ * INITIATED -> PROCESSING -> SUCCESS / FAILED, and SUCCESS -> REFUNDED.
+ * <p>
+ * INITIATED may skip PROCESSING when a provider settles immediately or its webhook arrives before
+ * the initiation result is recorded. FAILED -> SUCCESS is allowed because a provider can confirm a
+ * capture after we gave up on it (timeout, cancel page), and the provider's record is the one that
+ * counts. Everything else, such as a late FAILED after SUCCESS, is rejected.
+ */
+public final class PaymentStatusTransitions {
+
+    private static final Map<PaymentStatus, Set<PaymentStatus>> TARGETS = new EnumMap<>(PaymentStatus.class);
+    private static final Map<PaymentStatus, Set<String>> SOURCES = new EnumMap<>(PaymentStatus.class);
+
+    static {
+        TARGETS.put(PaymentStatus.INITIATED, EnumSet.of(PaymentStatus.PROCESSING, PaymentStatus.SUCCESS, PaymentStatus.FAILED));
+        TARGETS.put(PaymentStatus.PROCESSING, EnumSet.of(PaymentStatus.SUCCESS, PaymentStatus.FAILED));
+        TARGETS.put(PaymentStatus.SUCCESS, EnumSet.of(PaymentStatus.REFUNDED));
+        TARGETS.put(PaymentStatus.FAILED, EnumSet.of(PaymentStatus.SUCCESS));
+
+        for (PaymentStatus target : PaymentStatus.values()) {
+            SOURCES.put(target, TARGETS.entrySet().stream()
+                    .filter(entry -> entry.getValue().contains(target))
+                    .map(entry -> entry.getKey().name())
+                    .collect(Collectors.toUnmodifiableSet()));
+        }
+    }
+
+    private PaymentStatusTransitions() {
+    }
+
+    /**
+     * @param from the stored status; unknown values allow no transition
+     */
+    public static boolean isAllowed(String from, PaymentStatus to) {
+        return from != null && SOURCES.get(to).contains(from);
+    }
+
+    /**
+     * Statuses a transaction may be in to move to the given status, as stored in the status column.
+     */
+    public static Set<String> sourcesOf(PaymentStatus to) {
+        return SOURCES.get(to);
+    }
+}
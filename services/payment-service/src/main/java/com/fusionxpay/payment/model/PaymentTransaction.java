@@ -8,7 +8,18 @@ import java.util.UUID;
 
 @Data
 @Entity
-@Table(name = "payment_transactions")
+@Table(name = "payment_transactions",
+        indexes = {
+                @Index(name = "idx_payment_transactions_provider_tx", columnList = "providerTransactionId"),
+                // Order lookups, with or without the owning merchant
+                @Index(name = "idx_payment_transactions_order_merchant", columnList = "orderId, merchantId"),
+                // Serves keyset search, which seeks on (createdAt, transactionId) within a merchant
+                @Index(name = "idx_payment_transactions_merchant_created", columnList = "merchantId, createdAt, transactionId"),
+                // Same for searches filtered by status, so they still read rows in createdAt order
+                @Index(name = "idx_payment_transactions_merchant_status_created", columnList = "merchantId, status, createdAt, transactionId"),
+                // Reconciliation reads one channel's transactions over a time range
+                @Index(name = "idx_payment_transactions_channel_created", columnList = "paymentChannel, createdAt")
+        })
 public class PaymentTransaction {
     
     @Id
@@ -21,7 +32,8 @@ public class PaymentTransaction {
     @Column(nullable = false)
     private Long merchantId;
     
-    @Column(nullable = false, precision = 10, scale = 2)
+    // Four decimal places hold every ISO 4217 currency (CLF, UYW); see Money.exponent
+    @Column(nullable = false, precision = 19, scale = 4)
     private BigDecimal amount;
     
     @Column(nullable = false, length = 3)
@@ -37,6 +49,11 @@ public class PaymentTransaction {
     @Column(length = 255)
     private String providerTransactionId;
     
+    // Optimistic lock; status changes go through PaymentTransactionRepository.transitionStatus
+    @Version
+    @Column(nullable = false)
+    private long version;
+
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
     
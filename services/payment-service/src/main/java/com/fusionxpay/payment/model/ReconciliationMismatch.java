@@ -0,0 +1,65 @@
+package com.fusionxpay.payment.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One disagreement found by a reconciliation run between a provider export and payment_transactions.
+ */
+@Data
+@Entity
+@Table(name = "reconciliation_mismatches",
+        indexes = {
+                @Index(name = "idx_reconciliation_mismatches_run", columnList = "runId"),
+                @Index(name = "idx_reconciliation_mismatches_provider_tx", columnList = "providerTransactionId")
+        })
+public class ReconciliationMismatch {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(nullable = false)
+    private UUID runId;
+
+    @Column(nullable = false, length = 20)
+    private String provider;
+
+    @Column(nullable = false, length = 255)
+    private String providerTransactionId;
+
+    // Null when the transaction is missing from the ledger
+    private UUID transactionId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 30)
+    private ReconciliationMismatchType type;
+
+    @Column(precision = 19, scale = 4)
+    private BigDecimal ledgerAmount;
+
+    @Column(precision = 19, scale = 4)
+    private BigDecimal providerAmount;
+
+    @Column(length = 3)
+    private String ledgerCurrency;
+
+    @Column(length = 3)
+    private String providerCurrency;
+
+    @Column(length = 20)
+    private String ledgerStatus;
+
+    @Column(length = 20)
+    private String providerStatus;
+
+    @Column(length = 255)
+    private String sourceFile;
+
+    @Column(nullable = false)
+    private LocalDateTime detectedAt;
+}
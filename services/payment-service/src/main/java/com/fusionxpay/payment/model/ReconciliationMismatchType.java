@@ -0,0 +1,27 @@
+package com.fusionxpay.payment.model;
+
+/**
+ * Ways a provider settlement record and a payment transaction can disagree.
+ */
+public enum ReconciliationMismatchType {
+
+    /**
+     * The provider reports a transaction that payment_transactions does not have.
+     */
+    MISSING_IN_LEDGER,
+
+    /**
+     * A successful or refunded transaction does not appear in the provider export.
+     */
+    MISSING_AT_PROVIDER,
+
+    /**
+     * Amount or currency differ.
+     */
+    AMOUNT_DRIFT,
+
+    /**
+     * The provider's status maps to a different payment status than the recorded one.
+     */
+    STATUS_DRIFT
+}
@@ -0,0 +1,65 @@
+package com.fusionxpay.payment.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * Raw provider webhook persisted by the asynchronous intake path.
+ */
+@Data
+@Entity
+@Table(name = "webhook_inbox",
+        uniqueConstraints = @UniqueConstraint(name = "uk_webhook_inbox_provider_event", columnNames = {"provider", "eventId"}),
+        indexes = {
+                @Index(name = "idx_webhook_inbox_status", columnList = "status, id"),
+                @Index(name = "idx_webhook_inbox_partition", columnList = "partitionKey, status, id")
+        })
+public class WebhookInboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 20)
+    private String provider;
+
+    @Column(nullable = false, length = 255)
+    private String eventId;
+
+    // Ordering key: order id when it can be read from the payload, otherwise a provider object id
+    @Column(nullable = false, length = 255)
+    private String partitionKey;
+
+    @Lob
+    @Column(nullable = false)
+    private String payload;
+
+    @Column(length = 4096)
+    private String signature;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private WebhookInboxStatus status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(length = 500)
+    private String lastError;
+
+    // Earliest time a failed event is dispatched again
+    private LocalDateTime nextAttemptAt;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime receivedAt;
+
+    private LocalDateTime dispatchedAt;
+
+    private LocalDateTime processedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        receivedAt = LocalDateTime.now();
+    }
+}
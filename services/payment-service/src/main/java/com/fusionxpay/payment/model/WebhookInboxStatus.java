@@ -0,0 +1,27 @@
+package com.fusionxpay.payment.model;
+
+/**
+ * Lifecycle of a webhook accepted in asynchronous intake mode.
+ */
+public enum WebhookInboxStatus {
+
+    /**
+     * Signature verified and stored, waiting for a worker.
+     */
+    RECEIVED,
+
+    /**
+     * Claimed by a worker lane.
+     */
+    DISPATCHED,
+
+    /**
+     * Applied to the payment transaction (or safely ignored).
+     */
+    PROCESSED,
+
+    /**
+     * Gave up after the configured number of attempts.
+     */
+    FAILED
+}
@@ -0,0 +1,197 @@
+package com.fusionxpay.payment.provider;
+
+import com.fusionxpay.common.model.PaymentStatus;
+import com.fusionxpay.payment.dto.PaymentRequest;
+import com.fusionxpay.payment.dto.PaymentResponse;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes payments using live provider health.
+ * Every provider call updates an exponentially weighted moving average (EWMA) of latency and
+ * error rate, and a per-provider resilience4j circuit breaker. Requests for {@link #ANY_CHANNEL}
+ * try providers whose breaker admits calls first, cheapest score first, and fail over to the
+ * next one when a provider errors or declines. A named channel is always sent to that provider.
+ */
+@Service
+@Slf4j
+public class LatencyAwarePaymentRouter implements PaymentRouter {
+
+    static final String DECISIONS_METRIC = "payment.routing.decisions";
+    static final String LATENCY_METRIC = "payment.routing.provider.latency";
+    static final String ERROR_RATE_METRIC = "payment.routing.provider.error.rate";
+
+    private static final String BREAKER_PREFIX = "payment-provider-";
+
+    private final PaymentProviderFactory paymentProviderFactory;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ProviderHealth> health = new ConcurrentHashMap<>();
+
+    @Value("${payment.routing.ewma-alpha:0.2}")
+    private double ewmaAlpha = 0.2;
+
+    @Value("${payment.routing.error-penalty:4}")
+    private double errorPenalty = 4;
+
+    public LatencyAwarePaymentRouter(PaymentProviderFactory paymentProviderFactory,
+                                     CircuitBreakerRegistry circuitBreakerRegistry,
+                                     MeterRegistry meterRegistry) {
+        this.paymentProviderFactory = paymentProviderFactory;
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public List<PaymentProvider> route(String requestedChannel) {
+        if (!ANY_CHANNEL.equalsIgnoreCase(requestedChannel)) {
+            return List.of(paymentProviderFactory.getProvider(requestedChannel));
+        }
+        return paymentProviderFactory.getProviders().stream()
+                .sorted(Comparator
+                        .comparing((PaymentProvider provider) -> !healthOf(provider).isCallPermitted())
+                        .thenComparingDouble(provider -> healthOf(provider).score())
+                        .thenComparing(PaymentProvider::getProviderName))
+                .toList();
+    }
+
+    @Override
+    public RoutedPayment processPayment(List<PaymentProvider> candidates, PaymentRequest paymentRequest) {
+        String requested = ANY_CHANNEL.equalsIgnoreCase(paymentRequest.getPaymentChannel())
+                ? ANY_CHANNEL
+                : paymentRequest.getPaymentChannel().toUpperCase();
+
+        for (int i = 0; i < candidates.size(); i++) {
+            PaymentProvider provider = candidates.get(i);
+            ProviderHealth providerHealth = healthOf(provider);
+            boolean last = i == candidates.size() - 1;
+            String position = i == 0 ? "primary" : "failover";
+
+            // An open breaker only skips a provider when another one can still be tried
+            if (!providerHealth.circuitBreaker.tryAcquirePermission() && !last) {
+                log.warn("Skipping {} for order {}: circuit breaker is {}", provider.getProviderName(),
+                        paymentRequest.getOrderId(), providerHealth.circuitBreaker.getState());
+                decisions(requested, provider, position, "skipped").increment();
+                continue;
+            }
+
+            long start = System.nanoTime();
+            try {
+                PaymentResponse response = provider.processPayment(paymentRequest);
+                boolean accepted = response != null && response.getStatus() != PaymentStatus.FAILED;
+                providerHealth.record(System.nanoTime() - start, accepted ? null : new ProviderDeclinedException(response));
+                decisions(requested, provider, position, accepted ? "success" : "failure").increment();
+                if (accepted || last) {
+                    return new RoutedPayment(provider, response);
+                }
+            } catch (RuntimeException e) {
+                providerHealth.record(System.nanoTime() - start, e);
+                decisions(requested, provider, position, "failure").increment();
+                if (last) {
+                    throw e;
+                }
+            }
+            log.warn("Provider {} could not process order {}, failing over", provider.getProviderName(),
+                    paymentRequest.getOrderId());
+        }
+        throw new IllegalStateException("No payment provider available");
+    }
+
+    private Counter decisions(String requested, PaymentProvider provider, String position, String result) {
+        return Counter.builder(DECISIONS_METRIC)
+                .tag("requested", requested)
+                .tag("provider", provider.getProviderName())
+                .tag("position", position)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private ProviderHealth healthOf(PaymentProvider provider) {
+        return health.computeIfAbsent(provider.getProviderName(), this::newHealth);
+    }
+
+    private ProviderHealth newHealth(String providerName) {
+        ProviderHealth providerHealth = new ProviderHealth(
+                circuitBreakerRegistry.circuitBreaker(BREAKER_PREFIX + providerName.toLowerCase()));
+        Gauge.builder(LATENCY_METRIC, providerHealth, ProviderHealth::latencyMillis)
+                .tag("provider", providerName)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder(ERROR_RATE_METRIC, providerHealth, ProviderHealth::errorRate)
+                .tag("provider", providerName)
+                .register(meterRegistry);
+        return providerHealth;
+    }
+
+    /**
+     * Moving averages and breaker for one provider. A provider with no samples scores zero,
+     * so it is tried early and gets measured.
+     */
+    private final class ProviderHealth {
+
+        private final CircuitBreaker circuitBreaker;
+        private double latencyMillis;
+        private double errorRate;
+        private boolean sampled;
+
+        ProviderHealth(CircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+        }
+
+        boolean isCallPermitted() {
+            CircuitBreaker.State state = circuitBreaker.getState();
+            return state != CircuitBreaker.State.OPEN && state != CircuitBreaker.State.FORCED_OPEN;
+        }
+
+        synchronized void record(long elapsedNanos, Throwable error) {
+            double millis = elapsedNanos / 1_000_000.0;
+            double failure = error == null ? 0 : 1;
+            if (sampled) {
+                latencyMillis += ewmaAlpha * (millis - latencyMillis);
+                errorRate += ewmaAlpha * (failure - errorRate);
+            } else {
+                latencyMillis = millis;
+                errorRate = failure;
+                sampled = true;
+            }
+            if (error == null) {
+                circuitBreaker.onSuccess(elapsedNanos, TimeUnit.NANOSECONDS);
+            } else {
+                circuitBreaker.onError(elapsedNanos, TimeUnit.NANOSECONDS, error);
+            }
+        }
+
+        synchronized double latencyMillis() {
+            return latencyMillis;
+        }
+
+        synchronized double errorRate() {
+            return errorRate;
+        }
+
+        synchronized double score() {
+            return latencyMillis * (1 + errorPenalty * errorRate);
+        }
+    }
+
+    /**
+     * Recorded against the circuit breaker when a provider answers with a FAILED payment.
+     */
+    static final class ProviderDeclinedException extends RuntimeException {
+        ProviderDeclinedException(PaymentResponse response) {
+            super(response == null ? "Provider returned no response" : "Provider declined: " + response.getErrorMessage());
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.fusionxpay.payment.provider;
+
+import com.fusionxpay.payment.dto.PaymentRequest;
+import com.fusionxpay.payment.dto.PaymentResponse;
+import com.fusionxpay.payment.dto.RefundResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.function.Supplier;
+
+/**
+ * Times every {@link PaymentProvider} call, tagged by provider, method and outcome. Unlike
+ * {@code payment.provider.call.latency}, which times each HTTP attempt, this covers the whole
+ * method: retries, hedges, signature checks and idempotency round-trips included.
+ */
+final class MeteredPaymentProvider implements PaymentProvider {
+
+    static final String METRIC_NAME = "payment.provider.method";
+
+    private final PaymentProvider delegate;
+    private final MeterRegistry meterRegistry;
+
+    MeteredPaymentProvider(PaymentProvider delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public PaymentResponse processPayment(PaymentRequest paymentRequest) {
+        return timed("processPayment", () -> delegate.processPayment(paymentRequest));
+    }
+
+    @Override
+    public RefundResponse processRefund(ProviderRefundRequest refundRequest) {
+        return timed("processRefund", () -> delegate.processRefund(refundRequest));
+    }
+
+    @Override
+    public boolean validateCallback(String payload, String signature) {
+        return timed("validateCallback", () -> delegate.validateCallback(payload, signature));
+    }
+
+    @Override
+    public PaymentResponse processCallback(String payload, String signature) {
+        return timed("processCallback", () -> delegate.processCallback(payload, signature));
+    }
+
+    @Override
+    public PaymentResponse processVerifiedCallback(String payload, String signature) {
+        return timed("processVerifiedCallback", () -> delegate.processVerifiedCallback(payload, signature));
+    }
+
+    @Override
+    public String callbackEventType(String payload) {
+        return delegate.callbackEventType(payload);
+    }
+
+    @Override
+    public String getProviderName() {
+        return delegate.getProviderName();
+    }
+
+    private <T> T timed(String method, Supplier<T> call) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            T result = call.get();
+            outcome = "success";
+            return result;
+        } finally {
+            sample.stop(Timer.builder(METRIC_NAME)
+                    .description("PaymentProvider method latency")
+                    .tag("provider", delegate.getProviderName())
+                    .tag("method", method)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+}
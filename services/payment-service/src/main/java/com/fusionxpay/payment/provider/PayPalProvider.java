@@ -4,27 +4,29 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fusionxpay.common.model.PaymentStatus;
+import com.fusionxpay.common.money.Money;
 import com.fusionxpay.payment.dto.PaymentRequest;
 import com.fusionxpay.payment.dto.PaymentResponse;
 import com.fusionxpay.payment.dto.RefundResponse;
 import com.fusionxpay.payment.dto.paypal.*;
 import com.fusionxpay.payment.model.RefundStatus;
-import com.fusionxpay.payment.service.IdempotencyService;
 import com.fusionxpay.payment.service.PayPalAuthService;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
 import jakarta.annotation.PostConstruct;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.time.Duration;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -38,10 +40,17 @@ import java.util.UUID;
 @Slf4j
 public class PayPalProvider implements PaymentProvider {
 
+    private static final Set<String> HANDLED_EVENT_TYPES = Set.of(
+            "PAYMENT.CAPTURE.COMPLETED",
+            "CHECKOUT.ORDER.APPROVED",
+            "PAYMENT.CAPTURE.DENIED",
+            "PAYMENT.CAPTURE.DECLINED",
+            "PAYMENT.CAPTURE.REFUNDED");
+
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final RestTemplate restTemplate;
     private final PayPalAuthService payPalAuthService;
-    private final IdempotencyService idempotencyService;
+    private final ProviderCallExecutor providerCalls;
 
     @Value("${payment.providers.paypal.webhook-id}")
     private String webhookId;
@@ -52,9 +61,12 @@ public class PayPalProvider implements PaymentProvider {
     @Value("${payment.providers.paypal.cancel-url}")
     private String cancelUrl;
 
-    public PayPalProvider(PayPalAuthService payPalAuthService, IdempotencyService idempotencyService) {
+    public PayPalProvider(PayPalAuthService payPalAuthService,
+                          @Qualifier("payPalRestTemplate") RestTemplate restTemplate,
+                          ProviderCallExecutor providerCalls) {
         this.payPalAuthService = payPalAuthService;
-        this.idempotencyService = idempotencyService;
+        this.restTemplate = restTemplate;
+        this.providerCalls = providerCalls;
     }
 
     @PostConstruct
@@ -84,12 +96,13 @@ public class PayPalProvider implements PaymentProvider {
             HttpEntity<PayPalOrderRequest> request = new HttpEntity<>(orderRequest, headers);
 
             // Call PayPal Orders API
-            ResponseEntity<PayPalOrderResponse> responseEntity = restTemplate.exchange(
-                    baseUrl + "/v2/checkout/orders",
-                    HttpMethod.POST,
-                    request,
-                    PayPalOrderResponse.class
-            );
+            ResponseEntity<PayPalOrderResponse> responseEntity = providerCalls.call("paypal.orders.create",
+                    () -> restTemplate.exchange(
+                            baseUrl + "/v2/checkout/orders",
+                            HttpMethod.POST,
+                            request,
+                            PayPalOrderResponse.class
+                    ));
 
             PayPalOrderResponse response = responseEntity.getBody();
             if (response == null || response.getId() == null) {
@@ -194,6 +207,15 @@ public class PayPalProvider implements PaymentProvider {
             return createErrorResponse("Invalid webhook signature");
         }
 
+        return processVerifiedCallback(payload, signature);
+    }
+
+    /**
+     * Processes a webhook whose signature was verified at intake, skipping the
+     * verification round-trip to PayPal.
+     */
+    @Override
+    public PaymentResponse processVerifiedCallback(String payload, String signature) {
         try {
             JsonNode rootNode = objectMapper.readTree(payload);
             String eventId = rootNode.path("id").asText();
@@ -201,34 +223,21 @@ public class PayPalProvider implements PaymentProvider {
 
             log.info("Processing PayPal webhook event: {} ({})", eventType, eventId);
 
-            // Idempotency check - prevent duplicate processing
-            String eventKey = "paypal:webhook:event:" + eventId;
-            if (!idempotencyService.acquireProcessingLock(eventKey, Duration.ofDays(7))) {
-                log.info("Duplicate PayPal webhook event: {}", eventId);
-                return PaymentResponse.builder()
-                        .status(PaymentStatus.DUPLICATE)
-                        .paymentChannel(getProviderName())
-                        .errorMessage("Event already processed")
-                        .build();
-            }
-
-            try {
-                switch (eventType) {
-                    case "PAYMENT.CAPTURE.COMPLETED":
-                        return handlePaymentCaptureCompleted(rootNode);
-                    case "CHECKOUT.ORDER.APPROVED":
-                        return handleOrderApproved(rootNode);
-                    case "PAYMENT.CAPTURE.DENIED":
-                    case "PAYMENT.CAPTURE.DECLINED":
-                        return handlePaymentFailure(rootNode);
-                    case "PAYMENT.CAPTURE.REFUNDED":
-                        return handleRefundCompleted(rootNode);
-                    default:
-                        log.info("Unhandled PayPal event type: {}", eventType);
-                        return null;
-                }
-            } finally {
-                idempotencyService.releaseLock(eventKey);
+            // No Redis lock here: redelivered and concurrent events are resolved by the
+            // conditional status update in PaymentService
+            switch (eventType) {
+                case "PAYMENT.CAPTURE.COMPLETED":
+                    return handlePaymentCaptureCompleted(rootNode);
+                case "CHECKOUT.ORDER.APPROVED":
+                    return handleOrderApproved(rootNode);
+                case "PAYMENT.CAPTURE.DENIED":
+                case "PAYMENT.CAPTURE.DECLINED":
+                    return handlePaymentFailure(rootNode);
+                case "PAYMENT.CAPTURE.REFUNDED":
+                    return handleRefundCompleted(rootNode);
+                default:
+                    log.info("Unhandled PayPal event type: {}", eventType);
+                    return null;
             }
 
         } catch (JsonProcessingException e) {
@@ -242,6 +251,8 @@ public class PayPalProvider implements PaymentProvider {
 
     /**
      * Captures an approved PayPal order.
+     * The capture is sent with a PayPal-Request-Id derived from the order ID, so PayPal answers a
+     * repeated or hedged capture with the original result instead of capturing twice.
      *
      * @param paypalOrderId the PayPal order ID
      * @return capture response
@@ -256,15 +267,17 @@ public class PayPalProvider implements PaymentProvider {
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
             headers.setBearerAuth(accessToken);
+            headers.set("PayPal-Request-Id", "capture-" + paypalOrderId);
 
             HttpEntity<String> request = new HttpEntity<>("{}", headers);
 
-            ResponseEntity<PayPalOrderResponse> responseEntity = restTemplate.exchange(
-                    baseUrl + "/v2/checkout/orders/" + paypalOrderId + "/capture",
-                    HttpMethod.POST,
-                    request,
-                    PayPalOrderResponse.class
-            );
+            ResponseEntity<PayPalOrderResponse> responseEntity = providerCalls.hedged("paypal.orders.capture",
+                    () -> restTemplate.exchange(
+                            baseUrl + "/v2/checkout/orders/" + paypalOrderId + "/capture",
+                            HttpMethod.POST,
+                            request,
+                            PayPalOrderResponse.class
+                    ));
 
             PayPalOrderResponse response = responseEntity.getBody();
             log.info("PayPal order captured successfully. OrderId: {}, Status: {}",
@@ -313,12 +326,13 @@ public class PayPalProvider implements PaymentProvider {
 
             HttpEntity<Void> request = new HttpEntity<>(headers);
 
-            ResponseEntity<PayPalOrderResponse> responseEntity = restTemplate.exchange(
-                    baseUrl + "/v2/checkout/orders/" + paypalOrderId,
-                    HttpMethod.GET,
-                    request,
-                    PayPalOrderResponse.class
-            );
+            ResponseEntity<PayPalOrderResponse> responseEntity = providerCalls.hedged("paypal.orders.get",
+                    () -> restTemplate.exchange(
+                            baseUrl + "/v2/checkout/orders/" + paypalOrderId,
+                            HttpMethod.GET,
+                            request,
+                            PayPalOrderResponse.class
+                    ));
 
             return responseEntity.getBody();
         } catch (Exception e) {
@@ -340,7 +354,8 @@ public class PayPalProvider implements PaymentProvider {
                     refundRequest.getProviderTransactionId(),
                     refundRequest.getAmount(),
                     refundRequest.getCurrency(),
-                    refundRequest.getReason()
+                    refundRequest.getReason(),
+                    refundRequest.getIdempotencyKey()
             );
 
             if (paypalResponse == null) {
@@ -371,10 +386,27 @@ public class PayPalProvider implements PaymentProvider {
                     .currency(refundRequest.getCurrency())
                     .errorMessage("PayPal refund failed: " + e.getMessage())
                     .createdAt(LocalDateTime.now())
+                    .retryable(isTransient(e))
                     .build();
         }
     }
 
+    /**
+     * I/O failures, missed deadlines, rate limiting and PayPal 5xx responses are worth retrying.
+     */
+    private boolean isTransient(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ResourceAccessException || cause instanceof ProviderDeadlineExceededException) {
+                return true;
+            }
+            if (cause instanceof HttpStatusCodeException statusException) {
+                return statusException.getStatusCode().is5xxServerError()
+                        || statusException.getStatusCode().value() == 429;
+            }
+        }
+        return false;
+    }
+
     /**
      * Processes a refund for a captured PayPal payment.
      *
@@ -382,9 +414,11 @@ public class PayPalProvider implements PaymentProvider {
      * @param amount the amount to refund (null for full refund)
      * @param currency the currency code
      * @param reason the reason for refund
+     * @param idempotencyKey sent as PayPal-Request-Id, or null
      * @return refund response
      */
-    private PayPalRefundResponse processRefund(String captureId, BigDecimal amount, String currency, String reason) {
+    private PayPalRefundResponse processRefund(String captureId, BigDecimal amount, String currency, String reason,
+                                               String idempotencyKey) {
         log.info("Processing PayPal refund for capture: {}", captureId);
 
         try {
@@ -398,7 +432,7 @@ public class PayPalProvider implements PaymentProvider {
             if (amount != null && currency != null) {
                 refundBuilder.amount(Amount.builder()
                         .currencyCode(currency)
-                        .value(amount.toPlainString())
+                        .value(Money.of(amount, currency).toPlainString())
                         .build());
             }
 
@@ -411,15 +445,19 @@ public class PayPalProvider implements PaymentProvider {
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
             headers.setBearerAuth(accessToken);
+            if (idempotencyKey != null) {
+                headers.set("PayPal-Request-Id", idempotencyKey);
+            }
 
             HttpEntity<PayPalRefundRequest> request = new HttpEntity<>(refundRequest, headers);
 
-            ResponseEntity<PayPalRefundResponse> responseEntity = restTemplate.exchange(
-                    baseUrl + "/v2/payments/captures/" + captureId + "/refund",
-                    HttpMethod.POST,
-                    request,
-                    PayPalRefundResponse.class
-            );
+            ResponseEntity<PayPalRefundResponse> responseEntity = providerCalls.call("paypal.captures.refund",
+                    () -> restTemplate.exchange(
+                            baseUrl + "/v2/payments/captures/" + captureId + "/refund",
+                            HttpMethod.POST,
+                            request,
+                            PayPalRefundResponse.class
+                    ));
 
             PayPalRefundResponse response = responseEntity.getBody();
             log.info("PayPal refund processed. CaptureId: {}, RefundId: {}, Status: {}",
@@ -440,6 +478,11 @@ public class PayPalProvider implements PaymentProvider {
         return "PAYPAL";
     }
 
+    @Override
+    public String callbackEventType(String payload) {
+        return WebhookEventTypes.of(payload, "event_type", HANDLED_EVENT_TYPES);
+    }
+
     // ========== Private Helper Methods ==========
 
     private PayPalOrderRequest buildOrderRequest(PaymentRequest paymentRequest) {
@@ -450,7 +493,8 @@ public class PayPalProvider implements PaymentProvider {
                 .customId(orderId)
                 .amount(Amount.builder()
                         .currencyCode(paymentRequest.getCurrency())
-                        .value(paymentRequest.getAmount().toPlainString())
+                        // PayPal rejects decimals the currency does not have, e.g. 1000.00 JPY
+                        .value(paymentRequest.toMoney().toPlainString())
                         .build())
                 .description("Payment for Order " + orderId)
                 .build();
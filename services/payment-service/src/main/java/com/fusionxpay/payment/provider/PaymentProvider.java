@@ -41,7 +41,31 @@ public interface PaymentProvider {
      * @return payment response containing updated payment status
      */
     PaymentResponse processCallback(String payload, String signature);
+
+    /**
+     * Process a callback whose signature was already verified by {@link #validateCallback}.
+     * Used for queued webhooks, where re-verifying could fail on timestamp tolerance, and
+     * to avoid verifying a synchronous webhook twice.
+     *
+     * @param payload callback request body
+     * @param signature callback signature as received
+     * @return payment response containing updated payment status
+     */
+    default PaymentResponse processVerifiedCallback(String payload, String signature) {
+        return processCallback(payload, signature);
+    }
     
+    /**
+     * Event type of a callback payload, used as a metric tag. Called before the signature is
+     * checked, so implementations only return types from a fixed set.
+     *
+     * @param payload callback request body
+     * @return event type, or "other"
+     */
+    default String callbackEventType(String payload) {
+        return WebhookEventTypes.OTHER;
+    }
+
     /**
      * Get payment provider name
      * 
@@ -1,7 +1,9 @@
 package com.fusionxpay.payment.provider;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
@@ -12,8 +14,12 @@ public class PaymentProviderFactory {
     
     private final Map<String, PaymentProvider> providers;
     
-    public PaymentProviderFactory(List<PaymentProvider> providerList) {
+    /**
+     * The providers handed out are wrapped in a {@link MeteredPaymentProvider}.
+     */
+    public PaymentProviderFactory(List<PaymentProvider> providerList, MeterRegistry meterRegistry) {
         this.providers = providerList.stream()
+                .map(provider -> (PaymentProvider) new MeteredPaymentProvider(provider, meterRegistry))
                 .collect(Collectors.toMap(
                         provider -> provider.getProviderName().toUpperCase(),
                         Function.identity()
@@ -27,4 +33,8 @@ public class PaymentProviderFactory {
         }
         return provider;
     }
+
+    public Collection<PaymentProvider> getProviders() {
+        return providers.values();
+    }
 }
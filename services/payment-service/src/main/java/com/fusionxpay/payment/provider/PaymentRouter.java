@@ -0,0 +1,42 @@
+package com.fusionxpay.payment.provider;
+
+import com.fusionxpay.payment.dto.PaymentRequest;
+import com.fusionxpay.payment.dto.PaymentResponse;
+
+import java.util.List;
+
+/**
+ * Chooses which payment provider handles a payment.
+ */
+public interface PaymentRouter {
+
+    /**
+     * Payment channel value that lets the router pick any provider.
+     */
+    String ANY_CHANNEL = "ANY";
+
+    /**
+     * Returns the providers to try for a payment, in order.
+     * A named channel yields only that provider; {@link #ANY_CHANNEL} yields every provider,
+     * best first.
+     *
+     * @param requestedChannel the channel from the payment request
+     * @return the candidate providers, never empty
+     * @throws IllegalArgumentException if the channel is not supported
+     */
+    List<PaymentProvider> route(String requestedChannel);
+
+    /**
+     * Calls the candidates in order until one accepts the payment, recording each outcome
+     * for later routing decisions.
+     *
+     * @param candidates providers returned by {@link #route(String)}
+     * @param paymentRequest the payment to process
+     * @return the provider that produced the response, and the response itself
+     * @throws RuntimeException the last provider's exception if no provider produced a response
+     */
+    RoutedPayment processPayment(List<PaymentProvider> candidates, PaymentRequest paymentRequest);
+
+    record RoutedPayment(PaymentProvider provider, PaymentResponse response) {
+    }
+}
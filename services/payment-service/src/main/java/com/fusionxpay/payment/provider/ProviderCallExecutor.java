@@ -0,0 +1,248 @@
+package com.fusionxpay.payment.provider;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs outbound provider calls under the current {@link ProviderDeadline}.
+ * <p>
+ * Without a deadline a call runs inline on the caller's thread. With one, it runs on a virtual thread
+ * and is interrupted when the deadline passes, which closes its socket. Calls made through
+ * {@link #hedged} may also fire a second, identical request when the first has not answered within
+ * the operation's observed p95 latency, returning whichever succeeds first. Only idempotent calls
+ * may be hedged.
+ */
+@Component
+@Slf4j
+public class ProviderCallExecutor {
+
+    static final String LATENCY_METRIC = "payment.provider.call.latency";
+    static final String HEDGE_CALLS_METRIC = "payment.provider.hedge.calls";
+    static final String HEDGES_METRIC = "payment.provider.hedge.fired";
+    static final String HEDGE_WINS_METRIC = "payment.provider.hedge.wins";
+    static final String DEADLINE_EXCEEDED_METRIC = "payment.provider.deadline.exceeded";
+
+    private static final double HEDGE_PERCENTILE = 0.95;
+
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Value("${payment.provider.hedging.enabled:false}")
+    private boolean hedgingEnabled;
+
+    // Used until an operation has min-samples latencies to take a p95 from
+    @Value("${payment.provider.hedging.initial-delay:1s}")
+    private Duration initialDelay = Duration.ofSeconds(1);
+
+    @Value("${payment.provider.hedging.min-delay:100ms}")
+    private Duration minDelay = Duration.ofMillis(100);
+
+    @Value("${payment.provider.hedging.max-delay:3s}")
+    private Duration maxDelay = Duration.ofSeconds(3);
+
+    @Value("${payment.provider.hedging.min-samples:20}")
+    private long minSamples = 20;
+
+    public ProviderCallExecutor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs a provider call within the current deadline.
+     */
+    public <T, E extends Exception> T call(String operation, ProviderCall<T, E> call) throws E {
+        return execute(operation, call, false);
+    }
+
+    /**
+     * Runs an idempotent provider call within the current deadline, hedging it when hedging is enabled.
+     */
+    public <T, E extends Exception> T hedged(String operation, ProviderCall<T, E> call) throws E {
+        return execute(operation, call, hedgingEnabled);
+    }
+
+    private <T, E extends Exception> T execute(String operation, ProviderCall<T, E> call, boolean hedge) throws E {
+        Long deadline = ProviderDeadline.current();
+        if (deadline == null && !hedge) {
+            long start = System.nanoTime();
+            try {
+                return call.call();
+            } finally {
+                latency(operation).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (deadline != null && deadline - System.nanoTime() <= 0) {
+            throw deadlineExceeded(operation);
+        }
+
+        Race<T, E> race = new Race<>(operation, call, deadline);
+        try {
+            race.launch(false);
+            if (!hedge) {
+                return race.await(Long.MAX_VALUE).value();
+            }
+            counter(HEDGE_CALLS_METRIC, operation).increment();
+            Outcome<T> outcome = race.await(hedgeDelay(operation).toNanos());
+            if (outcome == null) {
+                counter(HEDGES_METRIC, operation).increment();
+                race.launch(true);
+                outcome = race.await(Long.MAX_VALUE);
+                Counter.builder(HEDGE_WINS_METRIC)
+                        .tag("operation", operation)
+                        .tag("winner", outcome.hedge() ? "hedge" : "primary")
+                        .register(meterRegistry)
+                        .increment();
+            }
+            return outcome.value();
+        } finally {
+            race.cancel();
+        }
+    }
+
+    /**
+     * p95 of recent latencies for the operation, clamped to [min-delay, max-delay].
+     */
+    Duration hedgeDelay(String operation) {
+        Timer timer = latency(operation);
+        if (timer.count() < minSamples) {
+            return initialDelay;
+        }
+        for (ValueAtPercentile value : timer.takeSnapshot().percentileValues()) {
+            if (value.percentile() == HEDGE_PERCENTILE && !Double.isNaN(value.value())) {
+                long nanos = (long) value.value(TimeUnit.NANOSECONDS);
+                return Duration.ofNanos(Math.min(Math.max(nanos, minDelay.toNanos()), maxDelay.toNanos()));
+            }
+        }
+        return initialDelay;
+    }
+
+    private Timer latency(String operation) {
+        return Timer.builder(LATENCY_METRIC)
+                .description("Provider call latency per attempt")
+                .tag("operation", operation)
+                .publishPercentiles(HEDGE_PERCENTILE)
+                .register(meterRegistry);
+    }
+
+    private Counter counter(String name, String operation) {
+        return Counter.builder(name).tag("operation", operation).register(meterRegistry);
+    }
+
+    private ProviderDeadlineExceededException deadlineExceeded(String operation) {
+        counter(DEADLINE_EXCEEDED_METRIC, operation).increment();
+        log.warn("Deadline exceeded calling {}", operation);
+        return new ProviderDeadlineExceededException(operation);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends Exception> RuntimeException rethrow(Throwable cause) throws E {
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        if (cause instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        throw (E) cause;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A provider call that may throw the provider SDK's checked exception.
+     */
+    @FunctionalInterface
+    public interface ProviderCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    private record Outcome<T>(T value, boolean hedge) {
+    }
+
+    /**
+     * Attempts of one call. The first success wins; a failure only ends the race once no other
+     * attempt is still running.
+     */
+    private final class Race<T, E extends Exception> {
+
+        private final String operation;
+        private final ProviderCall<T, E> call;
+        private final Long deadline;
+        private final CompletableFuture<Outcome<T>> winner = new CompletableFuture<>();
+        private final AtomicInteger running = new AtomicInteger();
+        private final List<Future<?>> attempts = new CopyOnWriteArrayList<>();
+
+        Race(String operation, ProviderCall<T, E> call, Long deadline) {
+            this.operation = operation;
+            this.call = call;
+            this.deadline = deadline;
+        }
+
+        void launch(boolean hedge) {
+            running.incrementAndGet();
+            attempts.add(executor.submit(() -> {
+                ProviderDeadline.restore(deadline);
+                long start = System.nanoTime();
+                try {
+                    winner.complete(new Outcome<>(call.call(), hedge));
+                } catch (Throwable e) {
+                    if (running.decrementAndGet() == 0) {
+                        winner.completeExceptionally(e);
+                    }
+                } finally {
+                    // An attempt cancelled because the other one won records its time so far, a lower
+                    // bound that keeps slow responses in the p95 the hedge delay is taken from
+                    latency(operation).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }));
+        }
+
+        /**
+         * Waits for the winner, at most {@code maxWaitNanos} and never past the deadline.
+         * Returns null if nothing has finished when {@code maxWaitNanos} runs out.
+         */
+        Outcome<T> await(long maxWaitNanos) throws E {
+            long wait = maxWaitNanos;
+            if (deadline != null) {
+                wait = Math.min(wait, deadline - System.nanoTime());
+            }
+            try {
+                return wait == Long.MAX_VALUE ? winner.get() : winner.get(Math.max(wait, 0), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (deadline != null && deadline - System.nanoTime() <= 0) {
+                    throw deadlineExceeded(operation);
+                }
+                return null;
+            } catch (ExecutionException e) {
+                throw ProviderCallExecutor.<E>rethrow(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for " + operation, e);
+            }
+        }
+
+        void cancel() {
+            attempts.forEach(attempt -> attempt.cancel(true));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.fusionxpay.payment.provider;
+
+import java.time.Duration;
+
+/**
+ * End-to-end deadline for provider calls made on the current thread.
+ * Set per incoming request by {@code RequestDeadlineFilter}; {@link ProviderCallExecutor} and bulk
+ * initiation carry it over to the threads that run the calls with {@link #current()} and
+ * {@link #restore}. Threads without a deadline (webhook workers, bulk refund jobs) are bounded only
+ * by the HTTP client timeouts.
+ */
+public final class ProviderDeadline {
+
+    private static final ThreadLocal<Long> DEADLINE_NANOS = new ThreadLocal<>();
+
+    private ProviderDeadline() {
+    }
+
+    public static void set(Duration budget) {
+        DEADLINE_NANOS.set(System.nanoTime() + budget.toNanos());
+    }
+
+    public static void clear() {
+        DEADLINE_NANOS.remove();
+    }
+
+    /**
+     * Time left before the deadline, negative once it has passed, or null when none is set.
+     */
+    public static Duration remaining() {
+        Long deadline = DEADLINE_NANOS.get();
+        return deadline == null ? null : Duration.ofNanos(deadline - System.nanoTime());
+    }
+
+    /**
+     * The deadline of the current thread as a {@link System#nanoTime()} value, or null, to hand to
+     * {@link #restore} on the thread that makes the call.
+     */
+    public static Long current() {
+        return DEADLINE_NANOS.get();
+    }
+
+    public static void restore(Long deadlineNanos) {
+        if (deadlineNanos == null) {
+            DEADLINE_NANOS.remove();
+        } else {
+            DEADLINE_NANOS.set(deadlineNanos);
+        }
+    }
+}
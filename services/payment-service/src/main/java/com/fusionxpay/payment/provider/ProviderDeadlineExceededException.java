@@ -0,0 +1,11 @@
+package com.fusionxpay.payment.provider;
+
+/**
+ * Thrown when a provider call cannot finish before the request's deadline.
+ */
+public class ProviderDeadlineExceededException extends RuntimeException {
+
+    public ProviderDeadlineExceededException(String operation) {
+        super("Deadline exceeded calling " + operation);
+    }
+}
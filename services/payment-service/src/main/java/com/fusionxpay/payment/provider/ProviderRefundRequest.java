@@ -25,4 +25,9 @@ public class ProviderRefundRequest {
     private String currency;
 
     private String reason;
+
+    /**
+     * Sent to the provider as its idempotency key, so a retried refund is applied at most once.
+     */
+    private String idempotencyKey;
 }
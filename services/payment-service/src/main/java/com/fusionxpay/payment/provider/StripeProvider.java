@@ -1,24 +1,32 @@
 package com.fusionxpay.payment.provider;
 
+import com.fusionxpay.common.money.Money;
 import com.fusionxpay.payment.dto.PaymentRequest;
 import com.fusionxpay.payment.dto.PaymentResponse;
 import com.fusionxpay.payment.dto.RefundResponse;
+import com.fusionxpay.payment.repository.PaymentTransactionRepository;
 import com.fusionxpay.payment.service.IdempotencyService;
 import com.fusionxpay.common.model.PaymentStatus;
 import com.fusionxpay.payment.model.RefundStatus;
 import com.stripe.Stripe;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.RateLimitException;
 import com.stripe.exception.SignatureVerificationException;
 import com.stripe.exception.StripeException;
+import com.stripe.model.Charge;
 import com.stripe.model.Event;
 import com.stripe.model.PaymentIntent;
 import com.stripe.model.Refund;
 import com.stripe.model.checkout.Session;
+import com.stripe.net.RequestOptions;
 import com.stripe.net.Webhook;
 import com.stripe.param.checkout.SessionCreateParams;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import jakarta.annotation.PostConstruct;
 
@@ -26,6 +34,7 @@ import java.math.BigDecimal;
 import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -53,12 +62,27 @@ public class StripeProvider implements PaymentProvider {
     // Redis configuration for idempotency
     private final RedisTemplate<String, String> redisTemplate;
     private final IdempotencyService idempotencyService;
+    private final PaymentTransactionRepository paymentTransactionRepository;
+    private final ProviderCallExecutor providerCalls;
     private static final String STRIPE_WEBHOOK_EVENT_PREFIX = "stripe:webhook:event:";
     private static final Duration EVENT_TTL = Duration.ofDays(7); // Store events for 7 days
+    private static final Duration PROCESSING_LOCK_TTL = Duration.ofMinutes(5); // Expire locks of crashed handlers
+    // Zero-decimal in ISO 4217, but the Stripe API keeps two decimals for them (whole units times 100)
+    private static final Set<String> STRIPE_TWO_DECIMAL_CURRENCIES = Set.of("ISK", "UGX");
+    private static final Set<String> HANDLED_EVENT_TYPES = Set.of(
+            "payment_intent.succeeded",
+            "payment_intent.payment_failed",
+            "checkout.session.completed",
+            "charge.refunded",
+            "charge.refund.updated");
     
-    public StripeProvider(RedisTemplate<String, String> redisTemplate, IdempotencyService idempotencyService) {
+    public StripeProvider(RedisTemplate<String, String> redisTemplate, IdempotencyService idempotencyService,
+                          PaymentTransactionRepository paymentTransactionRepository,
+                          ProviderCallExecutor providerCalls) {
         this.redisTemplate = redisTemplate;
         this.idempotencyService = idempotencyService;
+        this.paymentTransactionRepository = paymentTransactionRepository;
+        this.providerCalls = providerCalls;
     }
 
     @PostConstruct
@@ -98,7 +122,7 @@ public class StripeProvider implements PaymentProvider {
                     .setClientReferenceId(paymentRequest.getOrderId().toString())
                     .build();
 
-            Session session = Session.create(params);
+            Session session = providerCalls.call("stripe.checkout.sessions.create", () -> Session.create(params));
             
             // Use session.getId() as Stripe's transaction reference
             // Our system's transaction ID will be generated by the database
@@ -116,10 +140,29 @@ public class StripeProvider implements PaymentProvider {
         }
     }
 
+    /**
+     * Amount in the unit the Stripe API expects: the ISO 4217 minor unit, except for the currencies
+     * Stripe gives two decimals although ISO gives them none.
+     */
+    static long toStripeAmount(Money money) {
+        return STRIPE_TWO_DECIMAL_CURRENCIES.contains(money.currency())
+                ? Math.multiplyExact(money.minorUnits(), 100L)
+                : money.minorUnits();
+    }
+
+    static BigDecimal fromStripeAmount(long amount, String currency) {
+        Money money = Money.ofMinor(amount, currency);
+        if (STRIPE_TWO_DECIMAL_CURRENCIES.contains(money.currency())) {
+            // Stripe only takes whole units of these, so the hundredths are always zero
+            return Money.of(BigDecimal.valueOf(amount, 2), currency).toBigDecimal();
+        }
+        return money.toBigDecimal();
+    }
+
     private SessionCreateParams.LineItem createLineItem(PaymentRequest paymentRequest) {
-        // Get amount in smallest currency unit (e.g. cents)
-        long amountInSmallestUnit = paymentRequest.getAmount().multiply(new BigDecimal(100)).longValue();
-        
+        // Stripe takes the smallest currency unit: cents for USD, yen for JPY
+        long amountInSmallestUnit = toStripeAmount(paymentRequest.toMoney());
+
         return SessionCreateParams.LineItem.builder()
                 .setPriceData(
                         SessionCreateParams.LineItem.PriceData.builder()
@@ -162,97 +205,7 @@ public class StripeProvider implements PaymentProvider {
     public PaymentResponse processCallback(String payload, String signature) {
         try {
             Event event = Webhook.constructEvent(payload, signature, webhookSecret);
-            String eventId = event.getId();
-            String eventType = event.getType();
-            log.info("Processing Stripe webhook event: {}, id: {}", eventType, eventId);
-            
-            if (!isHandledWebhookEvent(eventType)) {
-                log.info("Ignoring non-payment status event: {}", eventType);
-                return null;
-            }
-            
-            // Extract orderId based on event type
-            String orderId;
-            try {
-                orderId = extractOrderIdFromEvent(event);
-                if (orderId == null) {
-                    log.warn("Could not extract orderId from event {}", eventId);
-                    return createErrorResponse("Could not extract orderId from event");
-                }
-            } catch (Exception e) {
-                log.error("Error extracting orderId from event: {}", e.getMessage(), e);
-                return createErrorResponse("Error extracting orderId: " + e.getMessage());
-            }
-            
-            IdempotencyContext idempotencyContext = buildIdempotencyContext(eventType, orderId, eventId);
-            String idempotencyKey = idempotencyContext.key();
-            
-            String processingState = idempotencyService.getProcessingState(idempotencyKey);
-            
-            if ("completed".equals(processingState)) {
-                log.info("Stripe {} event already processed for key {}", idempotencyContext.scope(), idempotencyKey);
-                return PaymentResponse.builder()
-                        .status(PaymentStatus.DUPLICATE)
-                        .paymentChannel(getProviderName())
-                        .providerTransactionId(eventId)
-                        .orderId(UUID.fromString(orderId))
-                        .build();
-            }
-            
-            boolean lockAcquired = idempotencyService.acquireProcessingLock(idempotencyKey, EVENT_TTL);
-            
-            if (!lockAcquired) {
-                log.warn("Could not acquire processing lock for Stripe {} key {}", idempotencyContext.scope(), idempotencyKey);
-                return PaymentResponse.builder()
-                        .status(PaymentStatus.PROCESSING)
-                        .paymentChannel(getProviderName())
-                        .providerTransactionId(eventId)
-                        .orderId(UUID.fromString(orderId))
-                        .build();
-            }
-            
-            // We acquired the lock, process the event
-            PaymentResponse response = null;
-            try {
-                // Process the event based on type
-                switch (eventType) {
-                    case "payment_intent.succeeded":
-                        response = handlePaymentSuccess(event);
-                        break;
-                    case "payment_intent.payment_failed":
-                        response = handlePaymentFailure(event);
-                        break;
-                    case "checkout.session.completed":
-                        response = handleCheckoutSessionCompleted(event);
-                        break;
-                    case "charge.refunded":
-                    case "charge.refund.updated":
-                        response = handleRefundEvent(event);
-                        break;
-                    default:
-                        log.info("Unhandled event type: {}", eventType);
-                        response = null;
-                        break;
-                }
-                
-                // Mark as successfully completed if appropriate
-                if (response != null && response.getStatus() != PaymentStatus.FAILED) {
-                    idempotencyService.markAsCompleted(idempotencyKey, EVENT_TTL);
-                } else if (response == null) {
-                    // For events we don't care about, release the lock
-                    idempotencyService.releaseLock(idempotencyKey);
-                } else {
-                    // For failed responses, mark as completed to prevent retries
-                    // (we still consider a failed payment as "completed" processing)
-                    idempotencyService.markAsCompleted(idempotencyKey, EVENT_TTL);
-                }
-                
-                return response;
-            } catch (Exception e) {
-                // On any exception, release the lock
-                idempotencyService.releaseLock(idempotencyKey);
-                throw e;
-            }
+            return processEvent(event);
         } catch (SignatureVerificationException e) {
             log.error("Invalid webhook signature: {}", e.getMessage(), e);
             return createErrorResponse("Invalid webhook signature");
@@ -262,12 +215,142 @@ public class StripeProvider implements PaymentProvider {
         }
     }
 
+    /**
+     * Processes a webhook that passed signature verification at intake. The signature is still
+     * checked, but with timestamp tolerance disabled since the event may have waited in the queue
+     * longer than Stripe's five minute window.
+     */
+    @Override
+    public PaymentResponse processVerifiedCallback(String payload, String signature) {
+        try {
+            Event event = Webhook.constructEvent(payload, signature, webhookSecret, 0);
+            return processEvent(event);
+        } catch (SignatureVerificationException e) {
+            log.error("Invalid webhook signature: {}", e.getMessage(), e);
+            return createErrorResponse("Invalid webhook signature");
+        } catch (Exception e) {
+            log.error("Error processing webhook: {}", e.getMessage(), e);
+            return createErrorResponse("Webhook processing error: " + e.getMessage());
+        }
+    }
+
+    private PaymentResponse processEvent(Event event) {
+        String eventId = event.getId();
+        String eventType = event.getType();
+        log.info("Processing Stripe webhook event: {}, id: {}", eventType, eventId);
+        
+        if (!isHandledWebhookEvent(eventType)) {
+            log.info("Ignoring non-payment status event: {}", eventType);
+            return null;
+        }
+        
+        // Extract orderId based on event type
+        String orderId;
+        try {
+            orderId = extractOrderIdFromEvent(event, new EventLookups());
+            if (orderId == null) {
+                log.warn("Could not extract orderId from event {}", eventId);
+                return createErrorResponse("Could not extract orderId from event");
+            }
+        } catch (Exception e) {
+            log.error("Error extracting orderId from event: {}", e.getMessage(), e);
+            return createErrorResponse("Error extracting orderId: " + e.getMessage());
+        }
+        
+        IdempotencyContext idempotencyContext = buildIdempotencyContext(eventType, orderId, eventId);
+        String idempotencyKey = idempotencyContext.key();
+        
+        // Check and acquire in one round-trip; the owner token keeps a stale handler
+        // from completing or releasing a lock that has since been taken over.
+        String ownerToken = IdempotencyService.newOwnerToken();
+        IdempotencyService.ProcessingState processingState =
+                idempotencyService.checkAndAcquire(idempotencyKey, ownerToken, PROCESSING_LOCK_TTL);
+        
+        if (processingState == IdempotencyService.ProcessingState.COMPLETED) {
+            log.info("Stripe {} event already processed for key {}", idempotencyContext.scope(), idempotencyKey);
+            return PaymentResponse.builder()
+                    .status(PaymentStatus.DUPLICATE)
+                    .paymentChannel(getProviderName())
+                    .providerTransactionId(eventId)
+                    .orderId(UUID.fromString(orderId))
+                    .build();
+        }
+        
+        if (processingState == IdempotencyService.ProcessingState.PROCESSING) {
+            log.warn("Could not acquire processing lock for Stripe {} key {}", idempotencyContext.scope(), idempotencyKey);
+            return PaymentResponse.builder()
+                    .status(PaymentStatus.PROCESSING)
+                    .paymentChannel(getProviderName())
+                    .providerTransactionId(eventId)
+                    .orderId(UUID.fromString(orderId))
+                    .build();
+        }
+        
+        // We acquired the lock, process the event
+        PaymentResponse response = null;
+        try {
+            // Process the event based on type
+            switch (eventType) {
+                case "payment_intent.succeeded":
+                    response = handlePaymentSuccess(event, orderId);
+                    break;
+                case "payment_intent.payment_failed":
+                    response = handlePaymentFailure(event, orderId);
+                    break;
+                case "checkout.session.completed":
+                    response = handleCheckoutSessionCompleted(event, orderId);
+                    break;
+                case "charge.refunded":
+                case "charge.refund.updated":
+                    response = handleRefundEvent(event, orderId);
+                    break;
+                default:
+                    log.info("Unhandled event type: {}", eventType);
+                    response = null;
+                    break;
+            }
+            
+            if (response == null) {
+                // For events we don't care about, release the lock
+                idempotencyService.releaseIfOwner(idempotencyKey, ownerToken);
+            } else {
+                // A failed payment is still completed processing, so FAILED responses complete the key too
+                completeOnCommit(idempotencyKey, ownerToken);
+            }
+
+            return response;
+        } catch (Exception e) {
+            // On any exception, release the lock
+            idempotencyService.releaseIfOwner(idempotencyKey, ownerToken);
+            throw e;
+        }
+    }
+
+    /**
+     * Marks the event key completed once the caller's transaction commits the status change, and
+     * releases it if that transaction rolls back, so a redelivery of an event that was not applied
+     * is processed again instead of being answered as a duplicate. Outside a transaction the key
+     * is completed right away.
+     */
+    private void completeOnCommit(String idempotencyKey, String ownerToken) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            idempotencyService.completeIfOwner(idempotencyKey, ownerToken, EVENT_TTL);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    idempotencyService.completeIfOwner(idempotencyKey, ownerToken, EVENT_TTL);
+                } else {
+                    idempotencyService.releaseIfOwner(idempotencyKey, ownerToken);
+                }
+            }
+        });
+    }
+
     private boolean isHandledWebhookEvent(String eventType) {
-        return eventType.equals("payment_intent.succeeded") ||
-               eventType.equals("payment_intent.payment_failed") ||
-               eventType.equals("checkout.session.completed") ||
-               eventType.equals("charge.refunded") ||
-               eventType.equals("charge.refund.updated");
+        return HANDLED_EVENT_TYPES.contains(eventType);
     }
 
     private boolean isRefundEvent(String eventType) {
@@ -288,107 +371,108 @@ public class StripeProvider implements PaymentProvider {
         );
     }
 
-    // Helper method to extract orderId from different event types
-    private String extractOrderIdFromEvent(Event event) {
+    /**
+     * Resolves the orderId of an event. Event metadata, client_reference_id and the local
+     * providerTransactionId index are tried first; Stripe is only called when all of them miss.
+     */
+    private String extractOrderIdFromEvent(Event event, EventLookups lookups) {
         String eventType = event.getType();
         if (eventType.equals("payment_intent.succeeded") || eventType.equals("payment_intent.payment_failed")) {
             PaymentIntent intent = (PaymentIntent) event.getDataObjectDeserializer().getObject().get();
-            return intent.getMetadata().get("orderId");
+            String orderId = metadataOrderId(intent.getMetadata());
+            return orderId != null ? orderId : localOrderId(intent.getId());
         } else if (eventType.equals("checkout.session.completed")) {
             Session session = (Session) event.getDataObjectDeserializer().getObject().get();
-            if (session.getPaymentIntent() != null) {
-                try {
-                    PaymentIntent intent = PaymentIntent.retrieve(session.getPaymentIntent());
-                    return intent.getMetadata().get("orderId");
-                } catch (StripeException e) {
-                    log.error("Error retrieving payment intent: {}", e.getMessage(), e);
-                    return null;
-                }
-            } else {
-                return session.getClientReferenceId(); // Fallback to client reference ID which should be orderId
-            }
-        } else if (eventType.equals("charge.refunded")) {
-            com.stripe.model.Charge charge = (com.stripe.model.Charge) event.getDataObjectDeserializer().getObject().get();
-            // Try to get orderId from charge metadata
-            if (charge.getMetadata() != null && charge.getMetadata().containsKey("orderId")) {
-                return charge.getMetadata().get("orderId");
+            String orderId = metadataOrderId(session.getMetadata());
+            if (orderId == null && hasText(session.getClientReferenceId())) {
+                orderId = session.getClientReferenceId();
             }
-            // Fallback: try to get from payment intent
-            if (charge.getPaymentIntent() != null) {
-                try {
-                    PaymentIntent intent = PaymentIntent.retrieve(charge.getPaymentIntent());
-                    return intent.getMetadata().get("orderId");
-                } catch (StripeException e) {
-                    log.error("Error retrieving payment intent for refund: {}", e.getMessage(), e);
-                    return null;
-                }
+            if (orderId == null) {
+                orderId = localOrderId(session.getId());
             }
+            return orderId != null ? orderId : orderIdFromPaymentIntent(session.getPaymentIntent(), lookups);
+        } else if (eventType.equals("charge.refunded")) {
+            Charge charge = (Charge) event.getDataObjectDeserializer().getObject().get();
+            return orderIdFromCharge(charge, lookups);
         } else if (eventType.equals("charge.refund.updated")) {
             // For charge.refund.updated, the event payload object is a Refund (not a Charge).
             Refund refund = (Refund) event.getDataObjectDeserializer().getObject().get();
-            String paymentIntentId = refund.getPaymentIntent();
-            if (paymentIntentId != null && !paymentIntentId.isBlank()) {
-                try {
-                    PaymentIntent intent = PaymentIntent.retrieve(paymentIntentId);
-                    return intent.getMetadata().get("orderId");
-                } catch (StripeException e) {
-                    log.error("Error retrieving payment intent for refund update: {}", e.getMessage(), e);
-                    return null;
-                }
+            String orderId = metadataOrderId(refund.getMetadata());
+            if (orderId == null && hasText(refund.getPaymentIntent())) {
+                orderId = orderIdFromPaymentIntent(refund.getPaymentIntent(), lookups);
             }
-
-            // Fallback: try to retrieve charge, then its payment intent.
-            String chargeId = refund.getCharge();
-            if (chargeId != null && !chargeId.isBlank()) {
+            if (orderId == null && hasText(refund.getCharge())) {
+                // Fallback: retrieve the charge, then its payment intent.
                 try {
-                    com.stripe.model.Charge charge = com.stripe.model.Charge.retrieve(chargeId);
-                    if (charge.getMetadata() != null && charge.getMetadata().containsKey("orderId")) {
-                        return charge.getMetadata().get("orderId");
-                    }
-                    if (charge.getPaymentIntent() != null) {
-                        PaymentIntent intent = PaymentIntent.retrieve(charge.getPaymentIntent());
-                        return intent.getMetadata().get("orderId");
-                    }
+                    orderId = orderIdFromCharge(lookups.charge(refund.getCharge()), lookups);
                 } catch (StripeException e) {
-                    log.error("Error retrieving charge/payment intent for refund update: {}", e.getMessage(), e);
-                    return null;
+                    log.error("Error retrieving charge for refund update: {}", e.getMessage(), e);
                 }
             }
+            return orderId;
         }
         return null;
     }
 
+    private String orderIdFromCharge(Charge charge, EventLookups lookups) {
+        String orderId = metadataOrderId(charge.getMetadata());
+        return orderId != null ? orderId : orderIdFromPaymentIntent(charge.getPaymentIntent(), lookups);
+    }
+
+    private String orderIdFromPaymentIntent(String paymentIntentId, EventLookups lookups) {
+        if (!hasText(paymentIntentId)) {
+            return null;
+        }
+        String orderId = localOrderId(paymentIntentId);
+        if (orderId != null) {
+            return orderId;
+        }
+        try {
+            return metadataOrderId(lookups.paymentIntent(paymentIntentId).getMetadata());
+        } catch (StripeException e) {
+            log.error("Error retrieving payment intent {}: {}", paymentIntentId, e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private String metadataOrderId(Map<String, String> metadata) {
+        if (metadata == null) {
+            return null;
+        }
+        String orderId = metadata.get("orderId");
+        return hasText(orderId) ? orderId : null;
+    }
+
+    private String localOrderId(String providerTransactionId) {
+        if (!hasText(providerTransactionId)) {
+            return null;
+        }
+        return paymentTransactionRepository.findOrderIdByProviderTransactionId(providerTransactionId)
+                .map(UUID::toString)
+                .orElse(null);
+    }
+
     // Helper method to handle checkout.session.completed events
-    private PaymentResponse handleCheckoutSessionCompleted(Event event) {
+    private PaymentResponse handleCheckoutSessionCompleted(Event event, String orderId) {
         Session session = (Session) event.getDataObjectDeserializer().getObject().get();
         if (session.getPaymentIntent() != null) {
-            try {
-                PaymentIntent intent = PaymentIntent.retrieve(session.getPaymentIntent());
-                String orderId = intent.getMetadata().get("orderId");
-                
-                return PaymentResponse.builder()
-                        .status(PaymentStatus.SUCCESS)
-                        .orderId(UUID.fromString(orderId))
-                        .paymentChannel(getProviderName())
-                        // Store Stripe PaymentIntent ID so refunds can be issued later.
-                        .providerTransactionId(intent.getId())
-                        .build();
-            } catch (StripeException e) {
-                log.error("Error retrieving payment intent: {}", e.getMessage(), e);
-                return createErrorResponse("Error retrieving payment intent: " + e.getMessage());
-            }
+            return PaymentResponse.builder()
+                    .status(PaymentStatus.SUCCESS)
+                    .orderId(UUID.fromString(orderId))
+                    .paymentChannel(getProviderName())
+                    // Store Stripe PaymentIntent ID so refunds can be issued later.
+                    .providerTransactionId(session.getPaymentIntent())
+                    .build();
         } else {
             log.info("Checkout session completed without PaymentIntent");
             return null;
         }
     }
 
-    private PaymentResponse handlePaymentSuccess(Event event) {
+    private PaymentResponse handlePaymentSuccess(Event event, String orderId) {
         PaymentIntent intent = (PaymentIntent) event.getDataObjectDeserializer().getObject().get();
         log.info("Payment succeeded for intent: {}", intent.getId());
         
-        String orderId = intent.getMetadata().get("orderId");
-        
         return PaymentResponse.builder()
                 .status(PaymentStatus.SUCCESS)
                 .orderId(UUID.fromString(orderId))
@@ -397,11 +481,10 @@ public class StripeProvider implements PaymentProvider {
                 .build();
     }
 
-    private PaymentResponse handlePaymentFailure(Event event) {
+    private PaymentResponse handlePaymentFailure(Event event, String orderId) {
         PaymentIntent intent = (PaymentIntent) event.getDataObjectDeserializer().getObject().get();
         log.info("Payment failed for intent: {}", intent.getId());
 
-        String orderId = intent.getMetadata().get("orderId");
         String errorMessage = intent.getLastPaymentError() != null ?
                 intent.getLastPaymentError().getMessage() : "Payment failed";
 
@@ -419,31 +502,20 @@ public class StripeProvider implements PaymentProvider {
     /**
      * Handles refund events from Stripe webhooks.
      * Updates the transaction status to REFUNDED when a refund is completed.
+     *
+     * @param orderId order resolved by {@link #extractOrderIdFromEvent(Event, EventLookups)}
      */
-    private PaymentResponse handleRefundEvent(Event event) {
+    private PaymentResponse handleRefundEvent(Event event, String orderId) {
         try {
             String eventType = event.getType();
             if ("charge.refunded".equals(eventType)) {
-                com.stripe.model.Charge charge = (com.stripe.model.Charge) event.getDataObjectDeserializer().getObject().get();
+                Charge charge = (Charge) event.getDataObjectDeserializer().getObject().get();
                 String chargeId = charge.getId();
                 String refundStatus = charge.getRefunded() != null && charge.getRefunded() ? "refunded" : "partial_refund";
 
                 log.info("Processing Stripe refund event. ChargeId: {}, Refunded: {}, AmountRefunded: {}",
                         chargeId, charge.getRefunded(), charge.getAmountRefunded());
 
-                // Try to get orderId from charge metadata or payment intent
-                String orderId = null;
-                if (charge.getMetadata() != null && charge.getMetadata().containsKey("orderId")) {
-                    orderId = charge.getMetadata().get("orderId");
-                } else if (charge.getPaymentIntent() != null) {
-                    try {
-                        PaymentIntent intent = PaymentIntent.retrieve(charge.getPaymentIntent());
-                        orderId = intent.getMetadata().get("orderId");
-                    } catch (StripeException e) {
-                        log.error("Error retrieving payment intent for refund: {}", e.getMessage(), e);
-                    }
-                }
-
                 if (orderId == null) {
                     log.warn("Could not determine orderId for refund event. ChargeId: {}", chargeId);
                     return null;
@@ -477,17 +549,7 @@ public class StripeProvider implements PaymentProvider {
                 String refundId = refund.getId();
                 String refundStatus = refund.getStatus();
 
-                // Resolve orderId via payment intent metadata (preferred).
-                String orderId = null;
                 String providerTransactionId = refund.getPaymentIntent();
-                if (providerTransactionId != null && !providerTransactionId.isBlank()) {
-                    try {
-                        PaymentIntent intent = PaymentIntent.retrieve(providerTransactionId);
-                        orderId = intent.getMetadata().get("orderId");
-                    } catch (StripeException e) {
-                        log.error("Error retrieving payment intent for refund update: {}", e.getMessage(), e);
-                    }
-                }
 
                 if (orderId == null) {
                     log.warn("Could not determine orderId for refund update event. RefundId: {}", refundId);
@@ -540,6 +602,11 @@ public class StripeProvider implements PaymentProvider {
         return "STRIPE";
     }
 
+    @Override
+    public String callbackEventType(String payload) {
+        return WebhookEventTypes.of(payload, "type", HANDLED_EVENT_TYPES);
+    }
+
     /**
      * Processes a refund for a Stripe payment.
      *
@@ -548,14 +615,12 @@ public class StripeProvider implements PaymentProvider {
      */
     @Override
     public RefundResponse processRefund(ProviderRefundRequest refundRequest) {
-        if (refundRequest.getCurrency() != null) {
-            log.debug("Ignoring refund currency {} for Stripe payment intent {}; Stripe derives currency from the PaymentIntent",
-                    refundRequest.getCurrency(), refundRequest.getProviderTransactionId());
-        }
         return processRefund(
                 refundRequest.getProviderTransactionId(),
                 refundRequest.getAmount(),
-                refundRequest.getReason()
+                refundRequest.getCurrency(),
+                refundRequest.getReason(),
+                refundRequest.getIdempotencyKey()
         );
     }
 
@@ -564,20 +629,32 @@ public class StripeProvider implements PaymentProvider {
      *
      * @param paymentIntentId the Stripe PaymentIntent ID
      * @param amount the amount to refund in the original currency (null for full refund)
+     * @param currency currency of the payment; Stripe derives it from the PaymentIntent, but a partial
+     *                 amount needs it for the conversion to minor units
      * @param reason the reason for the refund
+     * @param idempotencyKey Stripe idempotency key, or null
      * @return refund response with refund details
      */
-    private RefundResponse processRefund(String paymentIntentId, BigDecimal amount, String reason) {
+    private RefundResponse processRefund(String paymentIntentId, BigDecimal amount, String currency, String reason,
+                                         String idempotencyKey) {
         log.info("Processing Stripe refund for PaymentIntent: {}", paymentIntentId);
 
+        if (amount != null && currency == null) {
+            return RefundResponse.builder()
+                    .status(RefundStatus.FAILED)
+                    .paymentChannel(getProviderName())
+                    .errorMessage("Stripe refund failed: a partial refund needs the payment currency")
+                    .createdAt(java.time.LocalDateTime.now())
+                    .build();
+        }
+
         try {
             com.stripe.param.RefundCreateParams.Builder paramsBuilder = com.stripe.param.RefundCreateParams.builder()
                     .setPaymentIntent(paymentIntentId);
 
             // If amount is specified, it's a partial refund (convert to smallest unit)
             if (amount != null) {
-                long amountInSmallestUnit = amount.multiply(new BigDecimal(100)).longValue();
-                paramsBuilder.setAmount(amountInSmallestUnit);
+                paramsBuilder.setAmount(toStripeAmount(Money.of(amount, currency)));
             }
 
             // Set refund reason if provided
@@ -589,7 +666,11 @@ public class StripeProvider implements PaymentProvider {
                 }
             }
 
-            com.stripe.model.Refund refund = com.stripe.model.Refund.create(paramsBuilder.build());
+            com.stripe.param.RefundCreateParams refundParams = paramsBuilder.build();
+            com.stripe.model.Refund refund = providerCalls.call("stripe.refunds.create", () -> idempotencyKey != null
+                    ? com.stripe.model.Refund.create(refundParams,
+                            RequestOptions.builder().setIdempotencyKey(idempotencyKey).build())
+                    : com.stripe.model.Refund.create(refundParams));
 
             log.info("Stripe refund processed. PaymentIntentId: {}, RefundId: {}, Status: {}",
                     paymentIntentId, refund.getId(), refund.getStatus());
@@ -598,7 +679,7 @@ public class StripeProvider implements PaymentProvider {
                     .refundId(UUID.randomUUID().toString())
                     .providerRefundId(refund.getId())
                     .status(mapStripeRefundStatus(refund.getStatus()))
-                    .amount(amount != null ? amount : new BigDecimal(refund.getAmount()).divide(new BigDecimal(100)))
+                    .amount(amount != null ? amount : fromStripeAmount(refund.getAmount(), refund.getCurrency()))
                     .currency(refund.getCurrency().toUpperCase())
                     .paymentChannel(getProviderName())
                     .createdAt(java.time.LocalDateTime.now())
@@ -610,10 +691,28 @@ public class StripeProvider implements PaymentProvider {
                     .status(RefundStatus.FAILED)
                     .paymentChannel(getProviderName())
                     .errorMessage("Stripe refund failed: " + e.getMessage())
+                    .retryable(isTransient(e))
+                    .build();
+        } catch (ProviderDeadlineExceededException e) {
+            log.error("Stripe refund for PaymentIntent {} did not finish before the deadline", paymentIntentId);
+            return RefundResponse.builder()
+                    .status(RefundStatus.FAILED)
+                    .paymentChannel(getProviderName())
+                    .errorMessage("Stripe refund failed: " + e.getMessage())
+                    .retryable(true)
                     .build();
         }
     }
 
+    /**
+     * Connection failures, rate limiting and Stripe 5xx responses are worth retrying.
+     */
+    private boolean isTransient(StripeException e) {
+        return e instanceof ApiConnectionException
+                || e instanceof RateLimitException
+                || (e.getStatusCode() != null && e.getStatusCode() >= 500);
+    }
+
     /**
      * Maps a string reason to Stripe's RefundCreateParams.Reason enum.
      */
@@ -667,4 +766,31 @@ public class StripeProvider implements PaymentProvider {
 
     private record IdempotencyContext(String key, String scope) {
     }
+
+    /**
+     * Stripe objects fetched while processing a single event, so each one is retrieved at most once.
+     */
+    private final class EventLookups {
+
+        private final Map<String, PaymentIntent> paymentIntents = new HashMap<>();
+        private final Map<String, Charge> charges = new HashMap<>();
+
+        PaymentIntent paymentIntent(String paymentIntentId) throws StripeException {
+            PaymentIntent intent = paymentIntents.get(paymentIntentId);
+            if (intent == null) {
+                intent = providerCalls.call("stripe.payment_intents.retrieve", () -> PaymentIntent.retrieve(paymentIntentId));
+                paymentIntents.put(paymentIntentId, intent);
+            }
+            return intent;
+        }
+
+        Charge charge(String chargeId) throws StripeException {
+            Charge charge = charges.get(chargeId);
+            if (charge == null) {
+                charge = providerCalls.call("stripe.charges.retrieve", () -> Charge.retrieve(chargeId));
+                charges.put(chargeId, charge);
+            }
+            return charge;
+        }
+    }
 }
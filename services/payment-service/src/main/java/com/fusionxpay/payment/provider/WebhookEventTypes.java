@@ -0,0 +1,50 @@
+package com.fusionxpay.payment.provider;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Reads the event type of a webhook payload for metric tags, without building a JSON tree.
+ * Payloads are read before their signature is checked, so only types from the provider's known
+ * set are returned as they are; anything else becomes "other".
+ */
+final class WebhookEventTypes {
+
+    static final String OTHER = "other";
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private WebhookEventTypes() {
+    }
+
+    /**
+     * @param field top-level field holding the event type
+     * @param known event types that may be used as a tag value
+     */
+    static String of(String payload, String field, Set<String> known) {
+        if (payload == null) {
+            return OTHER;
+        }
+        try (JsonParser parser = JSON.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return OTHER;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (field.equals(name)) {
+                    String type = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    return type != null && known.contains(type) ? type : OTHER;
+                }
+                parser.skipChildren();
+            }
+        } catch (IOException e) {
+            // Malformed payloads are rejected by the provider; the tag just says other
+        }
+        return OTHER;
+    }
+}
@@ -0,0 +1,49 @@
+package com.fusionxpay.payment.repository;
+
+import com.fusionxpay.payment.model.ArchivedPaymentTransaction;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface ArchivedPaymentTransactionRepository extends JpaRepository<ArchivedPaymentTransaction, UUID> {
+    Optional<ArchivedPaymentTransaction> findByOrderIdAndMerchantId(UUID orderId, Long merchantId);
+    List<ArchivedPaymentTransaction> findByOrderIdInAndMerchantIdAndStatusIn(
+            Collection<UUID> orderIds, Long merchantId, Collection<String> statuses);
+    Optional<ArchivedPaymentTransaction> findFirstByOrderIdOrderByCreatedAtDesc(UUID orderId);
+    Optional<ArchivedPaymentTransaction> findFirstByProviderTransactionIdOrderByCreatedAtDesc(String providerTransactionId);
+
+    /**
+     * Second half of moving a transaction back to payment_transactions, after
+     * {@link PaymentTransactionRepository#restoreFromArchive}. Native because the entity is immutable.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "DELETE FROM payment_transactions_archive WHERE transaction_id = :transactionId", nativeQuery = true)
+    int deleteArchived(@Param("transactionId") UUID transactionId);
+
+    /**
+     * Archive search, newest first; served by idx_payment_transactions_archive_merchant_created.
+     * Bounds are required, pass {@link PaymentTransactionRepository#UNBOUNDED_FROM} and
+     * {@link PaymentTransactionRepository#UNBOUNDED_TO} for an open range.
+     */
+    @Query("SELECT apt FROM ArchivedPaymentTransaction apt WHERE " +
+            "apt.merchantId = :merchantId AND " +
+            "(:status IS NULL OR apt.status = :status) AND " +
+            "apt.createdAt >= :fromTime AND apt.createdAt <= :toTime")
+    Page<ArchivedPaymentTransaction> findWithFilters(
+            @Param("merchantId") Long merchantId,
+            @Param("status") String status,
+            @Param("fromTime") LocalDateTime fromTime,
+            @Param("toTime") LocalDateTime toTime,
+            Pageable pageable);
+}
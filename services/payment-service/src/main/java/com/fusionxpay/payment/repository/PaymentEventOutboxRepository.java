@@ -0,0 +1,41 @@
+package com.fusionxpay.payment.repository;
+
+import com.fusionxpay.payment.model.PaymentEventOutbox;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface PaymentEventOutboxRepository extends JpaRepository<PaymentEventOutbox, Long> {
+
+    /**
+     * Locks the oldest events that are due, at most one per order: an event is only returned
+     * once every earlier event of its order is published or dead-lettered. Rows already locked
+     * by another relay instance are skipped (lock timeout -2 maps to SKIP LOCKED).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("""
+            SELECT o FROM PaymentEventOutbox o
+            WHERE o.publishedAt IS NULL AND o.deadLetteredAt IS NULL
+              AND (o.nextAttemptAt IS NULL OR o.nextAttemptAt <= :now)
+              AND NOT EXISTS (SELECT p.id FROM PaymentEventOutbox p
+                              WHERE p.orderId = o.orderId AND p.id < o.id
+                                AND p.publishedAt IS NULL AND p.deadLetteredAt IS NULL)
+            ORDER BY o.id ASC""")
+    List<PaymentEventOutbox> lockPendingBatch(@Param("now") LocalDateTime now, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM PaymentEventOutbox o WHERE o.publishedAt IS NOT NULL AND o.publishedAt < :cutoff")
+    int deletePublishedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -1,33 +1,186 @@
 package com.fusionxpay.payment.repository;
 
+import com.fusionxpay.payment.dto.PaymentExportRow;
+import com.fusionxpay.payment.dto.ReconciliationRecord;
 import com.fusionxpay.payment.model.PaymentTransaction;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
+/**
+ * payment_transactions is RANGE partitioned by month on created_at (mysql-init/13). The search
+ * queries take their time bounds as plain range predicates so MySQL can prune partitions; callers
+ * without a bound pass {@link #UNBOUNDED_FROM} or {@link #UNBOUNDED_TO}.
+ */
 @Repository
 public interface PaymentTransactionRepository extends JpaRepository<PaymentTransaction, UUID> {
+
+    LocalDateTime UNBOUNDED_FROM = LocalDateTime.of(1970, 1, 1, 0, 0);
+    LocalDateTime UNBOUNDED_TO = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
     Optional<PaymentTransaction> findByOrderId(UUID orderId);
     Optional<PaymentTransaction> findByOrderIdAndMerchantId(UUID orderId, Long merchantId);
+    List<PaymentTransaction> findByOrderIdInAndMerchantId(Collection<UUID> orderIds, Long merchantId);
+    List<PaymentTransaction> findByTransactionIdInAndMerchantId(Collection<UUID> transactionIds, Long merchantId);
     Optional<PaymentTransaction> findByTransactionIdAndMerchantId(UUID transactionId, Long merchantId);
     Optional<PaymentTransaction> findByProviderTransactionId(String providerTransactionId);
 
+    /**
+     * Resolves an order from a provider reference (Stripe session or PaymentIntent id) without
+     * loading the transaction; served by idx_payment_transactions_provider_tx.
+     */
+    @Query("SELECT pt.orderId FROM PaymentTransaction pt WHERE pt.providerTransactionId = :providerTransactionId")
+    Optional<UUID> findOrderIdByProviderTransactionId(@Param("providerTransactionId") String providerTransactionId);
+
+    /**
+     * Moves a transaction to a new status in one conditional UPDATE, provided it is still at the
+     * version it was read at and in one of the given statuses. Null channel or provider reference
+     * leave the stored value unchanged.
+     *
+     * @return 1 if the row was updated, 0 if it changed in the meantime
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE PaymentTransaction pt SET pt.status = :status, " +
+            "pt.paymentChannel = COALESCE(:paymentChannel, pt.paymentChannel), " +
+            "pt.providerTransactionId = COALESCE(:providerTransactionId, pt.providerTransactionId), " +
+            "pt.version = pt.version + 1, pt.updatedAt = :updatedAt " +
+            "WHERE pt.transactionId = :transactionId AND pt.version = :version AND pt.status IN :fromStatuses")
+    int transitionStatus(
+            @Param("transactionId") UUID transactionId,
+            @Param("version") long version,
+            @Param("fromStatuses") Collection<String> fromStatuses,
+            @Param("status") String status,
+            @Param("paymentChannel") String paymentChannel,
+            @Param("providerTransactionId") String providerTransactionId,
+            @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * Copies an archived transaction back, unchanged, so a late webhook can update it; the archival
+     * job moves it out again once it is old and closed. INSERT IGNORE turns a concurrent restore of
+     * the same row into a no-op.
+     *
+     * @return 1 if the row was copied, 0 if it is already in payment_transactions or not archived
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "INSERT IGNORE INTO payment_transactions (transaction_id, order_id, merchant_id, amount, currency, " +
+            "payment_channel, status, provider_transaction_id, version, created_at, updated_at) " +
+            "SELECT transaction_id, order_id, merchant_id, amount, currency, payment_channel, status, " +
+            "provider_transaction_id, version, created_at, updated_at " +
+            "FROM payment_transactions_archive WHERE transaction_id = :transactionId", nativeQuery = true)
+    int restoreFromArchive(@Param("transactionId") UUID transactionId);
+
     @Query("SELECT pt FROM PaymentTransaction pt WHERE " +
             "pt.merchantId = :merchantId AND " +
             "(:status IS NULL OR pt.status = :status) AND " +
-            "(:fromTime IS NULL OR pt.createdAt >= :fromTime) AND " +
-            "(:toTime IS NULL OR pt.createdAt <= :toTime)")
+            "pt.createdAt >= :fromTime AND pt.createdAt <= :toTime")
     Page<PaymentTransaction> findWithFilters(
             @Param("merchantId") Long merchantId,
             @Param("status") String status,
             @Param("fromTime") LocalDateTime fromTime,
             @Param("toTime") LocalDateTime toTime,
             Pageable pageable);
+
+    /**
+     * First page of a keyset search, newest first; served by idx_payment_transactions_merchant_created.
+     */
+    @Query("SELECT pt FROM PaymentTransaction pt WHERE " +
+            "pt.merchantId = :merchantId AND " +
+            "(:status IS NULL OR pt.status = :status) AND " +
+            "pt.createdAt >= :fromTime AND pt.createdAt <= :toTime " +
+            "ORDER BY pt.createdAt DESC, pt.transactionId DESC")
+    List<PaymentTransaction> findFirstByKeyset(
+            @Param("merchantId") Long merchantId,
+            @Param("status") String status,
+            @Param("fromTime") LocalDateTime fromTime,
+            @Param("toTime") LocalDateTime toTime,
+            Limit limit);
+
+    /**
+     * Next page of a keyset search: rows strictly after the (createdAt, transactionId) of the
+     * last row already returned, so the cost does not grow with the page depth.
+     */
+    @Query("SELECT pt FROM PaymentTransaction pt WHERE " +
+            "pt.merchantId = :merchantId AND " +
+            "(:status IS NULL OR pt.status = :status) AND " +
+            "pt.createdAt >= :fromTime AND pt.createdAt <= :toTime AND " +
+            "(pt.createdAt < :afterCreatedAt OR " +
+            "(pt.createdAt = :afterCreatedAt AND pt.transactionId < :afterTransactionId)) " +
+            "ORDER BY pt.createdAt DESC, pt.transactionId DESC")
+    List<PaymentTransaction> findNextByKeyset(
+            @Param("merchantId") Long merchantId,
+            @Param("status") String status,
+            @Param("fromTime") LocalDateTime fromTime,
+            @Param("toTime") LocalDateTime toTime,
+            @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+            @Param("afterTransactionId") UUID afterTransactionId,
+            Limit limit);
+
+    @Query("SELECT COUNT(pt) FROM PaymentTransaction pt WHERE " +
+            "pt.merchantId = :merchantId AND " +
+            "(:status IS NULL OR pt.status = :status) AND " +
+            "pt.createdAt >= :fromTime AND pt.createdAt <= :toTime")
+    long countWithFilters(
+            @Param("merchantId") Long merchantId,
+            @Param("status") String status,
+            @Param("fromTime") LocalDateTime fromTime,
+            @Param("toTime") LocalDateTime toTime);
+
+    /**
+     * Streams one channel's transactions with a provider reference for reconciliation.
+     * Rows are unmanaged projections and the MySQL driver streams them row by row (fetch size
+     * Integer.MIN_VALUE), so neither the persistence context nor the driver buffers the result.
+     * Must be consumed inside a transaction and closed.
+     */
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.fetchSize", value = "-2147483648"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    @Query("SELECT new com.fusionxpay.payment.dto.ReconciliationRecord(" +
+            "pt.providerTransactionId, pt.transactionId, pt.amount, pt.currency, pt.status, pt.createdAt) " +
+            "FROM PaymentTransaction pt WHERE " +
+            "pt.paymentChannel = :channel AND " +
+            "pt.providerTransactionId IS NOT NULL AND " +
+            "pt.createdAt >= :fromTime AND pt.createdAt <= :toTime")
+    Stream<ReconciliationRecord> streamForReconciliation(
+            @Param("channel") String channel,
+            @Param("fromTime") LocalDateTime fromTime,
+            @Param("toTime") LocalDateTime toTime);
+
+    /**
+     * Streams a merchant's transactions oldest first for export, read the same way as
+     * {@link #streamForReconciliation}: unmanaged projections, streamed row by row by the driver.
+     * Served by idx_payment_transactions_merchant_created. Must be consumed inside a transaction
+     * and closed.
+     */
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.fetchSize", value = "-2147483648"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    @Query("SELECT new com.fusionxpay.payment.dto.PaymentExportRow(" +
+            "pt.transactionId, pt.orderId, pt.amount, pt.currency, pt.paymentChannel, pt.status, " +
+            "pt.providerTransactionId, pt.createdAt, pt.updatedAt) " +
+            "FROM PaymentTransaction pt WHERE " +
+            "pt.merchantId = :merchantId AND " +
+            "(:status IS NULL OR pt.status = :status) AND " +
+            "pt.createdAt >= :fromTime AND pt.createdAt <= :toTime " +
+            "ORDER BY pt.createdAt, pt.transactionId")
+    Stream<PaymentExportRow> streamForExport(
+            @Param("merchantId") Long merchantId,
+            @Param("status") String status,
+            @Param("fromTime") LocalDateTime fromTime,
+            @Param("toTime") LocalDateTime toTime);
 }
@@ -0,0 +1,13 @@
+package com.fusionxpay.payment.repository;
+
+import com.fusionxpay.payment.model.ReconciliationMismatch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ReconciliationMismatchRepository extends JpaRepository<ReconciliationMismatch, UUID> {
+    List<ReconciliationMismatch> findByRunId(UUID runId);
+}
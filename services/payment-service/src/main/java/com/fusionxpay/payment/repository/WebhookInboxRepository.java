@@ -0,0 +1,50 @@
+package com.fusionxpay.payment.repository;
+
+import com.fusionxpay.payment.model.WebhookInboxEvent;
+import com.fusionxpay.payment.model.WebhookInboxStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface WebhookInboxRepository extends JpaRepository<WebhookInboxEvent, Long> {
+
+    /**
+     * Locks the oldest received events that are due, skipping rows claimed by another instance.
+     * An event is only returned once no earlier event with its partition key is still received
+     * or dispatched, so a retried event keeps the later events of its order waiting.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("""
+            SELECT w FROM WebhookInboxEvent w
+            WHERE w.status = com.fusionxpay.payment.model.WebhookInboxStatus.RECEIVED
+              AND (w.nextAttemptAt IS NULL OR w.nextAttemptAt <= :now)
+              AND NOT EXISTS (SELECT e.id FROM WebhookInboxEvent e
+                              WHERE e.partitionKey = w.partitionKey AND e.id < w.id
+                                AND e.status IN (com.fusionxpay.payment.model.WebhookInboxStatus.RECEIVED,
+                                                 com.fusionxpay.payment.model.WebhookInboxStatus.DISPATCHED))
+            ORDER BY w.id ASC""")
+    List<WebhookInboxEvent> lockReceivedBatch(@Param("now") LocalDateTime now, Pageable pageable);
+
+    long countByStatusIn(Collection<WebhookInboxStatus> statuses);
+
+    /**
+     * Returns events stuck in DISPATCHED (e.g. the worker instance died) to the queue.
+     */
+    @Modifying
+    @Query("UPDATE WebhookInboxEvent w SET w.status = com.fusionxpay.payment.model.WebhookInboxStatus.RECEIVED " +
+            "WHERE w.status = com.fusionxpay.payment.model.WebhookInboxStatus.DISPATCHED AND w.dispatchedAt < :cutoff")
+    int requeueDispatchedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,82 @@
+package com.fusionxpay.payment.service;
+
+import com.fusionxpay.payment.dto.BulkRefundJobResponse;
+import com.fusionxpay.payment.dto.RefundResponse;
+import com.fusionxpay.payment.model.RefundStatus;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * In-flight state of a bulk refund. Worker threads record results as refunds finish and
+ * pollers read consistent-enough snapshots without locking.
+ */
+final class BulkRefundJob {
+
+    private final UUID jobId = UUID.randomUUID();
+    private final Long merchantId;
+    private final LocalDateTime createdAt = LocalDateTime.now();
+    private final AtomicReferenceArray<RefundResponse> results;
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private volatile LocalDateTime completedAt;
+
+    BulkRefundJob(Long merchantId, int size) {
+        this.merchantId = merchantId;
+        this.results = new AtomicReferenceArray<>(size);
+        if (size == 0) {
+            completedAt = createdAt;
+        }
+    }
+
+    UUID getJobId() {
+        return jobId;
+    }
+
+    Long getMerchantId() {
+        return merchantId;
+    }
+
+    /**
+     * Records the result of one refund; later results for the same index are ignored.
+     */
+    void complete(int index, RefundResponse response) {
+        if (!results.compareAndSet(index, null, response)) {
+            return;
+        }
+        if (response.getStatus() != RefundStatus.FAILED) {
+            succeeded.incrementAndGet();
+        }
+        if (completed.incrementAndGet() == results.length()) {
+            completedAt = LocalDateTime.now();
+        }
+    }
+
+    boolean isCompleted() {
+        return completedAt != null;
+    }
+
+    BulkRefundJobResponse snapshot() {
+        List<RefundResponse> snapshot = new ArrayList<>(results.length());
+        for (int i = 0; i < results.length(); i++) {
+            snapshot.add(results.get(i));
+        }
+        int done = completed.get();
+        int ok = succeeded.get();
+        return BulkRefundJobResponse.builder()
+                .jobId(jobId)
+                .status(isCompleted() ? BulkRefundJobResponse.Status.COMPLETED : BulkRefundJobResponse.Status.RUNNING)
+                .total(results.length())
+                .completed(done)
+                .succeeded(ok)
+                .failed(done - ok)
+                .results(snapshot)
+                .createdAt(createdAt)
+                .completedAt(completedAt)
+                .build();
+    }
+}
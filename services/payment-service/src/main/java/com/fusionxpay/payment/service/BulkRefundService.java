@@ -0,0 +1,224 @@
+package com.fusionxpay.payment.service;
+
+import com.fusionxpay.payment.dto.BulkRefundJobResponse;
+import com.fusionxpay.payment.dto.RefundRequest;
+import com.fusionxpay.payment.dto.RefundResponse;
+import com.fusionxpay.payment.model.PaymentTransaction;
+import com.fusionxpay.payment.model.RefundStatus;
+import com.fusionxpay.payment.provider.PaymentProvider;
+import com.fusionxpay.payment.provider.PaymentProviderFactory;
+import com.fusionxpay.payment.provider.ProviderRefundRequest;
+import com.fusionxpay.payment.repository.PaymentTransactionRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Runs refunds for many transactions as a background job.
+ * Targets are loaded with one query and grouped by payment channel. Each provider has its own
+ * concurrency cap shared by all jobs, so a mass refund cannot exceed a provider's rate limit.
+ * Transient provider failures are retried with backoff under the same idempotency key.
+ * Jobs are kept in memory on the instance that accepted them until payment.bulk-refund.job-retention.
+ */
+@Service
+@Slf4j
+public class BulkRefundService {
+
+    private final PaymentTransactionRepository paymentTransactionRepository;
+    private final PaymentProviderFactory paymentProviderFactory;
+    private final Cache<UUID, BulkRefundJob> jobs;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, Semaphore> providerPermits = new ConcurrentHashMap<>();
+
+    @Value("${payment.bulk-refund.max-size:500}")
+    private int maxSize = 500;
+
+    @Value("${payment.bulk-refund.concurrency.stripe:8}")
+    private int stripeConcurrency = 8;
+
+    @Value("${payment.bulk-refund.concurrency.paypal:4}")
+    private int payPalConcurrency = 4;
+
+    @Value("${payment.bulk-refund.retry.max-attempts:3}")
+    private int maxAttempts = 3;
+
+    @Value("${payment.bulk-refund.retry.backoff:200ms}")
+    private Duration retryBackoff = Duration.ofMillis(200);
+
+    public BulkRefundService(PaymentTransactionRepository paymentTransactionRepository,
+                             PaymentProviderFactory paymentProviderFactory,
+                             @Value("${payment.bulk-refund.job-retention:1h}") Duration jobRetention) {
+        this.paymentTransactionRepository = paymentTransactionRepository;
+        this.paymentProviderFactory = paymentProviderFactory;
+        this.jobs = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(jobRetention)
+                .build();
+    }
+
+    /**
+     * Validates the refunds, starts the provider calls and returns the job right away.
+     *
+     * @param merchantId the authenticated merchant
+     * @param refundRequests the refunds to process
+     * @return the initial job state; items rejected up front are already completed
+     */
+    public BulkRefundJobResponse submit(Long merchantId, List<RefundRequest> refundRequests) {
+        if (refundRequests.size() > maxSize) {
+            throw new IllegalArgumentException("A bulk refund may contain at most " + maxSize + " refunds");
+        }
+
+        BulkRefundJob job = new BulkRefundJob(merchantId, refundRequests.size());
+        log.info("Starting bulk refund job {} with {} refunds for merchant {}",
+                job.getJobId(), refundRequests.size(), merchantId);
+
+        Map<UUID, Integer> indexByTransaction = new LinkedHashMap<>();
+        for (int i = 0; i < refundRequests.size(); i++) {
+            String rawId = refundRequests.get(i).getTransactionId();
+            UUID transactionId;
+            try {
+                transactionId = UUID.fromString(rawId);
+            } catch (IllegalArgumentException e) {
+                job.complete(i, failed(rawId, "Invalid transaction ID format"));
+                continue;
+            }
+            if (indexByTransaction.putIfAbsent(transactionId, i) != null) {
+                job.complete(i, failed(rawId, "Duplicate transaction in bulk refund"));
+            }
+        }
+
+        Map<UUID, PaymentTransaction> transactions = indexByTransaction.isEmpty()
+                ? Map.of()
+                : paymentTransactionRepository.findByTransactionIdInAndMerchantId(indexByTransaction.keySet(), merchantId)
+                        .stream()
+                        .collect(Collectors.toMap(PaymentTransaction::getTransactionId, Function.identity()));
+
+        Map<String, List<RefundItem>> byChannel = new HashMap<>();
+        indexByTransaction.forEach((transactionId, index) -> {
+            PaymentTransaction transaction = transactions.get(transactionId);
+            if (transaction == null) {
+                job.complete(index, failed(transactionId.toString(), "Transaction not found"));
+                return;
+            }
+            RefundResponse rejection = PaymentService.checkRefundable(refundRequests.get(index), transaction);
+            if (rejection != null) {
+                job.complete(index, rejection);
+                return;
+            }
+            ProviderRefundRequest providerRequest =
+                    PaymentService.buildProviderRefundRequest(refundRequests.get(index), transaction);
+            providerRequest.setIdempotencyKey("refund-" + job.getJobId() + "-" + index);
+            byChannel.computeIfAbsent(transaction.getPaymentChannel(), channel -> new ArrayList<>())
+                    .add(new RefundItem(index, transactionId, providerRequest));
+        });
+
+        jobs.put(job.getJobId(), job);
+        byChannel.forEach((channel, items) -> dispatch(job, channel, items));
+        return job.snapshot();
+    }
+
+    /**
+     * @throws ResponseStatusException 404 if the job does not exist, has expired or belongs to another merchant
+     */
+    public BulkRefundJobResponse getJob(Long merchantId, UUID jobId) {
+        BulkRefundJob job = jobs.getIfPresent(jobId);
+        if (job == null || !job.getMerchantId().equals(merchantId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Bulk refund job not found");
+        }
+        return job.snapshot();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void dispatch(BulkRefundJob job, String channel, List<RefundItem> items) {
+        PaymentProvider provider;
+        try {
+            provider = paymentProviderFactory.getProvider(channel);
+        } catch (IllegalArgumentException e) {
+            log.error("Unsupported payment channel for refund: {}", channel, e);
+            items.forEach(item -> job.complete(item.index(),
+                    failed(item.transactionId().toString(), "Unsupported payment channel: " + channel)));
+            return;
+        }
+
+        Semaphore permits = providerPermits.computeIfAbsent(provider.getProviderName(), this::newPermits);
+        log.info("Dispatching {} {} refunds for job {}", items.size(), channel, job.getJobId());
+        for (RefundItem item : items) {
+            executor.submit(() -> job.complete(item.index(), refundWithRetry(provider, permits, item)));
+        }
+    }
+
+    private RefundResponse refundWithRetry(PaymentProvider provider, Semaphore permits, RefundItem item) {
+        long backoffMillis = retryBackoff.toMillis();
+        for (int attempt = 1; ; attempt++) {
+            RefundResponse response;
+            try {
+                permits.acquire();
+                try {
+                    response = provider.processRefund(item.providerRequest());
+                } finally {
+                    permits.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return failed(item.transactionId().toString(), "Refund processing interrupted");
+            } catch (Exception e) {
+                log.error("Error processing refund for transaction {}: {}", item.transactionId(), e.getMessage(), e);
+                return failed(item.transactionId().toString(), "Refund processing failed: " + e.getMessage());
+            }
+
+            response.setTransactionId(item.transactionId().toString());
+            if (response.getStatus() != RefundStatus.FAILED || !response.isRetryable() || attempt >= maxAttempts) {
+                return response;
+            }
+
+            log.warn("Refund for transaction {} failed on attempt {}, retrying in {}ms: {}",
+                    item.transactionId(), attempt, backoffMillis, response.getErrorMessage());
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return response;
+            }
+            backoffMillis *= 2;
+        }
+    }
+
+    private Semaphore newPermits(String providerName) {
+        int permits = "PAYPAL".equals(providerName) ? payPalConcurrency : stripeConcurrency;
+        return new Semaphore(Math.max(1, permits));
+    }
+
+    private static RefundResponse failed(String transactionId, String errorMessage) {
+        return RefundResponse.builder()
+                .status(RefundStatus.FAILED)
+                .transactionId(transactionId)
+                .errorMessage(errorMessage)
+                .build();
+    }
+
+    private record RefundItem(int index, UUID transactionId, ProviderRefundRequest providerRequest) {
+    }
+}
@@ -1,25 +1,224 @@
 package com.fusionxpay.payment.service;
 
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.RedisConnectionFailureException;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Recover;
 import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
 
 /**
- * Service for handling distributed idempotency
+ * Service for handling distributed idempotency.
+ * Keys known to be completed are also kept in a bounded local cache, so provider
+ * retries of already processed events are answered without a Redis round-trip.
+ * Each operation is timed as {@value #OPERATION_METRIC}, tagged with its result; a result of
+ * near_cache means Redis was not called.
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class IdempotencyService {
 
+    /**
+     * Outcome of {@link #checkAndAcquire(String, String, Duration)}.
+     */
+    public enum ProcessingState {
+        /** Key was absent and is now locked by the caller. */
+        NEW,
+        /** Another caller holds the lock. */
+        PROCESSING,
+        /** The event has already been processed. */
+        COMPLETED
+    }
+
+    static final String OPERATION_METRIC = "payment.idempotency.operation";
+
+    private static final String PROCESSING_PREFIX = "processing:";
+
+    // KEYS[1] = idempotency key, ARGV[1] = owner value, ARGV[2] = lock ttl in ms
+    private static final RedisScript<String> CHECK_AND_ACQUIRE_SCRIPT = RedisScript.of("""
+            local current = redis.call('GET', KEYS[1])
+            if not current then
+                redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])
+                return 'NEW'
+            end
+            if current == 'completed' then
+                return 'COMPLETED'
+            end
+            return 'PROCESSING'
+            """, String.class);
+
+    // KEYS[1] = idempotency key, ARGV[1] = owner value, ARGV[2] = completed ttl in ms
+    private static final RedisScript<Long> COMPLETE_IF_OWNER_SCRIPT = RedisScript.of("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                redis.call('SET', KEYS[1], 'completed', 'PX', ARGV[2])
+                return 1
+            end
+            return 0
+            """, Long.class);
+
+    // KEYS[1] = idempotency key, ARGV[1] = owner value
+    private static final RedisScript<Long> RELEASE_IF_OWNER_SCRIPT = RedisScript.of("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private static final String NEAR_CACHE_NAME = "idempotency.completed";
+
     private final RedisTemplate<String, String> redisTemplate;
+    private final MeterRegistry meterRegistry;
+    // key -> Redis ttl in nanos when cached; see CompletedKeyExpiry
+    private final Cache<String, Long> completedKeys;
+
+    public IdempotencyService(RedisTemplate<String, String> redisTemplate,
+                              MeterRegistry meterRegistry,
+                              @Value("${payment.idempotency.near-cache.maximum-size:100000}") long nearCacheSize,
+                              @Value("${payment.idempotency.near-cache.max-ttl:1h}") Duration nearCacheMaxTtl) {
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.completedKeys = Caffeine.newBuilder()
+                .maximumSize(nearCacheSize)
+                .expireAfter(new CompletedKeyExpiry(nearCacheMaxTtl))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, completedKeys, NEAR_CACHE_NAME);
+    }
+
+    /**
+     * Creates a token identifying the caller as owner of a processing lock.
+     */
+    public static String newOwnerToken() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * Checks the state of a key and acquires it for the caller in a single round-trip.
+     *
+     * @param key the unique event key
+     * @param ownerToken token identifying the caller, see {@link #newOwnerToken()}
+     * @param lockTtl time-to-live of the processing lock
+     * @return NEW if the caller now owns the lock, otherwise the existing state
+     */
+    @Retryable(
+        value = {RedisConnectionFailureException.class},
+        maxAttempts = 3,
+        backoff = @Backoff(delay = 100),
+        recover = "recoverCheckAndAcquire"
+    )
+    public ProcessingState checkAndAcquire(String key, String ownerToken, Duration lockTtl) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        if (isCompletedLocally(key)) {
+            record(sample, "checkAndAcquire", "near_cache");
+            return ProcessingState.COMPLETED;
+        }
+        try {
+            String result = redisTemplate.execute(CHECK_AND_ACQUIRE_SCRIPT, List.of(key),
+                    PROCESSING_PREFIX + ownerToken, String.valueOf(lockTtl.toMillis()));
+            ProcessingState state = result != null ? ProcessingState.valueOf(result) : ProcessingState.NEW;
+            if (state == ProcessingState.COMPLETED) {
+                rememberCompleted(key, null);
+            }
+            outcome = state.name().toLowerCase(Locale.ROOT);
+            return state;
+        } catch (RedisConnectionFailureException e) {
+            log.warn("Redis connection failure when acquiring {}, will retry", key);
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error when acquiring {}: {}", key, e.getMessage(), e);
+            // Process rather than drop the event, as recoverCheckAndAcquire does once Redis is unreachable.
+            // acquireProcessingLock differs: it returns false here and only processes from recoverAcquireLock.
+            return ProcessingState.NEW;
+        } finally {
+            record(sample, "checkAndAcquire", outcome);
+        }
+    }
+
+    /**
+     * Marks a key as completed if the caller still owns its processing lock.
+     *
+     * @param key the unique event key
+     * @param ownerToken token passed to {@link #checkAndAcquire(String, String, Duration)}
+     * @param ttl time-to-live of the completed record
+     * @return true if the key was marked completed, false if the lock was lost or expired
+     */
+    @Retryable(
+        value = {RedisConnectionFailureException.class},
+        maxAttempts = 3,
+        backoff = @Backoff(delay = 100),
+        recover = "recoverCompleteIfOwner"
+    )
+    public boolean completeIfOwner(String key, String ownerToken, Duration ttl) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            Long result = redisTemplate.execute(COMPLETE_IF_OWNER_SCRIPT, List.of(key),
+                    PROCESSING_PREFIX + ownerToken, String.valueOf(ttl.toMillis()));
+            boolean completed = Long.valueOf(1L).equals(result);
+            if (completed) {
+                rememberCompleted(key, ttl);
+            } else {
+                log.warn("Lock for {} no longer owned by caller; completion not recorded", key);
+            }
+            outcome = completed ? "completed" : "not_owner";
+            return completed;
+        } catch (RedisConnectionFailureException e) {
+            log.warn("Redis connection failure when completing {}, will retry", key);
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error when completing {}: {}", key, e.getMessage(), e);
+            return false;
+        } finally {
+            record(sample, "completeIfOwner", outcome);
+        }
+    }
+
+    /**
+     * Releases a processing lock if the caller still owns it.
+     *
+     * @param key the unique event key
+     * @param ownerToken token passed to {@link #checkAndAcquire(String, String, Duration)}
+     * @return true if the lock was released
+     */
+    @Retryable(
+        value = {RedisConnectionFailureException.class},
+        maxAttempts = 3,
+        backoff = @Backoff(delay = 100),
+        recover = "recoverReleaseIfOwner"
+    )
+    public boolean releaseIfOwner(String key, String ownerToken) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            Long result = redisTemplate.execute(RELEASE_IF_OWNER_SCRIPT, List.of(key), PROCESSING_PREFIX + ownerToken);
+            boolean released = Long.valueOf(1L).equals(result);
+            outcome = released ? "released" : "not_owner";
+            return released;
+        } catch (RedisConnectionFailureException e) {
+            log.warn("Redis connection failure when releasing {}, will retry", key);
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error when releasing {}: {}", key, e.getMessage(), e);
+            return false;
+        } finally {
+            record(sample, "releaseIfOwner", outcome);
+        }
+    }
     
     /**
      * Attempts to acquire a distributed lock for processing an event
@@ -35,15 +234,24 @@ public class IdempotencyService {
         backoff = @Backoff(delay = 100)
     )
     public boolean acquireProcessingLock(String key, Duration ttl) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        if (isCompletedLocally(key)) {
+            record(sample, "acquireProcessingLock", "near_cache");
+            return false;
+        }
         try {
-            Boolean result = redisTemplate.opsForValue().setIfAbsent(key, "processing", ttl);
-            return Boolean.TRUE.equals(result);
+            boolean acquired = Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, "processing", ttl));
+            outcome = acquired ? "acquired" : "held";
+            return acquired;
         } catch (RedisConnectionFailureException e) {
             log.warn("Redis connection failure when acquiring lock for {}, will retry", key);
             throw e;
         } catch (Exception e) {
             log.error("Unexpected error when acquiring lock for {}: {}", key, e.getMessage(), e);
             return false;
+        } finally {
+            record(sample, "acquireProcessingLock", outcome);
         }
     }
     
@@ -59,13 +267,19 @@ public class IdempotencyService {
         backoff = @Backoff(delay = 100)
     )
     public void markAsCompleted(String key, Duration ttl) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
         try {
             redisTemplate.opsForValue().set(key, "completed", ttl);
+            rememberCompleted(key, ttl);
+            outcome = "completed";
         } catch (RedisConnectionFailureException e) {
             log.warn("Redis connection failure when marking {} as completed, will retry", key);
             throw e;
         } catch (Exception e) {
             log.error("Unexpected error when marking {} as completed: {}", key, e.getMessage(), e);
+        } finally {
+            record(sample, "markAsCompleted", outcome);
         }
     }
     
@@ -80,13 +294,19 @@ public class IdempotencyService {
         backoff = @Backoff(delay = 100)
     )
     public void releaseLock(String key) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        completedKeys.invalidate(key);
         try {
             redisTemplate.delete(key);
+            outcome = "released";
         } catch (RedisConnectionFailureException e) {
             log.warn("Redis connection failure when releasing lock for {}, will retry", key);
             throw e;
         } catch (Exception e) {
             log.error("Unexpected error when releasing lock for {}: {}", key, e.getMessage(), e);
+        } finally {
+            record(sample, "releaseLock", outcome);
         }
     }
     
@@ -102,14 +322,28 @@ public class IdempotencyService {
         backoff = @Backoff(delay = 100)
     )
     public String getProcessingState(String key) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        if (isCompletedLocally(key)) {
+            record(sample, "getProcessingState", "near_cache");
+            return "completed";
+        }
         try {
-            return redisTemplate.opsForValue().get(key);
+            String state = redisTemplate.opsForValue().get(key);
+            if ("completed".equals(state)) {
+                rememberCompleted(key, null);
+            }
+            // Lock values carry the owner token, so only the kind of state is used as the tag
+            outcome = state == null ? "absent" : "completed".equals(state) ? "completed" : "processing";
+            return state;
         } catch (RedisConnectionFailureException e) {
             log.warn("Redis connection failure when getting state for {}, will retry", key);
             throw e;
         } catch (Exception e) {
             log.error("Unexpected error when getting state for {}: {}", key, e.getMessage(), e);
             return null;
+        } finally {
+            record(sample, "getProcessingState", outcome);
         }
     }
     
@@ -132,4 +366,69 @@ public class IdempotencyService {
         // When Redis is down, assume not processed to ensure delivery
         return null;
     }
-}
\ No newline at end of file
+
+    @Recover
+    public ProcessingState recoverCheckAndAcquire(RedisConnectionFailureException e, String key, String ownerToken, Duration lockTtl) {
+        log.error("Redis operations failed after retries when acquiring {}: {}", key, e.getMessage());
+        // Process the event anyway to ensure delivery, as recoverAcquireLock does
+        return ProcessingState.NEW;
+    }
+
+    @Recover
+    public boolean recoverCompleteIfOwner(RedisConnectionFailureException e, String key, String ownerToken, Duration ttl) {
+        log.error("Redis operations failed after retries when completing {}: {}", key, e.getMessage());
+        return false;
+    }
+
+    @Recover
+    public boolean recoverReleaseIfOwner(RedisConnectionFailureException e, String key, String ownerToken) {
+        log.error("Redis operations failed after retries when releasing {}: {}", key, e.getMessage());
+        // The lock expires on its own ttl
+        return false;
+    }
+
+    /**
+     * Stops the sample on the operation's timer. Each Redis attempt is recorded, so a call retried
+     * by {@code @Retryable} shows up as error samples followed by the final one.
+     */
+    private void record(Timer.Sample sample, String operation, String outcome) {
+        sample.stop(Timer.builder(OPERATION_METRIC)
+                .description("Idempotency check latency")
+                .tag("operation", operation)
+                .tag("result", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    private boolean isCompletedLocally(String key) {
+        return completedKeys.getIfPresent(key) != null;
+    }
+
+    /**
+     * @param ttl remaining Redis ttl of the key, or null if unknown (the local max ttl applies)
+     */
+    private void rememberCompleted(String key, Duration ttl) {
+        completedKeys.put(key, ttl != null ? ttl.toNanos() : Long.MAX_VALUE);
+    }
+
+    /**
+     * Expires each entry after its Redis ttl, capped at the configured local maximum.
+     */
+    private record CompletedKeyExpiry(Duration maxTtl) implements Expiry<String, Long> {
+
+        @Override
+        public long expireAfterCreate(String key, Long ttlNanos, long currentTime) {
+            return Math.min(ttlNanos, maxTtl.toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Long ttlNanos, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, ttlNanos, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Long ttlNanos, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.fusionxpay.payment.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Bounded local cache of order owners (orderId -> merchantId).
+ * An order never changes merchant, so a confirmed owner can be trusted for a long time and
+ * repeat payment attempts skip the call to order-service. Only confirmed owners are cached;
+ * lookups that fail or are rejected always go back to order-service.
+ */
+@Service
+public class OrderOwnershipCache {
+
+    private static final String CACHE_NAME = "order.ownership";
+
+    private final Cache<UUID, Long> owners;
+
+    public OrderOwnershipCache(MeterRegistry meterRegistry,
+                               @Value("${payment.order-ownership-cache.maximum-size:100000}") long maximumSize,
+                               @Value("${payment.order-ownership-cache.ttl:24h}") Duration ttl) {
+        this.owners = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, owners, CACHE_NAME);
+    }
+
+    /**
+     * @return the merchant that owns the order, or null if it is not cached
+     */
+    public Long getOwner(UUID orderId) {
+        return owners.getIfPresent(orderId);
+    }
+
+    public void putOwner(UUID orderId, Long merchantId) {
+        if (orderId != null && merchantId != null) {
+            owners.put(orderId, merchantId);
+        }
+    }
+}
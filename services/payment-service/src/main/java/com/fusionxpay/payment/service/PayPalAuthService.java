@@ -2,9 +2,12 @@ package com.fusionxpay.payment.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
 import com.fusionxpay.payment.dto.paypal.PayPalTokenResponse;
 import com.fusionxpay.payment.dto.paypal.PayPalWebhookHeaders;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.http.*;
@@ -15,14 +18,27 @@ import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.nio.charset.StandardCharsets;
+import java.time.Clock;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Service for managing PayPal OAuth 2.0 authentication.
  * Handles access token retrieval, caching, and automatic refresh.
+ * <p>
+ * The current token is held in memory and refreshed in the background shortly before it
+ * expires. Concurrent refreshes are coalesced into a single OAuth request; Redis only
+ * shares tokens between instances.
  *
  * @author FusionXPay Team
  * @since 1.0.0
@@ -36,6 +52,21 @@ public class PayPalAuthService {
 
     private final RedisTemplate<String, String> redisTemplate;
     private final RestTemplate restTemplate;
+    private final Clock clock;
+    private final PayPalWebhookVerifier webhookVerifier;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "paypal-token-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile CachedToken currentToken;
+    private final AtomicReference<CompletableFuture<CachedToken>> inFlightRefresh = new AtomicReference<>();
+
+    // Tokens are refreshed this long before they expire, while callers keep using the current one
+    @Value("${payment.providers.paypal.token-refresh-ahead:10m}")
+    private Duration refreshAhead = Duration.ofMinutes(10);
 
     @Value("${payment.providers.paypal.client-id}")
     private String clientId;
@@ -46,9 +77,19 @@ public class PayPalAuthService {
     @Value("${payment.providers.paypal.base-url}")
     private String baseUrl;
 
-    public PayPalAuthService(RedisTemplate<String, String> redisTemplate) {
+    @Autowired
+    public PayPalAuthService(RedisTemplate<String, String> redisTemplate,
+                             @Qualifier("payPalRestTemplate") RestTemplate restTemplate,
+                             PayPalWebhookVerifier webhookVerifier) {
+        this(redisTemplate, restTemplate, Clock.systemUTC(), webhookVerifier);
+    }
+
+    PayPalAuthService(RedisTemplate<String, String> redisTemplate, RestTemplate restTemplate, Clock clock,
+                      PayPalWebhookVerifier webhookVerifier) {
         this.redisTemplate = redisTemplate;
-        this.restTemplate = new RestTemplate();
+        this.restTemplate = restTemplate;
+        this.clock = clock;
+        this.webhookVerifier = webhookVerifier;
     }
 
     @PostConstruct
@@ -56,24 +97,30 @@ public class PayPalAuthService {
         log.info("PayPal Auth Service initialized with base URL: {}", baseUrl);
     }
 
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
     /**
      * Retrieves a valid access token for PayPal API calls.
-     * First checks Redis cache, then requests a new token if not found or expired.
+     * Served from memory; only the first call and calls after expiry wait for a refresh.
      *
      * @return valid access token
      * @throws PayPalAuthException if authentication fails
      */
     public String getAccessToken() {
-        // Check cache first to avoid unnecessary API calls
-        String cachedToken = redisTemplate.opsForValue().get(TOKEN_CACHE_KEY);
-        if (cachedToken != null && !cachedToken.isEmpty()) {
-            log.debug("Using cached PayPal access token");
-            return cachedToken;
+        CachedToken token = currentToken;
+        Instant now = clock.instant();
+        if (token != null && now.isBefore(token.expiresAt())) {
+            if (!now.isBefore(token.refreshAt())) {
+                refreshInBackground();
+            }
+            return token.value();
         }
 
-        // Request new token from PayPal
         log.info("Requesting new PayPal access token");
-        return requestNewToken();
+        return awaitRefresh(false).value();
     }
 
     /**
@@ -85,8 +132,97 @@ public class PayPalAuthService {
     public String refreshAccessToken() {
         log.info("Forcing refresh of PayPal access token");
         // Clear cached token
+        currentToken = null;
         redisTemplate.delete(TOKEN_CACHE_KEY);
-        return requestNewToken();
+        return awaitRefresh(true).value();
+    }
+
+    private void refreshInBackground() {
+        if (inFlightRefresh.get() != null) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    refresh(false).join();
+                } catch (CompletionException e) {
+                    // The current token is still valid; the next call retries
+                    log.warn("Background PayPal token refresh failed: {}", e.getCause().getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("PayPal token refresh executor is shut down");
+        }
+    }
+
+    private CachedToken awaitRefresh(boolean bypassShared) {
+        try {
+            return refresh(bypassShared).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof PayPalAuthException authException) {
+                throw authException;
+            }
+            throw new PayPalAuthException("Failed to obtain access token: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Starts a token refresh, or joins the one already in flight.
+     * The caller that wins the race performs the request on its own thread.
+     */
+    private CompletableFuture<CachedToken> refresh(boolean bypassShared) {
+        while (true) {
+            CompletableFuture<CachedToken> existing = inFlightRefresh.get();
+            if (existing != null) {
+                return existing;
+            }
+            CompletableFuture<CachedToken> refresh = new CompletableFuture<>();
+            if (!inFlightRefresh.compareAndSet(null, refresh)) {
+                continue;
+            }
+            try {
+                CachedToken token = bypassShared ? null : readSharedToken();
+                if (token == null) {
+                    token = requestNewToken();
+                }
+                currentToken = token;
+                refresh.complete(token);
+            } catch (Exception e) {
+                refresh.completeExceptionally(e);
+            } finally {
+                inFlightRefresh.compareAndSet(refresh, null);
+            }
+            return refresh;
+        }
+    }
+
+    /**
+     * Adopts a token another instance stored in Redis, unless it is already due for refresh.
+     */
+    private CachedToken readSharedToken() {
+        try {
+            String token = redisTemplate.opsForValue().get(TOKEN_CACHE_KEY);
+            if (token == null || token.isEmpty()) {
+                return null;
+            }
+            Long ttlSeconds = redisTemplate.getExpire(TOKEN_CACHE_KEY, TimeUnit.SECONDS);
+            if (ttlSeconds == null || ttlSeconds <= refreshAhead.toSeconds()) {
+                return null;
+            }
+            log.debug("Using PayPal access token shared through Redis");
+            return cachedToken(token, ttlSeconds);
+        } catch (Exception e) {
+            log.warn("Could not read shared PayPal access token from Redis: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private CachedToken cachedToken(String value, long ttlSeconds) {
+        Instant expiresAt = clock.instant().plusSeconds(ttlSeconds);
+        Duration ahead = refreshAhead.compareTo(Duration.ofSeconds(ttlSeconds / 2)) < 0
+                ? refreshAhead
+                : Duration.ofSeconds(ttlSeconds / 2);
+        return new CachedToken(value, expiresAt, expiresAt.minus(ahead));
     }
 
     /**
@@ -95,7 +231,7 @@ public class PayPalAuthService {
      * @return new access token
      * @throws PayPalAuthException if the request fails
      */
-    private String requestNewToken() {
+    private CachedToken requestNewToken() {
         try {
             // Create Basic Auth credentials
             String credentials = clientId + ":" + clientSecret;
@@ -130,18 +266,24 @@ public class PayPalAuthService {
 
             // Cache the token with TTL slightly less than actual expiration
             long ttlSeconds = response.getExpiresIn() != null
-                    ? response.getExpiresIn() - 300 // 5 minutes buffer
+                    ? Math.max(response.getExpiresIn() - 300, response.getExpiresIn() / 2) // 5 minutes buffer
                     : TimeUnit.HOURS.toSeconds(TOKEN_CACHE_TTL_HOURS);
 
-            redisTemplate.opsForValue().set(
-                    TOKEN_CACHE_KEY,
-                    accessToken,
-                    Duration.ofSeconds(ttlSeconds)
-            );
+            try {
+                redisTemplate.opsForValue().set(
+                        TOKEN_CACHE_KEY,
+                        accessToken,
+                        Duration.ofSeconds(ttlSeconds)
+                );
+            } catch (Exception e) {
+                log.warn("Could not share PayPal access token through Redis: {}", e.getMessage());
+            }
 
             log.info("Successfully obtained and cached PayPal access token (expires in {} seconds)", ttlSeconds);
-            return accessToken;
+            return cachedToken(accessToken, ttlSeconds);
 
+        } catch (PayPalAuthException e) {
+            throw e;
         } catch (RestClientException e) {
             log.error("PayPal OAuth request failed: {}", e.getMessage(), e);
             throw new PayPalAuthException("Failed to obtain access token: " + e.getMessage(), e);
@@ -156,6 +298,7 @@ public class PayPalAuthService {
      * Useful for testing or when token needs to be invalidated.
      */
     public void clearCachedToken() {
+        currentToken = null;
         redisTemplate.delete(TOKEN_CACHE_KEY);
         log.info("Cleared cached PayPal access token");
     }
@@ -171,7 +314,8 @@ public class PayPalAuthService {
 
     /**
      * Verifies the signature of a PayPal webhook notification.
-     * Calls PayPal's webhook verification API to ensure the webhook is authentic.
+     * The signature is checked in process against PayPal's cached signing certificate; PayPal's
+     * webhook verification API is only called when local verification is disabled or cannot decide.
      *
      * @param headers the webhook headers containing signature information
      * @param webhookId the configured webhook ID
@@ -184,13 +328,19 @@ public class PayPalAuthService {
             return false;
         }
 
+        if (webhookVerifier.isLocalVerificationEnabled()) {
+            PayPalWebhookVerifier.Result result = webhookVerifier.verify(headers, webhookId, payload);
+            if (result != PayPalWebhookVerifier.Result.UNAVAILABLE) {
+                log.debug("PayPal webhook signature verified locally: {}", result);
+                return result == PayPalWebhookVerifier.Result.VALID;
+            }
+            log.info("Local PayPal webhook verification unavailable, using verification API");
+        }
+
         try {
             String accessToken = getAccessToken();
 
-            // Build verification request body
-            ObjectMapper objectMapper = new ObjectMapper();
-            JsonNode webhookEvent = objectMapper.readTree(payload);
-
+            // Build verification request body; the event is embedded verbatim rather than re-parsed
             String requestBody = objectMapper.writeValueAsString(
                 java.util.Map.of(
                     "auth_algo", headers.getAuthAlgo(),
@@ -199,7 +349,7 @@ public class PayPalAuthService {
                     "transmission_sig", headers.getTransmissionSig(),
                     "transmission_time", headers.getTransmissionTime(),
                     "webhook_id", webhookId,
-                    "webhook_event", webhookEvent
+                    "webhook_event", new RawValue(payload)
                 )
             );
 
@@ -256,4 +406,7 @@ public class PayPalAuthService {
             super(message, cause);
         }
     }
+
+    private record CachedToken(String value, Instant expiresAt, Instant refreshAt) {
+    }
 }
@@ -0,0 +1,302 @@
+package com.fusionxpay.payment.service;
+
+import com.fusionxpay.payment.dto.paypal.PayPalWebhookHeaders;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import javax.naming.InvalidNameException;
+import javax.naming.ldap.LdapName;
+import javax.naming.ldap.Rdn;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyStore;
+import java.security.Signature;
+import java.security.cert.CertPathValidator;
+import java.security.cert.CertPathValidatorException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.PKIXParameters;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509Certificate;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Verifies PayPal webhook transmission signatures in process.
+ * The signing certificate is downloaded once per cert_url and cached until it expires, so
+ * a webhook normally needs no call to PayPal at all.
+ * <p>
+ * A certificate is only used if its chain leads to a CA the JVM trusts and it was issued to a
+ * paypal.com name, and only while it is valid. Webhooks whose transmission time is further than
+ * {@code payment.providers.paypal.webhook-tolerance} from now are rejected, so a captured webhook
+ * cannot be replayed later.
+ *
+ * @see <a href="https://developer.paypal.com/api/rest/webhooks/rest/#link-selfverificationmethod">PayPal self-verification</a>
+ */
+@Service
+@Slf4j
+public class PayPalWebhookVerifier {
+
+    /**
+     * Outcome of a local verification attempt.
+     */
+    public enum Result {
+        VALID,
+        INVALID,
+        /** The certificate or algorithm could not be used; the caller should fall back to the remote API. */
+        UNAVAILABLE
+    }
+
+    private static final Set<String> SUPPORTED_ALGORITHMS = Set.of("SHA256withRSA");
+    private static final String PAYPAL_DOMAIN = "paypal.com";
+
+    private final RestTemplate restTemplate;
+    private final Clock clock;
+    private final Set<TrustAnchor> trustAnchors;
+    private final Map<String, CachedCertificate> certificates = new ConcurrentHashMap<>();
+
+    @Value("${payment.providers.paypal.webhook-verification:local}")
+    private String verificationMode = "local";
+
+    @Value("${payment.providers.paypal.cert-cache-ttl:24h}")
+    private Duration certCacheTtl = Duration.ofHours(24);
+
+    // Largest accepted difference between the transmission time and now, either way
+    @Value("${payment.providers.paypal.webhook-tolerance:5m}")
+    private Duration transmissionTolerance = Duration.ofMinutes(5);
+
+    @Autowired
+    public PayPalWebhookVerifier(@Qualifier("payPalRestTemplate") RestTemplate restTemplate) {
+        this(restTemplate, Clock.systemUTC(), systemTrustAnchors());
+    }
+
+    PayPalWebhookVerifier(RestTemplate restTemplate, Clock clock, Set<TrustAnchor> trustAnchors) {
+        this.restTemplate = restTemplate;
+        this.clock = clock;
+        this.trustAnchors = trustAnchors;
+    }
+
+    /**
+     * @return true if webhooks should be verified in process before using the remote API
+     */
+    public boolean isLocalVerificationEnabled() {
+        return "local".equalsIgnoreCase(verificationMode);
+    }
+
+    /**
+     * Checks the transmission signature against the certificate referenced by the headers.
+     *
+     * @param headers the webhook headers
+     * @param webhookId the configured webhook ID
+     * @param payload the raw webhook payload, exactly as received
+     * @return VALID or INVALID, or UNAVAILABLE if the result cannot be determined locally
+     */
+    public Result verify(PayPalWebhookHeaders headers, String webhookId, String payload) {
+        if (!SUPPORTED_ALGORITHMS.contains(headers.getAuthAlgo())) {
+            log.warn("Unsupported PayPal webhook auth algorithm {}", headers.getAuthAlgo());
+            return Result.UNAVAILABLE;
+        }
+        if (!isTrustedCertUrl(headers.getCertUrl())) {
+            // Never fetch certificates from hosts PayPal does not own
+            log.error("Rejecting PayPal webhook with untrusted cert URL {}", headers.getCertUrl());
+            return Result.INVALID;
+        }
+        if (!isRecent(headers.getTransmissionTime())) {
+            log.error("Rejecting PayPal webhook {} with transmission time {}",
+                    headers.getTransmissionId(), headers.getTransmissionTime());
+            return Result.INVALID;
+        }
+
+        X509Certificate certificate;
+        try {
+            certificate = certificate(headers.getCertUrl());
+        } catch (UntrustedCertificateException e) {
+            log.error("Rejecting PayPal webhook signed with certificate {}: {}", headers.getCertUrl(), e.getMessage());
+            return Result.INVALID;
+        } catch (Exception e) {
+            log.warn("Could not load PayPal certificate {}: {}", headers.getCertUrl(), e.getMessage());
+            return Result.UNAVAILABLE;
+        }
+
+        try {
+            Signature signature = Signature.getInstance(headers.getAuthAlgo());
+            signature.initVerify(certificate.getPublicKey());
+            signature.update(signedMessage(headers, webhookId, payload).getBytes(StandardCharsets.UTF_8));
+            boolean valid = signature.verify(Base64.getDecoder().decode(headers.getTransmissionSig()));
+            return valid ? Result.VALID : Result.INVALID;
+        } catch (IllegalArgumentException | GeneralSecurityException e) {
+            log.warn("PayPal webhook signature could not be checked: {}", e.getMessage());
+            return Result.INVALID;
+        }
+    }
+
+    /**
+     * Builds the string PayPal signs: transmission id, time, webhook id and the CRC32 of the body.
+     */
+    static String signedMessage(PayPalWebhookHeaders headers, String webhookId, String payload) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(payload.getBytes(StandardCharsets.UTF_8));
+        return headers.getTransmissionId() + "|" + headers.getTransmissionTime() + "|" + webhookId + "|" + crc32.getValue();
+    }
+
+    private boolean isRecent(String transmissionTime) {
+        if (transmissionTime == null) {
+            return false;
+        }
+        try {
+            Instant sentAt = OffsetDateTime.parse(transmissionTime.trim()).toInstant();
+            return Duration.between(sentAt, clock.instant()).abs().compareTo(transmissionTolerance) <= 0;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the signing certificate of cert_url, downloading and validating its chain on a cache miss.
+     *
+     * @throws UntrustedCertificateException if the chain is not trusted, not valid now or not PayPal's
+     */
+    private X509Certificate certificate(String certUrl) throws GeneralSecurityException {
+        Instant now = clock.instant();
+        CachedCertificate cached = certificates.get(certUrl);
+        if (cached != null && now.isBefore(cached.expiresAt())) {
+            try {
+                for (X509Certificate certificate : cached.chain()) {
+                    certificate.checkValidity(Date.from(now));
+                }
+            } catch (CertificateException e) {
+                certificates.remove(certUrl, cached);
+                throw new UntrustedCertificateException("certificate not valid at " + now);
+            }
+            return cached.chain().get(0);
+        }
+
+        String pem = restTemplate.getForObject(URI.create(certUrl), String.class);
+        if (pem == null || pem.isBlank()) {
+            throw new GeneralSecurityException("empty certificate response");
+        }
+        CertificateFactory factory = CertificateFactory.getInstance("X.509");
+        List<X509Certificate> chain = new ArrayList<>();
+        for (Certificate certificate : factory.generateCertificates(
+                new ByteArrayInputStream(pem.getBytes(StandardCharsets.US_ASCII)))) {
+            chain.add((X509Certificate) certificate);
+        }
+        if (chain.isEmpty()) {
+            throw new GeneralSecurityException("no certificate in response");
+        }
+        validate(factory, chain, now);
+
+        Instant expiresAt = now.plus(certCacheTtl);
+        for (X509Certificate certificate : chain) {
+            Instant notAfter = certificate.getNotAfter().toInstant();
+            expiresAt = notAfter.isBefore(expiresAt) ? notAfter : expiresAt;
+        }
+        certificates.put(certUrl, new CachedCertificate(List.copyOf(chain), expiresAt));
+        log.info("Cached PayPal webhook certificate {} until {}", certUrl, expiresAt);
+        return chain.get(0);
+    }
+
+    /**
+     * Checks the chain up to a trusted CA and that the signing certificate belongs to PayPal.
+     * Revocation is not checked: that would put a CRL or OCSP call back on the webhook path.
+     */
+    private void validate(CertificateFactory factory, List<X509Certificate> chain, Instant now)
+            throws GeneralSecurityException {
+        try {
+            PKIXParameters parameters = new PKIXParameters(trustAnchors);
+            parameters.setRevocationEnabled(false);
+            parameters.setDate(Date.from(now));
+            CertPathValidator.getInstance("PKIX").validate(factory.generateCertPath(chain), parameters);
+        } catch (CertPathValidatorException | InvalidAlgorithmParameterException e) {
+            throw new UntrustedCertificateException("chain not trusted: " + e.getMessage());
+        }
+        String commonName = commonName(chain.get(0));
+        if (commonName == null || !isPayPalHost(commonName)) {
+            throw new UntrustedCertificateException("issued to " + chain.get(0).getSubjectX500Principal().getName());
+        }
+    }
+
+    private static String commonName(X509Certificate certificate) {
+        try {
+            for (Rdn rdn : new LdapName(certificate.getSubjectX500Principal().getName()).getRdns()) {
+                if ("CN".equalsIgnoreCase(rdn.getType())) {
+                    return rdn.getValue().toString();
+                }
+            }
+        } catch (InvalidNameException e) {
+            log.debug("Unparseable certificate subject {}", certificate.getSubjectX500Principal());
+        }
+        return null;
+    }
+
+    private boolean isTrustedCertUrl(String certUrl) {
+        try {
+            URI uri = URI.create(certUrl);
+            return "https".equalsIgnoreCase(uri.getScheme()) && uri.getHost() != null && isPayPalHost(uri.getHost());
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static boolean isPayPalHost(String host) {
+        return host.equalsIgnoreCase(PAYPAL_DOMAIN) || host.toLowerCase(Locale.ROOT).endsWith("." + PAYPAL_DOMAIN);
+    }
+
+    /**
+     * The CAs of the JVM's default trust store, the ones HTTPS connections are checked against.
+     */
+    static Set<TrustAnchor> systemTrustAnchors() {
+        try {
+            TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            factory.init((KeyStore) null);
+            Set<TrustAnchor> anchors = new HashSet<>();
+            for (TrustManager manager : factory.getTrustManagers()) {
+                if (manager instanceof X509TrustManager x509) {
+                    for (X509Certificate issuer : x509.getAcceptedIssuers()) {
+                        anchors.add(new TrustAnchor(issuer, null));
+                    }
+                }
+            }
+            return anchors;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot load the default trust store", e);
+        }
+    }
+
+    private record CachedCertificate(List<X509Certificate> chain, Instant expiresAt) {
+    }
+
+    /**
+     * The certificate loaded but must not be used; the webhook is rejected rather than verified remotely.
+     */
+    private static final class UntrustedCertificateException extends GeneralSecurityException {
+
+        UntrustedCertificateException(String message) {
+            super(message);
+        }
+    }
+}
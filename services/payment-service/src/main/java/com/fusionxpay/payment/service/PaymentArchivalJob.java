@@ -0,0 +1,247 @@
+package com.fusionxpay.payment.service;
+
+import com.fusionxpay.common.model.PaymentStatus;
+import com.fusionxpay.payment.repository.PaymentTransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps payment_transactions down to the recent months.
+ * <p>
+ * Each run creates the monthly partitions for the months ahead, then moves closed transactions
+ * (SUCCESS, FAILED, REFUNDED) created before the hot retention to payment_transactions_archive in
+ * batches and drops the month partitions it emptied. Transactions still open stay in place. On a
+ * table that is not partitioned (mysql-init/13 not applied) the same rows are moved, only without
+ * the partition maintenance. A MySQL named lock keeps instances from running it concurrently.
+ * <p>
+ * Archived payments still count: PaymentService does not start a new payment for an order whose
+ * archived transaction is SUCCESS or REFUNDED, and moves a transaction back to the hot table
+ * when a late webhook or status update arrives for it.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "payment.archive.enabled", havingValue = "true")
+public class PaymentArchivalJob {
+
+    static final String ROWS_METRIC = "payment.archive.rows";
+
+    private static final List<String> CLOSED_STATUSES =
+            List.of(PaymentStatus.SUCCESS.name(), PaymentStatus.FAILED.name(), PaymentStatus.REFUNDED.name());
+    private static final String LOCK_NAME = "fusionxpay.payment-archival";
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+    private static final String COLUMNS = "transaction_id, order_id, merchant_id, amount, currency, payment_channel, "
+            + "status, provider_transaction_id, version, created_at, updated_at";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionOperations transactionOperations;
+    private final Counter archivedRows;
+
+    // Closed transactions stay in payment_transactions for this many whole months; merchant refunds
+    // and reconciliation only see the hot table, so keep it above the providers' refund window
+    @Value("${payment.archive.hot-months:6}")
+    private int hotMonths = 6;
+
+    @Value("${payment.archive.future-partitions:3}")
+    private int futurePartitions = 3;
+
+    @Value("${payment.archive.batch-size:1000}")
+    private int batchSize = 1000;
+
+    public PaymentArchivalJob(JdbcTemplate jdbcTemplate, TransactionOperations transactionOperations,
+                              MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionOperations = transactionOperations;
+        this.archivedRows = Counter.builder(ROWS_METRIC)
+                .description("Closed payment transactions moved to payment_transactions_archive")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${payment.archive.cron:0 30 3 * * *}")
+    public void run() {
+        try {
+            Boolean ran = jdbcTemplate.execute((ConnectionCallback<Boolean>) lockConnection -> {
+                if (!tryLock(lockConnection)) {
+                    return false;
+                }
+                try {
+                    YearMonth current = YearMonth.now();
+                    ensurePartitionsThrough(current.plusMonths(futurePartitions));
+                    archiveBefore(current.minusMonths(hotMonths).atDay(1).atStartOfDay());
+                } finally {
+                    releaseLock(lockConnection);
+                }
+                return true;
+            });
+            if (!Boolean.TRUE.equals(ran)) {
+                log.info("Payment archival skipped, another instance holds the lock");
+            }
+        } catch (Exception e) {
+            log.error("Payment archival failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Adds monthly partitions up to and including the given month. Does nothing if the table is
+     * not partitioned.
+     */
+    public void ensurePartitionsThrough(YearMonth lastMonth) {
+        List<Partition> partitions = partitions();
+        if (partitions.isEmpty()) {
+            return;
+        }
+        Partition last = partitions.get(partitions.size() - 1);
+        boolean open = last.upperBound() == null;
+        LocalDateTime highest = open ? last.lowerBound() : last.upperBound();
+        if (highest == null || highest.equals(PaymentTransactionRepository.UNBOUNDED_FROM)) {
+            log.warn("payment_transactions has no month partition to extend from, not adding partitions");
+            return;
+        }
+        for (YearMonth month = YearMonth.from(highest); !month.isAfter(lastMonth); month = month.plusMonths(1)) {
+            String partition = "PARTITION " + month.format(PARTITION_NAME)
+                    + " VALUES LESS THAN ('" + month.plusMonths(1).atDay(1) + "')";
+            jdbcTemplate.execute(open
+                    ? "ALTER TABLE payment_transactions REORGANIZE PARTITION `" + last.name() + "` INTO ("
+                        + partition + ", PARTITION `" + last.name() + "` VALUES LESS THAN (MAXVALUE))"
+                    : "ALTER TABLE payment_transactions ADD PARTITION (" + partition + ")");
+            log.info("Added payment_transactions partition {}", month.format(PARTITION_NAME));
+        }
+    }
+
+    /**
+     * Moves the closed transactions created before the cutoff to the archive and drops the
+     * partitions left empty. On a partitioned table only whole partitions below the cutoff are
+     * processed.
+     *
+     * @return number of transactions archived
+     */
+    public long archiveBefore(LocalDateTime cutoff) {
+        List<Partition> partitions = partitions();
+        if (partitions.isEmpty()) {
+            return archiveRange(PaymentTransactionRepository.UNBOUNDED_FROM, cutoff);
+        }
+        long archived = 0;
+        for (Partition partition : partitions) {
+            if (partition.upperBound() == null || partition.upperBound().isAfter(cutoff)) {
+                break;
+            }
+            archived += archiveRange(partition.lowerBound(), partition.upperBound());
+            dropIfEmpty(partition.name());
+        }
+        return archived;
+    }
+
+    private long archiveRange(LocalDateTime from, LocalDateTime to) {
+        long archived = 0;
+        int moved;
+        do {
+            moved = transactionOperations.execute(status -> moveBatch(from, to));
+            archived += moved;
+            archivedRows.increment(moved);
+        } while (moved == batchSize);
+        if (archived > 0) {
+            log.info("Archived {} payment transactions created in [{}, {})", archived, from, to);
+        }
+        return archived;
+    }
+
+    private int moveBatch(LocalDateTime from, LocalDateTime to) {
+        List<byte[]> ids = jdbcTemplate.queryForList("SELECT transaction_id FROM payment_transactions "
+                        + "WHERE created_at >= ? AND created_at < ? AND status IN ("
+                        + CLOSED_STATUSES.stream().map(status -> "'" + status + "'").collect(Collectors.joining(", "))
+                        + ") LIMIT ? FOR UPDATE",
+                byte[].class, from, to, batchSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String rows = "created_at >= ? AND created_at < ? AND transaction_id IN ("
+                + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+        jdbcTemplate.update("INSERT INTO payment_transactions_archive (" + COLUMNS + ", archived_at) SELECT "
+                        + COLUMNS + ", ? FROM payment_transactions WHERE " + rows,
+                Stream.concat(Stream.of(LocalDateTime.now(), from, to), ids.stream()).toArray());
+        return jdbcTemplate.update("DELETE FROM payment_transactions WHERE " + rows,
+                Stream.concat(Stream.of(from, to), ids.stream()).toArray());
+    }
+
+    private void dropIfEmpty(String partition) {
+        Boolean empty = jdbcTemplate.query("SELECT 1 FROM payment_transactions PARTITION (`" + partition + "`) LIMIT 1",
+                (ResultSet rs) -> !rs.next());
+        if (Boolean.TRUE.equals(empty)) {
+            jdbcTemplate.execute("ALTER TABLE payment_transactions DROP PARTITION `" + partition + "`");
+            log.info("Dropped archived payment_transactions partition {}", partition);
+        }
+    }
+
+    /**
+     * payment_transactions partitions in order, each with its range; empty if not partitioned.
+     */
+    List<Partition> partitions() {
+        List<Partition> partitions = new ArrayList<>();
+        jdbcTemplate.query("SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS "
+                        + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'payment_transactions' "
+                        + "AND PARTITION_NAME IS NOT NULL ORDER BY PARTITION_ORDINAL_POSITION",
+                (ResultSet rs) -> {
+                    LocalDateTime lower = PaymentTransactionRepository.UNBOUNDED_FROM;
+                    while (rs.next()) {
+                        LocalDateTime upper = parseBound(rs.getString("PARTITION_DESCRIPTION"));
+                        partitions.add(new Partition(rs.getString("PARTITION_NAME"), lower, upper));
+                        lower = upper;
+                    }
+                    return null;
+                });
+        return partitions;
+    }
+
+    private static LocalDateTime parseBound(String description) {
+        if (description == null || description.equalsIgnoreCase("MAXVALUE")) {
+            return null;
+        }
+        String value = description.replace("'", "").trim();
+        return value.length() == 10
+                ? LocalDate.parse(value).atStartOfDay()
+                : LocalDateTime.parse(value.replace(' ', 'T'));
+    }
+
+    private static boolean tryLock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT GET_LOCK(?, 0)")) {
+            statement.setString(1, LOCK_NAME);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private static void releaseLock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            statement.setString(1, LOCK_NAME);
+            statement.executeQuery().close();
+        }
+    }
+
+    /**
+     * @param upperBound exclusive; null for the MAXVALUE partition
+     */
+    record Partition(String name, LocalDateTime lowerBound, LocalDateTime upperBound) {
+    }
+}
@@ -0,0 +1,300 @@
+package com.fusionxpay.payment.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fusionxpay.payment.dto.PaymentExportRow;
+import com.fusionxpay.payment.repository.PaymentTransactionRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Streams a merchant's payments as CSV or NDJSON.
+ * <p>
+ * Rows come from {@link PaymentTransactionRepository#streamForExport}, which the MySQL driver reads
+ * row by row, and are written straight to the response, so an export of any size runs in constant
+ * memory with one query. The output is flushed every {@code payment.export.flush-rows} rows so it
+ * reaches the client as chunks while the query is still running.
+ * <p>
+ * An export holds a read transaction and a pooled connection for as long as the client takes to
+ * download it, so callers take an {@link ExportSlot} first: at most {@code payment.export.max-concurrent}
+ * exports run per instance and {@code payment.export.max-concurrent-per-merchant} per merchant.
+ */
+@Service
+@Slf4j
+public class PaymentExportService {
+
+    static final String ROWS_METRIC = "payment.export.rows";
+    static final String RUNNING_METRIC = "payment.export.running";
+
+    private static final JsonFactory JSON = JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .build();
+
+    private final PaymentTransactionRepository paymentTransactionRepository;
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger running = new AtomicInteger();
+    private final Map<Long, Integer> runningByMerchant = new ConcurrentHashMap<>();
+
+    @Value("${payment.export.flush-rows:500}")
+    private int flushRows = 500;
+
+    // Keep well below the connection pool size; also the size of the streamed response executor
+    @Value("${payment.export.max-concurrent:4}")
+    private int maxConcurrent = 4;
+
+    @Value("${payment.export.max-concurrent-per-merchant:1}")
+    private int maxConcurrentPerMerchant = 1;
+
+    public PaymentExportService(PaymentTransactionRepository paymentTransactionRepository, MeterRegistry meterRegistry) {
+        this.paymentTransactionRepository = paymentTransactionRepository;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder(RUNNING_METRIC, running, AtomicInteger::get).register(meterRegistry);
+    }
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String mediaType;
+        private final String extension;
+
+        Format(String mediaType, String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+
+        public String mediaType() {
+            return mediaType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        public static Format of(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported export format: " + value);
+            }
+        }
+    }
+
+    /**
+     * Filters of one export, parsed before the response starts so bad input is still a 400.
+     */
+    public record ExportQuery(Long merchantId, String status, LocalDateTime fromTime, LocalDateTime toTime) {
+    }
+
+    public ExportQuery query(Long merchantId, String status, String from, String to) {
+        return new ExportQuery(merchantId,
+                (status != null && !status.isBlank()) ? status : null,
+                PaymentService.parseDateBoundary(from, false, PaymentTransactionRepository.UNBOUNDED_FROM),
+                PaymentService.parseDateBoundary(to, true, PaymentTransactionRepository.UNBOUNDED_TO));
+    }
+
+    /**
+     * Reserves one of the instance's and the merchant's export slots. Close the slot once the export
+     * has finished or failed.
+     *
+     * @throws ResponseStatusException 429 if the merchant or this instance already runs the maximum
+     *                                 number of exports
+     */
+    public ExportSlot acquireSlot(Long merchantId) {
+        runningByMerchant.compute(merchantId, (id, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= maxConcurrentPerMerchant) {
+                throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "An export is already running");
+            }
+            return current + 1;
+        });
+        if (running.incrementAndGet() > maxConcurrent) {
+            running.decrementAndGet();
+            releaseMerchant(merchantId);
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many exports running, retry later");
+        }
+        return new ExportSlot(merchantId);
+    }
+
+    private void releaseMerchant(Long merchantId) {
+        runningByMerchant.computeIfPresent(merchantId, (id, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * A reserved export slot; closing it more than once has no effect.
+     */
+    public final class ExportSlot implements AutoCloseable {
+
+        private final Long merchantId;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private ExportSlot(Long merchantId) {
+            this.merchantId = merchantId;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                running.decrementAndGet();
+                releaseMerchant(merchantId);
+            }
+        }
+    }
+
+    /**
+     * Writes the matching payments, oldest first, to the output stream. Read-only, so it runs on
+     * the replica when one is configured. The stream is flushed but not closed.
+     *
+     * @return number of payments written
+     */
+    @Transactional(readOnly = true)
+    public long export(ExportQuery query, Format format, OutputStream out) throws IOException {
+        long rows = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        try (Stream<PaymentExportRow> payments = paymentTransactionRepository.streamForExport(
+                query.merchantId(), query.status(), query.fromTime(), query.toTime());
+             RowWriter rowWriter = format == Format.CSV ? new CsvRowWriter(writer) : new NdjsonRowWriter(writer)) {
+            Iterator<PaymentExportRow> iterator = payments.iterator();
+            while (iterator.hasNext()) {
+                rowWriter.write(iterator.next());
+                if (++rows % flushRows == 0) {
+                    rowWriter.flush();
+                }
+            }
+        } finally {
+            meterRegistry.counter(ROWS_METRIC, "format", format.extension()).increment(rows);
+        }
+        log.info("Exported {} payments as {} for merchant {}", rows, format, query.merchantId());
+        return rows;
+    }
+
+    private interface RowWriter extends AutoCloseable {
+
+        void write(PaymentExportRow row) throws IOException;
+
+        void flush() throws IOException;
+
+        /**
+         * Flushes what is buffered; the response stream itself stays open.
+         */
+        @Override
+        default void close() throws IOException {
+            flush();
+        }
+    }
+
+    private static final class CsvRowWriter implements RowWriter {
+
+        private static final String HEADER = "transaction_id,order_id,amount,currency,payment_channel,status,"
+                + "provider_transaction_id,created_at,updated_at";
+
+        private final Writer writer;
+
+        CsvRowWriter(Writer writer) throws IOException {
+            this.writer = writer;
+            writer.write(HEADER);
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void write(PaymentExportRow row) throws IOException {
+            writer.write(row.transactionId().toString());
+            writer.write(',');
+            writer.write(row.orderId().toString());
+            writer.write(',');
+            writer.write(row.amount().toPlainString());
+            writer.write(',');
+            field(row.currency());
+            writer.write(',');
+            field(row.paymentChannel());
+            writer.write(',');
+            field(row.status());
+            writer.write(',');
+            field(row.providerTransactionId());
+            writer.write(',');
+            writer.write(row.createdAt().toString());
+            writer.write(',');
+            writer.write(row.updatedAt().toString());
+            writer.write("\r\n");
+        }
+
+        // RFC 4180: quote values containing a delimiter, quote or line break and double the quotes
+        private void field(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+    }
+
+    private static final class NdjsonRowWriter implements RowWriter {
+
+        private final JsonGenerator generator;
+
+        NdjsonRowWriter(Writer writer) throws IOException {
+            this.generator = JSON.createGenerator(writer);
+            // One object per line instead of the default space between root values
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(PaymentExportRow row) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("transactionId", row.transactionId().toString());
+            generator.writeStringField("orderId", row.orderId().toString());
+            generator.writeFieldName("amount");
+            generator.writeNumber(row.amount());
+            generator.writeStringField("currency", row.currency());
+            generator.writeStringField("paymentChannel", row.paymentChannel());
+            generator.writeStringField("status", row.status());
+            generator.writeStringField("providerTransactionId", row.providerTransactionId());
+            generator.writeStringField("createdAt", row.createdAt().toString());
+            generator.writeStringField("updatedAt", row.updatedAt().toString());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.fusionxpay.payment.service;
+
+import com.fusionxpay.payment.model.PaymentTransaction;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position of the last row returned by a keyset payment search.
+ * Clients treat the encoded form as opaque and pass it back to fetch the next page.
+ */
+public record PaymentSearchCursor(LocalDateTime createdAt, UUID transactionId) {
+
+    private static final String SEPARATOR = "|";
+
+    public static PaymentSearchCursor after(PaymentTransaction transaction) {
+        return new PaymentSearchCursor(transaction.getCreatedAt(), transaction.getTransactionId());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cursor was not produced by {@link #encode()}
+     */
+    public static PaymentSearchCursor decode(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException("missing separator");
+            }
+            return new PaymentSearchCursor(
+                    LocalDateTime.parse(decoded.substring(0, separator)),
+                    UUID.fromString(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid search cursor", e);
+        }
+    }
+
+    public String encode() {
+        String raw = createdAt + SEPARATOR + transactionId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
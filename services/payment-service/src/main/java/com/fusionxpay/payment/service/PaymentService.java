@@ -1,8 +1,12 @@
 package com.fusionxpay.payment.service;
 
 import com.fusionxpay.common.model.PaymentStatus;
+import com.fusionxpay.common.money.Money;
 import feign.FeignException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import com.fusionxpay.payment.client.OrderServiceClient;
+import com.fusionxpay.payment.dto.BulkPaymentResponse;
 import com.fusionxpay.payment.dto.OrderResponse;
 import com.fusionxpay.payment.dto.PaymentPageResponse;
 import com.fusionxpay.payment.dto.PaymentRequest;
@@ -10,14 +14,22 @@ import com.fusionxpay.payment.dto.PaymentResponse;
 import com.fusionxpay.payment.dto.RefundRequest;
 import com.fusionxpay.payment.dto.RefundResponse;
 import com.fusionxpay.payment.event.OrderEventProducer;
+import com.fusionxpay.payment.model.ArchivedPaymentTransaction;
+import com.fusionxpay.payment.model.PaymentStatusTransitions;
 import com.fusionxpay.payment.model.PaymentTransaction;
 import com.fusionxpay.payment.model.RefundStatus;
 import com.fusionxpay.payment.provider.PaymentProvider;
 import com.fusionxpay.payment.provider.PaymentProviderFactory;
+import com.fusionxpay.payment.provider.PaymentRouter;
+import com.fusionxpay.payment.provider.ProviderDeadline;
 import com.fusionxpay.payment.provider.ProviderRefundRequest;
+import com.fusionxpay.payment.repository.ArchivedPaymentTransactionRepository;
 import com.fusionxpay.payment.repository.PaymentTransactionRepository;
+import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -26,14 +38,29 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
 
 @Service
@@ -41,10 +68,34 @@ import java.util.stream.Collectors;
 @Slf4j
 public class PaymentService {
 
+    static final String INITIATE_METRIC = "payment.initiate";
+    static final String CALLBACK_METRIC = "payment.callback";
+    static final String REFUND_METRIC = "payment.refund.initiate";
+    static final String INITIATION_LOCK_PREFIX = "payment:initiate:order:";
+    private static final Duration INITIATION_LOCK_TTL = Duration.ofSeconds(30);
+    // Archived statuses that mean the order was paid
+    private static final List<String> PAID_STATUSES = List.of(PaymentStatus.SUCCESS.name(), PaymentStatus.REFUNDED.name());
+
     private final PaymentTransactionRepository paymentTransactionRepository;
     private final PaymentProviderFactory paymentProviderFactory;
     private final OrderEventProducer orderEventProducer;
     private final OrderServiceClient orderServiceClient;
+    private final OrderOwnershipCache orderOwnershipCache;
+    private final TransactionOperations transactionOperations;
+    private final PaymentRouter paymentRouter;
+    private final ArchivedPaymentTransactionRepository archivedPaymentTransactionRepository;
+    private final MeterRegistry meterRegistry;
+    private final IdempotencyService idempotencyService;
+
+    @Value("${payment.bulk.max-size:100}")
+    private int bulkMaxSize = 100;
+
+    @Value("${payment.bulk.provider-concurrency:8}")
+    private int bulkProviderConcurrency = 8;
+
+    // An INITIATED transaction older than this lost its provider call (e.g. the instance stopped)
+    @Value("${payment.initiation.abandon-after:2m}")
+    private Duration initiationAbandonAfter = Duration.ofMinutes(2);
 
     @Transactional(readOnly = true)
     public Optional<PaymentTransaction> findTransactionByOrderId(UUID orderId) {
@@ -52,16 +103,108 @@ public class PaymentService {
     }
 
     /**
-     * Initiates a payment transaction
+     * Initiates a payment transaction.
+     * Runs as three steps so no database connection is held during remote calls: a short
+     * transaction that records the INITIATED transaction, the provider call outside any
+     * transaction, and a second short transaction that stores the result and queues the event.
      * 
      * @param paymentRequest the payment request details
      * @return PaymentResponse with transaction details and redirect URL
      */
-    @Transactional
     public PaymentResponse initiatePayment(Long merchantId, PaymentRequest paymentRequest) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        PaymentResponse response = null;
+        try {
+            response = initiate(merchantId, paymentRequest);
+            return response;
+        } finally {
+            sample.stop(timer(INITIATE_METRIC, "Payment initiation latency, provider call included",
+                    "status", response != null && response.getStatus() != null ? response.getStatus().name() : "ERROR"));
+        }
+    }
+
+    private PaymentResponse initiate(Long merchantId, PaymentRequest paymentRequest) {
         log.info("Initiating payment for order: {}", paymentRequest.getOrderId());
         validateOrderOwnership(merchantId, paymentRequest.getOrderId());
+
+        String lockToken = IdempotencyService.newOwnerToken();
+        if (!lockInitiation(paymentRequest.getOrderId(), lockToken)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Payment for order " + paymentRequest.getOrderId() + " is already being initiated");
+        }
+        Initiation initiation;
+        try {
+            initiation = transactionOperations.execute(status -> beginPayment(merchantId, paymentRequest));
+        } finally {
+            unlockInitiation(paymentRequest.getOrderId(), lockToken);
+        }
+        if (initiation.existingResponse() != null) {
+            return initiation.existingResponse();
+        }
+        PaymentTransaction transaction = initiation.transaction();
         
+        PaymentRouter.RoutedPayment routed;
+        try {
+            // Process the payment with the routed provider, failing over if the request allows it
+            routed = paymentRouter.processPayment(initiation.providers(), paymentRequest);
+        } catch (Exception e) {
+            // Handle any exceptions during payment processing
+            log.error("Payment processing failed: {}", e.getMessage(), e);
+            transactionOperations.executeWithoutResult(status -> recordProviderFailure(transaction));
+            
+            // Return error response with our internal transaction ID
+            return PaymentResponse.builder()
+                    .transactionId(transaction.getTransactionId())
+                    .orderId(transaction.getOrderId())
+                    .status(PaymentStatus.FAILED)
+                    .paymentChannel(transaction.getPaymentChannel())
+                    .errorMessage("Payment processing failed: " + e.getMessage())
+                    .build();
+        }
+
+        // The provider accepted the payment, so a failure to store its result must not mark it
+        // FAILED; the transaction stays INITIATED until the provider's webhook settles it.
+        PaymentResponse providerResponse = routed.response();
+        String channel = routedChannel(paymentRequest, routed.provider());
+        PaymentTransaction updated = transactionOperations.execute(
+                status -> recordProviderResult(transaction, providerResponse, channel));
+        return mapTransactionToResponse(updated, providerResponse.getRedirectUrl(), providerResponse.getErrorMessage());
+    }
+
+    /**
+     * Keeps two requests for one order, such as a double-clicked pay button, from both
+     * inserting a transaction: the lock is held across instances until the first request's
+     * INITIATED transaction has committed, after which the second finds it in flight.
+     *
+     * @return false if another request holds the lock
+     */
+    private boolean lockInitiation(UUID orderId, String ownerToken) {
+        return idempotencyService.checkAndAcquire(INITIATION_LOCK_PREFIX + orderId, ownerToken, INITIATION_LOCK_TTL)
+                != IdempotencyService.ProcessingState.PROCESSING;
+    }
+
+    private void unlockInitiation(UUID orderId, String ownerToken) {
+        idempotencyService.releaseIfOwner(INITIATION_LOCK_PREFIX + orderId, ownerToken);
+    }
+
+    /**
+     * A transaction that a new initiation for its order must not replace: settled, with the
+     * provider, or INITIATED by a request whose provider call is still running.
+     */
+    private boolean isLive(PaymentTransaction transaction) {
+        String status = transaction.getStatus();
+        if (PaymentStatus.INITIATED.name().equals(status)) {
+            return transaction.getUpdatedAt() == null
+                    || transaction.getUpdatedAt().isAfter(LocalDateTime.now().minus(initiationAbandonAfter));
+        }
+        return PaymentStatus.SUCCESS.name().equals(status) || PaymentStatus.PROCESSING.name().equals(status);
+    }
+
+    /**
+     * First step of {@link #initiatePayment}: returns an existing live transaction for the
+     * order, or inserts a new INITIATED one.
+     */
+    private Initiation beginPayment(Long merchantId, PaymentRequest paymentRequest) {
         // Check if there's already a transaction for this order
         Optional<PaymentTransaction> existingTransaction = 
                 paymentTransactionRepository.findByOrderIdAndMerchantId(paymentRequest.getOrderId(), merchantId);
@@ -69,24 +212,28 @@ public class PaymentService {
         if (existingTransaction.isPresent()) {
             PaymentTransaction transaction = existingTransaction.get();
             
-            // If the transaction is already successful, return it
-            if (PaymentStatus.SUCCESS.name().equals(transaction.getStatus())) {
-                log.info("Payment for order {} already successful", paymentRequest.getOrderId());
-                return mapTransactionToResponse(transaction, null, null);
+            // If the transaction succeeded or is still in flight, return it
+            if (isLive(transaction)) {
+                log.info("Payment for order {} already {}", paymentRequest.getOrderId(), transaction.getStatus());
+                return Initiation.existing(mapTransactionToResponse(transaction, null, null));
             }
             
-            // If the transaction is in PROCESSING state, return it
-            if (PaymentStatus.PROCESSING.name().equals(transaction.getStatus())) {
-                log.info("Payment for order {} is already processing", paymentRequest.getOrderId());
-                return mapTransactionToResponse(transaction, null, null);
-            }
-            
-            // If the transaction failed, we can try again with a new one
+            // If the transaction failed or was abandoned, we can try again with a new one
+            recordAbandoned(transaction);
             log.info("Previous payment for order {} failed, creating new transaction", paymentRequest.getOrderId());
         }
+
+        // The payment may have been moved to the archive; a paid order must not be charged again
+        Optional<ArchivedPaymentTransaction> paid = archivedPaymentTransactionRepository
+                .findByOrderIdInAndMerchantIdAndStatusIn(List.of(paymentRequest.getOrderId()), merchantId, PAID_STATUSES)
+                .stream().findFirst();
+        if (paid.isPresent()) {
+            log.info("Payment for order {} already {} (archived)", paymentRequest.getOrderId(), paid.get().getStatus());
+            return Initiation.existing(mapArchivedToResponse(paid.get()));
+        }
         
-        // Get the payment provider
-        PaymentProvider provider = paymentProviderFactory.getProvider(paymentRequest.getPaymentChannel());
+        // Get the candidate payment providers
+        List<PaymentProvider> providers = paymentRouter.route(paymentRequest.getPaymentChannel());
         
         // Create a new payment transaction
         PaymentTransaction transaction = new PaymentTransaction();
@@ -94,148 +241,579 @@ public class PaymentService {
         transaction.setMerchantId(merchantId);
         transaction.setAmount(paymentRequest.getAmount());
         transaction.setCurrency(paymentRequest.getCurrency());
-        transaction.setPaymentChannel(paymentRequest.getPaymentChannel());
+        transaction.setPaymentChannel(routedChannel(paymentRequest, providers.get(0)));
         transaction.setStatus(PaymentStatus.INITIATED.name());
         
         // Save the transaction
         transaction = paymentTransactionRepository.save(transaction);
         log.info("Created payment transaction: {}", transaction.getTransactionId());
+        return new Initiation(transaction, providers, null);
+    }
+
+    /**
+     * The channel stored on a transaction: the requested one, or the chosen provider when the
+     * request let the router pick.
+     */
+    private static String routedChannel(PaymentRequest paymentRequest, PaymentProvider provider) {
+        return PaymentRouter.ANY_CHANNEL.equalsIgnoreCase(paymentRequest.getPaymentChannel())
+                ? provider.getProviderName()
+                : paymentRequest.getPaymentChannel();
+    }
+
+    private PaymentTransaction recordProviderResult(PaymentTransaction transaction, PaymentResponse providerResponse,
+                                                    String paymentChannel) {
+        // Update transaction with provider response details, including the provider's
+        // transaction ID (e.g., Stripe session ID)
+        String previousStatus = transaction.getStatus();
+        StatusChange change = changeStatus(transaction, providerResponse.getStatus(),
+                providerResponse.getProviderTransactionId(), paymentChannel);
+        if (change == StatusChange.REJECTED || change == StatusChange.CONFLICT) {
+            // A webhook moved the transaction on while the provider call was running; report it as stored
+            return paymentTransactionRepository.findById(transaction.getTransactionId()).orElse(transaction);
+        }
+        if (providerResponse.getProviderTransactionId() != null) {
+            log.info("Stored provider transaction ID: {}", providerResponse.getProviderTransactionId());
+        }
         
-        try {
-            // Process the payment with the provider
-            PaymentResponse providerResponse = provider.processPayment(paymentRequest);
-            
-            // Update transaction with provider response details
-            transaction.setStatus(providerResponse.getStatus().name());
-            
-            // Store the provider's transaction ID (e.g., Stripe session ID)
-            if (providerResponse.getProviderTransactionId() != null) {
-                transaction.setProviderTransactionId(providerResponse.getProviderTransactionId());
-                log.info("Stored provider transaction ID: {}", providerResponse.getProviderTransactionId());
-            }
-            
-            transaction = paymentTransactionRepository.save(transaction);
-            
-            // Notify the order service about the payment initiation
-            orderEventProducer.sendPaymentStatusUpdate(
-                    transaction.getOrderId(), 
-                    transaction.getTransactionId(), 
-                    PaymentStatus.valueOf(transaction.getStatus())
-            );
-            
-            return mapTransactionToResponse(transaction, providerResponse.getRedirectUrl(), providerResponse.getErrorMessage());
-        } catch (Exception e) {
-            // Handle any exceptions during payment processing
-            log.error("Payment processing failed: {}", e.getMessage(), e);
-            
-            // Update transaction to failed status
-            transaction.setStatus(PaymentStatus.FAILED.name());
-            transaction = paymentTransactionRepository.save(transaction);
-            
-            // Notify order service about the failure
+        // Notify the order service about the payment initiation
+        if (!transaction.getStatus().equals(previousStatus)) {
             orderEventProducer.sendPaymentStatusUpdate(
                     transaction.getOrderId(),
                     transaction.getTransactionId(),
-                    PaymentStatus.FAILED
+                    transaction.getMerchantId(),
+                    PaymentStatus.valueOf(transaction.getStatus())
             );
-            
-            // Return error response with our internal transaction ID
-            return PaymentResponse.builder()
-                    .transactionId(transaction.getTransactionId())
-                    .orderId(transaction.getOrderId())
-                    .status(PaymentStatus.FAILED)
-                    .paymentChannel(transaction.getPaymentChannel())
-                    .errorMessage("Payment processing failed: " + e.getMessage())
-                    .build();
         }
+        return transaction;
     }
-    
-    @Transactional
-    public boolean handleCallback(String payload, String signature, String provider) {
-        log.info("Processing {} webhook callback", provider);
+
+    /**
+     * Marks an INITIATED transaction whose provider call never reported back as FAILED before it
+     * is replaced, so that at most one transaction of an order is open.
+     */
+    private void recordAbandoned(PaymentTransaction transaction) {
+        if (PaymentStatus.INITIATED.name().equals(transaction.getStatus())) {
+            log.warn("Transaction {} was abandoned in INITIATED", transaction.getTransactionId());
+            recordProviderFailure(transaction);
+        }
+    }
+
+    private void recordProviderFailure(PaymentTransaction transaction) {
+        // Update transaction to failed status, unless a webhook already settled it
+        if (changeStatus(transaction, PaymentStatus.FAILED, null, null) != StatusChange.APPLIED) {
+            return;
+        }
         
+        // Notify order service about the failure
+        orderEventProducer.sendPaymentStatusUpdate(
+                transaction.getOrderId(),
+                transaction.getTransactionId(),
+                transaction.getMerchantId(),
+                PaymentStatus.FAILED
+        );
+    }
+
+    /**
+     * Outcome of {@link #changeStatus}.
+     */
+    private enum StatusChange {
+        APPLIED,
+        // Already in the requested state; nothing was written
+        UNCHANGED,
+        // Not allowed by PaymentStatusTransitions, e.g. a late FAILED after SUCCESS
+        REJECTED,
+        // The row changed after it was read; retrying with a fresh read resolves it
+        CONFLICT
+    }
+
+    /**
+     * Applies a status change, and optionally a new channel or provider reference, with one
+     * conditional UPDATE checked against the version and status the transaction was read with.
+     * Concurrent changes of one transaction are thereby resolved by the database: exactly one
+     * wins and the others see CONFLICT. On APPLIED the given entity is updated to match the row.
+     */
+    private StatusChange changeStatus(PaymentTransaction transaction, PaymentStatus target,
+                                      String providerTransactionId, String paymentChannel) {
+        String reference = StringUtils.hasText(providerTransactionId)
+                && !providerTransactionId.equals(transaction.getProviderTransactionId()) ? providerTransactionId : null;
+        String channel = paymentChannel != null && !paymentChannel.equals(transaction.getPaymentChannel())
+                ? paymentChannel : null;
+        boolean statusChanges = !target.name().equals(transaction.getStatus());
+        if (!statusChanges && reference == null && channel == null) {
+            return StatusChange.UNCHANGED;
+        }
+        if (statusChanges && !PaymentStatusTransitions.isAllowed(transaction.getStatus(), target)) {
+            log.warn("Rejected status change of transaction {}: {} -> {}",
+                    transaction.getTransactionId(), transaction.getStatus(), target);
+            return StatusChange.REJECTED;
+        }
+
+        Collection<String> fromStatuses = statusChanges ? PaymentStatusTransitions.sourcesOf(target) : Set.of(target.name());
+        int updated = paymentTransactionRepository.transitionStatus(transaction.getTransactionId(),
+                transaction.getVersion(), fromStatuses, target.name(), channel, reference, LocalDateTime.now());
+        if (updated == 0) {
+            log.warn("Transaction {} changed concurrently; {} -> {} not applied",
+                    transaction.getTransactionId(), transaction.getStatus(), target);
+            return StatusChange.CONFLICT;
+        }
+
+        transaction.setStatus(target.name());
+        transaction.setVersion(transaction.getVersion() + 1);
+        if (reference != null) {
+            transaction.setProviderTransactionId(reference);
+        }
+        if (channel != null) {
+            transaction.setPaymentChannel(channel);
+        }
+        return StatusChange.APPLIED;
+    }
+
+    /**
+     * Outcome of the first step of {@link #initiatePayment}: either a response for an existing
+     * transaction, or the new INITIATED transaction and the providers to try.
+     */
+    private record Initiation(PaymentTransaction transaction, List<PaymentProvider> providers, PaymentResponse existingResponse) {
+        static Initiation existing(PaymentResponse response) {
+            return new Initiation(null, null, response);
+        }
+    }
+    
+    /**
+     * Initiates several payments for one merchant.
+     * Ownership is confirmed with one order-service call, new transactions are inserted as a
+     * JDBC batch, provider calls run concurrently up to payment.bulk.provider-concurrency, and
+     * all status events are queued together. A failing item does not affect the others.
+     *
+     * @param merchantId the authenticated merchant
+     * @param paymentRequests the payments to initiate
+     * @return one result per request, in request order
+     */
+    public BulkPaymentResponse initiatePayments(Long merchantId, List<PaymentRequest> paymentRequests) {
+        if (paymentRequests.size() > bulkMaxSize) {
+            throw new IllegalArgumentException("A bulk request may contain at most " + bulkMaxSize + " payments");
+        }
+        log.info("Initiating {} payments in bulk for merchant {}", paymentRequests.size(), merchantId);
+
+        PaymentResponse[] results = new PaymentResponse[paymentRequests.size()];
+        Set<UUID> ownedOrders = findOwnedOrders(merchantId, paymentRequests.stream()
+                .map(PaymentRequest::getOrderId)
+                .collect(Collectors.toSet()));
+
+        Set<UUID> seenOrders = new HashSet<>();
+        List<Integer> accepted = new ArrayList<>();
+        for (int i = 0; i < paymentRequests.size(); i++) {
+            PaymentRequest request = paymentRequests.get(i);
+            if (!seenOrders.add(request.getOrderId())) {
+                results[i] = rejectedPayment(request, "Duplicate order in bulk request");
+            } else if (!ownedOrders.contains(request.getOrderId())) {
+                results[i] = rejectedPayment(request, "Order validation failed");
+            } else {
+                accepted.add(i);
+            }
+        }
+
+        Map<UUID, String> lockTokens = new HashMap<>();
+        List<Integer> locked = new ArrayList<>();
+        for (int index : accepted) {
+            PaymentRequest request = paymentRequests.get(index);
+            String lockToken = IdempotencyService.newOwnerToken();
+            if (lockInitiation(request.getOrderId(), lockToken)) {
+                lockTokens.put(request.getOrderId(), lockToken);
+                locked.add(index);
+            } else {
+                results[index] = rejectedPayment(request, "Payment for order is already being initiated");
+            }
+        }
+        List<BulkPayment> started;
         try {
-            // Get the appropriate payment provider
-            PaymentProvider paymentProvider = paymentProviderFactory.getProvider(provider);
-            
-            // Validate callback signature
-            if (!paymentProvider.validateCallback(payload, signature)) {
-                log.error("Invalid webhook signature for provider: {}", provider);
-                return false;
+            started = locked.isEmpty()
+                    ? List.of()
+                    : transactionOperations.execute(status -> beginPayments(merchantId, paymentRequests, locked, results));
+        } finally {
+            lockTokens.forEach(this::unlockInitiation);
+        }
+        callProviders(started);
+        if (!started.isEmpty()) {
+            transactionOperations.executeWithoutResult(status -> recordBulkResults(started, results));
+        }
+
+        List<PaymentResponse> responses = Arrays.asList(results);
+        int succeeded = (int) responses.stream().filter(PaymentResponse::isSuccess).count();
+        return BulkPaymentResponse.builder()
+                .results(responses)
+                .succeeded(succeeded)
+                .failed(responses.size() - succeeded)
+                .build();
+    }
+
+    /**
+     * Returns the orders among orderIds that belong to the merchant, asking order-service
+     * once for those not already in the ownership cache.
+     */
+    private Set<UUID> findOwnedOrders(Long merchantId, Set<UUID> orderIds) {
+        Set<UUID> owned = new HashSet<>();
+        List<UUID> unknown = new ArrayList<>();
+        for (UUID orderId : orderIds) {
+            Long cachedOwner = orderOwnershipCache.getOwner(orderId);
+            if (cachedOwner == null) {
+                unknown.add(orderId);
+            } else if (cachedOwner.equals(merchantId)) {
+                owned.add(orderId);
             }
+        }
+        if (unknown.isEmpty()) {
+            return owned;
+        }
 
-            // Process the callback and get response
-            PaymentResponse response = paymentProvider.processCallback(payload, signature);
-            if (response == null) {
-                log.info("Ignoring unhandled event from provider: {}", provider);
-                return true; // Unhandled event type, but not an error
+        try {
+            ResponseEntity<List<OrderResponse>> response = orderServiceClient.getOrdersByIds(merchantId, unknown);
+            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
+                for (OrderResponse order : response.getBody()) {
+                    if (merchantId.equals(order.getUserId())) {
+                        orderOwnershipCache.putOwner(order.getOrderId(), order.getUserId());
+                        owned.add(order.getOrderId());
+                    }
+                }
             }
+        } catch (FeignException ex) {
+            // The affected items are reported as failed validation
+            log.error("Bulk order validation failed for merchant {}: {}", merchantId, ex.getMessage());
+        }
+        return owned;
+    }
 
-            // Idempotency check: ensure we don't process the same event twice
-            if (PaymentStatus.DUPLICATE.name().equals(response.getStatus().name())) {
-                log.info("Transaction orderId: {} already successfully processed", response.getOrderId());
-                return true;
+    /**
+     * First step of {@link #initiatePayments}: answers items that already have a live
+     * transaction and inserts INITIATED transactions for the rest in one batch.
+     */
+    private List<BulkPayment> beginPayments(Long merchantId, List<PaymentRequest> paymentRequests,
+                                            List<Integer> accepted, PaymentResponse[] results) {
+        List<UUID> orderIds = accepted.stream().map(i -> paymentRequests.get(i).getOrderId()).toList();
+        Map<UUID, PaymentTransaction> liveTransactions = new HashMap<>();
+        for (PaymentTransaction existing : paymentTransactionRepository.findByOrderIdInAndMerchantId(orderIds, merchantId)) {
+            if (isLive(existing)) {
+                liveTransactions.put(existing.getOrderId(), existing);
+            } else {
+                recordAbandoned(existing);
             }
-            // If the event is being processed concurrently by another instance
-            if (PaymentStatus.PROCESSING.equals(response.getStatus())) {
-                log.info("Transaction orderId: {} is currently being processed by another instance", response.getOrderId());
-                return true; // Consider this a success, another instance is handling it
+        }
+        // Orders without a live transaction may have been paid and archived
+        Map<UUID, ArchivedPaymentTransaction> paidArchived = new HashMap<>();
+        List<UUID> withoutLive = orderIds.stream().filter(orderId -> !liveTransactions.containsKey(orderId)).toList();
+        if (!withoutLive.isEmpty()) {
+            for (ArchivedPaymentTransaction archived : archivedPaymentTransactionRepository
+                    .findByOrderIdInAndMerchantIdAndStatusIn(withoutLive, merchantId, PAID_STATUSES)) {
+                paidArchived.put(archived.getOrderId(), archived);
             }
+        }
 
-            if (response.getOrderId() == null) {
-                log.warn("Callback response from provider {} missing Order ID. Will try to resolve by providerTransactionId.", provider);
+        List<BulkPayment> started = new ArrayList<>();
+        for (int index : accepted) {
+            PaymentRequest request = paymentRequests.get(index);
+            PaymentTransaction live = liveTransactions.get(request.getOrderId());
+            if (live != null) {
+                results[index] = mapTransactionToResponse(live, null, null);
+                continue;
             }
-            
-            // Find and update transaction record
-            Optional<PaymentTransaction> optionalTransaction = Optional.empty();
-            if (response.getOrderId() != null) {
-                optionalTransaction = paymentTransactionRepository.findByOrderId(response.getOrderId());
+            ArchivedPaymentTransaction archived = paidArchived.get(request.getOrderId());
+            if (archived != null) {
+                results[index] = mapArchivedToResponse(archived);
+                continue;
             }
-            if (optionalTransaction.isEmpty()
-                    && response.getProviderTransactionId() != null
-                    && !response.getProviderTransactionId().isBlank()) {
-                optionalTransaction = paymentTransactionRepository.findByProviderTransactionId(response.getProviderTransactionId());
+
+            List<PaymentProvider> providers;
+            try {
+                providers = paymentRouter.route(request.getPaymentChannel());
+            } catch (IllegalArgumentException e) {
+                results[index] = rejectedPayment(request, e.getMessage());
+                continue;
             }
-            
-            if (optionalTransaction.isEmpty()) {
-                log.error("Transaction not found for provider {} (orderId={}, providerTransactionId={})",
-                        provider, response.getOrderId(), response.getProviderTransactionId());
-                return false;
+
+            PaymentTransaction transaction = new PaymentTransaction();
+            transaction.setOrderId(request.getOrderId());
+            transaction.setMerchantId(merchantId);
+            transaction.setAmount(request.getAmount());
+            transaction.setCurrency(request.getCurrency());
+            transaction.setPaymentChannel(routedChannel(request, providers.get(0)));
+            transaction.setStatus(PaymentStatus.INITIATED.name());
+            started.add(new BulkPayment(index, request, providers, transaction));
+        }
+
+        // Inserted as one JDBC batch (hibernate.jdbc.batch_size); IDs are generated client-side
+        List<PaymentTransaction> saved = paymentTransactionRepository.saveAll(
+                started.stream().map(BulkPayment::getTransaction).toList());
+        for (int i = 0; i < started.size(); i++) {
+            started.get(i).setTransaction(saved.get(i));
+        }
+        log.info("Created {} payment transactions in bulk", saved.size());
+        return started;
+    }
+
+    /**
+     * Calls the providers concurrently, at most payment.bulk.provider-concurrency at a time, within
+     * the request's deadline.
+     */
+    private void callProviders(List<BulkPayment> payments) {
+        Semaphore permits = new Semaphore(bulkProviderConcurrency);
+        Long deadline = ProviderDeadline.current();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (BulkPayment payment : payments) {
+                executor.submit(() -> {
+                    ProviderDeadline.restore(deadline);
+                    try {
+                        permits.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        payment.setError("Payment processing interrupted");
+                        return;
+                    }
+                    try {
+                        PaymentRouter.RoutedPayment routed = paymentRouter.processPayment(payment.getProviders(), payment.getRequest());
+                        payment.setProvider(routed.provider());
+                        payment.setProviderResponse(routed.response());
+                    } catch (Exception e) {
+                        log.error("Payment processing failed for order {}: {}", payment.getRequest().getOrderId(), e.getMessage(), e);
+                        payment.setError("Payment processing failed: " + e.getMessage());
+                    } finally {
+                        permits.release();
+                    }
+                });
             }
+        }
+    }
 
-            PaymentTransaction transaction = optionalTransaction.get();
-            if (response.getOrderId() == null) {
-                response.setOrderId(transaction.getOrderId());
+    /**
+     * Last step of {@link #initiatePayments}: records each provider outcome the way
+     * {@link #recordProviderResult} does for a single payment, and queues the status events together.
+     */
+    private void recordBulkResults(List<BulkPayment> payments, PaymentResponse[] results) {
+        List<PaymentTransaction> changed = new ArrayList<>();
+        for (BulkPayment payment : payments) {
+            PaymentTransaction transaction = payment.getTransaction();
+            PaymentResponse providerResponse = payment.getProviderResponse();
+            String channel = payment.getProvider() != null
+                    ? routedChannel(payment.getRequest(), payment.getProvider())
+                    : null;
+            String previousStatus = transaction.getStatus();
+            StatusChange change = providerResponse == null
+                    ? changeStatus(transaction, PaymentStatus.FAILED, null, channel)
+                    : changeStatus(transaction, providerResponse.getStatus(),
+                            providerResponse.getProviderTransactionId(), channel);
+            if (change == StatusChange.REJECTED || change == StatusChange.CONFLICT) {
+                // A webhook moved the transaction on while the provider call was running; report it as stored
+                transaction = paymentTransactionRepository.findById(transaction.getTransactionId()).orElse(transaction);
+                payment.setTransaction(transaction);
+            } else if (!transaction.getStatus().equals(previousStatus)) {
+                changed.add(transaction);
             }
+
+            results[payment.getIndex()] = providerResponse == null
+                    ? mapTransactionToResponse(transaction, null, payment.getError())
+                    : mapTransactionToResponse(transaction, providerResponse.getRedirectUrl(), providerResponse.getErrorMessage());
+        }
+        orderEventProducer.sendPaymentStatusUpdates(changed);
+    }
+
+    private PaymentResponse rejectedPayment(PaymentRequest request, String errorMessage) {
+        return PaymentResponse.builder()
+                .orderId(request.getOrderId())
+                .amount(request.getAmount())
+                .currency(request.getCurrency())
+                .paymentChannel(request.getPaymentChannel())
+                .status(PaymentStatus.FAILED)
+                .errorMessage(errorMessage)
+                .build();
+    }
+
+    /**
+     * One item of a bulk initiation; the provider outcome is filled in by a worker thread.
+     */
+    @Data
+    private static final class BulkPayment {
+        private final int index;
+        private final PaymentRequest request;
+        private final List<PaymentProvider> providers;
+        private PaymentTransaction transaction;
+        private volatile PaymentProvider provider;
+        private volatile PaymentResponse providerResponse;
+        private volatile String error;
+
+        BulkPayment(int index, PaymentRequest request, List<PaymentProvider> providers, PaymentTransaction transaction) {
+            this.index = index;
+            this.request = request;
+            this.providers = providers;
+            this.transaction = transaction;
+        }
+    }
+
+    @Transactional
+    public boolean handleCallback(String payload, String signature, String provider) {
+        log.info("Processing {} webhook callback", provider);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        PaymentProvider paymentProvider = null;
+        String outcome = "error";
+        
+        try {
+            // Get the appropriate payment provider
+            paymentProvider = paymentProviderFactory.getProvider(provider);
             
-            // Log status change
-            log.info("Updating transaction {} status: {} -> {}", 
-                transaction.getTransactionId(), transaction.getStatus(), response.getStatus().name());
-                
-            // Update transaction status
-            transaction.setStatus(response.getStatus().name());
-            if (response.getProviderTransactionId() != null && !response.getProviderTransactionId().isBlank()) {
-                transaction.setProviderTransactionId(response.getProviderTransactionId());
+            // Validate callback signature
+            if (!paymentProvider.validateCallback(payload, signature)) {
+                log.error("Invalid webhook signature for provider: {}", provider);
+                outcome = "invalid_signature";
+                return false;
             }
-            paymentTransactionRepository.save(transaction);
 
-            // Notify order service about the status update
-            orderEventProducer.sendPaymentStatusUpdate(
-                transaction.getOrderId(),
-                transaction.getTransactionId(),
-                response.getStatus()
-            );
-            
-            log.info("Successfully processed {} webhook for transaction: {}", 
-                provider, transaction.getTransactionId());
-            return true;
+            // Process the callback and get response; the signature was verified just above
+            boolean applied = applyCallbackResponse(provider, paymentProvider.processVerifiedCallback(payload, signature));
+            outcome = applied ? "applied" : "rejected";
+            rollbackUnlessApplied(applied);
+            return applied;
         } catch (Exception e) {
             log.error("Error processing {} webhook: {}", provider, e.getMessage(), e);
             // Return false instead of throwing to avoid potential duplicate processing from retries
+            rollbackUnlessApplied(false);
+            return false;
+        } finally {
+            sample.stop(callbackTimer(paymentProvider, payload, "sync", outcome));
+        }
+    }
+
+    /**
+     * Processes a webhook taken from the intake queue. The signature was verified when the
+     * event was accepted, so only the provider event handling and the status update run here.
+     *
+     * @return true if the event was applied or can be safely dropped, false if it should be retried
+     */
+    @Transactional
+    public boolean processQueuedCallback(String payload, String signature, String provider) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        PaymentProvider paymentProvider = null;
+        String outcome = "error";
+        try {
+            paymentProvider = paymentProviderFactory.getProvider(provider);
+            boolean applied = applyCallbackResponse(provider, paymentProvider.processVerifiedCallback(payload, signature));
+            outcome = applied ? "applied" : "rejected";
+            rollbackUnlessApplied(applied);
+            return applied;
+        } catch (Exception e) {
+            log.error("Error processing queued {} webhook: {}", provider, e.getMessage(), e);
+            rollbackUnlessApplied(false);
             return false;
+        } finally {
+            sample.stop(callbackTimer(paymentProvider, payload, "queued", outcome));
+        }
+    }
+
+    /**
+     * Rolls back a callback that will be retried, so that nothing done for it commits and the
+     * provider's record of the event (such as Stripe's event key) is released for the redelivery.
+     */
+    private static void rollbackUnlessApplied(boolean applied) {
+        if (!applied && TransactionSynchronizationManager.isActualTransactionActive()) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
         }
     }
 
+    /**
+     * @param paymentProvider resolved provider, or null if the provider name was not recognised
+     * @param intake sync for {@link #handleCallback}, queued for {@link #processQueuedCallback}
+     */
+    private Timer callbackTimer(PaymentProvider paymentProvider, String payload, String intake, String outcome) {
+        String providerName = paymentProvider != null ? paymentProvider.getProviderName() : null;
+        String eventType = paymentProvider != null ? paymentProvider.callbackEventType(payload) : null;
+        return timer(CALLBACK_METRIC, "Webhook handling latency",
+                "provider", providerName != null ? providerName : "unknown",
+                "event_type", eventType != null ? eventType : "other",
+                "intake", intake,
+                "outcome", outcome);
+    }
+
+    private Timer timer(String name, String description, String... tags) {
+        return Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private boolean applyCallbackResponse(String provider, PaymentResponse response) {
+        if (response == null) {
+            log.info("Ignoring unhandled event from provider: {}", provider);
+            return true; // Unhandled event type, but not an error
+        }
+
+        // Idempotency check: ensure we don't process the same event twice
+        if (PaymentStatus.DUPLICATE.name().equals(response.getStatus().name())) {
+            log.info("Transaction orderId: {} already successfully processed", response.getOrderId());
+            return true;
+        }
+        // If the event is being processed concurrently by another instance
+        if (PaymentStatus.PROCESSING.equals(response.getStatus())) {
+            log.info("Transaction orderId: {} is currently being processed by another instance", response.getOrderId());
+            return true; // Consider this a success, another instance is handling it
+        }
+
+        if (response.getOrderId() == null) {
+            log.warn("Callback response from provider {} missing Order ID. Will try to resolve by providerTransactionId.", provider);
+        }
+        
+        // Find and update transaction record
+        Optional<PaymentTransaction> optionalTransaction = Optional.empty();
+        if (response.getOrderId() != null) {
+            optionalTransaction = paymentTransactionRepository.findByOrderId(response.getOrderId());
+        }
+        if (optionalTransaction.isEmpty()
+                && response.getProviderTransactionId() != null
+                && !response.getProviderTransactionId().isBlank()) {
+            optionalTransaction = paymentTransactionRepository.findByProviderTransactionId(response.getProviderTransactionId());
+        }
+        if (optionalTransaction.isEmpty()) {
+            optionalTransaction = restoreArchived(response.getOrderId(), response.getProviderTransactionId());
+        }
+        
+        if (optionalTransaction.isEmpty()) {
+            log.error("Transaction not found for provider {} (orderId={}, providerTransactionId={})",
+                    provider, response.getOrderId(), response.getProviderTransactionId());
+            return false;
+        }
+
+        PaymentTransaction transaction = optionalTransaction.get();
+        if (response.getOrderId() == null) {
+            response.setOrderId(transaction.getOrderId());
+        }
+        
+        // Log status change
+        String previousStatus = transaction.getStatus();
+        log.info("Updating transaction {} status: {} -> {}", 
+            transaction.getTransactionId(), previousStatus, response.getStatus().name());
+            
+        // Update transaction status
+        StatusChange change = changeStatus(transaction, response.getStatus(), response.getProviderTransactionId(), null);
+        if (change == StatusChange.CONFLICT) {
+            // Lost a race with another event for this transaction; rolled back so the provider or the inbox retries it
+            return false;
+        }
+        if (change != StatusChange.APPLIED || previousStatus.equals(transaction.getStatus())) {
+            // Redelivered or out-of-order event: nothing to notify
+            log.info("No status change for transaction {} from {} webhook ({})",
+                    transaction.getTransactionId(), provider, change);
+            return true;
+        }
+
+        // Notify order service about the status update
+        orderEventProducer.sendPaymentStatusUpdate(
+            transaction.getOrderId(),
+            transaction.getTransactionId(),
+            transaction.getMerchantId(),
+            response.getStatus()
+        );
+        
+        log.info("Successfully processed {} webhook for transaction: {}", 
+            provider, transaction.getTransactionId());
+        return true;
+    }
+
     /**
      * Gets a payment transaction by ID
      * 
@@ -273,6 +851,11 @@ public class PaymentService {
                 paymentTransactionRepository.findByOrderIdAndMerchantId(orderId, merchantId);
         
         if (optionalTransaction.isEmpty()) {
+            Optional<ArchivedPaymentTransaction> archived =
+                    archivedPaymentTransactionRepository.findByOrderIdAndMerchantId(orderId, merchantId);
+            if (archived.isPresent()) {
+                return mapArchivedToResponse(archived.get());
+            }
             log.warn("Transaction not found for order: {}", orderId);
             return PaymentResponse.builder()
                     .orderId(orderId)
@@ -286,9 +869,10 @@ public class PaymentService {
 
     @Transactional(readOnly = true)
     public PaymentPageResponse searchPayments(Long merchantId, int page, int size, String status, String from, String to) {
-        Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
-        LocalDateTime fromTime = parseDateBoundary(from, false);
-        LocalDateTime toTime = parseDateBoundary(to, true);
+        Pageable pageable = PageRequest.of(page, size,
+                Sort.by(Sort.Direction.DESC, "createdAt").and(Sort.by(Sort.Direction.DESC, "transactionId")));
+        LocalDateTime fromTime = parseDateBoundary(from, false, PaymentTransactionRepository.UNBOUNDED_FROM);
+        LocalDateTime toTime = parseDateBoundary(to, true, PaymentTransactionRepository.UNBOUNDED_TO);
         String normalizedStatus = (status != null && !status.isBlank()) ? status : null;
 
         Page<PaymentTransaction> transactionPage =
@@ -306,7 +890,85 @@ public class PaymentService {
                 .last(transactionPage.isLast())
                 .build();
     }
+
+    /**
+     * Searches payments by seeking past the (createdAt, transactionId) of the previous page,
+     * so deep pages cost the same as the first one. The total is only counted on request.
+     *
+     * @param cursor cursor returned with the previous page, or null for the first page
+     * @param includeTotal whether to run the COUNT query for totalElements
+     */
+    @Transactional(readOnly = true)
+    public PaymentPageResponse searchPaymentsByCursor(Long merchantId, String cursor, int size, String status,
+                                                      String from, String to, boolean includeTotal) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        LocalDateTime fromTime = parseDateBoundary(from, false, PaymentTransactionRepository.UNBOUNDED_FROM);
+        LocalDateTime toTime = parseDateBoundary(to, true, PaymentTransactionRepository.UNBOUNDED_TO);
+        String normalizedStatus = (status != null && !status.isBlank()) ? status : null;
+        // One extra row tells whether another page exists without counting
+        Limit limit = Limit.of(size + 1);
+
+        List<PaymentTransaction> transactions;
+        if (cursor == null || cursor.isBlank()) {
+            transactions = paymentTransactionRepository.findFirstByKeyset(
+                    merchantId, normalizedStatus, fromTime, toTime, limit);
+        } else {
+            PaymentSearchCursor after = PaymentSearchCursor.decode(cursor);
+            transactions = paymentTransactionRepository.findNextByKeyset(
+                    merchantId, normalizedStatus, fromTime, toTime, after.createdAt(), after.transactionId(), limit);
+        }
+
+        boolean hasMore = transactions.size() > size;
+        List<PaymentTransaction> pageContent = hasMore ? transactions.subList(0, size) : transactions;
+        long total = includeTotal
+                ? paymentTransactionRepository.countWithFilters(merchantId, normalizedStatus, fromTime, toTime)
+                : -1;
+
+        return PaymentPageResponse.builder()
+                .payments(pageContent.stream()
+                        .map(transaction -> mapTransactionToResponse(transaction, null, null))
+                        .collect(Collectors.toList()))
+                .page(0)
+                .size(size)
+                .totalElements(total)
+                .totalPages(total < 0 ? -1 : (int) ((total + size - 1) / size))
+                .first(cursor == null || cursor.isBlank())
+                .last(!hasMore)
+                .nextCursor(hasMore ? PaymentSearchCursor.after(pageContent.get(size - 1)).encode() : null)
+                .build();
+    }
     
+    /**
+     * Searches payments moved to payment_transactions_archive by the archival job. Slower than
+     * {@link #searchPayments} and offset-paginated; meant for history beyond the hot retention.
+     */
+    @Transactional(readOnly = true)
+    public PaymentPageResponse searchArchivedPayments(Long merchantId, int page, int size, String status,
+                                                      String from, String to) {
+        Pageable pageable = PageRequest.of(page, size,
+                Sort.by(Sort.Direction.DESC, "createdAt").and(Sort.by(Sort.Direction.DESC, "transactionId")));
+        LocalDateTime fromTime = parseDateBoundary(from, false, PaymentTransactionRepository.UNBOUNDED_FROM);
+        LocalDateTime toTime = parseDateBoundary(to, true, PaymentTransactionRepository.UNBOUNDED_TO);
+        String normalizedStatus = (status != null && !status.isBlank()) ? status : null;
+
+        Page<ArchivedPaymentTransaction> archivedPage = archivedPaymentTransactionRepository.findWithFilters(
+                merchantId, normalizedStatus, fromTime, toTime, pageable);
+
+        return PaymentPageResponse.builder()
+                .payments(archivedPage.getContent().stream()
+                        .map(this::mapArchivedToResponse)
+                        .collect(Collectors.toList()))
+                .page(archivedPage.getNumber())
+                .size(archivedPage.getSize())
+                .totalElements(archivedPage.getTotalElements())
+                .totalPages(archivedPage.getTotalPages())
+                .first(archivedPage.isFirst())
+                .last(archivedPage.isLast())
+                .build();
+    }
+
     /**
      * Gets a list of all available payment providers
      * 
@@ -367,6 +1029,50 @@ public class PaymentService {
                 .build();
     }
 
+    /**
+     * Moves an order's transaction back from the archive for a webhook that arrived after the
+     * archival job took it, such as a refund made in the provider's dashboard, so the update takes
+     * the usual path. The archival job moves it out again once it is closed and old. Runs in the
+     * caller's transaction, so both statements commit or roll back with the update.
+     *
+     * @param orderId order of the transaction, or null
+     * @param providerTransactionId provider reference, used when the order is unknown or not archived
+     */
+    private Optional<PaymentTransaction> restoreArchived(UUID orderId, String providerTransactionId) {
+        Optional<ArchivedPaymentTransaction> archived = orderId != null
+                ? archivedPaymentTransactionRepository.findFirstByOrderIdOrderByCreatedAtDesc(orderId)
+                : Optional.empty();
+        if (archived.isEmpty() && providerTransactionId != null && !providerTransactionId.isBlank()) {
+            archived = archivedPaymentTransactionRepository
+                    .findFirstByProviderTransactionIdOrderByCreatedAtDesc(providerTransactionId);
+        }
+        if (archived.isEmpty()) {
+            return Optional.empty();
+        }
+        UUID transactionId = archived.get().getTransactionId();
+        paymentTransactionRepository.restoreFromArchive(transactionId);
+        archivedPaymentTransactionRepository.deleteArchived(transactionId);
+        log.info("Restored archived transaction {} of order {} for a late update", transactionId, archived.get().getOrderId());
+        return paymentTransactionRepository.findById(transactionId);
+    }
+
+    /**
+     * Archived transactions are closed, so their status is always one of SUCCESS, FAILED or REFUNDED.
+     */
+    private PaymentResponse mapArchivedToResponse(ArchivedPaymentTransaction transaction) {
+        return PaymentResponse.builder()
+                .transactionId(transaction.getTransactionId())
+                .orderId(transaction.getOrderId())
+                .amount(transaction.getAmount())
+                .currency(transaction.getCurrency())
+                .paymentChannel(transaction.getPaymentChannel())
+                .status(PaymentStatus.valueOf(transaction.getStatus()))
+                .providerTransactionId(transaction.getProviderTransactionId())
+                .createdAt(transaction.getCreatedAt())
+                .updatedAt(transaction.getUpdatedAt())
+                .build();
+    }
+
     /**
      * Updates the payment status for a given order.
      * Used by callback handlers to update payment state.
@@ -379,8 +1085,8 @@ public class PaymentService {
     public boolean updatePaymentStatus(UUID orderId, PaymentStatus status) {
         log.info("Updating payment status for order {} to {}", orderId, status);
 
-        Optional<PaymentTransaction> optionalTransaction =
-                paymentTransactionRepository.findByOrderId(orderId);
+        Optional<PaymentTransaction> optionalTransaction = paymentTransactionRepository.findByOrderId(orderId)
+                .or(() -> restoreArchived(orderId, null));
 
         if (optionalTransaction.isEmpty()) {
             log.warn("Transaction not found for order: {}", orderId);
@@ -390,8 +1096,13 @@ public class PaymentService {
         PaymentTransaction transaction = optionalTransaction.get();
         String previousStatus = transaction.getStatus();
 
-        transaction.setStatus(status.name());
-        paymentTransactionRepository.save(transaction);
+        StatusChange change = changeStatus(transaction, status, null, null);
+        if (change == StatusChange.UNCHANGED) {
+            return true;
+        }
+        if (change != StatusChange.APPLIED) {
+            return false;
+        }
 
         log.info("Updated transaction {} status: {} -> {}",
                 transaction.getTransactionId(), previousStatus, status);
@@ -400,6 +1111,7 @@ public class PaymentService {
         orderEventProducer.sendPaymentStatusUpdate(
                 transaction.getOrderId(),
                 transaction.getTransactionId(),
+                transaction.getMerchantId(),
                 status
         );
 
@@ -417,7 +1129,8 @@ public class PaymentService {
             return false;
         }
 
-        Optional<PaymentTransaction> optionalTransaction = paymentTransactionRepository.findByOrderId(orderId);
+        Optional<PaymentTransaction> optionalTransaction = paymentTransactionRepository.findByOrderId(orderId)
+                .or(() -> restoreArchived(orderId, null));
         if (optionalTransaction.isEmpty()) {
             log.warn("Transaction not found for order {} while updating providerTransactionId", orderId);
             return false;
@@ -437,6 +1150,18 @@ public class PaymentService {
      */
     @Transactional
     public RefundResponse initiateRefund(Long merchantId, RefundRequest refundRequest) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        RefundResponse response = null;
+        try {
+            response = refund(merchantId, refundRequest);
+            return response;
+        } finally {
+            sample.stop(timer(REFUND_METRIC, "Refund initiation latency, provider call included",
+                    "status", response != null && response.getStatus() != null ? response.getStatus().name() : "ERROR"));
+        }
+    }
+
+    private RefundResponse refund(Long merchantId, RefundRequest refundRequest) {
         log.info("Initiating refund for transaction: {}", refundRequest.getTransactionId());
 
         // Find the original transaction
@@ -463,27 +1188,9 @@ public class PaymentService {
         }
 
         PaymentTransaction transaction = optionalTransaction.get();
-
-        // Check if transaction is in a refundable state
-        if (!PaymentStatus.SUCCESS.name().equals(transaction.getStatus())) {
-            log.error("Transaction {} is not in a refundable state: {}",
-                    transactionId, transaction.getStatus());
-            return RefundResponse.builder()
-                    .status(RefundStatus.FAILED)
-                    .transactionId(transactionId.toString())
-                    .errorMessage("Transaction is not in a refundable state")
-                    .build();
-        }
-
-        // Get the provider transaction ID (Stripe PaymentIntent ID or PayPal Capture ID)
-        String providerTransactionId = transaction.getProviderTransactionId();
-        if (providerTransactionId == null || providerTransactionId.isEmpty()) {
-            log.error("No provider transaction ID found for transaction: {}", transactionId);
-            return RefundResponse.builder()
-                    .status(RefundStatus.FAILED)
-                    .transactionId(transactionId.toString())
-                    .errorMessage("No provider transaction ID found")
-                    .build();
+        RefundResponse rejection = checkRefundable(refundRequest, transaction);
+        if (rejection != null) {
+            return rejection;
         }
 
         String paymentChannel = transaction.getPaymentChannel();
@@ -518,7 +1225,54 @@ public class PaymentService {
         }
     }
 
-    private ProviderRefundRequest buildProviderRefundRequest(RefundRequest refundRequest, PaymentTransaction transaction) {
+    /**
+     * Checks shared by single and bulk refunds.
+     *
+     * @return a FAILED response if the transaction cannot be refunded as requested, or null if it can
+     */
+    static RefundResponse checkRefundable(RefundRequest refundRequest, PaymentTransaction transaction) {
+        UUID transactionId = transaction.getTransactionId();
+
+        // Check if transaction is in a refundable state
+        if (!PaymentStatus.SUCCESS.name().equals(transaction.getStatus())) {
+            log.error("Transaction {} is not in a refundable state: {}",
+                    transactionId, transaction.getStatus());
+            return RefundResponse.builder()
+                    .status(RefundStatus.FAILED)
+                    .transactionId(transactionId.toString())
+                    .errorMessage("Transaction is not in a refundable state")
+                    .build();
+        }
+
+        // Get the provider transaction ID (Stripe PaymentIntent ID or PayPal Capture ID)
+        String providerTransactionId = transaction.getProviderTransactionId();
+        if (providerTransactionId == null || providerTransactionId.isEmpty()) {
+            log.error("No provider transaction ID found for transaction: {}", transactionId);
+            return RefundResponse.builder()
+                    .status(RefundStatus.FAILED)
+                    .transactionId(transactionId.toString())
+                    .errorMessage("No provider transaction ID found")
+                    .build();
+        }
+
+        String refundCurrency = refundCurrency(refundRequest, transaction);
+        if (refundRequest.getAmount() != null && !Money.fits(refundRequest.getAmount(), refundCurrency)) {
+            log.error("Refund amount {} does not fit currency {} of transaction {}",
+                    refundRequest.getAmount(), refundCurrency, transactionId);
+            return RefundResponse.builder()
+                    .status(RefundStatus.FAILED)
+                    .transactionId(transactionId.toString())
+                    .errorMessage("Refund amount has more decimal places than " + refundCurrency + " allows")
+                    .build();
+        }
+        return null;
+    }
+
+    private static String refundCurrency(RefundRequest refundRequest, PaymentTransaction transaction) {
+        return refundRequest.getCurrency() != null ? refundRequest.getCurrency() : transaction.getCurrency();
+    }
+
+    static ProviderRefundRequest buildProviderRefundRequest(RefundRequest refundRequest, PaymentTransaction transaction) {
         // `captureId` is kept for legacy PayPal callers; all providers consume the normalized target ID below.
         String refundTargetId = refundRequest.getCaptureId() != null
                 ? refundRequest.getCaptureId()
@@ -527,14 +1281,14 @@ public class PaymentService {
         return ProviderRefundRequest.builder()
                 .providerTransactionId(refundTargetId)
                 .amount(refundRequest.getAmount())
-                .currency(refundRequest.getCurrency() != null ? refundRequest.getCurrency() : transaction.getCurrency())
+                .currency(refundCurrency(refundRequest, transaction))
                 .reason(refundRequest.getReason())
                 .build();
     }
 
-    private LocalDateTime parseDateBoundary(String rawValue, boolean endOfDay) {
+    static LocalDateTime parseDateBoundary(String rawValue, boolean endOfDay, LocalDateTime unbounded) {
         if (rawValue == null || rawValue.isBlank()) {
-            return null;
+            return unbounded;
         }
 
         try {
@@ -548,6 +1302,14 @@ public class PaymentService {
     }
 
     private void validateOrderOwnership(Long merchantId, UUID orderId) {
+        Long cachedOwner = orderOwnershipCache.getOwner(orderId);
+        if (cachedOwner != null) {
+            if (!cachedOwner.equals(merchantId)) {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Order does not belong to merchant");
+            }
+            return;
+        }
+
         try {
             ResponseEntity<OrderResponse> response = orderServiceClient.getOrderById(merchantId, orderId);
             if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
@@ -558,6 +1320,7 @@ public class PaymentService {
             if (order.getUserId() == null || !merchantId.equals(order.getUserId())) {
                 throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Order does not belong to merchant");
             }
+            orderOwnershipCache.putOwner(orderId, order.getUserId());
         } catch (FeignException.Forbidden ex) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Order does not belong to merchant", ex);
         } catch (FeignException.NotFound ex) {
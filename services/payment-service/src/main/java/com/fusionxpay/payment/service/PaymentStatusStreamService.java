@@ -0,0 +1,322 @@
+package com.fusionxpay.payment.service;
+
+import com.fusionxpay.common.event.OrderPaymentEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans payment status events out to Server-Sent Event streams held by this instance.
+ * <p>
+ * Every instance consumes the whole payment events topic and keeps the last few events of each
+ * merchant, so a client that reconnects to any instance with {@code Last-Event-ID} gets what it
+ * missed. Instances interleave the topic's partitions differently, so an event ID is not a place in
+ * one instance's arrival order but an offset vector, {@code partition:offset} pairs such as
+ * {@code 0:41,3:17}: the highest offset per partition among the merchant's events up to and
+ * including that one. Resuming replays the buffered events above the vector in their partition;
+ * partitions missing from it, and IDs that cannot be parsed, replay everything buffered, so replay
+ * is at-least-once.
+ * <p>
+ * Events are queued per connection and written by a virtual thread, so a slow client never holds
+ * up the Kafka listener. A connection whose queue fills up is closed; the client resumes from its
+ * last event ID.
+ */
+@Service
+@Slf4j
+public class PaymentStatusStreamService {
+
+    static final String EVENT_NAME = "payment-status";
+    static final String CONNECTIONS_METRIC = "payment.stream.connections";
+    static final String OVERFLOW_METRIC = "payment.stream.overflow";
+
+    private static final StreamEvent HEARTBEAT = new StreamEvent(null, -1, -1, null, 0);
+
+    // Only read or modified inside merchants.compute*, which serialises access per merchant
+    private final Map<Long, MerchantStream> merchants = new ConcurrentHashMap<>();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final Counter overflows;
+
+    @Value("${payment.stream.timeout:30m}")
+    private Duration timeout = Duration.ofMinutes(30);
+
+    // Recent events kept per merchant for Last-Event-ID resume
+    @Value("${payment.stream.replay-size:200}")
+    private int replaySize = 200;
+
+    @Value("${payment.stream.replay-window:10m}")
+    private Duration replayWindow = Duration.ofMinutes(10);
+
+    // Live events waiting to be written to one connection, on top of a full replay, before it is closed as too slow
+    @Value("${payment.stream.connection-buffer:100}")
+    private int connectionBuffer = 100;
+
+    @Value("${payment.stream.max-connections-per-merchant:20}")
+    private int maxConnectionsPerMerchant = 20;
+
+    public PaymentStatusStreamService(MeterRegistry meterRegistry) {
+        Gauge.builder(CONNECTIONS_METRIC, connections, AtomicInteger::get).register(meterRegistry);
+        this.overflows = meterRegistry.counter(OVERFLOW_METRIC);
+    }
+
+    /**
+     * Opens a stream of the merchant's payment status changes.
+     *
+     * @param orderId     only stream this order's events; when set, buffered events of the order are
+     *                    sent first so a payment that settled just before connecting is not missed
+     * @param lastEventId ID of the last event the client received, to resume after it
+     * @throws ResponseStatusException 429 if the merchant already has too many open streams
+     */
+    public SseEmitter subscribe(Long merchantId, UUID orderId, String lastEventId) {
+        Subscriber subscriber = new Subscriber(merchantId, orderId, new SseEmitter(timeout.toMillis()));
+        merchants.compute(merchantId, (id, stream) -> {
+            if (stream == null) {
+                stream = new MerchantStream();
+            }
+            if (stream.subscribers.size() >= maxConnectionsPerMerchant) {
+                throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many open payment streams");
+            }
+            stream.subscribers.add(subscriber);
+            if (lastEventId != null || orderId != null) {
+                stream.replay(lastEventId).forEach(subscriber::offer);
+            }
+            return stream;
+        });
+        connections.incrementAndGet();
+
+        SseEmitter emitter = subscriber.emitter;
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> unsubscribe(subscriber));
+        return emitter;
+    }
+
+    /**
+     * Delivers an event to the owning merchant's open streams and keeps it for resume.
+     *
+     * @param partition Kafka partition of the event's record
+     * @param offset    offset of the record in that partition
+     */
+    public void publish(int partition, long offset, OrderPaymentEvent event) {
+        if (event.getMerchantId() == null) {
+            return;
+        }
+        merchants.compute(event.getMerchantId(), (id, stream) -> {
+            if (stream == null) {
+                stream = new MerchantStream();
+            }
+            StreamEvent streamEvent = stream.append(partition, offset, event);
+            stream.subscribers.forEach(subscriber -> subscriber.offer(streamEvent));
+            return stream;
+        });
+    }
+
+    /**
+     * Keeps idle connections open through proxies and drops buffers nobody can resume from any more.
+     */
+    @Scheduled(fixedDelayString = "${payment.stream.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        long cutoff = System.currentTimeMillis() - replayWindow.toMillis();
+        for (Long merchantId : merchants.keySet()) {
+            merchants.computeIfPresent(merchantId, (id, stream) -> {
+                stream.expire(cutoff);
+                stream.subscribers.forEach(subscriber -> subscriber.offer(HEARTBEAT));
+                return stream.recent.isEmpty() && stream.subscribers.isEmpty() ? null : stream;
+            });
+        }
+    }
+
+    int openConnections() {
+        return connections.get();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        List<Subscriber> open = new ArrayList<>();
+        for (Long merchantId : merchants.keySet()) {
+            merchants.computeIfPresent(merchantId, (id, stream) -> {
+                open.addAll(stream.subscribers);
+                return stream;
+            });
+        }
+        // Clients reconnect to another instance and resume from their last event ID
+        open.forEach(subscriber -> subscriber.emitter.complete());
+        senders.shutdown();
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        if (subscriber.closed.compareAndSet(false, true)) {
+            connections.decrementAndGet();
+            merchants.computeIfPresent(subscriber.merchantId, (id, stream) -> {
+                stream.subscribers.remove(subscriber);
+                return stream.recent.isEmpty() && stream.subscribers.isEmpty() ? null : stream;
+            });
+        }
+    }
+
+    private record StreamEvent(String id, int partition, long offset, OrderPaymentEvent event, long receivedAt) {
+    }
+
+    /**
+     * Parses an offset vector event ID, or returns null if it is not one.
+     */
+    static Map<Integer, Long> parseOffsets(String eventId) {
+        Map<Integer, Long> offsets = new HashMap<>();
+        try {
+            for (String position : eventId.split(",")) {
+                int separator = position.indexOf(':');
+                if (separator < 0) {
+                    return null;
+                }
+                offsets.merge(Integer.parseInt(position.substring(0, separator).trim()),
+                        Long.parseLong(position.substring(separator + 1).trim()), Math::max);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return offsets;
+    }
+
+    private final class MerchantStream {
+
+        private final Deque<StreamEvent> recent = new ArrayDeque<>();
+        private final Set<Subscriber> subscribers = new HashSet<>();
+        // Highest offset per partition of the merchant's events so far, the ID of the latest event
+        private final Map<Integer, Long> positions = new TreeMap<>();
+
+        StreamEvent append(int partition, long offset, OrderPaymentEvent event) {
+            positions.merge(partition, offset, Math::max);
+            StringBuilder id = new StringBuilder();
+            positions.forEach((p, o) -> id.append(id.isEmpty() ? "" : ",").append(p).append(':').append(o));
+            StreamEvent streamEvent = new StreamEvent(id.toString(), partition, offset, event, System.currentTimeMillis());
+            recent.addLast(streamEvent);
+            if (recent.size() > replaySize) {
+                recent.removeFirst();
+            }
+            return streamEvent;
+        }
+
+        void expire(long cutoff) {
+            while (!recent.isEmpty() && recent.peekFirst().receivedAt() < cutoff) {
+                recent.removeFirst();
+            }
+        }
+
+        /**
+         * Buffered events above the given offset vector, or all of them if it is null or unparseable.
+         */
+        List<StreamEvent> replay(String lastEventId) {
+            Map<Integer, Long> seen = lastEventId == null ? null : parseOffsets(lastEventId);
+            if (seen == null) {
+                return new ArrayList<>(recent);
+            }
+            List<StreamEvent> events = new ArrayList<>(recent.size());
+            for (StreamEvent event : recent) {
+                if (event.offset() > seen.getOrDefault(event.partition(), -1L)) {
+                    events.add(event);
+                }
+            }
+            return events;
+        }
+    }
+
+    private final class Subscriber {
+
+        private final Long merchantId;
+        private final UUID orderId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<StreamEvent> queue = new ArrayBlockingQueue<>(replaySize + connectionBuffer);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean overflowed = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        Subscriber(Long merchantId, UUID orderId, SseEmitter emitter) {
+            this.merchantId = merchantId;
+            this.orderId = orderId;
+            this.emitter = emitter;
+        }
+
+        /**
+         * Queues an event for this connection without blocking.
+         */
+        void offer(StreamEvent event) {
+            if (closed.get()) {
+                return;
+            }
+            if (event != HEARTBEAT && orderId != null && !Objects.equals(orderId, event.event().getOrderId())) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                if (overflowed.compareAndSet(false, true)) {
+                    log.info("Closing payment stream of merchant {}: client fell too far behind", merchantId);
+                    overflows.increment();
+                    // Called under the merchant's map entry lock, so close from another thread
+                    senders.execute(() -> {
+                        emitter.complete();
+                        unsubscribe(this);
+                    });
+                }
+                return;
+            }
+            if (draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                StreamEvent next;
+                while (!closed.get() && (next = queue.poll()) != null) {
+                    if (next == HEARTBEAT) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } else {
+                        emitter.send(SseEmitter.event()
+                                .id(next.id())
+                                .name(EVENT_NAME)
+                                .data(next.event(), MediaType.APPLICATION_JSON));
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Payment stream of merchant {} closed: {}", merchantId, e.getMessage());
+                emitter.completeWithError(e);
+                unsubscribe(this);
+                queue.clear();
+            } finally {
+                draining.set(false);
+            }
+            if (!closed.get() && !queue.isEmpty() && draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+    }
+}
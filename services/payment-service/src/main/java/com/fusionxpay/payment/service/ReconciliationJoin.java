@@ -0,0 +1,256 @@
+package com.fusionxpay.payment.service;
+
+import com.fusionxpay.common.model.PaymentStatus;
+import com.fusionxpay.payment.dto.ReconciliationRecord;
+import com.fusionxpay.payment.model.ReconciliationMismatchType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Grace hash join of a provider export against payment_transactions with bounded memory.
+ * <p>
+ * Both inputs are hash-partitioned by provider transaction ID into spill files as they stream in.
+ * The join then loads one partition of the export into a hash map at a time and probes it with the
+ * same partition of the ledger, so heap use is one partition of the export regardless of input size
+ * and neither input needs to be sorted.
+ */
+final class ReconciliationJoin implements Closeable {
+
+    private static final int BUFFER_SIZE = 32 * 1024;
+    private static final String REFUNDED = PaymentStatus.REFUNDED.name();
+    private static final Set<String> SETTLED_STATUSES = Set.of(PaymentStatus.SUCCESS.name(), REFUNDED);
+
+    private final Path workDir;
+    private final int partitions;
+    private final DataOutputStream[] providerPartitions;
+    private final DataOutputStream[] ledgerPartitions;
+    private LocalDateTime earliest;
+    private LocalDateTime latest;
+    private long providerRows;
+    private long ledgerRows;
+
+    ReconciliationJoin(int partitions) throws IOException {
+        this.workDir = Files.createTempDirectory("reconciliation-");
+        this.partitions = partitions;
+        this.providerPartitions = new DataOutputStream[partitions];
+        this.ledgerPartitions = new DataOutputStream[partitions];
+    }
+
+    void addProvider(ReconciliationRecord record) {
+        providerRows++;
+        LocalDateTime occurredAt = record.occurredAt();
+        if (occurredAt != null) {
+            earliest = earliest == null || occurredAt.isBefore(earliest) ? occurredAt : earliest;
+            latest = latest == null || occurredAt.isAfter(latest) ? occurredAt : latest;
+        }
+        write(providerPartitions, "provider", record);
+    }
+
+    void addLedger(ReconciliationRecord record) {
+        if (ledgerRows++ == 0) {
+            // The export is fully spilled once the ledger starts streaming
+            try {
+                closeAll(providerPartitions);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        write(ledgerPartitions, "ledger", record);
+    }
+
+    /**
+     * Earliest export timestamp, or null if the export has none.
+     */
+    LocalDateTime earliest() {
+        return earliest;
+    }
+
+    LocalDateTime latest() {
+        return latest;
+    }
+
+    long providerRows() {
+        return providerRows;
+    }
+
+    long ledgerRows() {
+        return ledgerRows;
+    }
+
+    /**
+     * Runs the join, reporting each mismatch to the sink. Either side of a mismatch may be null.
+     */
+    void join(MismatchSink sink) throws IOException {
+        closeAll(providerPartitions);
+        closeAll(ledgerPartitions);
+        for (int partition = 0; partition < partitions; partition++) {
+            Map<String, ReconciliationRecord> exported = new HashMap<>();
+            readPartition("provider", partition, record ->
+                    exported.merge(record.providerTransactionId(), record, ReconciliationJoin::combine));
+            Set<String> matched = new HashSet<>();
+
+            readPartition("ledger", partition, ledger -> {
+                ReconciliationRecord provider = exported.get(ledger.providerTransactionId());
+                if (provider == null) {
+                    // Only settled payments are expected in a settlement export, and only those from the
+                    // export's own range: rows of the margin around it are there to match export rows near
+                    // its edges and may settle in the neighbouring export
+                    if (SETTLED_STATUSES.contains(ledger.status()) && withinExport(ledger.occurredAt())) {
+                        sink.accept(ReconciliationMismatchType.MISSING_AT_PROVIDER, ledger, null);
+                    }
+                    return;
+                }
+                matched.add(ledger.providerTransactionId());
+                if (amountDiffers(ledger, provider)) {
+                    sink.accept(ReconciliationMismatchType.AMOUNT_DRIFT, ledger, provider);
+                }
+                if (provider.status() != null && !provider.status().equals(ledger.status())) {
+                    sink.accept(ReconciliationMismatchType.STATUS_DRIFT, ledger, provider);
+                }
+            });
+
+            for (ReconciliationRecord provider : exported.values()) {
+                if (!matched.contains(provider.providerTransactionId())) {
+                    sink.accept(ReconciliationMismatchType.MISSING_IN_LEDGER, null, provider);
+                }
+            }
+        }
+    }
+
+    private boolean withinExport(LocalDateTime occurredAt) {
+        if (occurredAt == null || earliest == null) {
+            return true;
+        }
+        return !occurredAt.isBefore(earliest) && !occurredAt.isAfter(latest);
+    }
+
+    private static boolean amountDiffers(ReconciliationRecord ledger, ReconciliationRecord provider) {
+        if (provider.amount() != null && ledger.amount() != null && provider.amount().compareTo(ledger.amount()) != 0) {
+            return true;
+        }
+        return provider.currency() != null && ledger.currency() != null
+                && !provider.currency().equalsIgnoreCase(ledger.currency());
+    }
+
+    /**
+     * Exports can list a payment and its refund as separate rows. The payment row keeps the amount;
+     * a refund row marks the whole transaction refunded.
+     */
+    private static ReconciliationRecord combine(ReconciliationRecord first, ReconciliationRecord second) {
+        boolean firstRefund = REFUNDED.equals(first.status());
+        boolean secondRefund = REFUNDED.equals(second.status());
+        ReconciliationRecord payment = firstRefund && !secondRefund ? second : first;
+        String status = firstRefund || secondRefund ? REFUNDED : second.status() != null ? second.status() : first.status();
+        return new ReconciliationRecord(payment.providerTransactionId(), null, payment.amount(), payment.currency(),
+                status, payment.occurredAt());
+    }
+
+    private void write(DataOutputStream[] outputs, String side, ReconciliationRecord record) {
+        int partition = Math.floorMod(record.providerTransactionId().hashCode(), partitions);
+        try {
+            DataOutputStream out = outputs[partition];
+            if (out == null) {
+                out = new DataOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(partitionFile(side, partition)), BUFFER_SIZE));
+                outputs[partition] = out;
+            }
+            out.writeUTF(record.providerTransactionId());
+            writeNullable(out, record.transactionId() == null ? null : record.transactionId().toString());
+            writeNullable(out, record.amount() == null ? null : record.amount().toPlainString());
+            writeNullable(out, record.currency());
+            writeNullable(out, record.status());
+            writeNullable(out, record.occurredAt() == null ? null : record.occurredAt().toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void readPartition(String side, int partition, Consumer<ReconciliationRecord> consumer)
+            throws IOException {
+        Path file = partitionFile(side, partition);
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            while (true) {
+                String providerTransactionId;
+                try {
+                    providerTransactionId = in.readUTF();
+                } catch (EOFException end) {
+                    return;
+                }
+                String transactionId = readNullable(in);
+                String amount = readNullable(in);
+                String currency = readNullable(in);
+                String status = readNullable(in);
+                String occurredAt = readNullable(in);
+                consumer.accept(new ReconciliationRecord(
+                        providerTransactionId,
+                        transactionId == null ? null : UUID.fromString(transactionId),
+                        amount == null ? null : new BigDecimal(amount),
+                        currency,
+                        status,
+                        occurredAt == null ? null : LocalDateTime.parse(occurredAt)));
+            }
+        }
+    }
+
+    private Path partitionFile(String side, int partition) {
+        return workDir.resolve(side + "-" + partition + ".bin");
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void closeAll(DataOutputStream[] outputs) throws IOException {
+        for (int i = 0; i < outputs.length; i++) {
+            if (outputs[i] != null) {
+                outputs[i].close();
+                outputs[i] = null;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeAll(providerPartitions);
+        closeAll(ledgerPartitions);
+        try (Stream<Path> files = Files.walk(workDir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface MismatchSink {
+        void accept(ReconciliationMismatchType type, ReconciliationRecord ledger, ReconciliationRecord provider);
+    }
+}
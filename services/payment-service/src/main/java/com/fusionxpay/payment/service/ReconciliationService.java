@@ -0,0 +1,288 @@
+package com.fusionxpay.payment.service;
+
+import com.fusionxpay.common.event.ReconciliationMismatchEvent;
+import com.fusionxpay.payment.dto.ReconciliationRecord;
+import com.fusionxpay.payment.model.ReconciliationMismatch;
+import com.fusionxpay.payment.model.ReconciliationMismatchType;
+import com.fusionxpay.payment.repository.PaymentTransactionRepository;
+import com.fusionxpay.payment.repository.ReconciliationMismatchRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Reconciles provider settlement exports against payment_transactions.
+ * <p>
+ * Exports dropped in the inbox directory as {@code stripe-*.csv}, {@code paypal-*.json} and so on are
+ * claimed by an atomic move, so several instances can watch a shared directory. The export and the
+ * provider's transactions for the export's time range, widened by a margin, are streamed through a
+ * {@link ReconciliationJoin}; mismatches are written to reconciliation_mismatches in batches and
+ * published to Kafka.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "payment.reconciliation.enabled", havingValue = "true")
+public class ReconciliationService {
+
+    static final String MISMATCH_METRIC = "payment.reconciliation.mismatches";
+    static final String ROWS_METRIC = "payment.reconciliation.rows";
+
+    private static final Pattern EXPORT_NAME = Pattern.compile("^(stripe|paypal)[-_].+", Pattern.CASE_INSENSITIVE);
+
+    private final PaymentTransactionRepository paymentTransactionRepository;
+    private final ReconciliationMismatchRepository mismatchRepository;
+    private final KafkaTemplate<String, ReconciliationMismatchEvent> kafkaTemplate;
+    private final TransactionOperations transactionOperations;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${kafka.topics.reconciliation-mismatches:payment-reconciliation-mismatches}")
+    private String mismatchTopic = "payment-reconciliation-mismatches";
+
+    @Value("${payment.reconciliation.inbox-dir:/var/lib/fusionxpay/reconciliation}")
+    private String inboxDir;
+
+    // Hash partitions per run; one partition of the export is held in memory at a time
+    @Value("${payment.reconciliation.partitions:128}")
+    private int partitions = 128;
+
+    @Value("${payment.reconciliation.batch-size:500}")
+    private int batchSize = 500;
+
+    // Ledger range checked when the export has no timestamps, ending now
+    @Value("${payment.reconciliation.default-window:1d}")
+    private Duration defaultWindow = Duration.ofDays(1);
+
+    // Added on both sides of the export's range: the ledger's createdAt is when the payment was
+    // initiated, the export's timestamp when the provider captured or settled it
+    @Value("${payment.reconciliation.window-margin:1h}")
+    private Duration windowMargin = Duration.ofHours(1);
+
+    public ReconciliationService(PaymentTransactionRepository paymentTransactionRepository,
+                                 ReconciliationMismatchRepository mismatchRepository,
+                                 KafkaTemplate<String, ReconciliationMismatchEvent> kafkaTemplate,
+                                 TransactionOperations transactionOperations,
+                                 MeterRegistry meterRegistry) {
+        this.paymentTransactionRepository = paymentTransactionRepository;
+        this.mismatchRepository = mismatchRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.transactionOperations = transactionOperations;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Scheduled(fixedDelayString = "${payment.reconciliation.poll-interval-ms:60000}")
+    public void processInbox() {
+        Path inbox = Path.of(inboxDir);
+        if (!Files.isDirectory(inbox)) {
+            return;
+        }
+        List<Path> exports;
+        try (Stream<Path> files = Files.list(inbox)) {
+            exports = files.filter(Files::isRegularFile)
+                    .filter(file -> EXPORT_NAME.matcher(file.getFileName().toString()).matches())
+                    .filter(SettlementExportReader::isSupported)
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            log.error("Cannot list reconciliation inbox {}: {}", inbox, e.getMessage());
+            return;
+        }
+
+        for (Path export : exports) {
+            Path claimed = moveTo(export, inbox.resolve("processing"));
+            if (claimed == null) {
+                continue;
+            }
+            try {
+                reconcile(providerOf(claimed), claimed);
+                moveTo(claimed, inbox.resolve("done"));
+            } catch (Exception e) {
+                log.error("Reconciliation of {} failed: {}", claimed.getFileName(), e.getMessage(), e);
+                moveTo(claimed, inbox.resolve("failed"));
+            }
+        }
+    }
+
+    /**
+     * Reconciles one export file against the provider's transactions.
+     *
+     * @param provider payment channel the export belongs to, e.g. STRIPE
+     * @param export   CSV or JSON settlement export
+     * @return row and mismatch counts of the run
+     */
+    public ReconciliationSummary reconcile(String provider, Path export) throws IOException {
+        UUID runId = UUID.randomUUID();
+        String channel = provider.toUpperCase(Locale.ROOT);
+        String sourceFile = export.getFileName().toString();
+        log.info("Reconciliation run {} started for {} export {}", runId, channel, sourceFile);
+
+        try (ReconciliationJoin join = new ReconciliationJoin(partitions)) {
+            SettlementExportReader.read(channel, export, join::addProvider);
+
+            LocalDateTime toTime = join.latest() != null ? join.latest().plus(windowMargin) : LocalDateTime.now();
+            LocalDateTime fromTime = join.earliest() != null
+                    ? join.earliest().minus(windowMargin)
+                    : toTime.minus(defaultWindow);
+            transactionOperations.executeWithoutResult(status -> {
+                try (Stream<ReconciliationRecord> ledger =
+                             paymentTransactionRepository.streamForReconciliation(channel, fromTime, toTime)) {
+                    ledger.forEach(join::addLedger);
+                }
+            });
+
+            MismatchWriter writer = new MismatchWriter(runId, channel, sourceFile);
+            join.join(writer::add);
+            writer.flush();
+            kafkaTemplate.flush();
+
+            rows(channel, "provider").increment(join.providerRows());
+            rows(channel, "ledger").increment(join.ledgerRows());
+            ReconciliationSummary summary = new ReconciliationSummary(runId, channel, sourceFile,
+                    join.providerRows(), join.ledgerRows(), writer.counts);
+            log.info("Reconciliation run {} finished: {} provider rows, {} ledger rows, mismatches {}",
+                    runId, summary.providerRows(), summary.ledgerRows(), summary.mismatches());
+            return summary;
+        }
+    }
+
+    private static String providerOf(Path export) {
+        Matcher matcher = EXPORT_NAME.matcher(export.getFileName().toString());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Cannot tell the provider of " + export.getFileName());
+        }
+        return matcher.group(1).toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Moves a file into a directory, or returns null if another instance moved it first.
+     */
+    private static Path moveTo(Path file, Path directory) {
+        try {
+            Files.createDirectories(directory);
+            return Files.move(file, directory.resolve(file.getFileName()), StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException | FileAlreadyExistsException e) {
+            return null;
+        } catch (IOException e) {
+            log.error("Cannot move {} to {}: {}", file, directory, e.getMessage());
+            return null;
+        }
+    }
+
+    private Counter rows(String provider, String side) {
+        return Counter.builder(ROWS_METRIC)
+                .tag("provider", provider)
+                .tag("side", side)
+                .register(meterRegistry);
+    }
+
+    public record ReconciliationSummary(UUID runId, String provider, String sourceFile, long providerRows,
+                                        long ledgerRows, Map<ReconciliationMismatchType, Long> mismatches) {
+    }
+
+    /**
+     * Buffers mismatches and writes each full batch in its own transaction before publishing it,
+     * so the persistence context never holds more than one batch.
+     */
+    private final class MismatchWriter {
+
+        private final UUID runId;
+        private final String provider;
+        private final String sourceFile;
+        private final List<ReconciliationMismatch> buffer = new ArrayList<>();
+        private final Map<ReconciliationMismatchType, Long> counts = new EnumMap<>(ReconciliationMismatchType.class);
+
+        MismatchWriter(UUID runId, String provider, String sourceFile) {
+            this.runId = runId;
+            this.provider = provider;
+            this.sourceFile = sourceFile;
+        }
+
+        void add(ReconciliationMismatchType type, ReconciliationRecord ledger, ReconciliationRecord exported) {
+            ReconciliationMismatch mismatch = new ReconciliationMismatch();
+            mismatch.setRunId(runId);
+            mismatch.setProvider(provider);
+            mismatch.setProviderTransactionId(ledger != null ? ledger.providerTransactionId() : exported.providerTransactionId());
+            mismatch.setType(type);
+            mismatch.setSourceFile(sourceFile);
+            mismatch.setDetectedAt(LocalDateTime.now());
+            if (ledger != null) {
+                mismatch.setTransactionId(ledger.transactionId());
+                mismatch.setLedgerAmount(ledger.amount());
+                mismatch.setLedgerCurrency(ledger.currency());
+                mismatch.setLedgerStatus(ledger.status());
+            }
+            if (exported != null) {
+                mismatch.setProviderAmount(exported.amount());
+                mismatch.setProviderCurrency(exported.currency());
+                mismatch.setProviderStatus(exported.status());
+            }
+            buffer.add(mismatch);
+            counts.merge(type, 1L, Long::sum);
+            Counter.builder(MISMATCH_METRIC)
+                    .tag("provider", provider)
+                    .tag("type", type.name())
+                    .register(meterRegistry)
+                    .increment();
+            if (buffer.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            transactionOperations.executeWithoutResult(status -> mismatchRepository.saveAll(buffer));
+            for (ReconciliationMismatch mismatch : buffer) {
+                kafkaTemplate.send(mismatchTopic, mismatch.getProviderTransactionId(), toEvent(mismatch))
+                        .whenComplete((result, ex) -> {
+                            if (ex != null) {
+                                log.error("Failed to publish reconciliation mismatch {} for {}",
+                                        mismatch.getType(), mismatch.getProviderTransactionId(), ex);
+                            }
+                        });
+            }
+            buffer.clear();
+        }
+
+        private ReconciliationMismatchEvent toEvent(ReconciliationMismatch mismatch) {
+            return ReconciliationMismatchEvent.builder()
+                    .runId(mismatch.getRunId())
+                    .provider(mismatch.getProvider())
+                    .providerTransactionId(mismatch.getProviderTransactionId())
+                    .transactionId(mismatch.getTransactionId())
+                    .type(mismatch.getType().name())
+                    .ledgerAmount(mismatch.getLedgerAmount())
+                    .providerAmount(mismatch.getProviderAmount())
+                    .ledgerCurrency(mismatch.getLedgerCurrency())
+                    .providerCurrency(mismatch.getProviderCurrency())
+                    .ledgerStatus(mismatch.getLedgerStatus())
+                    .providerStatus(mismatch.getProviderStatus())
+                    .detectedAt(mismatch.getDetectedAt())
+                    .build();
+        }
+    }
+}
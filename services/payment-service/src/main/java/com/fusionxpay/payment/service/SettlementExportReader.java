@@ -0,0 +1,242 @@
+package com.fusionxpay.payment.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fusionxpay.common.model.PaymentStatus;
+import com.fusionxpay.payment.dto.ReconciliationRecord;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Streams a provider settlement export one row at a time.
+ * <p>
+ * CSV files need a header row; JSON files may hold one object per line or a top-level array.
+ * Columns are matched by the names Stripe and PayPal settlement reports use, case-insensitively and
+ * with spaces read as underscores: the transaction reference, {@code amount} or {@code gross} in major
+ * units, {@code currency}, {@code status} and an optional {@code created} timestamp (epoch seconds or
+ * ISO-8601). A JSON amount may also be a PayPal money object with {@code value} and {@code currency_code}.
+ * <p>
+ * The reference must be the one payment_transactions stores. For Stripe that is the PaymentIntent,
+ * so Stripe exports are joined on {@code payment_intent_id} (itemized reports), {@code payment_intent}
+ * or {@code paymentintent_id} (Dashboard payments export); their {@code id} and {@code source} hold
+ * txn_, ch_ and re_ IDs that never match the ledger, and an export without an intent column is rejected.
+ */
+final class SettlementExportReader {
+
+    private static final List<String> ID_COLUMNS = List.of("provider_transaction_id", "source", "transaction_id", "id");
+    private static final List<String> STRIPE_ID_COLUMNS =
+            List.of("payment_intent_id", "payment_intent", "paymentintent_id", "provider_transaction_id");
+    private static final List<String> AMOUNT_COLUMNS = List.of("amount", "gross");
+    private static final List<String> CURRENCY_COLUMNS = List.of("currency", "currency_code");
+    private static final List<String> STATUS_COLUMNS = List.of("status", "transaction_status", "reporting_category");
+    private static final List<String> CREATED_COLUMNS = List.of("created", "created_at", "created_utc", "transaction_initiation_date");
+
+    private static final Map<String, PaymentStatus> STATUSES = new HashMap<>();
+
+    static {
+        for (String status : List.of("succeeded", "success", "completed", "available", "paid", "captured", "s")) {
+            STATUSES.put(status, PaymentStatus.SUCCESS);
+        }
+        for (String status : List.of("pending", "processing", "p")) {
+            STATUSES.put(status, PaymentStatus.PROCESSING);
+        }
+        for (String status : List.of("failed", "denied", "declined", "canceled", "cancelled", "voided", "d", "v")) {
+            STATUSES.put(status, PaymentStatus.FAILED);
+        }
+        for (String status : List.of("refunded", "partially_refunded", "reversed", "refund")) {
+            STATUSES.put(status, PaymentStatus.REFUNDED);
+        }
+    }
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private SettlementExportReader() {
+    }
+
+    static boolean isSupported(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".csv") || name.endsWith(".json") || name.endsWith(".ndjson");
+    }
+
+    /**
+     * @param provider payment channel of the export, e.g. STRIPE; decides which column holds the reference
+     */
+    static void read(String provider, Path file, Consumer<ReconciliationRecord> sink) throws IOException {
+        List<String> idColumns = "STRIPE".equalsIgnoreCase(provider) ? STRIPE_ID_COLUMNS : ID_COLUMNS;
+        if (file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv")) {
+            readCsv(file, idColumns, sink);
+        } else {
+            readJson(file, idColumns, sink);
+        }
+    }
+
+    private static void readCsv(Path file, List<String> idColumns, Consumer<ReconciliationRecord> sink)
+            throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String headerLine = reader.readLine();
+            if (headerLine == null) {
+                return;
+            }
+            List<String> header = splitCsvLine(headerLine.replace("\uFEFF", ""));
+            Map<String, Integer> columns = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                columns.putIfAbsent(header.get(i).trim().toLowerCase(Locale.ROOT).replace(' ', '_'), i);
+            }
+            int id = column(columns, idColumns, file);
+            int amount = column(columns, AMOUNT_COLUMNS, file);
+            int currency = column(columns, CURRENCY_COLUMNS, file);
+            int status = optionalColumn(columns, STATUS_COLUMNS);
+            int created = optionalColumn(columns, CREATED_COLUMNS);
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                List<String> values = splitCsvLine(line);
+                sink.accept(toRecord(value(values, id), value(values, amount), value(values, currency),
+                        value(values, status), value(values, created)));
+            }
+        }
+    }
+
+    private static void readJson(Path file, List<String> idColumns, Consumer<ReconciliationRecord> sink)
+            throws IOException {
+        try (MappingIterator<JsonNode> rows = OBJECT_MAPPER.readerFor(JsonNode.class).readValues(file.toFile())) {
+            while (rows.hasNextValue()) {
+                JsonNode row = rows.nextValue();
+                JsonNode amount = field(row, AMOUNT_COLUMNS);
+                String currency = text(field(row, CURRENCY_COLUMNS));
+                String value = text(amount);
+                if (amount != null && amount.isObject()) {
+                    value = text(amount.get("value"));
+                    currency = currency != null ? currency : text(amount.get("currency_code"));
+                }
+                JsonNode id = field(row, idColumns);
+                if (id == null && idColumns == STRIPE_ID_COLUMNS && row.path("source").isObject()) {
+                    // Balance transactions listed with an expanded source carry the intent on the charge
+                    id = row.path("source").get("payment_intent");
+                }
+                sink.accept(toRecord(text(id), value, currency,
+                        text(field(row, STATUS_COLUMNS)), text(field(row, CREATED_COLUMNS))));
+            }
+        }
+    }
+
+    private static ReconciliationRecord toRecord(String id, String amount, String currency, String status, String created) {
+        if (id == null || id.isBlank()) {
+            throw new IllegalArgumentException("Export row without a transaction reference");
+        }
+        PaymentStatus mapped = status == null ? null : STATUSES.get(status.trim().toLowerCase(Locale.ROOT));
+        return new ReconciliationRecord(
+                id.trim(),
+                null,
+                amount == null || amount.isBlank() ? null : new BigDecimal(amount.trim()),
+                currency == null ? null : currency.trim().toUpperCase(Locale.ROOT),
+                mapped == null ? null : mapped.name(),
+                parseTimestamp(created));
+    }
+
+    static LocalDateTime parseTimestamp(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String trimmed = value.trim();
+        try {
+            if (trimmed.chars().allMatch(Character::isDigit)) {
+                return LocalDateTime.ofInstant(Instant.ofEpochSecond(Long.parseLong(trimmed)), ZoneId.systemDefault());
+            }
+            if (trimmed.endsWith("Z") || trimmed.matches(".*[+-]\\d{2}:?\\d{2}$")) {
+                String isoOffset = trimmed.replaceFirst("([+-]\\d{2})(\\d{2})$", "$1:$2");
+                return LocalDateTime.ofInstant(OffsetDateTime.parse(isoOffset).toInstant(), ZoneId.systemDefault());
+            }
+            return LocalDateTime.parse(trimmed.replace(' ', 'T'));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Splits one CSV line, honouring double-quoted fields and doubled quotes inside them.
+     */
+    static List<String> splitCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    private static int column(Map<String, Integer> columns, List<String> names, Path file) {
+        int index = optionalColumn(columns, names);
+        if (index < 0) {
+            throw new IllegalArgumentException(file.getFileName() + " has none of the columns " + names);
+        }
+        return index;
+    }
+
+    private static int optionalColumn(Map<String, Integer> columns, List<String> names) {
+        for (String name : names) {
+            Integer index = columns.get(name);
+            if (index != null) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static String value(List<String> values, int index) {
+        return index >= 0 && index < values.size() ? values.get(index) : null;
+    }
+
+    private static JsonNode field(JsonNode row, List<String> names) {
+        for (String name : names) {
+            JsonNode value = row.get(name);
+            if (value != null && !value.isNull()) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static String text(JsonNode node) {
+        return node == null || node.isNull() || node.isContainerNode() ? null : node.asText();
+    }
+}
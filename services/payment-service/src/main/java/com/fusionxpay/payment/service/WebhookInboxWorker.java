@@ -0,0 +1,203 @@
+package com.fusionxpay.payment.service;
+
+import com.fusionxpay.payment.model.WebhookInboxEvent;
+import com.fusionxpay.payment.model.WebhookInboxStatus;
+import com.fusionxpay.payment.repository.WebhookInboxRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Back half of the asynchronous webhook path. Claims queued events and runs them on a fixed
+ * set of single-threaded lanes chosen by partition key, so events of one order are applied
+ * in arrival order while different orders proceed in parallel. An event is not claimed while
+ * an earlier one with its partition key is pending, and a failed event is retried with
+ * exponential backoff until max-attempts.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "payment.webhook.intake.mode", havingValue = "async")
+public class WebhookInboxWorker {
+
+    private final WebhookInboxRepository webhookInboxRepository;
+    private final PaymentService paymentService;
+    private final TransactionOperations transactionOperations;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${payment.webhook.intake.workers:4}")
+    private int workerCount;
+
+    @Value("${payment.webhook.intake.batch-size:100}")
+    private int batchSize;
+
+    @Value("${payment.webhook.intake.max-in-flight:500}")
+    private int maxInFlight;
+
+    @Value("${payment.webhook.intake.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${payment.webhook.intake.retry.initial-backoff:1s}")
+    private Duration initialBackoff;
+
+    @Value("${payment.webhook.intake.retry.max-backoff:5m}")
+    private Duration maxBackoff;
+
+    @Value("${payment.webhook.intake.dispatch-timeout:5m}")
+    private Duration dispatchTimeout;
+
+    private ExecutorService[] lanes;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong queueDepth = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        lanes = new ExecutorService[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            String name = "webhook-lane-" + i;
+            lanes[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        Gauge.builder("payment.webhook.intake.queue.depth", queueDepth, AtomicLong::get)
+                .description("Webhooks received or dispatched but not yet processed")
+                .register(meterRegistry);
+        Gauge.builder("payment.webhook.intake.in.flight", inFlight, AtomicInteger::get)
+                .description("Webhooks handed to worker lanes on this instance")
+                .register(meterRegistry);
+        log.info("Webhook intake worker started with {} lanes", workerCount);
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        for (ExecutorService lane : lanes) {
+            try {
+                lane.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${payment.webhook.intake.poll-interval-ms:100}")
+    public void dispatchReceivedEvents() {
+        int capacity = Math.min(batchSize, maxInFlight - inFlight.get());
+        if (capacity > 0) {
+            List<WebhookInboxEvent> claimed = transactionOperations.execute(status -> claimBatch(capacity));
+            if (claimed != null) {
+                claimed.forEach(this::dispatch);
+            }
+        }
+        queueDepth.set(webhookInboxRepository.countByStatusIn(
+                EnumSet.of(WebhookInboxStatus.RECEIVED, WebhookInboxStatus.DISPATCHED)));
+    }
+
+    @Scheduled(fixedDelayString = "${payment.webhook.intake.requeue-interval-ms:60000}")
+    public void requeueStaleDispatches() {
+        Integer requeued = transactionOperations.execute(status ->
+                webhookInboxRepository.requeueDispatchedBefore(LocalDateTime.now().minus(dispatchTimeout)));
+        if (requeued != null && requeued > 0) {
+            log.warn("Requeued {} webhooks stuck in DISPATCHED", requeued);
+        }
+    }
+
+    List<WebhookInboxEvent> claimBatch(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<WebhookInboxEvent> batch = webhookInboxRepository.lockReceivedBatch(now, PageRequest.of(0, limit));
+        for (WebhookInboxEvent event : batch) {
+            event.setStatus(WebhookInboxStatus.DISPATCHED);
+            event.setDispatchedAt(now);
+        }
+        return webhookInboxRepository.saveAll(batch);
+    }
+
+    void dispatch(WebhookInboxEvent event) {
+        inFlight.incrementAndGet();
+        laneFor(event.getPartitionKey()).execute(() -> {
+            try {
+                process(event);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * initial-backoff doubled for every further attempt, capped at max-backoff.
+     */
+    Duration backoff(int attempts) {
+        Duration delay = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 30));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    ExecutorService laneFor(String partitionKey) {
+        return lanes[Math.floorMod(partitionKey.hashCode(), lanes.length)];
+    }
+
+    private void process(WebhookInboxEvent event) {
+        boolean processed;
+        String error = null;
+        try {
+            processed = paymentService.processQueuedCallback(event.getPayload(), event.getSignature(), event.getProvider());
+        } catch (Exception e) {
+            processed = false;
+            error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+
+        event.setAttempts(event.getAttempts() + 1);
+        if (processed) {
+            event.setStatus(WebhookInboxStatus.PROCESSED);
+            event.setProcessedAt(LocalDateTime.now());
+            event.setNextAttemptAt(null);
+            event.setLastError(null);
+        } else {
+            boolean exhausted = event.getAttempts() >= maxAttempts;
+            event.setStatus(exhausted ? WebhookInboxStatus.FAILED : WebhookInboxStatus.RECEIVED);
+            event.setNextAttemptAt(exhausted ? null : LocalDateTime.now().plus(backoff(event.getAttempts())));
+            event.setLastError(error != null && error.length() > 500 ? error.substring(0, 500) : error);
+            log.warn("Queued {} webhook {} not processed (attempt {}/{})",
+                    event.getProvider(), event.getEventId(), event.getAttempts(), maxAttempts);
+        }
+
+        try {
+            webhookInboxRepository.save(event);
+        } catch (Exception e) {
+            // Row stays DISPATCHED and is requeued after the dispatch timeout
+            log.error("Failed to record outcome of {} webhook {}: {}", event.getProvider(), event.getEventId(), e.getMessage(), e);
+        }
+
+        Timer.builder("payment.webhook.intake.lag")
+                .description("Time from webhook intake to the end of processing")
+                .tag("provider", event.getProvider())
+                .tag("outcome", event.getStatus() == WebhookInboxStatus.RECEIVED ? "retry" : event.getStatus().name().toLowerCase())
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(Duration.between(event.getReceivedAt(), LocalDateTime.now()));
+    }
+}
@@ -0,0 +1,122 @@
+package com.fusionxpay.payment.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fusionxpay.payment.model.WebhookInboxEvent;
+import com.fusionxpay.payment.model.WebhookInboxStatus;
+import com.fusionxpay.payment.provider.PaymentProvider;
+import com.fusionxpay.payment.provider.PaymentProviderFactory;
+import com.fusionxpay.payment.repository.WebhookInboxRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+/**
+ * Front half of the asynchronous webhook path: verifies the provider signature, stores the
+ * raw event in webhook_inbox and lets the controller acknowledge right away.
+ * {@link WebhookInboxWorker} applies the stored events in order per partition key.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WebhookIntakeService {
+
+    public enum IntakeResult {
+        ACCEPTED,
+        DUPLICATE,
+        REJECTED
+    }
+
+    private final PaymentProviderFactory paymentProviderFactory;
+    private final WebhookInboxRepository webhookInboxRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${payment.webhook.intake.mode:sync}")
+    private String intakeMode;
+
+    public boolean isAsyncEnabled() {
+        return "async".equalsIgnoreCase(intakeMode);
+    }
+
+    /**
+     * Verifies and stores a webhook for asynchronous processing.
+     *
+     * @param provider provider name (e.g. "STRIPE")
+     * @param payload raw webhook body
+     * @param signature provider signature (header value or serialized headers)
+     * @return whether the event was queued, already known, or rejected
+     */
+    public IntakeResult accept(String provider, String payload, String signature) {
+        PaymentProvider paymentProvider = paymentProviderFactory.getProvider(provider);
+        if (!paymentProvider.validateCallback(payload, signature)) {
+            log.error("Invalid webhook signature for provider: {}", provider);
+            return IntakeResult.REJECTED;
+        }
+
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(payload);
+        } catch (Exception e) {
+            log.error("Unreadable {} webhook payload: {}", provider, e.getMessage());
+            return IntakeResult.REJECTED;
+        }
+        String eventId = root.path("id").asText();
+        if (eventId.isBlank()) {
+            log.error("{} webhook without event id rejected", provider);
+            return IntakeResult.REJECTED;
+        }
+
+        WebhookInboxEvent event = new WebhookInboxEvent();
+        event.setProvider(paymentProvider.getProviderName());
+        event.setEventId(eventId);
+        event.setPartitionKey(resolvePartitionKey(paymentProvider.getProviderName(), root, eventId));
+        event.setPayload(payload);
+        event.setSignature(signature);
+        event.setStatus(WebhookInboxStatus.RECEIVED);
+
+        try {
+            webhookInboxRepository.saveAndFlush(event);
+        } catch (DataIntegrityViolationException e) {
+            log.info("Duplicate {} webhook {} ignored at intake", provider, eventId);
+            return IntakeResult.DUPLICATE;
+        }
+
+        log.info("Queued {} webhook {} (partition key {})", provider, eventId, event.getPartitionKey());
+        return IntakeResult.ACCEPTED;
+    }
+
+    /**
+     * Picks the key events are serialized on. Order ids come straight from the payload where the
+     * provider echoes them back; otherwise the provider object id keeps related events together.
+     */
+    String resolvePartitionKey(String provider, JsonNode root, String eventId) {
+        String key;
+        if ("PAYPAL".equals(provider)) {
+            JsonNode resource = root.path("resource");
+            key = firstNonBlank(
+                    resource.path("custom_id").asText(),
+                    resource.path("purchase_units").path(0).path("custom_id").asText(),
+                    resource.path("supplementary_data").path("related_ids").path("order_id").asText(),
+                    resource.path("id").asText());
+        } else {
+            JsonNode object = root.path("data").path("object");
+            key = firstNonBlank(
+                    object.path("metadata").path("orderId").asText(),
+                    object.path("client_reference_id").asText(),
+                    object.path("payment_intent").asText(),
+                    object.path("id").asText());
+        }
+        return key != null ? key : eventId;
+    }
+
+    private String firstNonBlank(String... values) {
+        for (String value : values) {
+            if (value != null && !value.isBlank()) {
+                return value;
+            }
+        }
+        return null;
+    }
+}
@@ -1,13 +1,21 @@
 -- Create the payment_transactions table based on the PaymentTransaction entity
 CREATE TABLE IF NOT EXISTS payment_transactions (
-    transactionId CHAR(36) NOT NULL DEFAULT (UUID()),
-    orderId CHAR(36) NOT NULL,
+    transaction_id BINARY(16) NOT NULL,
+    order_id BINARY(16) NOT NULL,
+    merchant_id BIGINT NOT NULL,
     amount DECIMAL(10,2) NOT NULL,
     currency VARCHAR(3) NOT NULL,
-    paymentChannel VARCHAR(20) NOT NULL,
+    payment_channel VARCHAR(20) NOT NULL,
     status VARCHAR(20) NOT NULL,
-    providerTransactionId VARCHAR(255),
-    createdAt DATETIME NOT NULL,
-    updatedAt DATETIME NOT NULL,
-    PRIMARY KEY (transactionId)
+    provider_transaction_id VARCHAR(255),
+    version BIGINT NOT NULL DEFAULT 0,
+    created_at DATETIME(6) NOT NULL,
+    updated_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (transaction_id),
+    -- Every repository query must be served by one of these; see PaymentTransactionQueryPlanIT
+    INDEX idx_payment_transactions_provider_tx (provider_transaction_id),
+    INDEX idx_payment_transactions_order_merchant (order_id, merchant_id),
+    INDEX idx_payment_transactions_merchant_created (merchant_id, created_at, transaction_id),
+    INDEX idx_payment_transactions_merchant_status_created (merchant_id, status, created_at, transaction_id),
+    INDEX idx_payment_transactions_channel_created (payment_channel, created_at)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
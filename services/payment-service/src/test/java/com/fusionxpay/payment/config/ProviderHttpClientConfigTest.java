@@ -0,0 +1,120 @@
+package com.fusionxpay.payment.config;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for the pooled provider HTTP client against a WireMock server
+ */
+class ProviderHttpClientConfigTest {
+
+    private static final String POOL_CONNECTIONS = "httpcomponents.httpclient.pool.total.connections";
+
+    private WireMockServer wireMockServer;
+    private SimpleMeterRegistry meterRegistry;
+    private CloseableHttpClient httpClient;
+    private RestTemplate restTemplate;
+
+    @BeforeEach
+    void setUp() {
+        wireMockServer = new WireMockServer(wireMockConfig().dynamicPort());
+        wireMockServer.start();
+        wireMockServer.stubFor(post(urlPathEqualTo("/v1/oauth2/token"))
+                .willReturn(aResponse().withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"access_token\":\"token\",\"expires_in\":32400}")));
+        wireMockServer.stubFor(post(urlPathMatching("/v2/checkout/orders/[^/]+/capture"))
+                .willReturn(aResponse().withStatus(201)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"id\":\"ORDER\",\"status\":\"COMPLETED\"}")));
+        wireMockServer.stubFor(get(urlPathMatching("/v2/checkout/orders/[^/]+"))
+                .willReturn(aResponse().withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"id\":\"ORDER\",\"status\":\"APPROVED\"}")));
+
+        meterRegistry = new SimpleMeterRegistry();
+        ProviderHttpClientConfig config = new ProviderHttpClientConfig();
+        httpClient = config.providerHttpClient(meterRegistry);
+        restTemplate = config.payPalRestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        httpClient.close();
+        wireMockServer.stop();
+    }
+
+    @Test
+    void sequentialCallsReuseOnePooledConnection() {
+        String baseUrl = wireMockServer.baseUrl();
+
+        restTemplate.exchange(baseUrl + "/v1/oauth2/token", HttpMethod.POST, null, String.class);
+        for (int i = 0; i < 5; i++) {
+            restTemplate.exchange(baseUrl + "/v2/checkout/orders/ORDER-" + i + "/capture", HttpMethod.POST, null, String.class);
+        }
+
+        wireMockServer.verify(1, postRequestedFor(urlPathEqualTo("/v1/oauth2/token")));
+        wireMockServer.verify(5, postRequestedFor(urlPathMatching("/v2/checkout/orders/[^/]+/capture")));
+        // Every call went to the same route and returned its connection to the pool for the next one
+        assertEquals(1.0, poolConnections("available"));
+        assertEquals(0.0, poolConnections("leased"));
+    }
+
+    @Test
+    void recordsTimerPerEndpoint() {
+        String baseUrl = wireMockServer.baseUrl();
+
+        restTemplate.exchange(baseUrl + "/v1/oauth2/token", HttpMethod.POST, null, String.class);
+        restTemplate.exchange(baseUrl + "/v2/checkout/orders/ORDER-1/capture", HttpMethod.POST, null, String.class);
+        restTemplate.exchange(baseUrl + "/v2/checkout/orders/ORDER-2/capture", HttpMethod.POST, null, String.class);
+        restTemplate.getForObject(baseUrl + "/v2/checkout/orders/ORDER-1", String.class);
+
+        wireMockServer.verify(1, getRequestedFor(urlPathEqualTo("/v2/checkout/orders/ORDER-1")));
+        assertEquals(1, timerCount("oauth2.token", "200"));
+        assertEquals(2, timerCount("orders.capture", "201"));
+        assertEquals(1, timerCount("orders.get", "200"));
+    }
+
+    @Test
+    void endpointNamesDoNotIncludeIds() {
+        assertEquals("orders.create", PayPalClientMetricsInterceptor.endpoint(HttpMethod.POST, "/v2/checkout/orders"));
+        assertEquals("captures.refund",
+                PayPalClientMetricsInterceptor.endpoint(HttpMethod.POST, "/v2/payments/captures/3C679366HH908993F/refund"));
+        assertEquals("webhooks.cert",
+                PayPalClientMetricsInterceptor.endpoint(HttpMethod.GET, "/v1/notifications/certs/CERT-360caa42-fca2a594"));
+        assertEquals("other", PayPalClientMetricsInterceptor.endpoint(HttpMethod.DELETE, "/v2/checkout/orders/ORDER"));
+    }
+
+    private double poolConnections(String state) {
+        return meterRegistry.get(POOL_CONNECTIONS)
+                .tag("httpclient", ProviderHttpClientConfig.POOL_NAME)
+                .tag("state", state)
+                .gauge()
+                .value();
+    }
+
+    private long timerCount(String endpoint, String status) {
+        return meterRegistry.get(PayPalClientMetricsInterceptor.METRIC_NAME)
+                .tag("endpoint", endpoint)
+                .tag("status", status)
+                .timer()
+                .count();
+    }
+}
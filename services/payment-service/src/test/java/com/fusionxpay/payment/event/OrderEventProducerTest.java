@@ -2,22 +2,31 @@ package com.fusionxpay.payment.event;
 
 import com.fusionxpay.common.event.OrderPaymentEvent;
 import com.fusionxpay.common.model.PaymentStatus;
+import com.fusionxpay.payment.model.PaymentEventOutbox;
+import com.fusionxpay.payment.model.PaymentTransaction;
+import com.fusionxpay.payment.repository.PaymentEventOutboxRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.BiConsumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -31,9 +40,18 @@ class OrderEventProducerTest {
     @Mock
     private CompletableFuture<SendResult<String, OrderPaymentEvent>> completableFuture;
 
+    @Mock
+    private PaymentEventOutboxRepository outboxRepository;
+
     @Captor
     private ArgumentCaptor<OrderPaymentEvent> eventCaptor;
 
+    @Captor
+    private ArgumentCaptor<PaymentEventOutbox> outboxCaptor;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private OrderEventProducer orderEventProducer;
 
@@ -55,7 +73,7 @@ class OrderEventProducerTest {
         }).when(completableFuture).whenComplete(any(BiConsumer.class));
         
         // When
-        orderEventProducer.sendPaymentStatusUpdate(orderId, transactionId, status);
+        orderEventProducer.sendPaymentStatusUpdate(orderId, transactionId, 42L, status);
         
         // Then
         verify(kafkaTemplate).send(eq("payment-events"), eq(orderId.toString()), eventCaptor.capture());
@@ -63,7 +81,63 @@ class OrderEventProducerTest {
         
         assertEquals(orderId, capturedEvent.getOrderId());
         assertEquals(transactionId, capturedEvent.getTransactionId());
+        assertEquals(42L, capturedEvent.getMerchantId());
         assertEquals(status, capturedEvent.getStatus());
         assertEquals("Payment completed successfully", capturedEvent.getMessage());
     }
+
+    @Test
+    void shouldWriteOutboxEntryInsteadOfSendingWhenOutboxEnabled() {
+        UUID orderId = UUID.randomUUID();
+        UUID transactionId = UUID.randomUUID();
+
+        ReflectionTestUtils.setField(orderEventProducer, "paymentEventsTopic", "payment-events");
+        ReflectionTestUtils.setField(orderEventProducer, "outboxEnabled", true);
+
+        orderEventProducer.sendPaymentStatusUpdate(orderId, transactionId, 42L, PaymentStatus.FAILED);
+
+        verify(kafkaTemplate, never()).send(any(), any(), any());
+        verify(outboxRepository).save(outboxCaptor.capture());
+        PaymentEventOutbox entry = outboxCaptor.getValue();
+
+        assertEquals(orderId, entry.getOrderId());
+        assertEquals(transactionId, entry.getTransactionId());
+        assertEquals(42L, entry.getMerchantId());
+        assertEquals("FAILED", entry.getStatus());
+        assertEquals("Payment failed", entry.getMessage());
+        assertNotNull(entry.getOccurredAt());
+        assertNull(entry.getPublishedAt());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldWriteOneOutboxBatchForBulkUpdates() {
+        PaymentTransaction succeeded = transaction(PaymentStatus.SUCCESS);
+        PaymentTransaction failed = transaction(PaymentStatus.FAILED);
+
+        ReflectionTestUtils.setField(orderEventProducer, "paymentEventsTopic", "payment-events");
+        ReflectionTestUtils.setField(orderEventProducer, "outboxEnabled", true);
+
+        orderEventProducer.sendPaymentStatusUpdates(List.of(succeeded, failed));
+
+        verify(kafkaTemplate, never()).send(any(), any(), any());
+        verify(outboxRepository, never()).save(any());
+        ArgumentCaptor<List<PaymentEventOutbox>> batchCaptor = ArgumentCaptor.forClass(List.class);
+        verify(outboxRepository).saveAll(batchCaptor.capture());
+        List<PaymentEventOutbox> entries = batchCaptor.getValue();
+
+        assertEquals(2, entries.size());
+        assertEquals(succeeded.getOrderId(), entries.get(0).getOrderId());
+        assertEquals("SUCCESS", entries.get(0).getStatus());
+        assertEquals(failed.getTransactionId(), entries.get(1).getTransactionId());
+        assertEquals("FAILED", entries.get(1).getStatus());
+    }
+
+    private PaymentTransaction transaction(PaymentStatus status) {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setTransactionId(UUID.randomUUID());
+        transaction.setOrderId(UUID.randomUUID());
+        transaction.setStatus(status.name());
+        return transaction;
+    }
 }
@@ -0,0 +1,171 @@
+package com.fusionxpay.payment.event;
+
+import com.fusionxpay.common.event.OrderPaymentEvent;
+import com.fusionxpay.common.model.PaymentStatus;
+import com.fusionxpay.payment.model.PaymentEventOutbox;
+import com.fusionxpay.payment.repository.PaymentEventOutboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentEventOutboxRelayTest {
+
+    @Mock
+    private PaymentEventOutboxRepository outboxRepository;
+
+    @Mock
+    private OrderEventProducer orderEventProducer;
+
+    private PaymentEventOutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        relay = new PaymentEventOutboxRelay(outboxRepository, orderEventProducer, TransactionOperations.withoutTransaction());
+        ReflectionTestUtils.setField(relay, "batchSize", 2);
+        ReflectionTestUtils.setField(relay, "maxBatchesPerRun", 3);
+        ReflectionTestUtils.setField(relay, "sendTimeout", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(relay, "claimTimeout", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(relay, "maxAttempts", 3);
+        ReflectionTestUtils.setField(relay, "initialBackoff", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(relay, "maxBackoff", Duration.ofSeconds(3));
+    }
+
+    @Test
+    void relayBatch_PublishesAllEventsAndFlushesOnce() {
+        PaymentEventOutbox first = entry(1L, UUID.randomUUID(), PaymentStatus.PROCESSING);
+        PaymentEventOutbox second = entry(2L, UUID.randomUUID(), PaymentStatus.SUCCESS);
+        when(outboxRepository.lockPendingBatch(any(LocalDateTime.class), any(Pageable.class))).thenReturn(List.of(first, second));
+        when(orderEventProducer.publish(any())).thenReturn(acked());
+
+        int drained = relay.relayBatch();
+
+        assertEquals(2, drained);
+        ArgumentCaptor<OrderPaymentEvent> events = ArgumentCaptor.forClass(OrderPaymentEvent.class);
+        verify(orderEventProducer, times(2)).publish(events.capture());
+        verify(orderEventProducer, times(1)).flush();
+        assertEquals(first.getOrderId(), events.getAllValues().get(0).getOrderId());
+        assertEquals(PaymentStatus.SUCCESS, events.getAllValues().get(1).getStatus());
+        assertEquals(first.getOccurredAt(), events.getAllValues().get(0).getTimestamp());
+        assertNotNull(first.getPublishedAt());
+        assertNotNull(second.getPublishedAt());
+        assertNull(first.getNextAttemptAt());
+        // Claimed, then stored with the results
+        verify(outboxRepository, times(2)).saveAll(List.of(first, second));
+    }
+
+    @Test
+    void relayBatch_SendsOneEventPerOrderAndBacksOffFailedEvent() {
+        UUID orderId = UUID.randomUUID();
+        PaymentEventOutbox failed = entry(1L, orderId, PaymentStatus.PROCESSING);
+        PaymentEventOutbox sameOrder = entry(2L, orderId, PaymentStatus.SUCCESS);
+        PaymentEventOutbox otherOrder = entry(3L, UUID.randomUUID(), PaymentStatus.SUCCESS);
+        when(outboxRepository.lockPendingBatch(any(LocalDateTime.class), any(Pageable.class))).thenReturn(List.of(failed, sameOrder, otherOrder));
+        when(orderEventProducer.publish(any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker unavailable")))
+                .thenReturn(acked());
+
+        LocalDateTime before = LocalDateTime.now();
+        relay.relayBatch();
+
+        // The later event of the order is not sent while the earlier one is pending
+        verify(orderEventProducer, times(2)).publish(any());
+        assertNull(failed.getPublishedAt());
+        assertEquals(1, failed.getAttempts());
+        assertEquals("IllegalStateException: broker unavailable", failed.getLastError());
+        assertFalse(failed.getNextAttemptAt().isBefore(before.plusSeconds(1)));
+        assertNull(sameOrder.getPublishedAt());
+        assertNull(sameOrder.getNextAttemptAt());
+        assertEquals(0, sameOrder.getAttempts());
+        assertNotNull(otherOrder.getPublishedAt());
+    }
+
+    @Test
+    void relayBatch_DeadLettersEventAfterMaxAttempts() {
+        PaymentEventOutbox entry = entry(1L, UUID.randomUUID(), PaymentStatus.SUCCESS);
+        entry.setAttempts(2);
+        when(outboxRepository.lockPendingBatch(any(LocalDateTime.class), any(Pageable.class))).thenReturn(List.of(entry));
+        when(orderEventProducer.publish(any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("record too large")));
+
+        relay.relayBatch();
+
+        assertEquals(3, entry.getAttempts());
+        assertNotNull(entry.getDeadLetteredAt());
+        assertNull(entry.getNextAttemptAt());
+        assertNull(entry.getPublishedAt());
+    }
+
+    @Test
+    void relayBatch_WaitsOneSendTimeoutForTheWholeBatch() {
+        ReflectionTestUtils.setField(relay, "sendTimeout", Duration.ofMillis(200));
+        PaymentEventOutbox first = entry(1L, UUID.randomUUID(), PaymentStatus.SUCCESS);
+        PaymentEventOutbox second = entry(2L, UUID.randomUUID(), PaymentStatus.SUCCESS);
+        when(outboxRepository.lockPendingBatch(any(LocalDateTime.class), any(Pageable.class))).thenReturn(List.of(first, second));
+        when(orderEventProducer.publish(any())).thenReturn(new CompletableFuture<>());
+
+        long started = System.nanoTime();
+        relay.relayBatch();
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - started).compareTo(Duration.ofMillis(400)) < 0);
+        assertEquals("TimeoutException: null", first.getLastError());
+        assertEquals(1, second.getAttempts());
+    }
+
+    @Test
+    void backoff_DoublesUpToTheMaximum() {
+        assertEquals(Duration.ofSeconds(1), relay.backoff(1));
+        assertEquals(Duration.ofSeconds(2), relay.backoff(2));
+        assertEquals(Duration.ofSeconds(3), relay.backoff(3));
+        assertEquals(Duration.ofSeconds(3), relay.backoff(40));
+    }
+
+    @Test
+    void relayPendingEvents_StopsWhenBatchIsNotFull() {
+        when(outboxRepository.lockPendingBatch(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(entry(1L, UUID.randomUUID(), PaymentStatus.SUCCESS),
+                        entry(2L, UUID.randomUUID(), PaymentStatus.SUCCESS)))
+                .thenReturn(List.of());
+        when(orderEventProducer.publish(any())).thenReturn(acked());
+
+        relay.relayPendingEvents();
+
+        verify(outboxRepository, times(2)).lockPendingBatch(any(LocalDateTime.class), any(Pageable.class));
+    }
+
+    private PaymentEventOutbox entry(Long id, UUID orderId, PaymentStatus status) {
+        PaymentEventOutbox entry = new PaymentEventOutbox();
+        entry.setId(id);
+        entry.setOrderId(orderId);
+        entry.setTransactionId(UUID.randomUUID());
+        entry.setStatus(status.name());
+        entry.setMessage("Payment status updated to " + status);
+        entry.setOccurredAt(LocalDateTime.now().minusSeconds(1));
+        return entry;
+    }
+
+    private CompletableFuture<SendResult<String, OrderPaymentEvent>> acked() {
+        return CompletableFuture.completedFuture(null);
+    }
+}
@@ -0,0 +1,189 @@
+package com.fusionxpay.payment.integration;
+
+import com.fusionxpay.common.model.PaymentStatus;
+import com.fusionxpay.common.test.AbstractIntegrationTest;
+import com.fusionxpay.payment.dto.BulkRefundJobResponse;
+import com.fusionxpay.payment.dto.BulkRefundRequest;
+import com.fusionxpay.payment.dto.RefundRequest;
+import com.fusionxpay.payment.model.PaymentTransaction;
+import com.fusionxpay.payment.model.RefundStatus;
+import com.fusionxpay.payment.repository.PaymentTransactionRepository;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Throughput benchmark for bulk refunds against slow WireMock stand-ins for Stripe and PayPal.
+ * A loop over the single refund endpoint needs at least refunds x provider latency; the bulk
+ * job runs each provider's refunds in parallel up to its concurrency cap.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class BulkRefundThroughputIT extends AbstractIntegrationTest {
+
+    private static final int STRIPE_REFUNDS = 40;
+    private static final int PAYPAL_REFUNDS = 20;
+    private static final int PROVIDER_DELAY_MS = 150;
+    private static final int STRIPE_CONCURRENCY = 8;
+    private static final int PAYPAL_CONCURRENCY = 4;
+
+    private static WireMockServer wireMockServer;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private PaymentTransactionRepository paymentTransactionRepository;
+
+    @BeforeAll
+    static void setupWireMock() {
+        wireMockServer = new WireMockServer(wireMockConfig().dynamicPort());
+        wireMockServer.start();
+    }
+
+    @AfterAll
+    static void tearDownWireMock() {
+        if (wireMockServer != null && wireMockServer.isRunning()) {
+            wireMockServer.stop();
+        }
+    }
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("payment.providers.stripe.api-base-url", wireMockServer::baseUrl);
+        registry.add("payment.providers.stripe.secret-key", () -> "sk_test_mock");
+        registry.add("payment.providers.stripe.webhook-secret", () -> "whsec_test_mock");
+        registry.add("payment.providers.paypal.base-url", wireMockServer::baseUrl);
+        registry.add("payment.providers.paypal.client-id", () -> "paypal-client-id");
+        registry.add("payment.providers.paypal.client-secret", () -> "paypal-client-secret");
+        registry.add("payment.bulk-refund.concurrency.stripe", () -> STRIPE_CONCURRENCY);
+        registry.add("payment.bulk-refund.concurrency.paypal", () -> PAYPAL_CONCURRENCY);
+        registry.add("eureka.client.enabled", () -> false);
+        registry.add("spring.cloud.discovery.enabled", () -> false);
+    }
+
+    @BeforeEach
+    void setUp() {
+        wireMockServer.resetAll();
+        paymentTransactionRepository.deleteAll();
+        wireMockServer.stubFor(post(urlEqualTo("/v1/oauth2/token"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"access_token\":\"paypal-access-token\",\"token_type\":\"Bearer\",\"expires_in\":32400}")));
+        wireMockServer.stubFor(post(urlPathEqualTo("/v1/refunds"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withFixedDelay(PROVIDER_DELAY_MS)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("""
+                                {"id":"re_bulk","object":"refund","amount":1000,"currency":"usd",
+                                 "payment_intent":"pi_bulk","status":"succeeded","created":1710000000,"metadata":{}}
+                                """)));
+        wireMockServer.stubFor(post(urlPathMatching("/v2/payments/captures/[^/]+/refund"))
+                .willReturn(aResponse()
+                        .withStatus(201)
+                        .withFixedDelay(PROVIDER_DELAY_MS)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"id\":\"PAYPAL-REFUND\",\"status\":\"COMPLETED\",\"amount\":{\"currency_code\":\"USD\",\"value\":\"10.00\"}}")));
+    }
+
+    @Test
+    @DisplayName("Bulk refund runs provider calls in parallel within each provider's cap")
+    void bulkRefundThroughput() {
+        List<RefundRequest> refunds = new ArrayList<>();
+        for (int i = 0; i < STRIPE_REFUNDS; i++) {
+            refunds.add(refundFor(saveTransaction("STRIPE", "pi_bulk_" + i)));
+        }
+        for (int i = 0; i < PAYPAL_REFUNDS; i++) {
+            refunds.add(refundFor(saveTransaction("PAYPAL", "CAPTURE-BULK-" + i)));
+        }
+
+        long start = System.nanoTime();
+        ResponseEntity<BulkRefundJobResponse> accepted = restTemplate.exchange("/api/v1/payment/refund/bulk",
+                HttpMethod.POST, new HttpEntity<>(BulkRefundRequest.builder().refunds(refunds).build(), merchantHeaders()),
+                BulkRefundJobResponse.class);
+        assertThat(accepted.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+        assertThat(accepted.getBody()).isNotNull();
+        UUID jobId = accepted.getBody().getJobId();
+
+        BulkRefundJobResponse done = await().atMost(Duration.ofSeconds(30))
+                .pollInterval(Duration.ofMillis(50))
+                .until(() -> poll(jobId), job -> job.getStatus() == BulkRefundJobResponse.Status.COMPLETED);
+        long elapsedMs = Duration.ofNanos(System.nanoTime() - start).toMillis();
+
+        int total = STRIPE_REFUNDS + PAYPAL_REFUNDS;
+        long sequentialMs = (long) total * PROVIDER_DELAY_MS;
+        System.out.printf("Bulk refund: %d refunds in %dms (%.1f refunds/s); sequential lower bound %dms%n",
+                total, elapsedMs, total * 1000.0 / elapsedMs, sequentialMs);
+
+        assertThat(done.getSucceeded()).isEqualTo(total);
+        assertThat(done.getResults()).allSatisfy(result -> assertThat(result.getStatus()).isEqualTo(RefundStatus.COMPLETED));
+        wireMockServer.verify(STRIPE_REFUNDS, postRequestedFor(urlPathEqualTo("/v1/refunds")));
+        wireMockServer.verify(PAYPAL_REFUNDS, postRequestedFor(urlPathMatching("/v2/payments/captures/[^/]+/refund")));
+        // Both providers are drained in parallel, each limited by its own cap
+        long idealMs = Math.max(
+                (long) Math.ceil((double) STRIPE_REFUNDS / STRIPE_CONCURRENCY),
+                (long) Math.ceil((double) PAYPAL_REFUNDS / PAYPAL_CONCURRENCY)) * PROVIDER_DELAY_MS;
+        assertThat(elapsedMs).isGreaterThanOrEqualTo(idealMs);
+        assertThat(elapsedMs).isLessThan(sequentialMs / 3);
+    }
+
+    private BulkRefundJobResponse poll(UUID jobId) {
+        return restTemplate.exchange("/api/v1/payment/refund/bulk/" + jobId, HttpMethod.GET,
+                new HttpEntity<>(merchantHeaders()), BulkRefundJobResponse.class).getBody();
+    }
+
+    private PaymentTransaction saveTransaction(String channel, String providerTransactionId) {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setOrderId(UUID.randomUUID());
+        transaction.setMerchantId(1L);
+        transaction.setAmount(new BigDecimal("10.00"));
+        transaction.setCurrency("USD");
+        transaction.setPaymentChannel(channel);
+        transaction.setStatus(PaymentStatus.SUCCESS.name());
+        transaction.setProviderTransactionId(providerTransactionId);
+        return paymentTransactionRepository.save(transaction);
+    }
+
+    private RefundRequest refundFor(PaymentTransaction transaction) {
+        return RefundRequest.builder()
+                .transactionId(transaction.getTransactionId().toString())
+                .reason("Incident remediation")
+                .build();
+    }
+
+    private HttpHeaders merchantHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Merchant-Id", "1");
+        return headers;
+    }
+}
@@ -0,0 +1,130 @@
+package com.fusionxpay.payment.integration;
+
+import com.fusionxpay.payment.service.IdempotencyService;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the per-webhook Redis cost of the legacy idempotency sequence
+ * (get state, acquire, complete) with the scripted check-and-acquire path.
+ * Runs against a real Redis because the gain is network round-trips, which mocks cannot show.
+ * The round-trips are counted on the client and asserted; latencies are only logged, since they
+ * depend on the machine running the test.
+ */
+@Slf4j
+@Testcontainers
+public class IdempotencyLatencyIT {
+
+    @Container
+    private static final GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+
+    private static final int WARMUP_ITERATIONS = 2_000;
+    private static final int MEASURED_ITERATIONS = 10_000;
+    private static final Duration LOCK_TTL = Duration.ofMinutes(5);
+    private static final Duration EVENT_TTL = Duration.ofDays(7);
+
+    // Commands completed by the client, one per round-trip as nothing is pipelined
+    private static final AtomicLong roundTrips = new AtomicLong();
+
+    private static ClientResources clientResources;
+    private static LettuceConnectionFactory connectionFactory;
+    private static IdempotencyService idempotencyService;
+
+    @BeforeAll
+    static void setUp() {
+        clientResources = DefaultClientResources.builder()
+                .commandLatencyRecorder((local, remote, commandType, firstResponseLatency, completionLatency) ->
+                        roundTrips.incrementAndGet())
+                .build();
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(redis.getHost(), redis.getMappedPort(6379)),
+                LettuceClientConfiguration.builder().clientResources(clientResources).build());
+        connectionFactory.afterPropertiesSet();
+        StringRedisTemplate redisTemplate = new StringRedisTemplate(connectionFactory);
+        idempotencyService = new IdempotencyService(redisTemplate, new SimpleMeterRegistry(), 100_000, Duration.ofHours(1));
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+        if (clientResources != null) {
+            clientResources.shutdown();
+        }
+    }
+
+    @Test
+    void scriptedPathUsesFewerRoundTripsPerWebhook() {
+        run(WARMUP_ITERATIONS, this::legacyWebhook);
+        run(WARMUP_ITERATIONS, this::scriptedWebhook);
+
+        long before = roundTrips.get();
+        long[] legacy = run(MEASURED_ITERATIONS, this::legacyWebhook);
+        long legacyRoundTrips = roundTrips.get() - before;
+
+        before = roundTrips.get();
+        long[] scripted = run(MEASURED_ITERATIONS, this::scriptedWebhook);
+        long scriptedRoundTrips = roundTrips.get() - before;
+
+        log.info("Idempotency per webhook: legacy {} round-trips p50={}us p99={}us, scripted {} round-trips p50={}us p99={}us",
+                (double) legacyRoundTrips / MEASURED_ITERATIONS, percentile(legacy, 50), percentile(legacy, 99),
+                (double) scriptedRoundTrips / MEASURED_ITERATIONS, percentile(scripted, 50), percentile(scripted, 99));
+
+        // GET, SET NX, SET against EVALSHA check-and-acquire, EVALSHA complete-if-owner
+        assertThat(legacyRoundTrips).isEqualTo(3L * MEASURED_ITERATIONS);
+        assertThat(scriptedRoundTrips).isEqualTo(2L * MEASURED_ITERATIONS);
+    }
+
+    private void legacyWebhook(String key) {
+        assertThat(idempotencyService.getProcessingState(key)).isNull();
+        assertThat(idempotencyService.acquireProcessingLock(key, EVENT_TTL)).isTrue();
+        idempotencyService.markAsCompleted(key, EVENT_TTL);
+    }
+
+    private void scriptedWebhook(String key) {
+        String owner = IdempotencyService.newOwnerToken();
+        assertThat(idempotencyService.checkAndAcquire(key, owner, LOCK_TTL))
+                .isEqualTo(IdempotencyService.ProcessingState.NEW);
+        assertThat(idempotencyService.completeIfOwner(key, owner, EVENT_TTL)).isTrue();
+    }
+
+    private long[] run(int iterations, Consumer<String> webhook) {
+        long[] samples = new long[iterations];
+        String prefix = "bench:idempotency:" + UUID.randomUUID() + ":";
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            webhook.accept(prefix + i);
+            samples[i] = (System.nanoTime() - start) / 1_000;
+        }
+        Arrays.sort(samples);
+        return samples;
+    }
+
+    private long percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+}
@@ -0,0 +1,135 @@
+package com.fusionxpay.payment.integration;
+
+import com.fusionxpay.common.model.PaymentStatus;
+import com.fusionxpay.common.test.AbstractIntegrationTest;
+import com.fusionxpay.payment.dto.PaymentPageResponse;
+import com.fusionxpay.payment.dto.PaymentResponse;
+import com.fusionxpay.payment.service.PaymentArchivalJob;
+import com.fusionxpay.payment.service.PaymentService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class PaymentArchivalIT extends AbstractIntegrationTest {
+
+    private static final long MERCHANT_ID = 31L;
+    private static final YearMonth CURRENT = YearMonth.now();
+
+    @Autowired
+    private PaymentArchivalJob archivalJob;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("eureka.client.enabled", () -> false);
+        registry.add("spring.cloud.discovery.enabled", () -> false);
+        registry.add("payment.archive.enabled", () -> true);
+        registry.add("payment.archive.cron", () -> "-");
+        registry.add("payment.archive.batch-size", () -> 2);
+    }
+
+    @BeforeAll
+    void partition() {
+        PaymentTransactionPartitions.partitionByMonth(jdbcTemplate, CURRENT.minusMonths(8), CURRENT.plusMonths(1));
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM payment_transactions");
+        jdbcTemplate.update("DELETE FROM payment_transactions_archive");
+    }
+
+    @Test
+    @DisplayName("Closed transactions past the hot retention move to the archive and emptied partitions are dropped")
+    void archivesClosedMonths() {
+        YearMonth closedMonth = CURRENT.minusMonths(8);
+        YearMonth mixedMonth = CURRENT.minusMonths(7);
+        UUID archivedOrder = insert(closedMonth, PaymentStatus.SUCCESS);
+        insert(closedMonth, PaymentStatus.FAILED);
+        insert(closedMonth, PaymentStatus.SUCCESS);
+        insert(mixedMonth, PaymentStatus.REFUNDED);
+        UUID openOrder = insert(mixedMonth, PaymentStatus.PROCESSING);
+        insert(CURRENT.minusMonths(1), PaymentStatus.SUCCESS);
+
+        long archived = archivalJob.archiveBefore(CURRENT.minusMonths(6).atDay(1).atStartOfDay());
+
+        assertThat(archived).isEqualTo(4);
+        assertThat(count("payment_transactions")).isEqualTo(2);
+        assertThat(count("payment_transactions_archive")).isEqualTo(4);
+        assertThat(PaymentTransactionPartitions.names(jdbcTemplate))
+                .doesNotContain(partition(closedMonth))
+                .contains(partition(mixedMonth), partition(CURRENT.minusMonths(1)));
+
+        PaymentPageResponse page = paymentService.searchArchivedPayments(MERCHANT_ID, 0, 10, null, null, null);
+        assertThat(page.getTotalElements()).isEqualTo(4);
+        assertThat(paymentService.searchArchivedPayments(MERCHANT_ID, 0, 10, PaymentStatus.REFUNDED.name(),
+                mixedMonth.atDay(1).toString(), mixedMonth.atEndOfMonth().toString()).getTotalElements())
+                .isEqualTo(1);
+
+        PaymentResponse fromArchive = paymentService.getPaymentTransactionByOrderId(MERCHANT_ID, archivedOrder);
+        assertThat(fromArchive.getStatus()).isEqualTo(PaymentStatus.SUCCESS);
+        PaymentResponse stillHot = paymentService.getPaymentTransactionByOrderId(MERCHANT_ID, openOrder);
+        assertThat(stillHot.getStatus()).isEqualTo(PaymentStatus.PROCESSING);
+    }
+
+    @Test
+    @DisplayName("Monthly partitions are created ahead by splitting p_future")
+    void addsPartitionsAhead() {
+        archivalJob.ensurePartitionsThrough(CURRENT.plusMonths(3));
+        archivalJob.ensurePartitionsThrough(CURRENT.plusMonths(3));
+
+        assertThat(PaymentTransactionPartitions.names(jdbcTemplate))
+                .containsSubsequence(partition(CURRENT.plusMonths(1)), partition(CURRENT.plusMonths(2)),
+                        partition(CURRENT.plusMonths(3)), "p_future")
+                .doesNotHaveDuplicates()
+                .last().isEqualTo("p_future");
+    }
+
+    private UUID insert(YearMonth month, PaymentStatus status) {
+        UUID orderId = UUID.randomUUID();
+        LocalDateTime createdAt = month.atDay(10).atTime(12, 0);
+        jdbcTemplate.update("INSERT INTO payment_transactions (transaction_id, order_id, merchant_id, amount, "
+                        + "currency, payment_channel, status, provider_transaction_id, version, created_at, updated_at) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                bytes(UUID.randomUUID()), bytes(orderId), MERCHANT_ID, new BigDecimal("25.00"), "USD", "STRIPE",
+                status.name(), "pi_" + orderId, 0L, createdAt, createdAt);
+        return orderId;
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+
+    private static String partition(YearMonth month) {
+        return String.format("p%d%02d", month.getYear(), month.getMonthValue());
+    }
+
+    private static byte[] bytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+}
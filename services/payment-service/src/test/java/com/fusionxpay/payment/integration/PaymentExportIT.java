@@ -0,0 +1,145 @@
+package com.fusionxpay.payment.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fusionxpay.common.model.PaymentStatus;
+import com.fusionxpay.common.test.AbstractIntegrationTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class PaymentExportIT extends AbstractIntegrationTest {
+
+    private static final long MERCHANT_ID = 55L;
+    private static final long OTHER_MERCHANT_ID = 56L;
+    private static final int ROWS = 2_500;
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 0, 0);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("eureka.client.enabled", () -> false);
+        registry.add("spring.cloud.discovery.enabled", () -> false);
+        registry.add("payment.export.flush-rows", () -> 100);
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM payment_transactions");
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            String status = i % 5 == 0 ? PaymentStatus.FAILED.name() : PaymentStatus.SUCCESS.name();
+            rows.add(row(MERCHANT_ID, status, START.plusMinutes(i)));
+        }
+        rows.add(row(OTHER_MERCHANT_ID, PaymentStatus.SUCCESS.name(), START));
+        jdbcTemplate.batchUpdate("INSERT INTO payment_transactions (transaction_id, order_id, merchant_id, amount, "
+                + "currency, payment_channel, status, provider_transaction_id, version, created_at, updated_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+
+    @Test
+    @DisplayName("CSV export streams every payment of the merchant, oldest first, gzip-compressed")
+    void exportsGzippedCsv() throws Exception {
+        HttpResponse<InputStream> response = export("format=csv", true);
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.headers().firstValue("Content-Type")).hasValueSatisfying(type -> assertThat(type).startsWith("text/csv"));
+        assertThat(response.headers().firstValue("Content-Encoding")).hasValue("gzip");
+        assertThat(response.headers().firstValue("Content-Length")).isEmpty();
+
+        List<String> lines = readLines(new GZIPInputStream(response.body()));
+        assertThat(lines).hasSize(ROWS + 1);
+        assertThat(lines.get(0)).startsWith("transaction_id,");
+        assertThat(lines.get(1)).contains(START.toString());
+        assertThat(lines.get(ROWS)).contains(START.plusMinutes(ROWS - 1).toString());
+    }
+
+    @Test
+    @DisplayName("NDJSON export applies the status and date filters")
+    void exportsFilteredNdjson() throws Exception {
+        HttpResponse<InputStream> response = export("format=ndjson&status=FAILED&from=2026-01-01T00:00&to=2026-01-01T09:59", false);
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.headers().firstValue("Content-Encoding")).isEmpty();
+
+        List<String> lines = readLines(response.body());
+        // Minutes 0..599, every fifth one FAILED
+        assertThat(lines).hasSize(120);
+        for (String line : lines) {
+            JsonNode json = objectMapper.readTree(line);
+            assertThat(json.get("status").asText()).isEqualTo(PaymentStatus.FAILED.name());
+            assertThat(json.get("amount").decimalValue()).isEqualByComparingTo("25.00");
+        }
+    }
+
+    @Test
+    @DisplayName("An unknown format is rejected before streaming starts")
+    void rejectsUnknownFormat() throws Exception {
+        HttpResponse<InputStream> response = export("format=xlsx", false);
+
+        assertThat(response.statusCode()).isEqualTo(400);
+    }
+
+    private HttpResponse<InputStream> export(String query, boolean gzip) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(
+                        URI.create("http://localhost:" + port + "/api/v1/payment/export?" + query))
+                .header("X-Merchant-Id", String.valueOf(MERCHANT_ID));
+        if (gzip) {
+            request.header("Accept-Encoding", "gzip");
+        }
+        return httpClient.send(request.GET().build(), HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    private static List<String> readLines(InputStream body) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            return reader.lines().toList();
+        }
+    }
+
+    private static Object[] row(long merchantId, String status, LocalDateTime createdAt) {
+        UUID orderId = UUID.randomUUID();
+        return new Object[]{bytes(UUID.randomUUID()), bytes(orderId), merchantId, new BigDecimal("25.00"), "USD",
+                "STRIPE", status, "cs_" + orderId, 0L, createdAt, createdAt};
+    }
+
+    private static byte[] bytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+}
@@ -24,6 +24,9 @@ import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -102,6 +105,42 @@ class PaymentSearchIT extends AbstractIntegrationTest {
         assertThat(response.getBody().getPayments().get(0).getStatus()).isEqualTo(PaymentStatus.PROCESSING);
     }
 
+    @Test
+    @DisplayName("Cursor search walks all pages newest first without repeating rows")
+    void searchPayments_CursorPagination() {
+        LocalDateTime base = LocalDate.now().atTime(9, 0);
+        List<UUID> expectedOrder = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            // Two rows share each timestamp so the transactionId tie-breaker is exercised
+            expectedOrder.add(createTransaction(MERCHANT_A, UUID.randomUUID(), PaymentStatus.SUCCESS.name(),
+                    base.plusMinutes(i / 2)).getTransactionId());
+        }
+        createTransaction(MERCHANT_B, UUID.randomUUID(), PaymentStatus.SUCCESS.name(), base);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Merchant-Id", String.valueOf(MERCHANT_A));
+
+        List<UUID> seen = new ArrayList<>();
+        String url = "/api/v1/payment/search?pagination=cursor&size=2&includeTotal=true";
+        PaymentPageResponse page;
+        do {
+            ResponseEntity<PaymentPageResponse> response = restTemplate.exchange(
+                    url, HttpMethod.GET, new HttpEntity<>(headers), PaymentPageResponse.class);
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            page = response.getBody();
+            assertThat(page).isNotNull();
+            assertThat(page.getTotalElements()).isEqualTo(5);
+            page.getPayments().forEach(payment -> seen.add(payment.getTransactionId()));
+            url = "/api/v1/payment/search?size=2&cursor=" + page.getNextCursor();
+        } while (!page.isLast());
+
+        assertThat(seen).hasSize(5).doesNotHaveDuplicates().containsExactlyInAnyOrderElementsOf(expectedOrder);
+        List<LocalDateTime> createdAt = seen.stream()
+                .map(id -> paymentTransactionRepository.findById(id).orElseThrow().getCreatedAt())
+                .toList();
+        assertThat(createdAt).isSortedAccordingTo(Comparator.reverseOrder());
+    }
+
     private PaymentTransaction createTransaction(
             long merchantId,
             UUID orderId,
@@ -0,0 +1,39 @@
+package com.fusionxpay.payment.integration;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies the layout of mysql-init/13 to the table Hibernate created: primary key
+ * (transaction_id, created_at), p_history before the first month, one partition per month and
+ * p_future.
+ */
+final class PaymentTransactionPartitions {
+
+    private PaymentTransactionPartitions() {
+    }
+
+    static void partitionByMonth(JdbcTemplate jdbcTemplate, YearMonth first, YearMonth last) {
+        List<String> partitions = new ArrayList<>();
+        partitions.add("PARTITION p_history VALUES LESS THAN ('" + first.atDay(1) + "')");
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            partitions.add(String.format("PARTITION p%d%02d VALUES LESS THAN ('%s')",
+                    month.getYear(), month.getMonthValue(), month.plusMonths(1).atDay(1)));
+        }
+        partitions.add("PARTITION p_future VALUES LESS THAN (MAXVALUE)");
+
+        jdbcTemplate.execute("ALTER TABLE payment_transactions DROP PRIMARY KEY, "
+                + "ADD PRIMARY KEY (transaction_id, created_at)");
+        jdbcTemplate.execute("ALTER TABLE payment_transactions PARTITION BY RANGE COLUMNS (created_at) ("
+                + String.join(", ", partitions) + ")");
+    }
+
+    static List<String> names(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForList("SELECT PARTITION_NAME FROM information_schema.PARTITIONS "
+                + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'payment_transactions' "
+                + "AND PARTITION_NAME IS NOT NULL ORDER BY PARTITION_ORDINAL_POSITION", String.class);
+    }
+}
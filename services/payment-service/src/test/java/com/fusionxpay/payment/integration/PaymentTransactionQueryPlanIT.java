@@ -0,0 +1,287 @@
+package com.fusionxpay.payment.integration;
+
+import com.fusionxpay.common.model.PaymentStatus;
+import com.fusionxpay.common.test.AbstractIntegrationTest;
+import com.fusionxpay.payment.repository.PaymentTransactionRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionOperations;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static com.fusionxpay.payment.repository.PaymentTransactionRepository.UNBOUNDED_FROM;
+import static com.fusionxpay.payment.repository.PaymentTransactionRepository.UNBOUNDED_TO;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs every query of {@link PaymentTransactionRepository} against a seeded MySQL table, partitioned
+ * by month like production, replays the SQL Hibernate issued under EXPLAIN and fails if any of it
+ * scans the whole table or index, or sorts with a filesort. A repository method without a case here
+ * fails the suite, so new queries have to come with an index.
+ */
+@SpringBootTest
+@Import(PaymentTransactionQueryPlanIT.RecorderConfig.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class PaymentTransactionQueryPlanIT extends AbstractIntegrationTest {
+
+    private static final StatementRecorder RECORDER = new StatementRecorder();
+
+    private static final int MERCHANTS = 200;
+    private static final int ROWS_PER_MERCHANT = 250;
+    private static final int DAYS = 180;
+    private static final long MERCHANT_ID = 17L;
+    private static final LocalDate TODAY = LocalDate.now();
+
+    @Autowired
+    private PaymentTransactionRepository repository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionOperations transactionOperations;
+
+    private final List<UUID> orderIds = new ArrayList<>();
+    private final List<UUID> transactionIds = new ArrayList<>();
+    private final List<String> providerTransactionIds = new ArrayList<>();
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> mysql.getJdbcUrl()
+                + (mysql.getJdbcUrl().contains("?") ? "&" : "?") + "rewriteBatchedStatements=true");
+        registry.add("spring.jpa.show-sql", () -> false);
+        registry.add("eureka.client.enabled", () -> false);
+        registry.add("spring.cloud.discovery.enabled", () -> false);
+    }
+
+    @TestConfiguration
+    static class RecorderConfig {
+
+        @Bean
+        static BeanPostProcessor statementRecordingPostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? RECORDER.wrap(dataSource) : bean;
+                }
+            };
+        }
+    }
+
+    @BeforeAll
+    void seed() {
+        Random random = new Random(42);
+        String[] statuses = {"SUCCESS", "SUCCESS", "SUCCESS", "SUCCESS", "SUCCESS", "SUCCESS", "SUCCESS",
+                "FAILED", "PROCESSING", "REFUNDED", "INITIATED"};
+        List<Object[]> rows = new ArrayList<>(MERCHANTS * ROWS_PER_MERCHANT);
+        for (long merchantId = 1; merchantId <= MERCHANTS; merchantId++) {
+            for (int i = 0; i < ROWS_PER_MERCHANT; i++) {
+                UUID transactionId = UUID.randomUUID();
+                UUID orderId = UUID.randomUUID();
+                String providerTransactionId = "pi_" + transactionId.toString().replace("-", "");
+                Timestamp createdAt = Timestamp.valueOf(TODAY.atStartOfDay()
+                        .minusMinutes(random.nextInt(DAYS * 24 * 60)));
+                if (merchantId == MERCHANT_ID) {
+                    orderIds.add(orderId);
+                    transactionIds.add(transactionId);
+                    providerTransactionIds.add(providerTransactionId);
+                }
+                rows.add(new Object[]{bytes(transactionId), bytes(orderId), merchantId, new BigDecimal("19.99"), "USD",
+                        random.nextBoolean() ? "STRIPE" : "PAYPAL", statuses[random.nextInt(statuses.length)],
+                        providerTransactionId, 0L, createdAt, createdAt});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO payment_transactions (transaction_id, order_id, merchant_id, amount, "
+                + "currency, payment_channel, status, provider_transaction_id, version, created_at, updated_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+        PaymentTransactionPartitions.partitionByMonth(jdbcTemplate,
+                YearMonth.from(TODAY.minusDays(DAYS)), YearMonth.from(TODAY).plusMonths(1));
+        jdbcTemplate.execute("ANALYZE TABLE payment_transactions");
+    }
+
+    @Test
+    @DisplayName("Every repository query is covered by this suite")
+    void everyRepositoryQueryHasACase() {
+        Set<String> declared = Arrays.stream(PaymentTransactionRepository.class.getDeclaredMethods())
+                .filter(method -> !method.isSynthetic())
+                .map(Method::getName)
+                .collect(Collectors.toSet());
+
+        assertThat(queries().keySet())
+                .as("Add a case for each new PaymentTransactionRepository query")
+                .containsExactlyInAnyOrderElementsOf(declared);
+    }
+
+    @Test
+    @DisplayName("No repository query scans payment_transactions or sorts with a filesort")
+    void repositoryQueriesUseIndexes() {
+        List<String> violations = new ArrayList<>();
+        queries().forEach((name, query) -> {
+            RECORDER.start();
+            try {
+                transactionOperations.executeWithoutResult(status -> query.accept(repository));
+            } finally {
+                List<StatementRecorder.RecordedStatement> statements = RECORDER.stop().stream()
+                        .filter(statement -> statement.sql().toLowerCase(Locale.ROOT).contains("payment_transactions"))
+                        .toList();
+                if (statements.isEmpty()) {
+                    violations.add(name + ": issued no statement on payment_transactions");
+                }
+                statements.forEach(statement -> violations.addAll(explain(name, statement)));
+            }
+        });
+
+        assertThat(violations).as(String.join("\n", violations)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Searches with date bounds only read the partitions of those months")
+    void boundedSearchesPrunePartitions() {
+        LocalDateTime from = TODAY.minusDays(30).atStartOfDay();
+        LocalDateTime to = TODAY.atStartOfDay();
+        int months = YearMonth.from(to).compareTo(YearMonth.from(from)) + 1;
+        PageRequest page = PageRequest.of(0, 20,
+                Sort.by(Sort.Direction.DESC, "createdAt").and(Sort.by(Sort.Direction.DESC, "transactionId")));
+
+        RECORDER.start();
+        try {
+            transactionOperations.executeWithoutResult(status -> {
+                repository.findWithFilters(MERCHANT_ID, null, from, to, page);
+                repository.findFirstByKeyset(MERCHANT_ID, PaymentStatus.SUCCESS.name(), from, to, Limit.of(21));
+                repository.countWithFilters(MERCHANT_ID, null, from, to);
+                try (var rows = repository.streamForReconciliation("STRIPE", from, to)) {
+                    rows.count();
+                }
+            });
+        } finally {
+            List<StatementRecorder.RecordedStatement> statements = RECORDER.stop();
+            assertThat(statements).isNotEmpty();
+            for (StatementRecorder.RecordedStatement statement : statements) {
+                List<String> partitions = explain(statement, (plan, rowNum) -> plan.getString("partitions"));
+                assertThat(partitions).as(statement.sql())
+                        .allSatisfy(read -> assertThat(read == null ? 0 : read.split(",").length)
+                                .isLessThanOrEqualTo(months));
+            }
+        }
+    }
+
+    /**
+     * One case per repository method; a case may call its method more than once to cover the
+     * filter combinations the service uses.
+     */
+    private Map<String, Consumer<PaymentTransactionRepository>> queries() {
+        UUID orderId = orderIds.get(0);
+        UUID transactionId = transactionIds.get(0);
+        String providerTransactionId = providerTransactionIds.get(0);
+        LocalDateTime from = TODAY.minusDays(30).atStartOfDay();
+        LocalDateTime to = TODAY.atStartOfDay();
+        PageRequest page = PageRequest.of(2, 20,
+                Sort.by(Sort.Direction.DESC, "createdAt").and(Sort.by(Sort.Direction.DESC, "transactionId")));
+        String success = PaymentStatus.SUCCESS.name();
+
+        Map<String, Consumer<PaymentTransactionRepository>> queries = new LinkedHashMap<>();
+        queries.put("findByOrderId", repo -> repo.findByOrderId(orderId));
+        queries.put("findByOrderIdAndMerchantId", repo -> repo.findByOrderIdAndMerchantId(orderId, MERCHANT_ID));
+        queries.put("findByOrderIdInAndMerchantId",
+                repo -> repo.findByOrderIdInAndMerchantId(orderIds.subList(0, 10), MERCHANT_ID));
+        queries.put("findByTransactionIdInAndMerchantId",
+                repo -> repo.findByTransactionIdInAndMerchantId(transactionIds.subList(0, 10), MERCHANT_ID));
+        queries.put("findByTransactionIdAndMerchantId",
+                repo -> repo.findByTransactionIdAndMerchantId(transactionId, MERCHANT_ID));
+        queries.put("findByProviderTransactionId", repo -> repo.findByProviderTransactionId(providerTransactionId));
+        queries.put("findOrderIdByProviderTransactionId",
+                repo -> repo.findOrderIdByProviderTransactionId(providerTransactionId));
+        queries.put("transitionStatus", repo -> repo.transitionStatus(transactionId, Long.MAX_VALUE,
+                Set.of(PaymentStatus.PROCESSING.name()), success, null, null, LocalDateTime.now()));
+        queries.put("findWithFilters", repo -> {
+            repo.findWithFilters(MERCHANT_ID, null, UNBOUNDED_FROM, UNBOUNDED_TO, page);
+            repo.findWithFilters(MERCHANT_ID, success, from, to, page);
+        });
+        queries.put("findFirstByKeyset", repo -> {
+            repo.findFirstByKeyset(MERCHANT_ID, null, UNBOUNDED_FROM, UNBOUNDED_TO, Limit.of(21));
+            repo.findFirstByKeyset(MERCHANT_ID, success, from, to, Limit.of(21));
+        });
+        queries.put("findNextByKeyset", repo -> {
+            repo.findNextByKeyset(MERCHANT_ID, null, UNBOUNDED_FROM, UNBOUNDED_TO, to.minusDays(7), transactionId,
+                    Limit.of(21));
+            repo.findNextByKeyset(MERCHANT_ID, success, from, to, to.minusDays(7), transactionId, Limit.of(21));
+        });
+        queries.put("countWithFilters", repo -> {
+            repo.countWithFilters(MERCHANT_ID, null, UNBOUNDED_FROM, UNBOUNDED_TO);
+            repo.countWithFilters(MERCHANT_ID, success, from, to);
+        });
+        queries.put("streamForReconciliation", repo -> {
+            try (var rows = repo.streamForReconciliation("STRIPE", to.minusDays(1), to)) {
+                rows.count();
+            }
+        });
+        return queries;
+    }
+
+    private List<String> explain(String name, StatementRecorder.RecordedStatement statement) {
+        return explain(statement, (ResultSet plan, int rowNum) -> {
+            String type = plan.getString("type");
+            String extra = plan.getString("Extra");
+            boolean fullScan = "ALL".equals(type) || "index".equals(type);
+            boolean filesort = extra != null && extra.contains("Using filesort");
+            if (!fullScan && !filesort) {
+                return null;
+            }
+            return String.format("%s: %s on %s (key=%s, rows=%s, extra=%s) in %s", name,
+                    fullScan ? "full scan" : "filesort", plan.getString("table"), plan.getString("key"),
+                    plan.getString("rows"), extra, statement.sql());
+        }).stream().filter(violation -> violation != null).toList();
+    }
+
+    private <T> List<T> explain(StatementRecorder.RecordedStatement statement, RowMapper<T> planRow) {
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement explain = connection.prepareStatement("EXPLAIN " + statement.sql());
+            for (Map.Entry<Integer, Object> parameter : statement.parameters().entrySet()) {
+                explain.setObject(parameter.getKey(), parameter.getValue());
+            }
+            return explain;
+        }, planRow);
+    }
+
+    private static byte[] bytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+}
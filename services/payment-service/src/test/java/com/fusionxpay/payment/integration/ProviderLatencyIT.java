@@ -0,0 +1,157 @@
+package com.fusionxpay.payment.integration;
+
+import com.fusionxpay.common.model.PaymentStatus;
+import com.fusionxpay.common.test.AbstractIntegrationTest;
+import com.fusionxpay.payment.dto.PaymentRequest;
+import com.fusionxpay.payment.dto.PaymentResponse;
+import com.fusionxpay.payment.repository.PaymentTransactionRepository;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlMatching;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Load test for payment initiation against a slow provider.
+ * With a two-connection Hikari pool and a 250ms acquire timeout, requests would time out if
+ * each held a connection for the whole 800ms Stripe round-trip; with the provider call outside
+ * the transaction every request succeeds and connections are never waited for.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ProviderLatencyIT extends AbstractIntegrationTest {
+
+    private static final int CONCURRENT_REQUESTS = 24;
+    private static final int PROVIDER_DELAY_MS = 800;
+
+    private static WireMockServer wireMockServer;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private PaymentTransactionRepository paymentTransactionRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeAll
+    static void setupWireMock() {
+        wireMockServer = new WireMockServer(wireMockConfig().dynamicPort());
+        wireMockServer.start();
+    }
+
+    @AfterAll
+    static void tearDownWireMock() {
+        if (wireMockServer != null && wireMockServer.isRunning()) {
+            wireMockServer.stop();
+        }
+    }
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("payment.providers.stripe.api-base-url", wireMockServer::baseUrl);
+        registry.add("payment.providers.stripe.secret-key", () -> "sk_test_mock");
+        registry.add("payment.providers.stripe.webhook-secret", () -> "whsec_test_mock");
+        registry.add("spring.cloud.openfeign.client.config.order-service.url", wireMockServer::baseUrl);
+        registry.add("spring.datasource.hikari.maximum-pool-size", () -> 2);
+        registry.add("spring.datasource.hikari.connection-timeout", () -> 250);
+        registry.add("spring.threads.virtual.enabled", () -> true);
+        registry.add("eureka.client.enabled", () -> false);
+        registry.add("spring.cloud.discovery.enabled", () -> false);
+    }
+
+    @BeforeEach
+    void setUp() {
+        wireMockServer.resetAll();
+        paymentTransactionRepository.deleteAll();
+        wireMockServer.stubFor(get(urlMatching("/api/v1/orders/id/.*"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"userId\":1}")));
+        wireMockServer.stubFor(post(urlPathMatching("/v1/checkout/sessions"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withFixedDelay(PROVIDER_DELAY_MS)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"id\":\"cs_test_slow\",\"url\":\"https://checkout.stripe.com/pay/cs_test_slow\"}")));
+    }
+
+    @Test
+    @DisplayName("Slow provider calls do not exhaust the connection pool")
+    void slowProviderDoesNotSaturateConnectionPool() throws Exception {
+        AtomicInteger maxPending = new AtomicInteger();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> maxPending.accumulateAndGet(pendingConnections(), Math::max),
+                0, 20, TimeUnit.MILLISECONDS);
+
+        List<Future<ResponseEntity<PaymentResponse>>> responses = new ArrayList<>();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+                responses.add(clients.submit(this::requestPayment));
+            }
+            for (Future<ResponseEntity<PaymentResponse>> response : responses) {
+                ResponseEntity<PaymentResponse> result = response.get(30, TimeUnit.SECONDS);
+                assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
+                assertThat(result.getBody()).isNotNull();
+                assertThat(result.getBody().getStatus()).isIn(PaymentStatus.PROCESSING, PaymentStatus.INITIATED);
+            }
+        } finally {
+            sampler.shutdownNow();
+        }
+
+        assertThat(paymentTransactionRepository.count()).isEqualTo(CONCURRENT_REQUESTS);
+        assertThat(meterRegistry.get("hikaricp.connections.timeout").counter().count()).isZero();
+        // Connections are only held for the short insert and update transactions
+        assertThat(maxPending.get()).isLessThan(CONCURRENT_REQUESTS / 2);
+    }
+
+    private ResponseEntity<PaymentResponse> requestPayment() {
+        PaymentRequest request = PaymentRequest.builder()
+                .orderId(UUID.randomUUID())
+                .amount(new BigDecimal("25.00"))
+                .currency("USD")
+                .paymentChannel("STRIPE")
+                .description("Provider latency test")
+                .build();
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Merchant-Id", "1");
+        return restTemplate.exchange("/api/v1/payment/request", HttpMethod.POST,
+                new HttpEntity<>(request, headers), PaymentResponse.class);
+    }
+
+    private int pendingConnections() {
+        return (int) meterRegistry.get("hikaricp.connections.pending").gauge().value();
+    }
+}
@@ -0,0 +1,89 @@
+package com.fusionxpay.payment.integration;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Wraps a DataSource to record the prepared statements run while recording is on, together with
+ * their bound parameters, so they can be replayed under EXPLAIN.
+ */
+final class StatementRecorder {
+
+    record RecordedStatement(String sql, Map<Integer, Object> parameters) {
+    }
+
+    private final List<RecordedStatement> statements = new ArrayList<>();
+    private volatile boolean recording;
+
+    DataSource wrap(DataSource dataSource) {
+        return proxy(DataSource.class, dataSource, (method, args, result) ->
+                result instanceof Connection connection ? wrap(connection) : result);
+    }
+
+    synchronized void start() {
+        statements.clear();
+        recording = true;
+    }
+
+    synchronized List<RecordedStatement> stop() {
+        recording = false;
+        return List.copyOf(statements);
+    }
+
+    private Connection wrap(Connection connection) {
+        return proxy(Connection.class, connection, (method, args, result) ->
+                result instanceof PreparedStatement statement && method.getName().equals("prepareStatement")
+                        ? wrap(statement, (String) args[0])
+                        : result);
+    }
+
+    private PreparedStatement wrap(PreparedStatement statement, String sql) {
+        Map<Integer, Object> parameters = new HashMap<>();
+        InvocationHandler handler = (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                parameters.put(index, name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("clearParameters")) {
+                parameters.clear();
+            } else if (name.startsWith("execute") && recording) {
+                record(new RecordedStatement(sql, new HashMap<>(parameters)));
+            }
+            return invoke(method, statement, args);
+        };
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, handler);
+    }
+
+    private synchronized void record(RecordedStatement statement) {
+        if (recording) {
+            statements.add(statement);
+        }
+    }
+
+    private <T> T proxy(Class<T> type, T target, ResultMapper mapper) {
+        InvocationHandler handler = (proxy, method, args) -> mapper.map(method, args, invoke(method, target, args));
+        return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ResultMapper {
+        Object map(Method method, Object[] args, Object result);
+    }
+}
@@ -0,0 +1,195 @@
+package com.fusionxpay.payment.provider;
+
+import com.fusionxpay.common.model.PaymentStatus;
+import com.fusionxpay.payment.dto.PaymentRequest;
+import com.fusionxpay.payment.dto.PaymentResponse;
+import com.fusionxpay.payment.dto.RefundResponse;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives the router with simulated providers of configurable latency and failure rate
+ */
+class LatencyAwarePaymentRouterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        circuitBreakerRegistry = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .slidingWindowSize(4)
+                .minimumNumberOfCalls(4)
+                .failureRateThreshold(50)
+                .waitDurationInOpenState(Duration.ofMinutes(1))
+                .build());
+    }
+
+    @Test
+    void anyChannelConvergesOnFasterProvider() {
+        SimulatedProvider stripe = new SimulatedProvider("STRIPE", 2, 0);
+        SimulatedProvider payPal = new SimulatedProvider("PAYPAL", 25, 0);
+        LatencyAwarePaymentRouter router = router(stripe, payPal);
+
+        for (int i = 0; i < 10; i++) {
+            PaymentRequest request = request(PaymentRouter.ANY_CHANNEL);
+            PaymentRouter.RoutedPayment routed = router.processPayment(router.route(request.getPaymentChannel()), request);
+            assertEquals(PaymentStatus.PROCESSING, routed.response().getStatus());
+        }
+
+        assertEquals("STRIPE", router.route(PaymentRouter.ANY_CHANNEL).get(0).getProviderName());
+        // Unmeasured PAYPAL is tried once by name order, then STRIPE wins every decision
+        assertEquals(1, payPal.calls.get());
+        assertEquals(9, stripe.calls.get());
+        assertEquals(9, decisions("ANY", "STRIPE", "primary", "success"));
+        assertTrue(latencyGauge("PAYPAL") > latencyGauge("STRIPE"));
+    }
+
+    @Test
+    void anyChannelFailsOverWhenPrimaryErrors() {
+        SimulatedProvider stripe = new SimulatedProvider("STRIPE", 1, 0);
+        SimulatedProvider payPal = new SimulatedProvider("PAYPAL", 1, 1.0);
+        LatencyAwarePaymentRouter router = router(stripe, payPal);
+
+        PaymentRequest request = request(PaymentRouter.ANY_CHANNEL);
+        PaymentRouter.RoutedPayment routed = router.processPayment(List.of(payPal, stripe), request);
+
+        assertSame(stripe, routed.provider());
+        assertEquals(1, decisions("ANY", "PAYPAL", "primary", "failure"));
+        assertEquals(1, decisions("ANY", "STRIPE", "failover", "success"));
+        assertEquals(1.0, meterRegistry.get(LatencyAwarePaymentRouter.ERROR_RATE_METRIC)
+                .tag("provider", "PAYPAL").gauge().value());
+    }
+
+    @Test
+    void openBreakerRanksProviderLastAndSkipsIt() {
+        SimulatedProvider stripe = new SimulatedProvider("STRIPE", 1, 1.0);
+        SimulatedProvider payPal = new SimulatedProvider("PAYPAL", 20, 0);
+        LatencyAwarePaymentRouter router = router(stripe, payPal);
+
+        for (int i = 0; i < 4; i++) {
+            PaymentRequest request = request("STRIPE");
+            assertThrows(RuntimeException.class, () -> router.processPayment(router.route("STRIPE"), request));
+        }
+        assertEquals(CircuitBreaker.State.OPEN,
+                circuitBreakerRegistry.circuitBreaker("payment-provider-stripe").getState());
+
+        assertEquals("PAYPAL", router.route(PaymentRouter.ANY_CHANNEL).get(0).getProviderName());
+        PaymentRouter.RoutedPayment routed = router.processPayment(List.of(stripe, payPal), request(PaymentRouter.ANY_CHANNEL));
+
+        assertSame(payPal, routed.provider());
+        assertEquals(4, stripe.calls.get());
+        assertEquals(1, decisions("ANY", "STRIPE", "primary", "skipped"));
+    }
+
+    @Test
+    void namedChannelIsNeverRerouted() {
+        SimulatedProvider stripe = new SimulatedProvider("STRIPE", 1, 1.0);
+        SimulatedProvider payPal = new SimulatedProvider("PAYPAL", 1, 0);
+        LatencyAwarePaymentRouter router = router(stripe, payPal);
+
+        assertEquals(List.of("STRIPE"), router.route("stripe").stream().map(PaymentProvider::getProviderName).toList());
+        PaymentRequest request = request("STRIPE");
+        assertThrows(RuntimeException.class, () -> router.processPayment(router.route("STRIPE"), request));
+        assertEquals(0, payPal.calls.get());
+        assertThrows(IllegalArgumentException.class, () -> router.route("UNKNOWN"));
+    }
+
+    private LatencyAwarePaymentRouter router(PaymentProvider... providers) {
+        return new LatencyAwarePaymentRouter(new PaymentProviderFactory(List.of(providers), meterRegistry),
+                circuitBreakerRegistry, meterRegistry);
+    }
+
+    private double decisions(String requested, String provider, String position, String result) {
+        return meterRegistry.get(LatencyAwarePaymentRouter.DECISIONS_METRIC)
+                .tag("requested", requested)
+                .tag("provider", provider)
+                .tag("position", position)
+                .tag("result", result)
+                .counter()
+                .count();
+    }
+
+    private double latencyGauge(String provider) {
+        return meterRegistry.get(LatencyAwarePaymentRouter.LATENCY_METRIC).tag("provider", provider).gauge().value();
+    }
+
+    private PaymentRequest request(String channel) {
+        return PaymentRequest.builder()
+                .orderId(UUID.randomUUID())
+                .amount(new BigDecimal("10.00"))
+                .currency("USD")
+                .paymentChannel(channel)
+                .build();
+    }
+
+    /**
+     * Provider that sleeps for a fixed latency and fails a given fraction of calls
+     */
+    private static final class SimulatedProvider implements PaymentProvider {
+
+        private final String name;
+        private final long latencyMillis;
+        private final double failureRate;
+        private final Random random = new Random(42);
+        private final AtomicInteger calls = new AtomicInteger();
+
+        SimulatedProvider(String name, long latencyMillis, double failureRate) {
+            this.name = name;
+            this.latencyMillis = latencyMillis;
+            this.failureRate = failureRate;
+        }
+
+        @Override
+        public PaymentResponse processPayment(PaymentRequest paymentRequest) {
+            calls.incrementAndGet();
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (random.nextDouble() < failureRate) {
+                throw new RuntimeException(name + " unavailable");
+            }
+            return PaymentResponse.builder()
+                    .orderId(paymentRequest.getOrderId())
+                    .status(PaymentStatus.PROCESSING)
+                    .paymentChannel(name)
+                    .build();
+        }
+
+        @Override
+        public RefundResponse processRefund(ProviderRefundRequest refundRequest) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean validateCallback(String payload, String signature) {
+            return true;
+        }
+
+        @Override
+        public PaymentResponse processCallback(String payload, String signature) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getProviderName() {
+            return name;
+        }
+    }
+}
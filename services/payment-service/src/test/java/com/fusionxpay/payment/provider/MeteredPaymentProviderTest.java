@@ -0,0 +1,79 @@
+package com.fusionxpay.payment.provider;
+
+import com.fusionxpay.payment.dto.PaymentRequest;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MeteredPaymentProviderTest {
+
+    @Mock
+    private PaymentProvider stripe;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        lenient().when(stripe.getProviderName()).thenReturn("STRIPE");
+    }
+
+    @Test
+    void factoryHandsOutMeteredProviders() {
+        PaymentProviderFactory factory = new PaymentProviderFactory(List.of(stripe), meterRegistry);
+        when(stripe.validateCallback("{}", "sig")).thenReturn(true);
+
+        PaymentProvider provider = factory.getProvider("stripe");
+
+        assertInstanceOf(MeteredPaymentProvider.class, provider);
+        assertTrue(provider.validateCallback("{}", "sig"));
+        assertEquals(1, meterRegistry.get(MeteredPaymentProvider.METRIC_NAME)
+                .tag("provider", "STRIPE").tag("method", "validateCallback").tag("outcome", "success")
+                .timer().count());
+    }
+
+    @Test
+    void failedCallsAreRecordedAndRethrown() {
+        // SimpleMeterRegistry keeps no histogram buckets; Prometheus, as deployed, does
+        PrometheusMeterRegistry prometheusRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        MeteredPaymentProvider provider = new MeteredPaymentProvider(stripe, prometheusRegistry);
+        when(stripe.processPayment(any())).thenThrow(new IllegalStateException("boom"));
+
+        assertThrows(IllegalStateException.class, () -> provider.processPayment(new PaymentRequest()));
+
+        verify(stripe).processPayment(any());
+        Timer timer = prometheusRegistry.get(MeteredPaymentProvider.METRIC_NAME)
+                .tag("provider", "STRIPE").tag("method", "processPayment").tag("outcome", "error")
+                .timer();
+        assertEquals(1, timer.count());
+        // Recorded as a histogram so latency percentiles can be aggregated across instances
+        assertTrue(timer.takeSnapshot().histogramCounts().length > 0);
+    }
+
+    @Test
+    void eventTypesOutsideTheKnownSetAreNotUsedAsTags() {
+        Set<String> known = Set.of("payment_intent.succeeded");
+
+        assertEquals("payment_intent.succeeded", WebhookEventTypes.of(
+                "{\"id\":\"evt_1\",\"data\":{\"type\":\"nested\"},\"type\":\"payment_intent.succeeded\"}", "type", known));
+        assertEquals(WebhookEventTypes.OTHER, WebhookEventTypes.of("{\"type\":\"attacker.chosen\"}", "type", known));
+        assertEquals(WebhookEventTypes.OTHER, WebhookEventTypes.of("not json", "type", known));
+        assertEquals(WebhookEventTypes.OTHER, WebhookEventTypes.of(null, "type", known));
+    }
+}
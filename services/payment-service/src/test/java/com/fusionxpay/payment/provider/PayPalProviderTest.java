@@ -1,12 +1,14 @@
 package com.fusionxpay.payment.provider;
 
 import com.fusionxpay.common.model.PaymentStatus;
+import com.fusionxpay.payment.dto.PaymentRequest;
 import com.fusionxpay.payment.dto.PaymentResponse;
 import com.fusionxpay.payment.dto.RefundResponse;
 import com.fusionxpay.payment.model.RefundStatus;
+import com.fusionxpay.payment.dto.paypal.PayPalOrderRequest;
 import com.fusionxpay.payment.dto.paypal.PayPalOrderResponse;
-import com.fusionxpay.payment.service.IdempotencyService;
 import com.fusionxpay.payment.service.PayPalAuthService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -17,9 +19,14 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.math.BigDecimal;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
 import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
@@ -37,14 +44,12 @@ public class PayPalProviderTest {
     @Mock
     private PayPalAuthService payPalAuthService;
 
-    @Mock
-    private IdempotencyService idempotencyService;
-
     private PayPalProvider payPalProvider;
 
     @BeforeEach
     void setUp() {
-        payPalProvider = new PayPalProvider(payPalAuthService, idempotencyService);
+        payPalProvider = new PayPalProvider(payPalAuthService, new RestTemplate(),
+                new ProviderCallExecutor(new SimpleMeterRegistry()));
         ReflectionTestUtils.setField(payPalProvider, "webhookId", "test-webhook-id");
         ReflectionTestUtils.setField(payPalProvider, "returnUrl", "https://example.com/return");
         ReflectionTestUtils.setField(payPalProvider, "cancelUrl", "https://example.com/cancel");
@@ -136,6 +141,7 @@ public class PayPalProviderTest {
 
         server.expect(requestTo(baseUrl + "/v2/checkout/orders/" + paypalOrderId + "/capture"))
                 .andExpect(method(HttpMethod.POST))
+                .andExpect(header("PayPal-Request-Id", "capture-" + paypalOrderId))
                 .andRespond(withStatus(HttpStatus.UNPROCESSABLE_ENTITY)
                         .contentType(MediaType.APPLICATION_JSON)
                         .body("{\"name\":\"UNPROCESSABLE_ENTITY\",\"details\":[{\"issue\":\"ORDER_ALREADY_CAPTURED\"}]}"));
@@ -223,9 +229,49 @@ public class PayPalProviderTest {
         assertEquals("PAYPAL", response.getPaymentChannel());
         assertNull(response.getRefundId());
         assertTrue(response.getErrorMessage().contains("PayPal refund failed"));
+        assertTrue(response.isRetryable());
         server.verify();
     }
 
+    @Test
+    void testProcessRefund_SendsIdempotencyKeyAndRejectionIsNotRetryable() {
+        String baseUrl = "https://api.sandbox.paypal.com";
+        when(payPalAuthService.getAccessToken()).thenReturn("test-access-token");
+        when(payPalAuthService.getBaseUrl()).thenReturn(baseUrl);
+
+        var restTemplate = (org.springframework.web.client.RestTemplate) ReflectionTestUtils.getField(payPalProvider, "restTemplate");
+        assertNotNull(restTemplate);
+
+        MockRestServiceServer server = MockRestServiceServer.createServer(restTemplate);
+        server.expect(requestTo(baseUrl + "/v2/payments/captures/CAPTURE-123/refund"))
+                .andExpect(method(HttpMethod.POST))
+                .andExpect(header("PayPal-Request-Id", "refund-key-1"))
+                .andRespond(withStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body("{\"name\":\"UNPROCESSABLE_ENTITY\"}"));
+
+        RefundResponse response = payPalProvider.processRefund(ProviderRefundRequest.builder()
+                .providerTransactionId("CAPTURE-123")
+                .idempotencyKey("refund-key-1")
+                .build());
+
+        assertEquals(RefundStatus.FAILED, response.getStatus());
+        assertFalse(response.isRetryable());
+        server.verify();
+    }
+
+    @Test
+    void testBuildOrderRequest_UsesTheCurrencyDecimalPlaces() {
+        PayPalOrderRequest usd = ReflectionTestUtils.invokeMethod(payPalProvider, "buildOrderRequest",
+                orderRequest(new BigDecimal("12.5"), "USD"));
+        PayPalOrderRequest jpy = ReflectionTestUtils.invokeMethod(payPalProvider, "buildOrderRequest",
+                orderRequest(new BigDecimal("1000.00"), "JPY"));
+
+        assertEquals("12.50", usd.getPurchaseUnits().get(0).getAmount().getValue());
+        assertEquals("1000", jpy.getPurchaseUnits().get(0).getAmount().getValue());
+        assertEquals("JPY", jpy.getPurchaseUnits().get(0).getAmount().getCurrencyCode());
+    }
+
     @Test
     void testMapPayPalRefundStatus_Completed() {
         RefundStatus result = ReflectionTestUtils.invokeMethod(payPalProvider, "mapPayPalRefundStatus", "COMPLETED");
@@ -244,4 +290,12 @@ public class PayPalProviderTest {
         assertEquals(RefundStatus.PENDING, result);
     }
 
+    private static PaymentRequest orderRequest(BigDecimal amount, String currency) {
+        return PaymentRequest.builder()
+                .orderId(UUID.randomUUID())
+                .amount(amount)
+                .currency(currency)
+                .paymentChannel("PAYPAL")
+                .build();
+    }
 }
@@ -0,0 +1,174 @@
+package com.fusionxpay.payment.provider;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProviderCallExecutorTest {
+
+    private static final String OPERATION = "paypal.orders.get";
+
+    private SimpleMeterRegistry meterRegistry;
+    private ProviderCallExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        executor = new ProviderCallExecutor(meterRegistry);
+        ReflectionTestUtils.setField(executor, "hedgingEnabled", true);
+        ReflectionTestUtils.setField(executor, "initialDelay", Duration.ofMillis(50));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ProviderDeadline.clear();
+        executor.shutdown();
+    }
+
+    @Test
+    void hedgeWinsAgainstSlowPrimaryAndCancelsIt() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch primaryInterrupted = new CountDownLatch(1);
+
+        String result = executor.hedged(OPERATION, () -> {
+            if (attempts.incrementAndGet() == 1) {
+                try {
+                    Thread.sleep(5_000);
+                } catch (InterruptedException e) {
+                    primaryInterrupted.countDown();
+                    throw e;
+                }
+                return "primary";
+            }
+            return "hedge";
+        });
+
+        assertEquals("hedge", result);
+        assertEquals(2, attempts.get());
+        assertTrue(primaryInterrupted.await(1, TimeUnit.SECONDS));
+        assertEquals(1, count(ProviderCallExecutor.HEDGE_CALLS_METRIC));
+        assertEquals(1, count(ProviderCallExecutor.HEDGES_METRIC));
+        assertEquals(1, meterRegistry.get(ProviderCallExecutor.HEDGE_WINS_METRIC)
+                .tag("operation", OPERATION).tag("winner", "hedge").counter().count());
+    }
+
+    @Test
+    void fastCallIsNotHedged() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = executor.hedged(OPERATION, () -> {
+            attempts.incrementAndGet();
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(1, attempts.get());
+        assertEquals(1, count(ProviderCallExecutor.HEDGE_CALLS_METRIC));
+        assertNull(meterRegistry.find(ProviderCallExecutor.HEDGES_METRIC).counter());
+    }
+
+    @Test
+    void hedgeIsNotSentWhenDisabled() throws Exception {
+        ReflectionTestUtils.setField(executor, "hedgingEnabled", false);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = executor.hedged(OPERATION, () -> {
+            attempts.incrementAndGet();
+            Thread.sleep(150);
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(1, attempts.get());
+        assertTrue(meterRegistry.find(ProviderCallExecutor.HEDGES_METRIC).counters().isEmpty());
+    }
+
+    @Test
+    void deadlineInterruptsSlowCall() throws Exception {
+        ProviderDeadline.set(Duration.ofMillis(100));
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        long start = System.nanoTime();
+        assertThrows(ProviderDeadlineExceededException.class, () -> executor.call("stripe.refunds.create", () -> {
+            try {
+                Thread.sleep(5_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return "late";
+        }));
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 2_000);
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+        assertEquals(1, meterRegistry.get(ProviderCallExecutor.DEADLINE_EXCEEDED_METRIC)
+                .tag("operation", "stripe.refunds.create").counter().count());
+    }
+
+    @Test
+    void expiredDeadlineFailsWithoutCalling() {
+        ProviderDeadline.set(Duration.ofMillis(-1));
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(ProviderDeadlineExceededException.class,
+                () -> executor.call("paypal.orders.create", attempts::incrementAndGet));
+
+        assertEquals(0, attempts.get());
+    }
+
+    @Test
+    void deadlineIsVisibleToTheCallThread() {
+        ProviderDeadline.set(Duration.ofSeconds(5));
+
+        Duration remaining = executor.call("paypal.orders.create", ProviderDeadline::remaining);
+
+        assertNotNull(remaining);
+        assertTrue(remaining.toMillis() > 0 && remaining.toMillis() <= 5_000);
+    }
+
+    @Test
+    void checkedExceptionPropagatesUnwrapped() {
+        ProviderDeadline.set(Duration.ofSeconds(5));
+
+        IOException thrown = assertThrows(IOException.class, () -> executor.call("stripe.refunds.create", () -> {
+            throw new IOException("connection reset");
+        }));
+
+        assertEquals("connection reset", thrown.getMessage());
+    }
+
+    @Test
+    void hedgeDelayFollowsObservedP95WithinBounds() {
+        ReflectionTestUtils.setField(executor, "minSamples", 10L);
+        Timer timer = Timer.builder(ProviderCallExecutor.LATENCY_METRIC)
+                .tag("operation", OPERATION)
+                .publishPercentiles(0.95)
+                .register(meterRegistry);
+
+        assertEquals(Duration.ofMillis(50), executor.hedgeDelay(OPERATION));
+
+        for (int i = 0; i < 20; i++) {
+            timer.record(Duration.ofMillis(400));
+        }
+        long delayMillis = executor.hedgeDelay(OPERATION).toMillis();
+        assertTrue(delayMillis >= 300 && delayMillis <= 500, "delay was " + delayMillis);
+
+        ReflectionTestUtils.setField(executor, "maxDelay", Duration.ofMillis(250));
+        assertEquals(Duration.ofMillis(250), executor.hedgeDelay(OPERATION));
+    }
+
+    private double count(String metric) {
+        return meterRegistry.get(metric).tag("operation", OPERATION).counter().count();
+    }
+}
@@ -1,15 +1,22 @@
 package com.fusionxpay.payment.provider;
 
+import com.fusionxpay.common.money.Money;
 import com.fusionxpay.common.model.PaymentStatus;
+import com.fusionxpay.payment.dto.PaymentRequest;
 import com.fusionxpay.payment.dto.PaymentResponse;
 import com.fusionxpay.payment.dto.RefundResponse;
 import com.fusionxpay.payment.model.RefundStatus;
+import com.fusionxpay.payment.repository.PaymentTransactionRepository;
 import com.stripe.exception.ApiException;
+import com.stripe.model.PaymentIntent;
 import com.stripe.model.Refund;
+import com.stripe.param.checkout.SessionCreateParams;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import com.fusionxpay.payment.service.IdempotencyService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -21,11 +28,15 @@ import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -46,6 +57,9 @@ public class StripeProviderTest {
     @Mock
     private IdempotencyService idempotencyService;
 
+    @Mock
+    private PaymentTransactionRepository paymentTransactionRepository;
+
     private StripeProvider stripeProvider;
 
     private static final String WEBHOOK_SECRET = "whsec_test_secret";
@@ -56,7 +70,8 @@ public class StripeProviderTest {
 
     @BeforeEach
     void setUp() {
-        stripeProvider = new StripeProvider(redisTemplate, idempotencyService);
+        stripeProvider = new StripeProvider(redisTemplate, idempotencyService, paymentTransactionRepository,
+                new ProviderCallExecutor(new SimpleMeterRegistry()));
         ReflectionTestUtils.setField(stripeProvider, "apiKey", API_KEY);
         ReflectionTestUtils.setField(stripeProvider, "webhookSecret", WEBHOOK_SECRET);
         ReflectionTestUtils.setField(stripeProvider, "defaultSuccessUrl", "https://fusionx.fun/payment/success");
@@ -297,6 +312,7 @@ public class StripeProviderTest {
         ProviderRefundRequest refundRequest = ProviderRefundRequest.builder()
                 .providerTransactionId("pi_test_123")
                 .amount(new BigDecimal("50.00"))
+                .currency("USD")
                 .reason("customer requested refund")
                 .build();
 
@@ -311,18 +327,86 @@ public class StripeProviderTest {
             assertEquals("STRIPE", response.getPaymentChannel());
             assertNull(response.getRefundId());
             assertTrue(response.getErrorMessage().contains("Stripe refund failed"));
+            assertTrue(response.isRetryable());
         }
     }
 
+    @Test
+    void testCreateLineItem_ConvertsToTheCurrencyMinorUnit() {
+        SessionCreateParams.LineItem usd = ReflectionTestUtils.invokeMethod(stripeProvider, "createLineItem",
+                paymentRequest(new BigDecimal("19.99"), "USD"));
+        SessionCreateParams.LineItem jpy = ReflectionTestUtils.invokeMethod(stripeProvider, "createLineItem",
+                paymentRequest(new BigDecimal("1500"), "JPY"));
+        SessionCreateParams.LineItem bhd = ReflectionTestUtils.invokeMethod(stripeProvider, "createLineItem",
+                paymentRequest(new BigDecimal("2.125"), "BHD"));
+
+        assertEquals(1999L, usd.getPriceData().getUnitAmount());
+        // JPY has no minor unit, so 1500 yen is 1500, not 150000
+        assertEquals(1500L, jpy.getPriceData().getUnitAmount());
+        assertEquals("jpy", jpy.getPriceData().getCurrency());
+        assertEquals(2125L, bhd.getPriceData().getUnitAmount());
+    }
+
+    @Test
+    void testStripeAmount_IskAndUgxKeepTwoDecimalsOnStripe() {
+        // Zero-decimal in ISO 4217, two-decimal in the Stripe API
+        assertEquals(150000L, StripeProvider.toStripeAmount(Money.of(new BigDecimal("1500"), "ISK")));
+        assertEquals(500000L, StripeProvider.toStripeAmount(Money.of(new BigDecimal("5000"), "ugx")));
+        assertEquals(1500L, StripeProvider.toStripeAmount(Money.of(new BigDecimal("1500"), "JPY")));
+        assertEquals(new BigDecimal("1500"), StripeProvider.fromStripeAmount(150000L, "isk"));
+        assertEquals(new BigDecimal("1500"), StripeProvider.fromStripeAmount(1500L, "jpy"));
+        assertEquals(new BigDecimal("19.99"), StripeProvider.fromStripeAmount(1999L, "usd"));
+    }
+
+    @Test
+    void testProcessRefund_ZeroDecimalCurrency() throws Exception {
+        Refund refund = new Refund();
+        refund.setId("re_jpy");
+        refund.setStatus("succeeded");
+        refund.setAmount(500L);
+        refund.setCurrency("jpy");
+
+        try (MockedStatic<Refund> refundMock = mockStatic(Refund.class)) {
+            ArgumentCaptor<com.stripe.param.RefundCreateParams> params =
+                    ArgumentCaptor.forClass(com.stripe.param.RefundCreateParams.class);
+            refundMock.when(() -> Refund.create(params.capture())).thenReturn(refund);
+
+            RefundResponse partial = stripeProvider.processRefund(ProviderRefundRequest.builder()
+                    .providerTransactionId("pi_jpy")
+                    .amount(new BigDecimal("500"))
+                    .currency("JPY")
+                    .build());
+            RefundResponse full = stripeProvider.processRefund(ProviderRefundRequest.builder()
+                    .providerTransactionId("pi_jpy")
+                    .currency("JPY")
+                    .build());
+
+            assertEquals(500L, params.getAllValues().get(0).getAmount());
+            assertNull(params.getAllValues().get(1).getAmount());
+            assertEquals(new BigDecimal("500"), partial.getAmount());
+            // Amount from Stripe's minor units, without dividing by 100
+            assertEquals(new BigDecimal("500"), full.getAmount());
+        }
+    }
+
+    @Test
+    void testProcessRefund_PartialRefundWithoutCurrencyFails() {
+        RefundResponse response = stripeProvider.processRefund(ProviderRefundRequest.builder()
+                .providerTransactionId("pi_test_123")
+                .amount(new BigDecimal("50.00"))
+                .build());
+
+        assertEquals(RefundStatus.FAILED, response.getStatus());
+        assertFalse(response.isRetryable());
+    }
+
     @Test
     void testProcessCallback_RefundEventUsesIndependentIdempotencyKey() {
         String payload = refundWebhookPayload(ORDER_ID.toString(), REFUND_EVENT_ID);
         String signature = createValidSignature(payload);
 
-        when(idempotencyService.getProcessingState(eq("stripe:webhook:event:refund:event:" + REFUND_EVENT_ID)))
-                .thenReturn(null);
-        when(idempotencyService.acquireProcessingLock(eq("stripe:webhook:event:refund:event:" + REFUND_EVENT_ID), eq(java.time.Duration.ofDays(7))))
-                .thenReturn(true);
+        when(idempotencyService.checkAndAcquire(eq("stripe:webhook:event:refund:event:" + REFUND_EVENT_ID), anyString(), any(java.time.Duration.class)))
+                .thenReturn(IdempotencyService.ProcessingState.NEW);
 
         PaymentResponse response = stripeProvider.processCallback(payload, signature);
 
@@ -331,9 +415,10 @@ public class StripeProviderTest {
         assertEquals(ORDER_ID, response.getOrderId());
         assertEquals("pi_test_refund_webhook_123", response.getProviderTransactionId());
 
-        verify(idempotencyService).getProcessingState(eq("stripe:webhook:event:refund:event:" + REFUND_EVENT_ID));
-        verify(idempotencyService, never()).getProcessingState(eq("stripe:webhook:event:payment:order:" + ORDER_ID));
-        verify(idempotencyService).markAsCompleted(eq("stripe:webhook:event:refund:event:" + REFUND_EVENT_ID), eq(java.time.Duration.ofDays(7)));
+        ArgumentCaptor<String> ownerToken = ArgumentCaptor.forClass(String.class);
+        verify(idempotencyService).checkAndAcquire(eq("stripe:webhook:event:refund:event:" + REFUND_EVENT_ID), ownerToken.capture(), any(java.time.Duration.class));
+        verify(idempotencyService, never()).checkAndAcquire(eq("stripe:webhook:event:payment:order:" + ORDER_ID), anyString(), any(java.time.Duration.class));
+        verify(idempotencyService).completeIfOwner(eq("stripe:webhook:event:refund:event:" + REFUND_EVENT_ID), eq(ownerToken.getValue()), eq(java.time.Duration.ofDays(7)));
     }
 
     @Test
@@ -341,15 +426,69 @@ public class StripeProviderTest {
         String payload = refundWebhookPayload(ORDER_ID.toString(), REFUND_EVENT_ID);
         String signature = createValidSignature(payload);
 
-        when(idempotencyService.getProcessingState(eq("stripe:webhook:event:refund:event:" + REFUND_EVENT_ID)))
-                .thenReturn("completed");
+        when(idempotencyService.checkAndAcquire(eq("stripe:webhook:event:refund:event:" + REFUND_EVENT_ID), anyString(), any(java.time.Duration.class)))
+                .thenReturn(IdempotencyService.ProcessingState.COMPLETED);
 
         PaymentResponse response = stripeProvider.processCallback(payload, signature);
 
         assertNotNull(response);
         assertEquals(PaymentStatus.DUPLICATE, response.getStatus());
         assertEquals(ORDER_ID, response.getOrderId());
-        verify(idempotencyService, never()).acquireProcessingLock(eq("stripe:webhook:event:refund:event:" + REFUND_EVENT_ID), eq(java.time.Duration.ofDays(7)));
+        verify(idempotencyService, never()).completeIfOwner(anyString(), anyString(), any(java.time.Duration.class));
+    }
+
+    @Test
+    void testProcessCallback_CheckoutSessionResolvesOrderWithoutStripeCall() {
+        String payload = checkoutSessionPayload();
+        String signature = createValidSignature(payload);
+
+        try (MockedStatic<PaymentIntent> intentMock = mockStatic(PaymentIntent.class)) {
+            PaymentResponse response = stripeProvider.processCallback(payload, signature);
+
+            assertNotNull(response);
+            assertEquals(PaymentStatus.SUCCESS, response.getStatus());
+            assertEquals(ORDER_ID, response.getOrderId());
+            assertEquals("pi_test_checkout_123", response.getProviderTransactionId());
+            intentMock.verifyNoInteractions();
+        }
+    }
+
+    @Test
+    void testProcessCallback_RefundWithoutMetadataUsesLocalIndex() {
+        String payload = refundWebhookPayload(null, REFUND_EVENT_ID);
+        String signature = createValidSignature(payload);
+        when(paymentTransactionRepository.findOrderIdByProviderTransactionId("pi_test_refund_webhook_123"))
+                .thenReturn(Optional.of(ORDER_ID));
+
+        try (MockedStatic<PaymentIntent> intentMock = mockStatic(PaymentIntent.class)) {
+            PaymentResponse response = stripeProvider.processCallback(payload, signature);
+
+            assertNotNull(response);
+            assertEquals(PaymentStatus.REFUNDED, response.getStatus());
+            assertEquals(ORDER_ID, response.getOrderId());
+            intentMock.verifyNoInteractions();
+        }
+    }
+
+    @Test
+    void testProcessCallback_RefundUpdateFallsBackToStripeOnLocalMiss() {
+        String payload = refundUpdatedPayload();
+        String signature = createValidSignature(payload);
+        when(paymentTransactionRepository.findOrderIdByProviderTransactionId("pi_test_refund_webhook_123"))
+                .thenReturn(Optional.empty());
+        PaymentIntent intent = mock(PaymentIntent.class);
+        when(intent.getMetadata()).thenReturn(Map.of("orderId", ORDER_ID.toString()));
+
+        try (MockedStatic<PaymentIntent> intentMock = mockStatic(PaymentIntent.class)) {
+            intentMock.when(() -> PaymentIntent.retrieve("pi_test_refund_webhook_123")).thenReturn(intent);
+
+            PaymentResponse response = stripeProvider.processCallback(payload, signature);
+
+            assertNotNull(response);
+            assertEquals(PaymentStatus.REFUNDED, response.getStatus());
+            assertEquals(ORDER_ID, response.getOrderId());
+            intentMock.verify(() -> PaymentIntent.retrieve("pi_test_refund_webhook_123"));
+        }
     }
 
     @Test
@@ -409,13 +548,60 @@ public class StripeProviderTest {
                   "refunded": true,
                   "amount_refunded": 15000,
                   "payment_intent": "pi_test_refund_webhook_123",
+                  "metadata": %s
+                }
+              }
+            }
+            """.formatted(eventId, STRIPE_API_VERSION,
+                orderId != null ? "{\"orderId\": \"" + orderId + "\"}" : "{}");
+    }
+
+    private String checkoutSessionPayload() {
+        return """
+            {
+              "id": "evt_checkout_123",
+              "object": "event",
+              "api_version": "%s",
+              "created": 1731111111,
+              "livemode": false,
+              "pending_webhooks": 1,
+              "type": "checkout.session.completed",
+              "data": {
+                "object": {
+                  "id": "cs_test_123",
+                  "object": "checkout.session",
+                  "client_reference_id": "%s",
+                  "payment_intent": "pi_test_checkout_123",
                   "metadata": {
                     "orderId": "%s"
                   }
                 }
               }
             }
-            """.formatted(eventId, STRIPE_API_VERSION, orderId);
+            """.formatted(STRIPE_API_VERSION, ORDER_ID, ORDER_ID);
+    }
+
+    private String refundUpdatedPayload() {
+        return """
+            {
+              "id": "evt_refund_updated_123",
+              "object": "event",
+              "api_version": "%s",
+              "created": 1731111111,
+              "livemode": false,
+              "pending_webhooks": 1,
+              "type": "charge.refund.updated",
+              "data": {
+                "object": {
+                  "id": "re_test_123",
+                  "object": "refund",
+                  "status": "succeeded",
+                  "payment_intent": "pi_test_refund_webhook_123",
+                  "charge": "ch_test_123"
+                }
+              }
+            }
+            """.formatted(STRIPE_API_VERSION);
     }
 
     private String createValidSignature(String payload) {
@@ -438,4 +624,13 @@ public class StripeProviderTest {
         }
         return builder.toString();
     }
+
+    private static PaymentRequest paymentRequest(BigDecimal amount, String currency) {
+        return PaymentRequest.builder()
+                .orderId(ORDER_ID)
+                .amount(amount)
+                .currency(currency)
+                .paymentChannel("STRIPE")
+                .build();
+    }
 }
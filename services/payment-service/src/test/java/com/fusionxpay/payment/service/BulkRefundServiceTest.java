@@ -0,0 +1,234 @@
+package com.fusionxpay.payment.service;
+
+import com.fusionxpay.common.model.PaymentStatus;
+import com.fusionxpay.payment.dto.BulkRefundJobResponse;
+import com.fusionxpay.payment.dto.RefundRequest;
+import com.fusionxpay.payment.dto.RefundResponse;
+import com.fusionxpay.payment.model.PaymentTransaction;
+import com.fusionxpay.payment.model.RefundStatus;
+import com.fusionxpay.payment.provider.PaymentProvider;
+import com.fusionxpay.payment.provider.PaymentProviderFactory;
+import com.fusionxpay.payment.provider.ProviderRefundRequest;
+import com.fusionxpay.payment.repository.PaymentTransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class BulkRefundServiceTest {
+
+    private static final long MERCHANT_ID = 42L;
+
+    @Mock
+    private PaymentTransactionRepository paymentTransactionRepository;
+
+    @Mock
+    private PaymentProviderFactory paymentProviderFactory;
+
+    @Mock
+    private PaymentProvider stripeProvider;
+
+    @Mock
+    private PaymentProvider payPalProvider;
+
+    private BulkRefundService bulkRefundService;
+
+    @BeforeEach
+    void setUp() {
+        bulkRefundService = new BulkRefundService(paymentTransactionRepository, paymentProviderFactory, Duration.ofHours(1));
+        ReflectionTestUtils.setField(bulkRefundService, "retryBackoff", Duration.ofMillis(1));
+        when(stripeProvider.getProviderName()).thenReturn("STRIPE");
+        when(payPalProvider.getProviderName()).thenReturn("PAYPAL");
+        when(paymentProviderFactory.getProvider("STRIPE")).thenReturn(stripeProvider);
+        when(paymentProviderFactory.getProvider("PAYPAL")).thenReturn(payPalProvider);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bulkRefundService.shutdown();
+    }
+
+    @Test
+    void submit_LoadsOnceAndDispatchesPerProvider() {
+        PaymentTransaction stripe1 = transaction("STRIPE", PaymentStatus.SUCCESS);
+        PaymentTransaction stripe2 = transaction("STRIPE", PaymentStatus.SUCCESS);
+        PaymentTransaction payPal = transaction("PAYPAL", PaymentStatus.SUCCESS);
+        PaymentTransaction pending = transaction("STRIPE", PaymentStatus.PROCESSING);
+        UUID missing = UUID.randomUUID();
+        when(paymentTransactionRepository.findByTransactionIdInAndMerchantId(anyCollection(), eq(MERCHANT_ID)))
+                .thenReturn(List.of(stripe1, stripe2, payPal, pending));
+        when(stripeProvider.processRefund(any())).thenAnswer(invocation -> refund(RefundStatus.COMPLETED, false));
+        when(payPalProvider.processRefund(any())).thenAnswer(invocation -> refund(RefundStatus.PENDING, false));
+
+        BulkRefundJobResponse job = bulkRefundService.submit(MERCHANT_ID, List.of(
+                request(stripe1), request(payPal), request(missing.toString()), request(pending),
+                request(stripe2), request("not-a-uuid")));
+
+        BulkRefundJobResponse done = awaitCompletion(job.getJobId());
+        assertEquals(6, done.getTotal());
+        assertEquals(3, done.getSucceeded());
+        assertEquals(3, done.getFailed());
+        assertEquals(RefundStatus.COMPLETED, done.getResults().get(0).getStatus());
+        assertEquals(stripe1.getTransactionId().toString(), done.getResults().get(0).getTransactionId());
+        assertEquals(RefundStatus.PENDING, done.getResults().get(1).getStatus());
+        assertEquals("Transaction not found", done.getResults().get(2).getErrorMessage());
+        assertEquals("Transaction is not in a refundable state", done.getResults().get(3).getErrorMessage());
+        assertEquals(RefundStatus.COMPLETED, done.getResults().get(4).getStatus());
+        assertEquals("Invalid transaction ID format", done.getResults().get(5).getErrorMessage());
+
+        verify(paymentTransactionRepository, times(1)).findByTransactionIdInAndMerchantId(anyCollection(), eq(MERCHANT_ID));
+        verify(stripeProvider, times(2)).processRefund(any());
+        verify(payPalProvider, times(1)).processRefund(any());
+    }
+
+    @Test
+    void submit_RetriesTransientFailureWithSameIdempotencyKey() {
+        PaymentTransaction stripe = transaction("STRIPE", PaymentStatus.SUCCESS);
+        when(paymentTransactionRepository.findByTransactionIdInAndMerchantId(anyCollection(), eq(MERCHANT_ID)))
+                .thenReturn(List.of(stripe));
+        when(stripeProvider.processRefund(any()))
+                .thenReturn(refund(RefundStatus.FAILED, true))
+                .thenReturn(refund(RefundStatus.COMPLETED, false));
+
+        BulkRefundJobResponse job = bulkRefundService.submit(MERCHANT_ID, List.of(request(stripe)));
+
+        BulkRefundJobResponse done = awaitCompletion(job.getJobId());
+        assertEquals(1, done.getSucceeded());
+        ArgumentCaptor<ProviderRefundRequest> captor = ArgumentCaptor.forClass(ProviderRefundRequest.class);
+        verify(stripeProvider, times(2)).processRefund(captor.capture());
+        String key = captor.getAllValues().get(0).getIdempotencyKey();
+        assertNotNull(key);
+        assertEquals(key, captor.getAllValues().get(1).getIdempotencyKey());
+    }
+
+    @Test
+    void submit_DoesNotRetryPermanentFailure() {
+        PaymentTransaction payPal = transaction("PAYPAL", PaymentStatus.SUCCESS);
+        when(paymentTransactionRepository.findByTransactionIdInAndMerchantId(anyCollection(), eq(MERCHANT_ID)))
+                .thenReturn(List.of(payPal));
+        when(payPalProvider.processRefund(any())).thenReturn(refund(RefundStatus.FAILED, false));
+
+        BulkRefundJobResponse job = bulkRefundService.submit(MERCHANT_ID, List.of(request(payPal)));
+
+        BulkRefundJobResponse done = awaitCompletion(job.getJobId());
+        assertEquals(1, done.getFailed());
+        verify(payPalProvider, times(1)).processRefund(any());
+    }
+
+    @Test
+    void submit_RejectsAmountWithMoreDecimalsThanTheCurrency() {
+        PaymentTransaction jpy = transaction("STRIPE", PaymentStatus.SUCCESS);
+        jpy.setCurrency("JPY");
+        when(paymentTransactionRepository.findByTransactionIdInAndMerchantId(anyCollection(), eq(MERCHANT_ID)))
+                .thenReturn(List.of(jpy));
+        RefundRequest request = request(jpy);
+        request.setAmount(new BigDecimal("10.50"));
+
+        BulkRefundJobResponse done = awaitCompletion(bulkRefundService.submit(MERCHANT_ID, List.of(request)).getJobId());
+
+        assertEquals(1, done.getFailed());
+        assertTrue(done.getResults().get(0).getErrorMessage().contains("JPY"));
+        verify(stripeProvider, never()).processRefund(any());
+    }
+
+    @Test
+    void submit_CapsConcurrentCallsPerProvider() {
+        ReflectionTestUtils.setField(bulkRefundService, "stripeConcurrency", 2);
+        List<PaymentTransaction> transactions = new ArrayList<>();
+        List<RefundRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            PaymentTransaction stripe = transaction("STRIPE", PaymentStatus.SUCCESS);
+            transactions.add(stripe);
+            requests.add(request(stripe));
+        }
+        when(paymentTransactionRepository.findByTransactionIdInAndMerchantId(anyCollection(), eq(MERCHANT_ID)))
+                .thenReturn(transactions);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(stripeProvider.processRefund(any())).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            inFlight.decrementAndGet();
+            return refund(RefundStatus.COMPLETED, false);
+        });
+
+        BulkRefundJobResponse job = bulkRefundService.submit(MERCHANT_ID, requests);
+
+        assertEquals(10, awaitCompletion(job.getJobId()).getSucceeded());
+        assertEquals(2, maxInFlight.get());
+    }
+
+    @Test
+    void submit_RejectsOversizedBatch() {
+        ReflectionTestUtils.setField(bulkRefundService, "maxSize", 1);
+
+        assertThrows(IllegalArgumentException.class, () -> bulkRefundService.submit(MERCHANT_ID,
+                List.of(request(UUID.randomUUID().toString()), request(UUID.randomUUID().toString()))));
+
+        verifyNoInteractions(paymentTransactionRepository);
+    }
+
+    @Test
+    void getJob_HiddenFromOtherMerchants() {
+        BulkRefundJobResponse job = bulkRefundService.submit(MERCHANT_ID, List.of(request("not-a-uuid")));
+
+        assertEquals(BulkRefundJobResponse.Status.COMPLETED, bulkRefundService.getJob(MERCHANT_ID, job.getJobId()).getStatus());
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> bulkRefundService.getJob(7L, job.getJobId()));
+        assertEquals(404, exception.getStatusCode().value());
+    }
+
+    private BulkRefundJobResponse awaitCompletion(UUID jobId) {
+        return await().atMost(Duration.ofSeconds(5))
+                .until(() -> bulkRefundService.getJob(MERCHANT_ID, jobId),
+                        job -> job.getStatus() == BulkRefundJobResponse.Status.COMPLETED);
+    }
+
+    private PaymentTransaction transaction(String channel, PaymentStatus status) {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setTransactionId(UUID.randomUUID());
+        transaction.setOrderId(UUID.randomUUID());
+        transaction.setMerchantId(MERCHANT_ID);
+        transaction.setAmount(new BigDecimal("10.00"));
+        transaction.setCurrency("USD");
+        transaction.setPaymentChannel(channel);
+        transaction.setStatus(status.name());
+        transaction.setProviderTransactionId("prov_" + UUID.randomUUID());
+        return transaction;
+    }
+
+    private RefundRequest request(PaymentTransaction transaction) {
+        return request(transaction.getTransactionId().toString());
+    }
+
+    private RefundRequest request(String transactionId) {
+        return RefundRequest.builder().transactionId(transactionId).reason("Incident").build();
+    }
+
+    private RefundResponse refund(RefundStatus status, boolean retryable) {
+        return RefundResponse.builder().status(status).retryable(retryable).build();
+    }
+}
@@ -1,5 +1,6 @@
 package com.fusionxpay.payment.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -8,8 +9,10 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.redis.RedisConnectionFailureException;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
 
 import java.time.Duration;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -34,7 +37,7 @@ public class IdempotencyServiceTest {
 
     @BeforeEach
     void setUp() {
-        idempotencyService = new IdempotencyService(redisTemplate);
+        idempotencyService = new IdempotencyService(redisTemplate, new SimpleMeterRegistry(), 100_000, Duration.ofHours(1));
     }
 
     // ==================== acquireProcessingLock Tests ====================
@@ -270,6 +273,229 @@ public class IdempotencyServiceTest {
         assertNull(result);
     }
 
+    // ==================== checkAndAcquire Tests ====================
+
+    private static final String OWNER_TOKEN = "owner-1";
+
+    @Test
+    void testCheckAndAcquire_New() {
+        // Given
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of(TEST_KEY)), eq("processing:" + OWNER_TOKEN), eq("300000")))
+                .thenReturn("NEW");
+
+        // When
+        IdempotencyService.ProcessingState result =
+                idempotencyService.checkAndAcquire(TEST_KEY, OWNER_TOKEN, Duration.ofMinutes(5));
+
+        // Then
+        assertEquals(IdempotencyService.ProcessingState.NEW, result);
+        verify(redisTemplate, never()).opsForValue();
+    }
+
+    @Test
+    void testCheckAndAcquire_Completed() {
+        // Given
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of(TEST_KEY)), any(), any()))
+                .thenReturn("COMPLETED");
+
+        // When
+        IdempotencyService.ProcessingState result =
+                idempotencyService.checkAndAcquire(TEST_KEY, OWNER_TOKEN, TEST_TTL);
+
+        // Then
+        assertEquals(IdempotencyService.ProcessingState.COMPLETED, result);
+    }
+
+    @Test
+    void testCheckAndAcquire_Processing() {
+        // Given
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of(TEST_KEY)), any(), any()))
+                .thenReturn("PROCESSING");
+
+        // When
+        IdempotencyService.ProcessingState result =
+                idempotencyService.checkAndAcquire(TEST_KEY, OWNER_TOKEN, TEST_TTL);
+
+        // Then
+        assertEquals(IdempotencyService.ProcessingState.PROCESSING, result);
+    }
+
+    @Test
+    void testCheckAndAcquire_RedisConnectionFailure() {
+        // Given
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of(TEST_KEY)), any(), any()))
+                .thenThrow(new RedisConnectionFailureException("Connection refused"));
+
+        // When & Then
+        assertThrows(RedisConnectionFailureException.class, () ->
+                idempotencyService.checkAndAcquire(TEST_KEY, OWNER_TOKEN, TEST_TTL));
+    }
+
+    @Test
+    void testCheckAndAcquire_UnexpectedExceptionProcessesEvent() {
+        // Given
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of(TEST_KEY)), any(), any()))
+                .thenThrow(new RuntimeException("Unexpected error"));
+
+        // When
+        IdempotencyService.ProcessingState result =
+                idempotencyService.checkAndAcquire(TEST_KEY, OWNER_TOKEN, TEST_TTL);
+
+        // Then
+        assertEquals(IdempotencyService.ProcessingState.NEW, result);
+    }
+
+    // ==================== completeIfOwner / releaseIfOwner Tests ====================
+
+    @Test
+    void testCompleteIfOwner_Owner() {
+        // Given
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of(TEST_KEY)), eq("processing:" + OWNER_TOKEN), eq(String.valueOf(TEST_TTL.toMillis()))))
+                .thenReturn(1L);
+
+        // When & Then
+        assertTrue(idempotencyService.completeIfOwner(TEST_KEY, OWNER_TOKEN, TEST_TTL));
+    }
+
+    @Test
+    void testCompleteIfOwner_LockLost() {
+        // Given
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of(TEST_KEY)), any(), any()))
+                .thenReturn(0L);
+
+        // When & Then
+        assertFalse(idempotencyService.completeIfOwner(TEST_KEY, OWNER_TOKEN, TEST_TTL));
+    }
+
+    @Test
+    void testReleaseIfOwner() {
+        // Given
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of(TEST_KEY)), eq("processing:" + OWNER_TOKEN)))
+                .thenReturn(1L);
+
+        // When & Then
+        assertTrue(idempotencyService.releaseIfOwner(TEST_KEY, OWNER_TOKEN));
+    }
+
+    @Test
+    void testReleaseIfOwner_NotOwner() {
+        // Given
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of(TEST_KEY)), any()))
+                .thenReturn(0L);
+
+        // When & Then
+        assertFalse(idempotencyService.releaseIfOwner(TEST_KEY, OWNER_TOKEN));
+    }
+
+    // ==================== Near-cache Tests ====================
+
+    @Test
+    void testNearCache_MarkAsCompletedShortCircuitsLaterChecks() {
+        // Given
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        idempotencyService.markAsCompleted(TEST_KEY, TEST_TTL);
+
+        // When
+        String state = idempotencyService.getProcessingState(TEST_KEY);
+        boolean lockAcquired = idempotencyService.acquireProcessingLock(TEST_KEY, TEST_TTL);
+        IdempotencyService.ProcessingState scriptedState =
+                idempotencyService.checkAndAcquire(TEST_KEY, OWNER_TOKEN, TEST_TTL);
+
+        // Then - only the completion write reached Redis
+        assertEquals("completed", state);
+        assertFalse(lockAcquired);
+        assertEquals(IdempotencyService.ProcessingState.COMPLETED, scriptedState);
+        verify(valueOperations).set(TEST_KEY, "completed", TEST_TTL);
+        verifyNoMoreInteractions(valueOperations);
+        verify(redisTemplate, never()).execute(any(RedisScript.class), anyList(), any(), any());
+    }
+
+    @Test
+    void testNearCache_CompletedStateFromRedisIsCached() {
+        // Given
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of(TEST_KEY)), any(), any()))
+                .thenReturn("COMPLETED");
+
+        // When
+        idempotencyService.checkAndAcquire(TEST_KEY, OWNER_TOKEN, TEST_TTL);
+        IdempotencyService.ProcessingState second =
+                idempotencyService.checkAndAcquire(TEST_KEY, "owner-2", TEST_TTL);
+
+        // Then
+        assertEquals(IdempotencyService.ProcessingState.COMPLETED, second);
+        verify(redisTemplate, times(1)).execute(any(RedisScript.class), eq(List.of(TEST_KEY)), any(), any());
+    }
+
+    @Test
+    void testNearCache_ProcessingStateIsNotCached() {
+        // Given
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of(TEST_KEY)), any(), any()))
+                .thenReturn("PROCESSING")
+                .thenReturn("NEW");
+
+        // When
+        idempotencyService.checkAndAcquire(TEST_KEY, OWNER_TOKEN, TEST_TTL);
+        IdempotencyService.ProcessingState second =
+                idempotencyService.checkAndAcquire(TEST_KEY, "owner-2", TEST_TTL);
+
+        // Then
+        assertEquals(IdempotencyService.ProcessingState.NEW, second);
+    }
+
+    @Test
+    void testNearCache_ReleaseLockInvalidatesLocalEntry() {
+        // Given
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        idempotencyService.markAsCompleted(TEST_KEY, TEST_TTL);
+        when(valueOperations.get(TEST_KEY)).thenReturn(null);
+
+        // When
+        idempotencyService.releaseLock(TEST_KEY);
+        String state = idempotencyService.getProcessingState(TEST_KEY);
+
+        // Then
+        assertNull(state);
+        verify(valueOperations).get(TEST_KEY);
+    }
+
+    @Test
+    void testNearCache_ExposesHitAndMissMetrics() {
+        // Given
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        IdempotencyService service = new IdempotencyService(redisTemplate, meterRegistry, 100, Duration.ofMinutes(10));
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of(TEST_KEY)), any(), any()))
+                .thenReturn("COMPLETED");
+
+        // When
+        service.checkAndAcquire(TEST_KEY, OWNER_TOKEN, TEST_TTL);
+        service.checkAndAcquire(TEST_KEY, OWNER_TOKEN, TEST_TTL);
+
+        // Then
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "idempotency.completed").tag("result", "miss")
+                .functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "idempotency.completed").tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    void testOperations_AreTimedByResult() {
+        // Given
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        IdempotencyService service = new IdempotencyService(redisTemplate, meterRegistry, 100, Duration.ofMinutes(10));
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of(TEST_KEY)), any(), any()))
+                .thenReturn("COMPLETED");
+
+        // When
+        service.checkAndAcquire(TEST_KEY, OWNER_TOKEN, TEST_TTL);
+        service.checkAndAcquire(TEST_KEY, OWNER_TOKEN, TEST_TTL);
+
+        // Then
+        assertEquals(1, meterRegistry.get(IdempotencyService.OPERATION_METRIC)
+                .tag("operation", "checkAndAcquire").tag("result", "completed").timer().count());
+        assertEquals(1, meterRegistry.get(IdempotencyService.OPERATION_METRIC)
+                .tag("operation", "checkAndAcquire").tag("result", "near_cache").timer().count());
+    }
+
     // ==================== Recovery Method Tests ====================
 
     @Test
@@ -297,4 +523,18 @@ public class IdempotencyServiceTest {
         // Then - should return null to treat as not processed
         assertNull(result);
     }
+
+    @Test
+    void testRecoverCheckAndAcquire() {
+        // Given
+        RedisConnectionFailureException exception =
+                new RedisConnectionFailureException("Connection refused");
+
+        // When
+        IdempotencyService.ProcessingState result =
+                idempotencyService.recoverCheckAndAcquire(exception, TEST_KEY, OWNER_TOKEN, TEST_TTL);
+
+        // Then - should process the event rather than drop it
+        assertEquals(IdempotencyService.ProcessingState.NEW, result);
+    }
 }
@@ -0,0 +1,237 @@
+package com.fusionxpay.payment.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * Unit tests for PayPalAuthService token handling
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PayPalAuthServiceTest {
+
+    private static final String BASE_URL = "https://api-m.sandbox.paypal.com";
+    private static final String TOKEN_URL = BASE_URL + "/v1/oauth2/token";
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private PayPalWebhookVerifier webhookVerifier;
+
+    private MockRestServiceServer server;
+    private MutableClock clock;
+    private PayPalAuthService payPalAuthService;
+
+    @BeforeEach
+    void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        RestTemplate restTemplate = new RestTemplate();
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+        clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+        payPalAuthService = new PayPalAuthService(redisTemplate, restTemplate, clock, webhookVerifier);
+        ReflectionTestUtils.setField(payPalAuthService, "clientId", "client");
+        ReflectionTestUtils.setField(payPalAuthService, "clientSecret", "secret");
+        ReflectionTestUtils.setField(payPalAuthService, "baseUrl", BASE_URL);
+        ReflectionTestUtils.setField(payPalAuthService, "refreshAhead", Duration.ofMinutes(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        payPalAuthService.shutdown();
+    }
+
+    @Test
+    void getAccessToken_ParallelCallersShareOneTokenRequest() throws Exception {
+        // Given - a slow token endpoint so every caller arrives while the request is in flight
+        server.expect(ExpectedCount.once(), requestTo(TOKEN_URL))
+                .andExpect(method(HttpMethod.POST))
+                .andRespond(request -> {
+                    sleep(300);
+                    return withSuccess(tokenJson("token-1", 32400), MediaType.APPLICATION_JSON).createResponse(request);
+                });
+
+        int callers = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Callable<String>> tasks = IntStream.range(0, callers)
+                    .<Callable<String>>mapToObj(i -> () -> {
+                        start.await();
+                        return payPalAuthService.getAccessToken();
+                    })
+                    .toList();
+            List<Future<String>> results = tasks.stream().map(pool::submit).toList();
+
+            // When
+            start.countDown();
+
+            // Then
+            for (Future<String> result : results) {
+                assertEquals("token-1", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        server.verify();
+        verify(valueOperations, times(1)).set(eq("paypal:access_token"), eq("token-1"), any(Duration.class));
+    }
+
+    @Test
+    void getAccessToken_ServesFromMemoryWithoutRedis() {
+        // Given
+        server.expect(ExpectedCount.once(), requestTo(TOKEN_URL))
+                .andRespond(withSuccess(tokenJson("token-1", 32400), MediaType.APPLICATION_JSON));
+        payPalAuthService.getAccessToken();
+        clearInvocations(valueOperations);
+
+        // When
+        String token = payPalAuthService.getAccessToken();
+
+        // Then
+        assertEquals("token-1", token);
+        verifyNoInteractions(valueOperations);
+        server.verify();
+    }
+
+    @Test
+    void getAccessToken_RefreshesInBackgroundBeforeExpiry() {
+        // Given
+        server.expect(ExpectedCount.once(), requestTo(TOKEN_URL))
+                .andRespond(withSuccess(tokenJson("token-1", 3600), MediaType.APPLICATION_JSON));
+        server.expect(ExpectedCount.once(), requestTo(TOKEN_URL))
+                .andRespond(withSuccess(tokenJson("token-2", 3600), MediaType.APPLICATION_JSON));
+        assertEquals("token-1", payPalAuthService.getAccessToken());
+
+        // When - inside the refresh window but before expiry (ttl 3300s, refresh 600s ahead)
+        clock.advance(Duration.ofSeconds(2800));
+
+        // Then - the caller is not blocked and gets the current token
+        assertEquals("token-1", payPalAuthService.getAccessToken());
+        await().atMost(Duration.ofSeconds(5)).until(() -> "token-2".equals(payPalAuthService.getAccessToken()));
+        server.verify();
+    }
+
+    @Test
+    void getAccessToken_AdoptsTokenSharedByAnotherInstance() {
+        // Given
+        when(valueOperations.get("paypal:access_token")).thenReturn("shared-token");
+        when(redisTemplate.getExpire(anyString(), eq(TimeUnit.SECONDS))).thenReturn(3000L);
+
+        // When
+        String token = payPalAuthService.getAccessToken();
+
+        // Then - no OAuth request was made
+        assertEquals("shared-token", token);
+        server.verify();
+    }
+
+    @Test
+    void getAccessToken_IgnoresSharedTokenDueForRefresh() {
+        // Given
+        when(valueOperations.get("paypal:access_token")).thenReturn("old-token");
+        when(redisTemplate.getExpire(anyString(), eq(TimeUnit.SECONDS))).thenReturn(60L);
+        server.expect(ExpectedCount.once(), requestTo(TOKEN_URL))
+                .andRespond(withSuccess(tokenJson("token-1", 32400), MediaType.APPLICATION_JSON));
+
+        // When & Then
+        assertEquals("token-1", payPalAuthService.getAccessToken());
+        server.verify();
+    }
+
+    @Test
+    void getAccessToken_FailedRefreshIsNotCached() {
+        // Given
+        server.expect(ExpectedCount.once(), requestTo(TOKEN_URL))
+                .andRespond(withSuccess("{}", MediaType.APPLICATION_JSON));
+        server.expect(ExpectedCount.once(), requestTo(TOKEN_URL))
+                .andRespond(withSuccess(tokenJson("token-1", 32400), MediaType.APPLICATION_JSON));
+
+        // When & Then
+        assertThrows(PayPalAuthService.PayPalAuthException.class, () -> payPalAuthService.getAccessToken());
+        assertEquals("token-1", payPalAuthService.getAccessToken());
+        server.verify();
+    }
+
+    private static String tokenJson(String token, long expiresIn) {
+        return """
+            {"access_token": "%s", "token_type": "Bearer", "expires_in": %d}
+            """.formatted(token, expiresIn);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private volatile Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.fusionxpay.payment.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fusionxpay.payment.dto.PaymentExportRow;
+import com.fusionxpay.payment.repository.PaymentTransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentExportServiceTest {
+
+    private static final long MERCHANT_ID = 9L;
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2026, 3, 30, 10, 15);
+
+    @Mock
+    private PaymentTransactionRepository paymentTransactionRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private PaymentExportService exportService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        exportService = new PaymentExportService(paymentTransactionRepository, meterRegistry);
+    }
+
+    @Test
+    void query_ParsesDatesAndDefaultsOpenBounds() {
+        PaymentExportService.ExportQuery query = exportService.query(MERCHANT_ID, " ", "2026-03-01", null);
+
+        assertNull(query.status());
+        assertEquals(LocalDateTime.of(2026, 3, 1, 0, 0), query.fromTime());
+        assertEquals(PaymentTransactionRepository.UNBOUNDED_TO, query.toTime());
+    }
+
+    @Test
+    void acquireSlot_LimitsExportsPerMerchantAndInstance() {
+        ReflectionTestUtils.setField(exportService, "maxConcurrent", 2);
+
+        PaymentExportService.ExportSlot first = exportService.acquireSlot(MERCHANT_ID);
+        ResponseStatusException sameMerchant = assertThrows(ResponseStatusException.class,
+                () -> exportService.acquireSlot(MERCHANT_ID));
+        PaymentExportService.ExportSlot other = exportService.acquireSlot(MERCHANT_ID + 1);
+        ResponseStatusException instanceFull = assertThrows(ResponseStatusException.class,
+                () -> exportService.acquireSlot(MERCHANT_ID + 2));
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, sameMerchant.getStatusCode());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, instanceFull.getStatusCode());
+        assertEquals(2.0, meterRegistry.get(PaymentExportService.RUNNING_METRIC).gauge().value());
+
+        first.close();
+        first.close();
+        assertEquals(1.0, meterRegistry.get(PaymentExportService.RUNNING_METRIC).gauge().value());
+        exportService.acquireSlot(MERCHANT_ID + 2).close();
+        exportService.acquireSlot(MERCHANT_ID).close();
+        other.close();
+        assertEquals(0.0, meterRegistry.get(PaymentExportService.RUNNING_METRIC).gauge().value());
+    }
+
+    @Test
+    void format_RejectsUnknownValues() {
+        assertEquals(PaymentExportService.Format.NDJSON, PaymentExportService.Format.of("ndjson"));
+        assertThrows(IllegalArgumentException.class, () -> PaymentExportService.Format.of("xlsx"));
+    }
+
+    @Test
+    void export_WritesCsvWithHeaderAndQuotedFields() throws IOException {
+        PaymentExportRow quoted = row("SUCCESS", "cs_1,\"a\"");
+        PaymentExportRow plain = row("FAILED", null);
+        PaymentExportService.ExportQuery query = exportService.query(MERCHANT_ID, null, null, null);
+        when(paymentTransactionRepository.streamForExport(MERCHANT_ID, null, query.fromTime(), query.toTime()))
+                .thenReturn(Stream.of(quoted, plain));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = exportService.export(query, PaymentExportService.Format.CSV, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\r\n");
+        assertEquals(2, rows);
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("transaction_id,order_id,amount"));
+        assertEquals(quoted.transactionId() + "," + quoted.orderId() + ",25.00,USD,STRIPE,SUCCESS,"
+                + "\"cs_1,\"\"a\"\"\"," + CREATED_AT + "," + CREATED_AT, lines[1]);
+        assertTrue(lines[2].contains(",FAILED,," + CREATED_AT));
+        assertEquals(2.0, meterRegistry.get(PaymentExportService.ROWS_METRIC).tag("format", "csv").counter().count());
+    }
+
+    @Test
+    void export_WritesOneJsonObjectPerLine() throws IOException {
+        PaymentExportRow first = row("SUCCESS", "cs_1");
+        PaymentExportRow second = row("REFUNDED", "cs_2");
+        PaymentExportService.ExportQuery query = exportService.query(MERCHANT_ID, null, null, null);
+        when(paymentTransactionRepository.streamForExport(MERCHANT_ID, null, query.fromTime(), query.toTime()))
+                .thenReturn(Stream.of(first, second));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(query, PaymentExportService.Format.NDJSON, out);
+
+        String body = out.toString(StandardCharsets.UTF_8);
+        assertTrue(body.endsWith("\n"));
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        JsonNode json = new ObjectMapper().readTree(lines[1]);
+        assertEquals(second.transactionId().toString(), json.get("transactionId").asText());
+        // Compared as written: a parsed number would lose the scale
+        assertTrue(lines[1].contains("\"amount\":25.00"), lines[1]);
+        assertEquals("REFUNDED", json.get("status").asText());
+        assertEquals(CREATED_AT.toString(), json.get("createdAt").asText());
+    }
+
+    @Test
+    void export_FlushesEveryFlushRowsAndLeavesStreamOpen() throws IOException {
+        ReflectionTestUtils.setField(exportService, "flushRows", 10);
+        PaymentExportService.ExportQuery query = exportService.query(MERCHANT_ID, null, null, null);
+        when(paymentTransactionRepository.streamForExport(MERCHANT_ID, null, query.fromTime(), query.toTime()))
+                .thenReturn(IntStream.range(0, 35).mapToObj(i -> row("SUCCESS", "cs_" + i)));
+        AtomicInteger flushes = new AtomicInteger();
+        AtomicInteger closes = new AtomicInteger();
+        OutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void flush() {
+                flushes.incrementAndGet();
+            }
+
+            @Override
+            public void close() {
+                closes.incrementAndGet();
+            }
+        };
+
+        long rows = exportService.export(query, PaymentExportService.Format.NDJSON, out);
+
+        assertEquals(35, rows);
+        // Three periodic flushes and one at the end
+        assertEquals(4, flushes.get());
+        assertEquals(0, closes.get());
+    }
+
+    private static PaymentExportRow row(String status, String providerTransactionId) {
+        return new PaymentExportRow(UUID.randomUUID(), UUID.randomUUID(), new BigDecimal("25.00"), "USD", "STRIPE",
+                status, providerTransactionId, CREATED_AT, CREATED_AT);
+    }
+}
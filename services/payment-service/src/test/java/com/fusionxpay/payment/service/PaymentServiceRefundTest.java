@@ -10,12 +10,15 @@ import com.fusionxpay.payment.provider.PaymentProvider;
 import com.fusionxpay.payment.provider.PaymentProviderFactory;
 import com.fusionxpay.payment.provider.ProviderRefundRequest;
 import com.fusionxpay.payment.repository.PaymentTransactionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
@@ -52,6 +55,9 @@ class PaymentServiceRefundTest {
     @Mock
     private PaymentProvider paymentProvider;
 
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private PaymentService paymentService;
 
@@ -107,6 +113,24 @@ class PaymentServiceRefundTest {
         assertEquals("Customer request", captor.getValue().getReason());
     }
 
+    @Test
+    void testInitiateRefund_RejectsAmountFinerThanTheTransactionCurrency() {
+        successfulTransaction.setAmount(new BigDecimal("5000"));
+        successfulTransaction.setCurrency("JPY");
+        RefundRequest request = new RefundRequest();
+        request.setTransactionId(transactionId.toString());
+        request.setAmount(new BigDecimal("10.50"));
+
+        when(paymentTransactionRepository.findByTransactionIdAndMerchantId(transactionId, MERCHANT_ID))
+                .thenReturn(Optional.of(successfulTransaction));
+
+        RefundResponse response = paymentService.initiateRefund(MERCHANT_ID, request);
+
+        assertEquals(RefundStatus.FAILED, response.getStatus());
+        assertTrue(response.getErrorMessage().contains("JPY"));
+        verifyNoInteractions(paymentProviderFactory);
+    }
+
     @Test
     void testInitiateRefund_FullRefundUsesTransactionCurrency() {
         RefundRequest request = new RefundRequest();
@@ -8,6 +8,7 @@ import com.fusionxpay.payment.dto.PaymentRequest;
 import com.fusionxpay.payment.dto.PaymentResponse;
 import com.fusionxpay.payment.dto.RefundResponse;
 import com.fusionxpay.payment.event.OrderEventProducer;
+import com.fusionxpay.payment.model.PaymentStatusTransitions;
 import com.fusionxpay.payment.model.PaymentTransaction;
 import com.fusionxpay.payment.provider.PaymentProvider;
 import com.fusionxpay.payment.provider.PaymentProviderFactory;
@@ -22,6 +23,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionOperations;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -57,6 +59,9 @@ class PaymentServiceTest {
     @Autowired
     private OrderEventProducer orderEventProducer;
 
+    @Autowired
+    private TransactionOperations transactionOperations;
+
     @MockBean
     private PaymentProviderFactory paymentProviderFactory;
 
@@ -103,7 +108,7 @@ class PaymentServiceTest {
         assertNotNull(saved.getProviderTransactionId());
         assertEquals(MERCHANT_ID, saved.getMerchantId());
 
-        verify(orderEventProducer).sendPaymentStatusUpdate(eq(orderId), any(UUID.class), eq(PaymentStatus.PROCESSING));
+        verify(orderEventProducer).sendPaymentStatusUpdate(eq(orderId), any(UUID.class), eq(MERCHANT_ID), eq(PaymentStatus.PROCESSING));
     }
 
     @Test
@@ -161,7 +166,47 @@ class PaymentServiceTest {
         assertTrue(result);
         PaymentTransaction updated = paymentTransactionRepository.findByOrderId(orderId).orElseThrow();
         assertEquals(PaymentStatus.SUCCESS.name(), updated.getStatus());
-        verify(orderEventProducer).sendPaymentStatusUpdate(orderId, updated.getTransactionId(), PaymentStatus.SUCCESS);
+        verify(orderEventProducer).sendPaymentStatusUpdate(orderId, updated.getTransactionId(), MERCHANT_ID, PaymentStatus.SUCCESS);
+    }
+
+    @Test
+    @DisplayName("Handle callback ignores a late failure after success")
+    void handleCallback_LateFailureAfterSuccess() {
+        UUID orderId = UUID.randomUUID();
+        PaymentTransaction transaction = saveTransaction(orderId, PaymentStatus.SUCCESS);
+
+        when(paymentProviderFactory.getProvider("STRIPE")).thenReturn(new CallbackProvider(orderId, PaymentStatus.FAILED));
+
+        boolean result = paymentService.handleCallback("payload", "signature", "STRIPE");
+
+        assertTrue(result);
+        PaymentTransaction unchanged = paymentTransactionRepository.findById(transaction.getTransactionId()).orElseThrow();
+        assertEquals(PaymentStatus.SUCCESS.name(), unchanged.getStatus());
+        assertEquals(transaction.getVersion(), unchanged.getVersion());
+        verifyNoInteractions(orderEventProducer);
+    }
+
+    @Test
+    @DisplayName("Status transition read at a stale version is not applied")
+    void transitionStatus_StaleVersion() {
+        UUID orderId = UUID.randomUUID();
+        PaymentTransaction transaction = saveTransaction(orderId, PaymentStatus.PROCESSING);
+        long readVersion = transaction.getVersion();
+
+        assertTrue(paymentService.updatePaymentStatus(orderId, PaymentStatus.SUCCESS));
+
+        int stale = transactionOperations.execute(status -> paymentTransactionRepository.transitionStatus(
+                transaction.getTransactionId(), readVersion, PaymentStatusTransitions.sourcesOf(PaymentStatus.REFUNDED),
+                PaymentStatus.REFUNDED.name(), null, null, LocalDateTime.now()));
+        int current = transactionOperations.execute(status -> paymentTransactionRepository.transitionStatus(
+                transaction.getTransactionId(), readVersion + 1, PaymentStatusTransitions.sourcesOf(PaymentStatus.REFUNDED),
+                PaymentStatus.REFUNDED.name(), null, null, LocalDateTime.now()));
+
+        assertEquals(0, stale);
+        assertEquals(1, current);
+        PaymentTransaction updated = paymentTransactionRepository.findById(transaction.getTransactionId()).orElseThrow();
+        assertEquals(PaymentStatus.REFUNDED.name(), updated.getStatus());
+        assertEquals(readVersion + 2, updated.getVersion());
     }
 
     @Test
@@ -175,6 +220,18 @@ class PaymentServiceTest {
         verifyNoInteractions(orderEventProducer);
     }
 
+    private PaymentTransaction saveTransaction(UUID orderId, PaymentStatus status) {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setOrderId(orderId);
+        transaction.setMerchantId(MERCHANT_ID);
+        transaction.setAmount(new BigDecimal("75.00"));
+        transaction.setCurrency("USD");
+        transaction.setPaymentChannel("STRIPE");
+        transaction.setStatus(status.name());
+        transaction.setProviderTransactionId("pi_" + orderId);
+        return paymentTransactionRepository.save(transaction);
+    }
+
     private static class StubPaymentProvider implements PaymentProvider {
         @Override
         public PaymentResponse processPayment(PaymentRequest paymentRequest) {
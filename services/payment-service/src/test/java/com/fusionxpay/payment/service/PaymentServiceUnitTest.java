@@ -4,44 +4,88 @@ import com.fusionxpay.common.model.PaymentStatus;
 import feign.FeignException;
 import feign.Request;
 import com.fusionxpay.payment.client.OrderServiceClient;
+import com.fusionxpay.payment.dto.BulkPaymentResponse;
 import com.fusionxpay.payment.dto.OrderResponse;
+import com.fusionxpay.payment.dto.PaymentPageResponse;
 import com.fusionxpay.payment.dto.PaymentRequest;
 import com.fusionxpay.payment.dto.PaymentResponse;
 import com.fusionxpay.payment.event.OrderEventProducer;
+import com.fusionxpay.payment.model.ArchivedPaymentTransaction;
+import com.fusionxpay.payment.model.PaymentStatusTransitions;
 import com.fusionxpay.payment.model.PaymentTransaction;
+import com.fusionxpay.payment.provider.LatencyAwarePaymentRouter;
 import com.fusionxpay.payment.provider.PaymentProvider;
 import com.fusionxpay.payment.provider.PaymentProviderFactory;
+import com.fusionxpay.payment.provider.ProviderCallExecutor;
+import com.fusionxpay.payment.provider.ProviderDeadline;
+import com.fusionxpay.payment.provider.StripeProvider;
+import com.fusionxpay.payment.repository.ArchivedPaymentTransactionRepository;
 import com.fusionxpay.payment.repository.PaymentTransactionRepository;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.server.ResponseStatusException;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 public class PaymentServiceUnitTest {
 
     private static final long MERCHANT_ID = 42L;
+    private static final String STRIPE_WEBHOOK_SECRET = "whsec_test_secret";
 
     @Mock
     private PaymentTransactionRepository paymentTransactionRepository;
 
+    @Mock
+    private ArchivedPaymentTransactionRepository archivedPaymentTransactionRepository;
+
     @Mock
     private PaymentProviderFactory paymentProviderFactory;
 
@@ -54,6 +98,18 @@ public class PaymentServiceUnitTest {
     @Mock
     private PaymentProvider paymentProvider;
 
+    @Mock
+    private IdempotencyService idempotencyService;
+
+    @Spy
+    private OrderOwnershipCache orderOwnershipCache = new OrderOwnershipCache(new SimpleMeterRegistry(), 100, Duration.ofHours(1));
+
+    @Spy
+    private TransactionOperations transactionOperations = TransactionOperations.withoutTransaction();
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private PaymentService paymentService;
 
@@ -64,6 +120,10 @@ public class PaymentServiceUnitTest {
 
     @BeforeEach
     void setUp() {
+        ReflectionTestUtils.setField(paymentService, "paymentRouter", new LatencyAwarePaymentRouter(
+                paymentProviderFactory, CircuitBreakerRegistry.ofDefaults(), new SimpleMeterRegistry()));
+        lenient().when(paymentProvider.getProviderName()).thenReturn("STRIPE");
+
         orderId = UUID.randomUUID();
         transactionId = UUID.randomUUID();
 
@@ -112,6 +172,23 @@ public class PaymentServiceUnitTest {
         verify(paymentTransactionRepository).findByOrderIdAndMerchantId(orderId, MERCHANT_ID);
     }
     
+    @Test
+    void testGetPaymentTransactionByOrderId_FallsBackToArchive() {
+        ArchivedPaymentTransaction archived = new ArchivedPaymentTransaction();
+        archived.setTransactionId(transactionId);
+        archived.setOrderId(orderId);
+        archived.setMerchantId(MERCHANT_ID);
+        archived.setStatus(PaymentStatus.REFUNDED.name());
+        when(paymentTransactionRepository.findByOrderIdAndMerchantId(orderId, MERCHANT_ID)).thenReturn(Optional.empty());
+        when(archivedPaymentTransactionRepository.findByOrderIdAndMerchantId(orderId, MERCHANT_ID))
+                .thenReturn(Optional.of(archived));
+
+        PaymentResponse response = paymentService.getPaymentTransactionByOrderId(MERCHANT_ID, orderId);
+
+        assertEquals(PaymentStatus.REFUNDED, response.getStatus());
+        assertEquals(transactionId, response.getTransactionId());
+    }
+
     @Test
     void testGetPaymentTransactionByOrderId_Found() {
         // Given
@@ -135,6 +212,7 @@ public class PaymentServiceUnitTest {
         when(paymentTransactionRepository.findByOrderIdAndMerchantId(orderId, MERCHANT_ID)).thenReturn(Optional.empty());
         when(paymentProviderFactory.getProvider("STRIPE")).thenReturn(paymentProvider);
         when(paymentTransactionRepository.save(any(PaymentTransaction.class))).thenReturn(paymentTransaction);
+        when(paymentTransactionRepository.transitionStatus(any(), anyLong(), anyCollection(), anyString(), any(), any(), any())).thenReturn(1);
         when(orderServiceClient.getOrderById(MERCHANT_ID, orderId)).thenReturn(ResponseEntity.ok(
                 OrderResponse.builder().orderId(orderId).userId(MERCHANT_ID).build()
         ));
@@ -161,7 +239,9 @@ public class PaymentServiceUnitTest {
         
         verify(paymentTransactionRepository).findByOrderIdAndMerchantId(orderId, MERCHANT_ID);
         verify(paymentProviderFactory).getProvider("STRIPE");
-        verify(paymentTransactionRepository, times(2)).save(any(PaymentTransaction.class));
+        verify(paymentTransactionRepository).save(any(PaymentTransaction.class));
+        verify(paymentTransactionRepository).transitionStatus(eq(transactionId), eq(0L),
+                eq(Set.of(PaymentStatus.INITIATED.name())), eq(PaymentStatus.PROCESSING.name()), isNull(), isNull(), any());
         verify(paymentProvider).processPayment(paymentRequest);
         
         // Verify that the order event producer was called
@@ -172,12 +252,81 @@ public class PaymentServiceUnitTest {
         verify(orderEventProducer).sendPaymentStatusUpdate(
                 orderIdCaptor.capture(), 
                 transactionIdCaptor.capture(), 
+                eq(MERCHANT_ID),
                 statusCaptor.capture());
         
         assertEquals(orderId, orderIdCaptor.getValue());
         assertEquals(transactionId, transactionIdCaptor.getValue());
     }
     
+    @Test
+    void testInitiatePayment_CallsProviderOutsideTransaction() {
+        AtomicBoolean inTransaction = new AtomicBoolean();
+        doAnswer(invocation -> {
+            inTransaction.set(true);
+            try {
+                return invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null);
+            } finally {
+                inTransaction.set(false);
+            }
+        }).when(transactionOperations).execute(any());
+        when(paymentTransactionRepository.findByOrderIdAndMerchantId(orderId, MERCHANT_ID)).thenReturn(Optional.empty());
+        when(paymentProviderFactory.getProvider("STRIPE")).thenReturn(paymentProvider);
+        when(paymentTransactionRepository.save(any(PaymentTransaction.class))).thenReturn(paymentTransaction);
+        when(paymentTransactionRepository.transitionStatus(any(), anyLong(), anyCollection(), anyString(), any(), any(), any())).thenReturn(1);
+        when(orderServiceClient.getOrderById(MERCHANT_ID, orderId)).thenReturn(ResponseEntity.ok(
+                OrderResponse.builder().orderId(orderId).userId(MERCHANT_ID).build()
+        ));
+        when(paymentProvider.processPayment(paymentRequest)).thenAnswer(invocation -> {
+            assertFalse(inTransaction.get(), "provider must not be called inside a transaction");
+            return PaymentResponse.builder()
+                    .orderId(orderId)
+                    .status(PaymentStatus.PROCESSING)
+                    .paymentChannel("STRIPE")
+                    .build();
+        });
+
+        PaymentResponse response = paymentService.initiatePayment(MERCHANT_ID, paymentRequest);
+
+        assertEquals(PaymentStatus.PROCESSING, response.getStatus());
+        verify(transactionOperations, times(2)).execute(any());
+        verify(orderEventProducer).sendPaymentStatusUpdate(orderId, transactionId, MERCHANT_ID, PaymentStatus.PROCESSING);
+    }
+
+    @Test
+    void testInitiatePayment_AnyChannelFailsOverAndStoresChosenProvider() {
+        PaymentProvider payPalProvider = mock(PaymentProvider.class);
+        when(payPalProvider.getProviderName()).thenReturn("PAYPAL");
+        paymentRequest.setPaymentChannel("ANY");
+        when(paymentProviderFactory.getProviders()).thenReturn(List.of(paymentProvider, payPalProvider));
+        when(orderServiceClient.getOrderById(MERCHANT_ID, orderId)).thenReturn(ResponseEntity.ok(
+                OrderResponse.builder().orderId(orderId).userId(MERCHANT_ID).build()
+        ));
+        when(paymentTransactionRepository.findByOrderIdAndMerchantId(orderId, MERCHANT_ID)).thenReturn(Optional.empty());
+        when(paymentTransactionRepository.save(any(PaymentTransaction.class))).thenAnswer(invocation -> {
+            PaymentTransaction saved = invocation.getArgument(0);
+            saved.setTransactionId(transactionId);
+            return saved;
+        });
+        when(paymentTransactionRepository.transitionStatus(any(), anyLong(), anyCollection(), anyString(), any(), any(), any())).thenReturn(1);
+        // Neither provider has been measured yet, so PAYPAL is tried first by name
+        when(payPalProvider.processPayment(paymentRequest)).thenThrow(new RuntimeException("PayPal unavailable"));
+        when(paymentProvider.processPayment(paymentRequest)).thenReturn(PaymentResponse.builder()
+                .orderId(orderId)
+                .status(PaymentStatus.PROCESSING)
+                .paymentChannel("STRIPE")
+                .build());
+
+        PaymentResponse response = paymentService.initiatePayment(MERCHANT_ID, paymentRequest);
+
+        assertEquals(PaymentStatus.PROCESSING, response.getStatus());
+        assertEquals("STRIPE", response.getPaymentChannel());
+        verify(payPalProvider).processPayment(paymentRequest);
+        verify(paymentProvider).processPayment(paymentRequest);
+        verify(paymentTransactionRepository).transitionStatus(eq(transactionId), anyLong(), anyCollection(),
+                eq(PaymentStatus.PROCESSING.name()), eq("STRIPE"), isNull(), any());
+    }
+
     @Test
     void testInitiatePayment_ExistingTransaction() {
         // Given
@@ -202,6 +351,116 @@ public class PaymentServiceUnitTest {
         verifyNoMoreInteractions(paymentTransactionRepository);
     }
 
+    @Test
+    void testInitiatePayment_ArchivedPaidOrderIsNotChargedAgain() {
+        when(paymentTransactionRepository.findByOrderIdAndMerchantId(orderId, MERCHANT_ID)).thenReturn(Optional.empty());
+        when(archivedPaymentTransactionRepository.findByOrderIdInAndMerchantIdAndStatusIn(
+                List.of(orderId), MERCHANT_ID, List.of(PaymentStatus.SUCCESS.name(), PaymentStatus.REFUNDED.name())))
+                .thenReturn(List.of(archived(PaymentStatus.SUCCESS)));
+        when(orderServiceClient.getOrderById(MERCHANT_ID, orderId)).thenReturn(ResponseEntity.ok(
+                OrderResponse.builder().orderId(orderId).userId(MERCHANT_ID).build()
+        ));
+
+        PaymentResponse response = paymentService.initiatePayment(MERCHANT_ID, paymentRequest);
+
+        assertEquals(transactionId, response.getTransactionId());
+        assertEquals(PaymentStatus.SUCCESS, response.getStatus());
+        verify(paymentTransactionRepository, never()).save(any());
+        verifyNoInteractions(paymentProvider);
+    }
+
+    @Test
+    void testInitiatePayment_InFlightInitiatedTransactionIsReturned() {
+        paymentTransaction.setStatus(PaymentStatus.INITIATED.name());
+        paymentTransaction.setUpdatedAt(LocalDateTime.now().minusSeconds(5));
+        when(paymentTransactionRepository.findByOrderIdAndMerchantId(orderId, MERCHANT_ID)).thenReturn(Optional.of(paymentTransaction));
+        when(orderServiceClient.getOrderById(MERCHANT_ID, orderId)).thenReturn(ResponseEntity.ok(
+                OrderResponse.builder().orderId(orderId).userId(MERCHANT_ID).build()
+        ));
+
+        PaymentResponse response = paymentService.initiatePayment(MERCHANT_ID, paymentRequest);
+
+        assertEquals(transactionId, response.getTransactionId());
+        assertEquals(PaymentStatus.INITIATED, response.getStatus());
+        verifyNoInteractions(paymentProvider);
+        verify(paymentTransactionRepository, never()).save(any());
+        verify(idempotencyService).releaseIfOwner(eq(PaymentService.INITIATION_LOCK_PREFIX + orderId), anyString());
+    }
+
+    @Test
+    void testInitiatePayment_AbandonedInitiatedTransactionIsFailedAndReplaced() {
+        paymentTransaction.setStatus(PaymentStatus.INITIATED.name());
+        paymentTransaction.setUpdatedAt(LocalDateTime.now().minusMinutes(10));
+        PaymentTransaction replacement = new PaymentTransaction();
+        replacement.setTransactionId(UUID.randomUUID());
+        replacement.setOrderId(orderId);
+        replacement.setMerchantId(MERCHANT_ID);
+        replacement.setPaymentChannel("STRIPE");
+        replacement.setStatus(PaymentStatus.INITIATED.name());
+        when(paymentTransactionRepository.findByOrderIdAndMerchantId(orderId, MERCHANT_ID)).thenReturn(Optional.of(paymentTransaction));
+        when(paymentTransactionRepository.save(any(PaymentTransaction.class))).thenReturn(replacement);
+        when(paymentTransactionRepository.transitionStatus(any(), anyLong(), anyCollection(), anyString(), any(), any(), any())).thenReturn(1);
+        when(paymentProviderFactory.getProvider("STRIPE")).thenReturn(paymentProvider);
+        when(orderServiceClient.getOrderById(MERCHANT_ID, orderId)).thenReturn(ResponseEntity.ok(
+                OrderResponse.builder().orderId(orderId).userId(MERCHANT_ID).build()
+        ));
+        when(paymentProvider.processPayment(paymentRequest)).thenReturn(PaymentResponse.builder()
+                .orderId(orderId)
+                .status(PaymentStatus.PROCESSING)
+                .paymentChannel("STRIPE")
+                .build());
+
+        PaymentResponse response = paymentService.initiatePayment(MERCHANT_ID, paymentRequest);
+
+        assertEquals(replacement.getTransactionId(), response.getTransactionId());
+        verify(paymentTransactionRepository).transitionStatus(eq(transactionId), anyLong(), anyCollection(),
+                eq(PaymentStatus.FAILED.name()), isNull(), isNull(), any());
+        verify(orderEventProducer).sendPaymentStatusUpdate(orderId, transactionId, MERCHANT_ID, PaymentStatus.FAILED);
+    }
+
+    @Test
+    void testInitiatePayment_ConcurrentInitiationOfSameOrderIsRejected() {
+        when(orderServiceClient.getOrderById(MERCHANT_ID, orderId)).thenReturn(ResponseEntity.ok(
+                OrderResponse.builder().orderId(orderId).userId(MERCHANT_ID).build()
+        ));
+        when(idempotencyService.checkAndAcquire(eq(PaymentService.INITIATION_LOCK_PREFIX + orderId), anyString(), any()))
+                .thenReturn(IdempotencyService.ProcessingState.PROCESSING);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> paymentService.initiatePayment(MERCHANT_ID, paymentRequest));
+
+        assertEquals(409, ex.getStatusCode().value());
+        verifyNoInteractions(paymentTransactionRepository, paymentProvider);
+        verify(idempotencyService, never()).releaseIfOwner(anyString(), anyString());
+    }
+
+    @Test
+    void testInitiatePayment_RecordingFailureDoesNotFailAcceptedPayment() {
+        when(paymentTransactionRepository.findByOrderIdAndMerchantId(orderId, MERCHANT_ID)).thenReturn(Optional.empty());
+        when(paymentProviderFactory.getProvider("STRIPE")).thenReturn(paymentProvider);
+        when(paymentTransactionRepository.save(any(PaymentTransaction.class))).thenReturn(paymentTransaction);
+        when(paymentTransactionRepository.transitionStatus(any(), anyLong(), anyCollection(), anyString(), any(), any(), any()))
+                .thenThrow(new QueryTimeoutException("lock wait timeout"));
+        when(orderServiceClient.getOrderById(MERCHANT_ID, orderId)).thenReturn(ResponseEntity.ok(
+                OrderResponse.builder().orderId(orderId).userId(MERCHANT_ID).build()
+        ));
+        when(paymentProvider.processPayment(paymentRequest)).thenReturn(PaymentResponse.builder()
+                .orderId(orderId)
+                .status(PaymentStatus.PROCESSING)
+                .paymentChannel("STRIPE")
+                .providerTransactionId("cs_test_accepted")
+                .build());
+
+        assertThrows(QueryTimeoutException.class,
+                () -> paymentService.initiatePayment(MERCHANT_ID, paymentRequest));
+
+        // Only the PROCESSING update was attempted; the webhook settles the INITIATED transaction
+        verify(paymentTransactionRepository).transitionStatus(any(), anyLong(), anyCollection(), anyString(), any(), any(), any());
+        verify(paymentTransactionRepository, never()).transitionStatus(any(), anyLong(), anyCollection(),
+                eq(PaymentStatus.FAILED.name()), any(), any(), any());
+        verifyNoInteractions(orderEventProducer);
+    }
+
     @Test
     void testInitiatePayment_ThrowsForbiddenWhenOrderBelongsToAnotherMerchant() {
         when(orderServiceClient.getOrderById(MERCHANT_ID, orderId)).thenThrow(feignForbidden());
@@ -226,6 +485,239 @@ public class PaymentServiceUnitTest {
         verify(paymentTransactionRepository, never()).save(any());
     }
 
+    @Test
+    void testInitiatePayment_CachesConfirmedOrderOwner() {
+        paymentTransaction.setStatus(PaymentStatus.PROCESSING.name());
+        when(paymentTransactionRepository.findByOrderIdAndMerchantId(orderId, MERCHANT_ID)).thenReturn(Optional.of(paymentTransaction));
+        when(orderServiceClient.getOrderById(MERCHANT_ID, orderId)).thenReturn(ResponseEntity.ok(
+                OrderResponse.builder().orderId(orderId).userId(MERCHANT_ID).build()
+        ));
+
+        paymentService.initiatePayment(MERCHANT_ID, paymentRequest);
+        paymentService.initiatePayment(MERCHANT_ID, paymentRequest);
+
+        // The second attempt is validated from the cache
+        verify(orderServiceClient, times(1)).getOrderById(MERCHANT_ID, orderId);
+        assertEquals(MERCHANT_ID, orderOwnershipCache.getOwner(orderId));
+    }
+
+    @Test
+    void testInitiatePayment_CachedOwnerMismatchIsForbidden() {
+        orderOwnershipCache.putOwner(orderId, 999L);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> paymentService.initiatePayment(MERCHANT_ID, paymentRequest));
+
+        assertEquals(403, exception.getStatusCode().value());
+        verifyNoInteractions(orderServiceClient);
+        verify(paymentTransactionRepository, never()).save(any());
+    }
+
+    @Test
+    void testInitiatePayment_RejectedOrderIsNotCached() {
+        when(orderServiceClient.getOrderById(MERCHANT_ID, orderId)).thenThrow(feignNotFound());
+
+        assertThrows(ResponseStatusException.class, () -> paymentService.initiatePayment(MERCHANT_ID, paymentRequest));
+
+        assertNull(orderOwnershipCache.getOwner(orderId));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testInitiatePayments_ValidatesOnceAndBatchesWrites() {
+        UUID cachedOrderId = UUID.randomUUID();
+        UUID foreignOrderId = UUID.randomUUID();
+        orderOwnershipCache.putOwner(cachedOrderId, MERCHANT_ID);
+        PaymentRequest cachedRequest = bulkItem(cachedOrderId);
+        PaymentRequest foreignRequest = bulkItem(foreignOrderId);
+
+        when(orderServiceClient.getOrdersByIds(eq(MERCHANT_ID), anyList())).thenReturn(ResponseEntity.ok(List.of(
+                OrderResponse.builder().orderId(orderId).userId(MERCHANT_ID).build()
+        )));
+        when(paymentTransactionRepository.findByOrderIdInAndMerchantId(anyList(), eq(MERCHANT_ID))).thenReturn(List.of());
+        when(paymentTransactionRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<PaymentTransaction> batch = invocation.getArgument(0);
+            batch.stream().filter(tx -> tx.getTransactionId() == null).forEach(tx -> tx.setTransactionId(UUID.randomUUID()));
+            return batch;
+        });
+        when(paymentProviderFactory.getProvider("STRIPE")).thenReturn(paymentProvider);
+        when(paymentProvider.processPayment(any(PaymentRequest.class))).thenAnswer(invocation -> PaymentResponse.builder()
+                .orderId(invocation.<PaymentRequest>getArgument(0).getOrderId())
+                .status(PaymentStatus.PROCESSING)
+                .paymentChannel("STRIPE")
+                .build());
+        when(paymentTransactionRepository.transitionStatus(any(), anyLong(), anyCollection(), anyString(), any(), any(), any()))
+                .thenReturn(1);
+
+        BulkPaymentResponse response = paymentService.initiatePayments(MERCHANT_ID,
+                List.of(paymentRequest, foreignRequest, cachedRequest));
+
+        assertEquals(2, response.getSucceeded());
+        assertEquals(1, response.getFailed());
+        assertEquals(List.of(orderId, foreignOrderId, cachedOrderId),
+                response.getResults().stream().map(PaymentResponse::getOrderId).toList());
+        assertEquals(PaymentStatus.PROCESSING, response.getResults().get(0).getStatus());
+        assertEquals("Order validation failed", response.getResults().get(1).getErrorMessage());
+        assertEquals(PaymentStatus.PROCESSING, response.getResults().get(2).getStatus());
+
+        // Only the uncached orders are looked up, in a single call
+        ArgumentCaptor<List<UUID>> lookupCaptor = ArgumentCaptor.forClass(List.class);
+        verify(orderServiceClient).getOrdersByIds(eq(MERCHANT_ID), lookupCaptor.capture());
+        assertEquals(2, lookupCaptor.getValue().size());
+        assertFalse(lookupCaptor.getValue().contains(cachedOrderId));
+        verify(orderServiceClient, never()).getOrderById(any(), any());
+
+        verify(paymentTransactionRepository, times(1)).saveAll(anyList());
+        verify(paymentTransactionRepository, never()).save(any());
+        // Results go through the status transitions like single initiations
+        verify(paymentTransactionRepository, times(2)).transitionStatus(any(), anyLong(),
+                eq(PaymentStatusTransitions.sourcesOf(PaymentStatus.PROCESSING)), eq(PaymentStatus.PROCESSING.name()),
+                any(), any(), any());
+        ArgumentCaptor<List<PaymentTransaction>> eventCaptor = ArgumentCaptor.forClass(List.class);
+        verify(orderEventProducer).sendPaymentStatusUpdates(eventCaptor.capture());
+        assertEquals(2, eventCaptor.getValue().size());
+        verify(orderEventProducer, never()).sendPaymentStatusUpdate(any(), any(), any(), any());
+    }
+
+    @Test
+    void testInitiatePayments_ProviderFailureOnlyFailsItsItem() {
+        UUID otherOrderId = UUID.randomUUID();
+        PaymentRequest otherRequest = bulkItem(otherOrderId);
+        orderOwnershipCache.putOwner(orderId, MERCHANT_ID);
+        orderOwnershipCache.putOwner(otherOrderId, MERCHANT_ID);
+
+        when(paymentTransactionRepository.findByOrderIdInAndMerchantId(anyList(), eq(MERCHANT_ID))).thenReturn(List.of());
+        when(paymentTransactionRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(paymentProviderFactory.getProvider("STRIPE")).thenReturn(paymentProvider);
+        when(paymentProvider.processPayment(paymentRequest)).thenThrow(new RuntimeException("Stripe unavailable"));
+        when(paymentProvider.processPayment(otherRequest)).thenReturn(PaymentResponse.builder()
+                .orderId(otherOrderId)
+                .status(PaymentStatus.PROCESSING)
+                .build());
+        when(paymentTransactionRepository.transitionStatus(any(), anyLong(), anyCollection(), anyString(), any(), any(), any()))
+                .thenReturn(1);
+
+        BulkPaymentResponse response = paymentService.initiatePayments(MERCHANT_ID, List.of(paymentRequest, otherRequest));
+
+        assertEquals(1, response.getSucceeded());
+        assertEquals(PaymentStatus.FAILED, response.getResults().get(0).getStatus());
+        assertTrue(response.getResults().get(0).getErrorMessage().contains("Stripe unavailable"));
+        assertEquals(PaymentStatus.PROCESSING, response.getResults().get(1).getStatus());
+        verifyNoInteractions(orderServiceClient);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testInitiatePayments_WebhookSettledItemIsReportedAsStored() {
+        orderOwnershipCache.putOwner(orderId, MERCHANT_ID);
+        when(paymentTransactionRepository.findByOrderIdInAndMerchantId(anyList(), eq(MERCHANT_ID))).thenReturn(List.of());
+        when(paymentTransactionRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<PaymentTransaction> batch = invocation.getArgument(0);
+            batch.forEach(tx -> tx.setTransactionId(transactionId));
+            return batch;
+        });
+        when(paymentProviderFactory.getProvider("STRIPE")).thenReturn(paymentProvider);
+        when(paymentProvider.processPayment(paymentRequest)).thenReturn(PaymentResponse.builder()
+                .orderId(orderId)
+                .status(PaymentStatus.PROCESSING)
+                .providerTransactionId("cs_test_bulk")
+                .build());
+        // The SUCCESS webhook committed first, so the conditional update matches no row
+        when(paymentTransactionRepository.transitionStatus(any(), anyLong(), anyCollection(), anyString(), any(), any(), any()))
+                .thenReturn(0);
+        paymentTransaction.setStatus(PaymentStatus.SUCCESS.name());
+        when(paymentTransactionRepository.findById(transactionId)).thenReturn(Optional.of(paymentTransaction));
+
+        BulkPaymentResponse response = paymentService.initiatePayments(MERCHANT_ID, List.of(paymentRequest));
+
+        assertEquals(PaymentStatus.SUCCESS, response.getResults().get(0).getStatus());
+        assertEquals(transactionId, response.getResults().get(0).getTransactionId());
+        ArgumentCaptor<List<PaymentTransaction>> eventCaptor = ArgumentCaptor.forClass(List.class);
+        verify(orderEventProducer).sendPaymentStatusUpdates(eventCaptor.capture());
+        assertTrue(eventCaptor.getValue().isEmpty());
+        verify(paymentTransactionRepository, times(1)).saveAll(anyList());
+    }
+
+    @Test
+    void testInitiatePayments_ProviderCallsRunWithinTheRequestDeadline() {
+        orderOwnershipCache.putOwner(orderId, MERCHANT_ID);
+        when(paymentTransactionRepository.findByOrderIdInAndMerchantId(anyList(), eq(MERCHANT_ID))).thenReturn(List.of());
+        when(paymentTransactionRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(paymentTransactionRepository.transitionStatus(any(), anyLong(), anyCollection(), anyString(), any(), any(), any()))
+                .thenReturn(1);
+        when(paymentProviderFactory.getProvider("STRIPE")).thenReturn(paymentProvider);
+        List<Duration> remaining = new CopyOnWriteArrayList<>();
+        when(paymentProvider.processPayment(paymentRequest)).thenAnswer(invocation -> {
+            remaining.add(ProviderDeadline.remaining());
+            return PaymentResponse.builder().orderId(orderId).status(PaymentStatus.PROCESSING).build();
+        });
+
+        ProviderDeadline.set(Duration.ofSeconds(30));
+        try {
+            paymentService.initiatePayments(MERCHANT_ID, List.of(paymentRequest));
+        } finally {
+            ProviderDeadline.clear();
+        }
+
+        assertEquals(1, remaining.size());
+        assertNotNull(remaining.get(0));
+        assertTrue(remaining.get(0).compareTo(Duration.ofSeconds(30)) <= 0);
+    }
+
+    @Test
+    void testInitiatePayments_ReturnsExistingAndRejectsDuplicates() {
+        paymentTransaction.setStatus(PaymentStatus.SUCCESS.name());
+        orderOwnershipCache.putOwner(orderId, MERCHANT_ID);
+        when(paymentTransactionRepository.findByOrderIdInAndMerchantId(List.of(orderId), MERCHANT_ID))
+                .thenReturn(List.of(paymentTransaction));
+        when(paymentTransactionRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        BulkPaymentResponse response = paymentService.initiatePayments(MERCHANT_ID, List.of(paymentRequest, bulkItem(orderId)));
+
+        assertEquals(transactionId, response.getResults().get(0).getTransactionId());
+        assertEquals(PaymentStatus.SUCCESS, response.getResults().get(0).getStatus());
+        assertEquals("Duplicate order in bulk request", response.getResults().get(1).getErrorMessage());
+        verifyNoInteractions(paymentProviderFactory);
+        verify(orderEventProducer, never()).sendPaymentStatusUpdates(anyList());
+    }
+
+    @Test
+    void testInitiatePayments_ArchivedPaidItemIsReturned() {
+        orderOwnershipCache.putOwner(orderId, MERCHANT_ID);
+        when(archivedPaymentTransactionRepository.findByOrderIdInAndMerchantIdAndStatusIn(
+                eq(List.of(orderId)), eq(MERCHANT_ID), anyCollection()))
+                .thenReturn(List.of(archived(PaymentStatus.REFUNDED)));
+
+        BulkPaymentResponse response = paymentService.initiatePayments(MERCHANT_ID, List.of(paymentRequest));
+
+        assertEquals(transactionId, response.getResults().get(0).getTransactionId());
+        assertEquals(PaymentStatus.REFUNDED, response.getResults().get(0).getStatus());
+        verifyNoInteractions(paymentProviderFactory);
+        verify(paymentTransactionRepository).saveAll(List.of());
+    }
+
+    @Test
+    void testInitiatePayments_RejectsOrderBeingInitiatedElsewhere() {
+        orderOwnershipCache.putOwner(orderId, MERCHANT_ID);
+        when(idempotencyService.checkAndAcquire(eq(PaymentService.INITIATION_LOCK_PREFIX + orderId), anyString(), any()))
+                .thenReturn(IdempotencyService.ProcessingState.PROCESSING);
+
+        BulkPaymentResponse response = paymentService.initiatePayments(MERCHANT_ID, List.of(paymentRequest));
+
+        assertEquals("Payment for order is already being initiated", response.getResults().get(0).getErrorMessage());
+        verifyNoInteractions(paymentTransactionRepository, paymentProviderFactory);
+    }
+
+    @Test
+    void testInitiatePayments_RejectsOversizedBatch() {
+        ReflectionTestUtils.setField(paymentService, "bulkMaxSize", 1);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> paymentService.initiatePayments(MERCHANT_ID, List.of(paymentRequest, bulkItem(UUID.randomUUID()))));
+
+        verifyNoInteractions(orderServiceClient, paymentTransactionRepository);
+    }
+
     @Test
     void testHandleCallback_UpdatesProviderTransactionId() {
         // Given
@@ -241,7 +733,7 @@ public class PaymentServiceUnitTest {
 
         when(paymentProviderFactory.getProvider("STRIPE")).thenReturn(paymentProvider);
         when(paymentProvider.validateCallback(anyString(), anyString())).thenReturn(true);
-        when(paymentProvider.processCallback(anyString(), anyString())).thenReturn(PaymentResponse.builder()
+        when(paymentProvider.processVerifiedCallback(anyString(), anyString())).thenReturn(PaymentResponse.builder()
                 .orderId(orderId)
                 .status(PaymentStatus.SUCCESS)
                 .paymentChannel("STRIPE")
@@ -249,15 +741,186 @@ public class PaymentServiceUnitTest {
                 .build());
 
         when(paymentTransactionRepository.findByOrderId(orderId)).thenReturn(Optional.of(existing));
+        when(paymentTransactionRepository.transitionStatus(any(), anyLong(), anyCollection(), anyString(), any(), any(), any())).thenReturn(1);
 
         // When
         boolean processed = paymentService.handleCallback("{}", "sig", "STRIPE");
 
-        // Then
+        // Then - the signature is verified once, not again inside the provider
         assertTrue(processed);
-        verify(paymentTransactionRepository).save(argThat(tx ->
-                "pi_test_final".equals(tx.getProviderTransactionId())
-        ));
+        verify(paymentProvider, never()).processCallback(anyString(), anyString());
+        verify(paymentTransactionRepository).transitionStatus(eq(existing.getTransactionId()), eq(0L),
+                eq(Set.of(PaymentStatus.INITIATED.name(), PaymentStatus.PROCESSING.name(), PaymentStatus.FAILED.name())),
+                eq(PaymentStatus.SUCCESS.name()), isNull(), eq("pi_test_final"), any());
+    }
+
+    @Test
+    void testHandleCallback_LateWebhookRestoresArchivedTransaction() {
+        paymentTransaction.setStatus(PaymentStatus.SUCCESS.name());
+        when(paymentProviderFactory.getProvider("STRIPE")).thenReturn(paymentProvider);
+        when(paymentProvider.validateCallback(anyString(), anyString())).thenReturn(true);
+        when(paymentProvider.processVerifiedCallback(anyString(), anyString())).thenReturn(PaymentResponse.builder()
+                .orderId(orderId)
+                .status(PaymentStatus.REFUNDED)
+                .paymentChannel("STRIPE")
+                .build());
+        when(paymentTransactionRepository.findByOrderId(orderId)).thenReturn(Optional.empty());
+        when(archivedPaymentTransactionRepository.findFirstByOrderIdOrderByCreatedAtDesc(orderId))
+                .thenReturn(Optional.of(archived(PaymentStatus.SUCCESS)));
+        when(paymentTransactionRepository.findById(transactionId)).thenReturn(Optional.of(paymentTransaction));
+        when(paymentTransactionRepository.transitionStatus(any(), anyLong(), anyCollection(), anyString(), any(), any(), any())).thenReturn(1);
+
+        assertTrue(paymentService.handleCallback("{}", "sig", "STRIPE"));
+
+        InOrder inOrder = inOrder(paymentTransactionRepository, archivedPaymentTransactionRepository);
+        inOrder.verify(paymentTransactionRepository).restoreFromArchive(transactionId);
+        inOrder.verify(archivedPaymentTransactionRepository).deleteArchived(transactionId);
+        inOrder.verify(paymentTransactionRepository).transitionStatus(eq(transactionId), anyLong(), anyCollection(),
+                eq(PaymentStatus.REFUNDED.name()), any(), any(), any());
+    }
+
+    @Test
+    void testHandleCallback_RecordsLatencyByProviderEventTypeAndOutcome() {
+        String payload = "{\"type\":\"payment_intent.succeeded\"}";
+        when(paymentProviderFactory.getProvider("STRIPE")).thenReturn(paymentProvider);
+        when(paymentProvider.callbackEventType(payload)).thenReturn("payment_intent.succeeded");
+        when(paymentProvider.validateCallback(payload, "bad")).thenReturn(false);
+
+        assertFalse(paymentService.handleCallback(payload, "bad", "STRIPE"));
+
+        assertEquals(1, meterRegistry.get(PaymentService.CALLBACK_METRIC)
+                .tag("provider", "STRIPE")
+                .tag("event_type", "payment_intent.succeeded")
+                .tag("intake", "sync")
+                .tag("outcome", "invalid_signature")
+                .timer().count());
+    }
+
+    @Test
+    void testProcessQueuedCallback_SkipsSignatureValidation() {
+        paymentTransaction.setStatus(PaymentStatus.PROCESSING.name());
+        when(paymentProviderFactory.getProvider("STRIPE")).thenReturn(paymentProvider);
+        when(paymentProvider.processVerifiedCallback(anyString(), anyString())).thenReturn(PaymentResponse.builder()
+                .orderId(orderId)
+                .status(PaymentStatus.SUCCESS)
+                .paymentChannel("STRIPE")
+                .providerTransactionId("pi_test_final")
+                .build());
+        when(paymentTransactionRepository.findByOrderId(orderId)).thenReturn(Optional.of(paymentTransaction));
+        when(paymentTransactionRepository.transitionStatus(any(), anyLong(), anyCollection(), anyString(), any(), any(), any())).thenReturn(1);
+
+        boolean processed = paymentService.processQueuedCallback("{}", "sig", "STRIPE");
+
+        assertTrue(processed);
+        verify(paymentProvider, never()).validateCallback(anyString(), anyString());
+        verify(orderEventProducer).sendPaymentStatusUpdate(orderId, transactionId, MERCHANT_ID, PaymentStatus.SUCCESS);
+    }
+
+    @Test
+    void testProcessQueuedCallback_StripeEventRetriedAfterConflict() throws Exception {
+        Map<String, IdempotencyService.ProcessingState> eventKeys = new ConcurrentHashMap<>();
+        IdempotencyService stripeIdempotency = mock(IdempotencyService.class);
+        when(stripeIdempotency.checkAndAcquire(anyString(), anyString(), any())).thenAnswer(invocation ->
+                Optional.ofNullable(eventKeys.putIfAbsent(invocation.getArgument(0), IdempotencyService.ProcessingState.PROCESSING))
+                        .orElse(IdempotencyService.ProcessingState.NEW));
+        when(stripeIdempotency.completeIfOwner(anyString(), anyString(), any())).thenAnswer(invocation ->
+                eventKeys.put(invocation.getArgument(0), IdempotencyService.ProcessingState.COMPLETED) != null);
+        when(stripeIdempotency.releaseIfOwner(anyString(), anyString())).thenAnswer(invocation ->
+                eventKeys.remove(invocation.getArgument(0)) != null);
+        StripeProvider stripeProvider = new StripeProvider(null, stripeIdempotency, paymentTransactionRepository,
+                new ProviderCallExecutor(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(stripeProvider, "webhookSecret", STRIPE_WEBHOOK_SECRET);
+        when(paymentProviderFactory.getProvider("STRIPE")).thenReturn(stripeProvider);
+
+        paymentTransaction.setStatus(PaymentStatus.PROCESSING.name());
+        when(paymentTransactionRepository.findByOrderId(orderId)).thenReturn(Optional.of(paymentTransaction));
+        // Another event for the transaction commits in between, so the first delivery loses the race
+        when(paymentTransactionRepository.transitionStatus(any(), anyLong(), anyCollection(), anyString(), any(), any(), any()))
+                .thenReturn(0, 1);
+
+        PaymentService transactional = transactionalProxy(paymentService);
+        String payload = stripePaymentSucceededPayload(orderId);
+        String signature = stripeSignature(payload);
+
+        assertFalse(transactional.processQueuedCallback(payload, signature, "STRIPE"));
+        assertTrue(eventKeys.isEmpty(), "the event key is released when the status change rolls back");
+
+        assertTrue(transactional.processQueuedCallback(payload, signature, "STRIPE"));
+        assertEquals(PaymentStatus.SUCCESS.name(), paymentTransaction.getStatus());
+        assertEquals(Map.of("stripe:webhook:event:payment:order:" + orderId, IdempotencyService.ProcessingState.COMPLETED), eventKeys);
+        verify(orderEventProducer).sendPaymentStatusUpdate(orderId, transactionId, MERCHANT_ID, PaymentStatus.SUCCESS);
+    }
+
+    @Test
+    void testSearchPaymentsByCursor_ReturnsNextCursorWithoutCounting() {
+        LocalDateTime createdAt = LocalDateTime.of(2026, 3, 30, 10, 0);
+        PaymentTransaction newest = transactionCreatedAt(createdAt.plusMinutes(2));
+        PaymentTransaction middle = transactionCreatedAt(createdAt.plusMinutes(1));
+        PaymentTransaction extra = transactionCreatedAt(createdAt);
+        when(paymentTransactionRepository.findFirstByKeyset(eq(MERCHANT_ID), isNull(),
+                eq(PaymentTransactionRepository.UNBOUNDED_FROM), eq(PaymentTransactionRepository.UNBOUNDED_TO), eq(Limit.of(3))))
+                .thenReturn(List.of(newest, middle, extra));
+
+        PaymentPageResponse page = paymentService.searchPaymentsByCursor(MERCHANT_ID, null, 2, null, null, null, false);
+
+        assertEquals(2, page.getPayments().size());
+        assertTrue(page.isFirst());
+        assertFalse(page.isLast());
+        assertEquals(-1, page.getTotalElements());
+        assertEquals(PaymentSearchCursor.after(middle), PaymentSearchCursor.decode(page.getNextCursor()));
+        verify(paymentTransactionRepository, never()).countWithFilters(any(), any(), any(), any());
+    }
+
+    @Test
+    void testSearchPaymentsByCursor_SeeksPastCursor() {
+        PaymentTransaction last = transactionCreatedAt(LocalDateTime.of(2026, 3, 30, 9, 0));
+        PaymentSearchCursor cursor = new PaymentSearchCursor(LocalDateTime.of(2026, 3, 30, 10, 0), UUID.randomUUID());
+        when(paymentTransactionRepository.findNextByKeyset(MERCHANT_ID, "SUCCESS",
+                PaymentTransactionRepository.UNBOUNDED_FROM, PaymentTransactionRepository.UNBOUNDED_TO,
+                cursor.createdAt(), cursor.transactionId(), Limit.of(3)))
+                .thenReturn(List.of(last));
+        when(paymentTransactionRepository.countWithFilters(MERCHANT_ID, "SUCCESS",
+                PaymentTransactionRepository.UNBOUNDED_FROM, PaymentTransactionRepository.UNBOUNDED_TO)).thenReturn(3L);
+
+        PaymentPageResponse page = paymentService.searchPaymentsByCursor(
+                MERCHANT_ID, cursor.encode(), 2, "SUCCESS", null, null, true);
+
+        assertEquals(1, page.getPayments().size());
+        assertFalse(page.isFirst());
+        assertTrue(page.isLast());
+        assertNull(page.getNextCursor());
+        assertEquals(3, page.getTotalElements());
+        assertEquals(2, page.getTotalPages());
+    }
+
+    @Test
+    void testSearchPaymentsByCursor_RejectsMalformedCursor() {
+        assertThrows(IllegalArgumentException.class, () ->
+                paymentService.searchPaymentsByCursor(MERCHANT_ID, "not-a-cursor", 20, null, null, null, false));
+        verifyNoInteractions(paymentTransactionRepository);
+    }
+
+    private PaymentTransaction transactionCreatedAt(LocalDateTime createdAt) {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setTransactionId(UUID.randomUUID());
+        transaction.setOrderId(UUID.randomUUID());
+        transaction.setMerchantId(MERCHANT_ID);
+        transaction.setAmount(new BigDecimal("10.00"));
+        transaction.setCurrency("USD");
+        transaction.setPaymentChannel("STRIPE");
+        transaction.setStatus(PaymentStatus.SUCCESS.name());
+        transaction.setCreatedAt(createdAt);
+        transaction.setUpdatedAt(createdAt);
+        return transaction;
+    }
+
+    private PaymentRequest bulkItem(UUID itemOrderId) {
+        PaymentRequest request = new PaymentRequest();
+        request.setOrderId(itemOrderId);
+        request.setAmount(new BigDecimal("10.00"));
+        request.setCurrency("USD");
+        request.setPaymentChannel("STRIPE");
+        return request;
     }
 
     private FeignException.Forbidden feignForbidden() {
@@ -269,4 +932,76 @@ public class PaymentServiceUnitTest {
         Request request = Request.create(Request.HttpMethod.GET, "/api/v1/orders/id/" + orderId, Map.of(), null, StandardCharsets.UTF_8, null);
         return new FeignException.NotFound("Not Found", request, null, Map.of());
     }
+
+    /**
+     * Wraps the service in the same transaction interceptor Spring applies, over a transaction
+     * manager that only runs the synchronization callbacks.
+     */
+    private static PaymentService transactionalProxy(PaymentService target) {
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new TransactionInterceptor((TransactionManager) new AbstractPlatformTransactionManager() {
+            @Override
+            protected Object doGetTransaction() {
+                return new Object();
+            }
+
+            @Override
+            protected void doBegin(Object transaction, TransactionDefinition definition) {
+            }
+
+            @Override
+            protected void doCommit(DefaultTransactionStatus status) {
+            }
+
+            @Override
+            protected void doRollback(DefaultTransactionStatus status) {
+            }
+        }, new AnnotationTransactionAttributeSource()));
+        return (PaymentService) proxyFactory.getProxy();
+    }
+
+    private static String stripePaymentSucceededPayload(UUID orderId) {
+        return """
+            {
+              "id": "evt_conflict_123",
+              "object": "event",
+              "api_version": "2024-10-28.acacia",
+              "created": 1731111111,
+              "livemode": false,
+              "pending_webhooks": 1,
+              "type": "payment_intent.succeeded",
+              "data": {
+                "object": {
+                  "id": "pi_test_conflict_123",
+                  "object": "payment_intent",
+                  "status": "succeeded",
+                  "metadata": {
+                    "orderId": "%s"
+                  }
+                }
+              }
+            }
+            """.formatted(orderId);
+    }
+
+    private static String stripeSignature(String payload) throws Exception {
+        long timestamp = Instant.now().getEpochSecond();
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(STRIPE_WEBHOOK_SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return "t=" + timestamp + ",v1=" + HexFormat.of().formatHex(
+                mac.doFinal((timestamp + "." + payload).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private ArchivedPaymentTransaction archived(PaymentStatus status) {
+        ArchivedPaymentTransaction archived = new ArchivedPaymentTransaction();
+        archived.setTransactionId(transactionId);
+        archived.setOrderId(orderId);
+        archived.setMerchantId(MERCHANT_ID);
+        archived.setAmount(new BigDecimal("100.00"));
+        archived.setCurrency("USD");
+        archived.setPaymentChannel("STRIPE");
+        archived.setStatus(status.name());
+        return archived;
+    }
 }
@@ -0,0 +1,172 @@
+package com.fusionxpay.payment.service;
+
+import com.fusionxpay.common.event.OrderPaymentEvent;
+import com.fusionxpay.common.model.PaymentStatus;
+import com.fusionxpay.payment.controller.PaymentController;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+class PaymentStatusStreamServiceTest {
+
+    private static final String MERCHANT_HEADER = "X-Merchant-Id";
+    private static final long MERCHANT_ID = 42L;
+    private static final long OTHER_MERCHANT_ID = 7L;
+
+    private PaymentStatusStreamService streamService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        streamService = new PaymentStatusStreamService(new SimpleMeterRegistry());
+        mockMvc = MockMvcBuilders.standaloneSetup(new PaymentController(
+                mock(PaymentService.class), mock(BulkRefundService.class), streamService,
+                mock(PaymentExportService.class))).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        streamService.shutdown();
+    }
+
+    @Test
+    void resumesAfterLastEventIdWithOnlyTheMerchantsEvents() throws Exception {
+        UUID orderId = UUID.randomUUID();
+        streamService.publish(0, 1, event(MERCHANT_ID, orderId, PaymentStatus.INITIATED));
+        streamService.publish(0, 2, event(MERCHANT_ID, orderId, PaymentStatus.PROCESSING));
+        streamService.publish(1, 1, event(OTHER_MERCHANT_ID, UUID.randomUUID(), PaymentStatus.SUCCESS));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/payment/stream")
+                        .header(MERCHANT_HEADER, MERCHANT_ID)
+                        .header("Last-Event-ID", "0:1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        streamService.publish(0, 3, event(MERCHANT_ID, orderId, PaymentStatus.SUCCESS));
+
+        String content = awaitContent(result, "id:0:3");
+        assertTrue(content.contains("id:0:2\nevent:payment-status\ndata:"), content);
+        assertTrue(content.indexOf("id:0:2") < content.indexOf("id:0:3"), content);
+        assertFalse(content.contains("id:0:1"), content);
+        assertFalse(content.contains("id:1:1"), content);
+        assertTrue(content.contains("\"status\":\"SUCCESS\""), content);
+    }
+
+    @Test
+    void resumesFromAnotherInstanceThatInterleavedPartitionsDifferently() throws Exception {
+        // This instance received 1-7 before 0-5; the client's instance received 0-5 first
+        streamService.publish(1, 7, event(MERCHANT_ID, UUID.randomUUID(), PaymentStatus.SUCCESS));
+        streamService.publish(0, 5, event(MERCHANT_ID, UUID.randomUUID(), PaymentStatus.SUCCESS));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/payment/stream")
+                        .header(MERCHANT_HEADER, MERCHANT_ID)
+                        .header("Last-Event-ID", "0:5"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        streamService.publish(0, 6, event(MERCHANT_ID, UUID.randomUUID(), PaymentStatus.SUCCESS));
+
+        String content = awaitContent(result, "id:0:6,1:7");
+        assertTrue(content.contains("id:1:7\n"), content);
+        assertFalse(content.contains("id:0:5,1:7"), content);
+    }
+
+    @Test
+    void unknownLastEventIdReplaysTheWholeBuffer() throws Exception {
+        streamService.publish(0, 1, event(MERCHANT_ID, UUID.randomUUID(), PaymentStatus.SUCCESS));
+        streamService.publish(0, 2, event(MERCHANT_ID, UUID.randomUUID(), PaymentStatus.SUCCESS));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/payment/stream")
+                        .header(MERCHANT_HEADER, MERCHANT_ID)
+                        .header("Last-Event-ID", "not-an-offset-vector"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String content = awaitContent(result, "id:0:2");
+        assertTrue(content.contains("id:0:1\n"), content);
+    }
+
+    @Test
+    void orderStreamGetsBufferedAndLiveEventsOfThatOrderOnly() throws Exception {
+        UUID orderId = UUID.randomUUID();
+        UUID otherOrderId = UUID.randomUUID();
+        streamService.publish(0, 1, event(MERCHANT_ID, orderId, PaymentStatus.PROCESSING));
+        streamService.publish(0, 2, event(MERCHANT_ID, otherOrderId, PaymentStatus.PROCESSING));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/payment/stream")
+                        .header(MERCHANT_HEADER, MERCHANT_ID)
+                        .param("orderId", orderId.toString()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        streamService.publish(0, 3, event(MERCHANT_ID, otherOrderId, PaymentStatus.SUCCESS));
+        streamService.publish(0, 4, event(MERCHANT_ID, orderId, PaymentStatus.SUCCESS));
+        streamService.heartbeat();
+
+        String content = awaitContent(result, ":heartbeat");
+        assertTrue(content.contains("id:0:1"), content);
+        assertTrue(content.contains("id:0:4"), content);
+        assertFalse(content.contains("id:0:2"), content);
+        assertFalse(content.contains("id:0:3"), content);
+    }
+
+    @Test
+    void merchantStreamWithoutLastEventIdOnlyGetsLiveEvents() throws Exception {
+        streamService.publish(0, 1, event(MERCHANT_ID, UUID.randomUUID(), PaymentStatus.SUCCESS));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/payment/stream").header(MERCHANT_HEADER, MERCHANT_ID))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        streamService.publish(0, 2, event(MERCHANT_ID, UUID.randomUUID(), PaymentStatus.SUCCESS));
+
+        String content = awaitContent(result, "id:0:2");
+        assertFalse(content.contains("id:0:1"), content);
+        assertEquals(1, streamService.openConnections());
+    }
+
+    @Test
+    void rejectsConnectionsOverTheMerchantLimit() {
+        ReflectionTestUtils.setField(streamService, "maxConnectionsPerMerchant", 2);
+        streamService.subscribe(MERCHANT_ID, null, null);
+        streamService.subscribe(MERCHANT_ID, null, null);
+
+        ResponseStatusException rejected = assertThrows(ResponseStatusException.class,
+                () -> streamService.subscribe(MERCHANT_ID, null, null));
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, rejected.getStatusCode());
+        assertNotNull(streamService.subscribe(OTHER_MERCHANT_ID, null, null));
+        assertEquals(3, streamService.openConnections());
+    }
+
+    private static OrderPaymentEvent event(long merchantId, UUID orderId, PaymentStatus status) {
+        return OrderPaymentEvent.builder()
+                .orderId(orderId)
+                .transactionId(UUID.randomUUID())
+                .merchantId(merchantId)
+                .status(status)
+                .build();
+    }
+
+    private static String awaitContent(MvcResult result, String expected) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        String content = result.getResponse().getContentAsString();
+        while (!content.contains(expected) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            content = result.getResponse().getContentAsString();
+        }
+        assertTrue(content.contains(expected), content);
+        return content;
+    }
+}
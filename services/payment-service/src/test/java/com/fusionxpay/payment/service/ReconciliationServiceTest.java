@@ -0,0 +1,197 @@
+package com.fusionxpay.payment.service;
+
+import com.fusionxpay.common.event.ReconciliationMismatchEvent;
+import com.fusionxpay.common.model.PaymentStatus;
+import com.fusionxpay.payment.dto.ReconciliationRecord;
+import com.fusionxpay.payment.model.ReconciliationMismatch;
+import com.fusionxpay.payment.model.ReconciliationMismatchType;
+import com.fusionxpay.payment.repository.PaymentTransactionRepository;
+import com.fusionxpay.payment.repository.ReconciliationMismatchRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ReconciliationServiceTest {
+
+    private static final String TOPIC = "payment-reconciliation-mismatches";
+    private static final LocalDateTime EXPORT_START = SettlementExportReader.parseTimestamp("1760000000");
+
+    @Mock
+    private PaymentTransactionRepository paymentTransactionRepository;
+
+    @Mock
+    private ReconciliationMismatchRepository mismatchRepository;
+
+    @Mock
+    private KafkaTemplate<String, ReconciliationMismatchEvent> kafkaTemplate;
+
+    @TempDir
+    Path tempDir;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ReconciliationService reconciliationService;
+    private final List<ReconciliationMismatch> saved = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        reconciliationService = new ReconciliationService(paymentTransactionRepository, mismatchRepository,
+                kafkaTemplate, TransactionOperations.withoutTransaction(), meterRegistry);
+        ReflectionTestUtils.setField(reconciliationService, "inboxDir", tempDir.toString());
+        ReflectionTestUtils.setField(reconciliationService, "partitions", 4);
+        ReflectionTestUtils.setField(reconciliationService, "batchSize", 2);
+        when(mismatchRepository.saveAll(any())).thenAnswer(invocation -> {
+            Iterable<ReconciliationMismatch> batch = invocation.getArgument(0);
+            batch.forEach(saved::add);
+            return batch;
+        });
+        when(kafkaTemplate.send(anyString(), anyString(), any(ReconciliationMismatchEvent.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @Test
+    void reconcile_ReportsEachMismatchTypeAcrossPartitions() throws Exception {
+        // Balance-transaction rows: txn_ id and ch_/re_ source, joined to the ledger's PaymentIntent
+        StringBuilder csv = new StringBuilder("id,source,payment_intent,amount,currency,status,created\n");
+        List<ReconciliationRecord> ledger = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            csv.append("txn_").append(i).append(",ch_").append(i).append(",pi_").append(i)
+                    .append(",10.00,usd,succeeded,1760000000\n");
+            ledger.add(ledgerRow("pi_" + i, "10.0000", "USD", PaymentStatus.SUCCESS));
+        }
+        csv.append("txn_drift,ch_drift,pi_drift,12.50,usd,succeeded,1760000100\n");
+        csv.append("txn_status,ch_status,pi_status,5.00,usd,failed,1760000100\n");
+        csv.append("txn_unknown,ch_unknown,pi_unknown,7.00,usd,succeeded,1760000200\n");
+        csv.append("txn_refund,ch_refund,pi_refund,9.00,usd,succeeded,1760000200\n");
+        csv.append("txn_refund2,re_refund,pi_refund,-9.00,usd,refunded,1760000300\n");
+        ledger.add(ledgerRow("pi_drift", "10.0000", "USD", PaymentStatus.SUCCESS));
+        ledger.add(ledgerRow("pi_status", "5.0000", "USD", PaymentStatus.SUCCESS));
+        ledger.add(ledgerRow("pi_missing", "3.0000", "USD", PaymentStatus.SUCCESS));
+        ledger.add(ledgerRow("pi_pending", "3.0000", "USD", PaymentStatus.PROCESSING));
+        ledger.add(ledgerRow("pi_refund", "9.0000", "USD", PaymentStatus.REFUNDED));
+        // Picked up by the window margin only; settles in the previous export
+        ledger.add(ledgerRow("pi_margin", "4.0000", "USD", PaymentStatus.SUCCESS, EXPORT_START.minusMinutes(30)));
+        Path export = Files.writeString(tempDir.resolve("stripe-2025-10-09.csv"), csv);
+        when(paymentTransactionRepository.streamForReconciliation(eq("STRIPE"), any(), any()))
+                .thenReturn(ledger.stream());
+
+        ReconciliationService.ReconciliationSummary summary = reconciliationService.reconcile("stripe", export);
+
+        assertEquals(205, summary.providerRows());
+        assertEquals(206, summary.ledgerRows());
+        assertEquals(Map.of(
+                ReconciliationMismatchType.AMOUNT_DRIFT, 1L,
+                ReconciliationMismatchType.STATUS_DRIFT, 1L,
+                ReconciliationMismatchType.MISSING_AT_PROVIDER, 1L,
+                ReconciliationMismatchType.MISSING_IN_LEDGER, 1L), summary.mismatches());
+
+        Map<String, ReconciliationMismatchType> byId = saved.stream()
+                .collect(Collectors.toMap(ReconciliationMismatch::getProviderTransactionId, ReconciliationMismatch::getType));
+        assertEquals(Map.of(
+                "pi_drift", ReconciliationMismatchType.AMOUNT_DRIFT,
+                "pi_status", ReconciliationMismatchType.STATUS_DRIFT,
+                "pi_missing", ReconciliationMismatchType.MISSING_AT_PROVIDER,
+                "pi_unknown", ReconciliationMismatchType.MISSING_IN_LEDGER), byId);
+        assertTrue(saved.stream().allMatch(m -> summary.runId().equals(m.getRunId())
+                && "STRIPE".equals(m.getProvider()) && "stripe-2025-10-09.csv".equals(m.getSourceFile())));
+
+        ReconciliationMismatch drift = saved.stream()
+                .filter(m -> m.getType() == ReconciliationMismatchType.AMOUNT_DRIFT).findFirst().orElseThrow();
+        assertEquals(0, new BigDecimal("10").compareTo(drift.getLedgerAmount()));
+        assertEquals(0, new BigDecimal("12.50").compareTo(drift.getProviderAmount()));
+        assertNotNull(drift.getTransactionId());
+
+        verify(mismatchRepository, times(2)).saveAll(any());
+        ArgumentCaptor<ReconciliationMismatchEvent> events = ArgumentCaptor.forClass(ReconciliationMismatchEvent.class);
+        verify(kafkaTemplate, times(4)).send(eq(TOPIC), anyString(), events.capture());
+        assertTrue(events.getAllValues().stream()
+                .anyMatch(e -> "pi_unknown".equals(e.getProviderTransactionId()) && "MISSING_IN_LEDGER".equals(e.getType())));
+        verify(kafkaTemplate).flush();
+        assertEquals(4, meterRegistry.find(ReconciliationService.MISMATCH_METRIC).counters().stream()
+                .mapToDouble(c -> c.count()).sum());
+    }
+
+    @Test
+    void reconcile_UsesExportTimeRangeForLedgerQuery() throws Exception {
+        Path export = Files.writeString(tempDir.resolve("paypal-settlement.ndjson"), """
+                {"transaction_id":"PP-1","amount":{"value":"20.00","currency_code":"EUR"},"transaction_status":"S","transaction_initiation_date":"2025-10-09T08:00:00+0000"}
+                {"transaction_id":"PP-2","amount":{"value":"30.00","currency_code":"EUR"},"transaction_status":"S","transaction_initiation_date":"2025-10-09T20:00:00+0000"}
+                """);
+        when(paymentTransactionRepository.streamForReconciliation(eq("PAYPAL"), any(), any()))
+                .thenReturn(List.of(
+                        ledgerRow("PP-1", "20.0000", "EUR", PaymentStatus.SUCCESS),
+                        ledgerRow("PP-2", "30.0000", "EUR", PaymentStatus.SUCCESS)).stream());
+
+        ReconciliationService.ReconciliationSummary summary = reconciliationService.reconcile("PAYPAL", export);
+
+        assertTrue(summary.mismatches().isEmpty());
+        ArgumentCaptor<LocalDateTime> from = ArgumentCaptor.forClass(LocalDateTime.class);
+        ArgumentCaptor<LocalDateTime> to = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(paymentTransactionRepository).streamForReconciliation(eq("PAYPAL"), from.capture(), to.capture());
+        // Widened by the default one-hour margin
+        assertEquals(SettlementExportReader.parseTimestamp("2025-10-09T07:00:00Z"), from.getValue());
+        assertEquals(SettlementExportReader.parseTimestamp("2025-10-09T21:00:00Z"), to.getValue());
+        verify(mismatchRepository, never()).saveAll(any());
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any(ReconciliationMismatchEvent.class));
+    }
+
+    @Test
+    void processInbox_ClaimsExportsAndMovesThemWhenDone() throws Exception {
+        Files.writeString(tempDir.resolve("stripe-ok.csv"), "id,PaymentIntent ID,amount,currency\nch_1,pi_1,1.00,usd\n");
+        Files.writeString(tempDir.resolve("stripe-broken.csv"), "reference,value\nch_1,1.00\n");
+        // Charge IDs alone cannot be joined to the ledger's PaymentIntents
+        Files.writeString(tempDir.resolve("stripe-charges.csv"), "id,amount,currency\nch_1,1.00,usd\n");
+        Files.writeString(tempDir.resolve("notes.txt"), "ignored");
+        when(paymentTransactionRepository.streamForReconciliation(eq("STRIPE"), any(), any()))
+                .thenAnswer(invocation -> List.of(ledgerRow("pi_1", "1.0000", "USD", PaymentStatus.SUCCESS)).stream());
+
+        reconciliationService.processInbox();
+
+        assertTrue(Files.exists(tempDir.resolve("done").resolve("stripe-ok.csv")));
+        assertTrue(Files.exists(tempDir.resolve("failed").resolve("stripe-broken.csv")));
+        assertTrue(Files.exists(tempDir.resolve("failed").resolve("stripe-charges.csv")));
+        assertTrue(Files.exists(tempDir.resolve("notes.txt")));
+        assertFalse(Files.exists(tempDir.resolve("stripe-ok.csv")));
+        verify(paymentTransactionRepository, times(1)).streamForReconciliation(eq("STRIPE"), any(), any());
+    }
+
+    private static ReconciliationRecord ledgerRow(String providerTransactionId, String amount, String currency,
+                                                  PaymentStatus status) {
+        return ledgerRow(providerTransactionId, amount, currency, status, EXPORT_START);
+    }
+
+    private static ReconciliationRecord ledgerRow(String providerTransactionId, String amount, String currency,
+                                                  PaymentStatus status, LocalDateTime createdAt) {
+        return new ReconciliationRecord(providerTransactionId, UUID.randomUUID(), new BigDecimal(amount), currency,
+                status.name(), createdAt);
+    }
+}
@@ -0,0 +1,174 @@
+package com.fusionxpay.payment.service;
+
+import com.fusionxpay.payment.model.WebhookInboxEvent;
+import com.fusionxpay.payment.model.WebhookInboxStatus;
+import com.fusionxpay.payment.repository.WebhookInboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WebhookInboxWorkerTest {
+
+    @Mock
+    private WebhookInboxRepository webhookInboxRepository;
+
+    @Mock
+    private PaymentService paymentService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private WebhookInboxWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        worker = new WebhookInboxWorker(webhookInboxRepository, paymentService,
+                TransactionOperations.withoutTransaction(), meterRegistry);
+        ReflectionTestUtils.setField(worker, "workerCount", 4);
+        ReflectionTestUtils.setField(worker, "batchSize", 10);
+        ReflectionTestUtils.setField(worker, "maxInFlight", 100);
+        ReflectionTestUtils.setField(worker, "maxAttempts", 2);
+        ReflectionTestUtils.setField(worker, "dispatchTimeout", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(worker, "initialBackoff", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(worker, "maxBackoff", Duration.ofSeconds(3));
+        worker.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        worker.stop();
+    }
+
+    @Test
+    void dispatch_AppliesEventsOfSameOrderInArrivalOrder() throws Exception {
+        List<String> applied = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(3);
+        when(paymentService.processQueuedCallback(anyString(), anyString(), eq("STRIPE"))).thenAnswer(invocation -> {
+            applied.add(invocation.getArgument(0));
+            done.countDown();
+            return true;
+        });
+        when(webhookInboxRepository.lockReceivedBatch(any(LocalDateTime.class), any(Pageable.class))).thenReturn(List.of(
+                event(1L, "order-a", "first"), event(2L, "order-a", "second"), event(3L, "order-a", "third")));
+        when(webhookInboxRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        worker.dispatchReceivedEvents();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("first", "second", "third"), applied);
+        assertSame(worker.laneFor("order-a"), worker.laneFor("order-a"));
+    }
+
+    @Test
+    void dispatch_MarksProcessedAndRecordsLag() throws Exception {
+        WebhookInboxEvent event = event(1L, "order-b", "payload");
+        CountDownLatch saved = new CountDownLatch(1);
+        when(paymentService.processQueuedCallback("payload", "sig", "STRIPE")).thenReturn(true);
+        when(webhookInboxRepository.save(event)).thenAnswer(invocation -> {
+            saved.countDown();
+            return event;
+        });
+
+        worker.dispatch(event);
+
+        assertTrue(saved.await(5, TimeUnit.SECONDS));
+        assertEquals(WebhookInboxStatus.PROCESSED, event.getStatus());
+        assertNotNull(event.getProcessedAt());
+        // The lag is recorded on the lane thread right after the save
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+                assertEquals(1, meterRegistry.get("payment.webhook.intake.lag")
+                        .tag("provider", "STRIPE").tag("outcome", "processed").timer().count()));
+    }
+
+    @Test
+    void dispatch_RequeuesFailedEventUntilAttemptsExhausted() throws Exception {
+        WebhookInboxEvent event = event(1L, "order-c", "payload");
+        CountDownLatch saved = new CountDownLatch(2);
+        when(paymentService.processQueuedCallback("payload", "sig", "STRIPE")).thenReturn(false);
+        when(webhookInboxRepository.save(event)).thenAnswer(invocation -> {
+            saved.countDown();
+            return event;
+        });
+
+        LocalDateTime before = LocalDateTime.now();
+        worker.dispatch(event);
+        worker.laneFor("order-c").submit(() -> null).get(5, TimeUnit.SECONDS);
+        assertEquals(WebhookInboxStatus.RECEIVED, event.getStatus());
+        // Not claimed again before the backoff has passed
+        assertFalse(event.getNextAttemptAt().isBefore(before.plusSeconds(1)));
+
+        worker.dispatch(event);
+        assertTrue(saved.await(5, TimeUnit.SECONDS));
+        assertEquals(WebhookInboxStatus.FAILED, event.getStatus());
+        assertEquals(2, event.getAttempts());
+        assertNull(event.getNextAttemptAt());
+    }
+
+    @Test
+    void claimBatch_OnlyAsksForDueEvents() {
+        when(webhookInboxRepository.lockReceivedBatch(any(LocalDateTime.class), any(Pageable.class))).thenReturn(List.of());
+        when(webhookInboxRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        LocalDateTime before = LocalDateTime.now();
+
+        worker.claimBatch(10);
+
+        ArgumentCaptor<LocalDateTime> now = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(webhookInboxRepository).lockReceivedBatch(now.capture(), any(Pageable.class));
+        assertFalse(now.getValue().isBefore(before));
+    }
+
+    @Test
+    void backoff_DoublesUpToTheMaximum() {
+        assertEquals(Duration.ofSeconds(1), worker.backoff(1));
+        assertEquals(Duration.ofSeconds(2), worker.backoff(2));
+        assertEquals(Duration.ofSeconds(3), worker.backoff(3));
+        assertEquals(Duration.ofSeconds(3), worker.backoff(31));
+    }
+
+    @Test
+    void dispatchReceivedEvents_PublishesQueueDepth() {
+        when(webhookInboxRepository.lockReceivedBatch(any(LocalDateTime.class), any(Pageable.class))).thenReturn(List.of());
+        when(webhookInboxRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(webhookInboxRepository.countByStatusIn(any())).thenReturn(42L);
+
+        worker.dispatchReceivedEvents();
+
+        assertEquals(42.0, meterRegistry.get("payment.webhook.intake.queue.depth").gauge().value());
+    }
+
+    private WebhookInboxEvent event(Long id, String partitionKey, String payload) {
+        WebhookInboxEvent event = new WebhookInboxEvent();
+        event.setId(id);
+        event.setProvider("STRIPE");
+        event.setEventId("evt_" + id);
+        event.setPartitionKey(partitionKey);
+        event.setPayload(payload);
+        event.setSignature("sig");
+        event.setStatus(WebhookInboxStatus.DISPATCHED);
+        event.setReceivedAt(LocalDateTime.now().minusSeconds(2));
+        return event;
+    }
+}
@@ -0,0 +1,110 @@
+package com.fusionxpay.payment.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fusionxpay.payment.model.WebhookInboxEvent;
+import com.fusionxpay.payment.model.WebhookInboxStatus;
+import com.fusionxpay.payment.provider.PaymentProvider;
+import com.fusionxpay.payment.provider.PaymentProviderFactory;
+import com.fusionxpay.payment.repository.WebhookInboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WebhookIntakeServiceTest {
+
+    private static final String STRIPE_PAYLOAD = """
+            {"id":"evt_1","type":"payment_intent.succeeded",
+             "data":{"object":{"id":"pi_1","metadata":{"orderId":"7f1c2a8e-0000-4000-8000-000000000001"}}}}
+            """;
+
+    private static final String PAYPAL_PAYLOAD = """
+            {"id":"WH-1","event_type":"PAYMENT.CAPTURE.REFUNDED",
+             "resource":{"id":"RF-1","supplementary_data":{"related_ids":{"order_id":"PP-ORDER-1"}}}}
+            """;
+
+    @Mock
+    private PaymentProviderFactory paymentProviderFactory;
+
+    @Mock
+    private WebhookInboxRepository webhookInboxRepository;
+
+    @Mock
+    private PaymentProvider paymentProvider;
+
+    private WebhookIntakeService webhookIntakeService;
+
+    @BeforeEach
+    void setUp() {
+        webhookIntakeService = new WebhookIntakeService(paymentProviderFactory, webhookInboxRepository, new ObjectMapper());
+        ReflectionTestUtils.setField(webhookIntakeService, "intakeMode", "async");
+    }
+
+    @Test
+    void accept_StoresVerifiedEventKeyedByOrderId() {
+        when(paymentProviderFactory.getProvider("STRIPE")).thenReturn(paymentProvider);
+        when(paymentProvider.getProviderName()).thenReturn("STRIPE");
+        when(paymentProvider.validateCallback(STRIPE_PAYLOAD, "sig")).thenReturn(true);
+
+        WebhookIntakeService.IntakeResult result = webhookIntakeService.accept("STRIPE", STRIPE_PAYLOAD, "sig");
+
+        assertEquals(WebhookIntakeService.IntakeResult.ACCEPTED, result);
+        ArgumentCaptor<WebhookInboxEvent> captor = ArgumentCaptor.forClass(WebhookInboxEvent.class);
+        verify(webhookInboxRepository).saveAndFlush(captor.capture());
+        WebhookInboxEvent stored = captor.getValue();
+        assertEquals("evt_1", stored.getEventId());
+        assertEquals("7f1c2a8e-0000-4000-8000-000000000001", stored.getPartitionKey());
+        assertEquals(WebhookInboxStatus.RECEIVED, stored.getStatus());
+        assertEquals(STRIPE_PAYLOAD, stored.getPayload());
+        assertEquals("sig", stored.getSignature());
+    }
+
+    @Test
+    void accept_PayPalFallsBackToRelatedOrderId() {
+        when(paymentProviderFactory.getProvider("PAYPAL")).thenReturn(paymentProvider);
+        when(paymentProvider.getProviderName()).thenReturn("PAYPAL");
+        when(paymentProvider.validateCallback(PAYPAL_PAYLOAD, "{}")).thenReturn(true);
+
+        webhookIntakeService.accept("PAYPAL", PAYPAL_PAYLOAD, "{}");
+
+        ArgumentCaptor<WebhookInboxEvent> captor = ArgumentCaptor.forClass(WebhookInboxEvent.class);
+        verify(webhookInboxRepository).saveAndFlush(captor.capture());
+        assertEquals("PP-ORDER-1", captor.getValue().getPartitionKey());
+    }
+
+    @Test
+    void accept_RejectsInvalidSignatureWithoutStoring() {
+        when(paymentProviderFactory.getProvider("STRIPE")).thenReturn(paymentProvider);
+        when(paymentProvider.validateCallback(STRIPE_PAYLOAD, "bad")).thenReturn(false);
+
+        WebhookIntakeService.IntakeResult result = webhookIntakeService.accept("STRIPE", STRIPE_PAYLOAD, "bad");
+
+        assertEquals(WebhookIntakeService.IntakeResult.REJECTED, result);
+        verifyNoInteractions(webhookInboxRepository);
+    }
+
+    @Test
+    void accept_ReportsDuplicateEvent() {
+        when(paymentProviderFactory.getProvider("STRIPE")).thenReturn(paymentProvider);
+        when(paymentProvider.getProviderName()).thenReturn("STRIPE");
+        when(paymentProvider.validateCallback(STRIPE_PAYLOAD, "sig")).thenReturn(true);
+        when(webhookInboxRepository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        assertEquals(WebhookIntakeService.IntakeResult.DUPLICATE, webhookIntakeService.accept("STRIPE", STRIPE_PAYLOAD, "sig"));
+    }
+
+    @Test
+    void isAsyncEnabled_DefaultsToSync() {
+        ReflectionTestUtils.setField(webhookIntakeService, "intakeMode", "sync");
+        assertFalse(webhookIntakeService.isAsyncEnabled());
+    }
+}